@@ -6,11 +6,17 @@ import chat4all.api.cassandra.CassandraConnection;
 import chat4all.api.cassandra.CassandraMessageRepository;
 import chat4all.api.grpc.GrpcServer;
 import chat4all.api.grpc.interceptor.AuthInterceptor;
+import chat4all.api.grpc.interceptor.GrpcMethodRegistry;
 import chat4all.api.grpc.interceptor.MetricsInterceptor;
 import chat4all.api.grpc.service.*;
 import chat4all.api.http.RestGateway;
 import chat4all.api.kafka.MessageProducer;
 import chat4all.api.storage.MinioFileStorage;
+import chat4all.api.store.GroupDirectory;
+import chat4all.api.store.InMemoryMessageRepository;
+import chat4all.api.store.MessageStore;
+import chat4all.api.store.StatusStore;
+import chat4all.api.store.UserDirectory;
 import chat4all.api.metrics.PrometheusMetricsServer;
 import chat4all.shared.tracing.TracingConfig;
 import io.opentelemetry.api.OpenTelemetry;
@@ -101,6 +107,7 @@ public class Main {
         String jwtSecret = System.getenv().getOrDefault("JWT_SECRET", "dev-secret-change-in-production");
         String kafkaBootstrap = System.getenv().getOrDefault("KAFKA_BOOTSTRAP_SERVERS", "kafka:9092");
         String kafkaTopic = System.getenv().getOrDefault("KAFKA_TOPIC_MESSAGES", "messages");
+        String kafkaStatusTopic = System.getenv().getOrDefault("KAFKA_TOPIC_STATUS", "status-updates");
         String minioEndpoint = System.getenv().getOrDefault("MINIO_ENDPOINT", "http://minio:9000");
         String minioAccessKey = System.getenv().getOrDefault("MINIO_ACCESS_KEY", "minioadmin");
         String minioSecretKey = System.getenv().getOrDefault("MINIO_SECRET_KEY", "minioadmin");
@@ -123,30 +130,52 @@ public class Main {
         
         // 3. Initialize OpenTelemetry tracing (RNF-008)
         String jaegerEndpoint = System.getenv().getOrDefault("JAEGER_ENDPOINT", "http://jaeger:14250");
-        OpenTelemetry openTelemetry = TracingConfig.initialize("api-service", jaegerEndpoint);
+        OpenTelemetry openTelemetry = TracingConfig.initialize("api-service", jaegerEndpoint, metricsServer.getRegistry());
         Tracer tracer = TracingConfig.getTracer(openTelemetry, "chat4all.api");
         System.out.println("✓ OpenTelemetry initialized - Jaeger: " + jaegerEndpoint);
         
         // 4. Create dependencies
         TokenGenerator tokenGenerator = new TokenGenerator(jwtSecret);
         JwtAuthenticator jwtAuthenticator = new JwtAuthenticator(jwtSecret);
-        MessageProducer messageProducer = new MessageProducer(kafkaBootstrap, kafkaTopic);
+        MessageProducer messageProducer = new MessageProducer(kafkaBootstrap, kafkaTopic, kafkaStatusTopic);
+        messageProducer.setLatencyMetrics(metricsServer.getLatencyMetrics());
         
-        // Cassandra connection for queries
-        CassandraConnection cassandraConnection = new CassandraConnection();
-        CassandraMessageRepository messageRepository = new CassandraMessageRepository(cassandraConnection.getSession());
+        // Storage: Cassandra (default) ou memória (STORAGE_BACKEND=memory, dev mode sem Cassandra)
+        // Os serviços dependem só das interfaces; os dois backends implementam as quatro
+        boolean inMemoryStorage = "memory".equalsIgnoreCase(System.getenv().getOrDefault("STORAGE_BACKEND", "cassandra"));
+        CassandraConnection cassandraConnection = inMemoryStorage ? null : new CassandraConnection();
+        MessageStore messageStore;
+        StatusStore statusStore;
+        GroupDirectory groupDirectory;
+        UserDirectory userDirectory;
+        if (inMemoryStorage) {
+            InMemoryMessageRepository repository = new InMemoryMessageRepository();
+            messageStore = repository;
+            statusStore = repository;
+            groupDirectory = repository;
+            userDirectory = repository;
+            System.out.println("⚠️  STORAGE_BACKEND=memory: nothing is persisted (dev mode only)");
+        } else {
+            CassandraMessageRepository repository = new CassandraMessageRepository(cassandraConnection.getSession());
+            messageStore = repository;
+            statusStore = repository;
+            groupDirectory = repository;
+            userDirectory = repository;
+        }
         
         // MinIO file storage
         MinioFileStorage fileStorage = new MinioFileStorage(minioEndpoint, minioAccessKey, minioSecretKey);
         
         // 6. Create interceptors (moved up to use in services)
-        AuthInterceptor authInterceptor = new AuthInterceptor(jwtAuthenticator);
-        MetricsInterceptor metricsInterceptor = new MetricsInterceptor();
+        GrpcMethodRegistry methodRegistry = new GrpcMethodRegistry(MetricsInterceptor.registry, AuthInterceptor.PUBLIC_METHODS);
+        AuthInterceptor authInterceptor = new AuthInterceptor(jwtAuthenticator, methodRegistry);
+        MetricsInterceptor metricsInterceptor = new MetricsInterceptor(methodRegistry);
         
         // 5. Create gRPC service implementations with metrics
-        AuthServiceImpl authService = new AuthServiceImpl(tokenGenerator, messageRepository);
-        MessageServiceImpl messageService = new MessageServiceImpl(messageProducer, messageRepository, tracer, metricsServer);
-        GroupServiceImpl groupService = new GroupServiceImpl(messageRepository, authInterceptor);
+        AuthServiceImpl authService = new AuthServiceImpl(tokenGenerator, userDirectory);
+        MessageServiceImpl messageService = new MessageServiceImpl(messageProducer, messageStore, statusStore, groupDirectory,
+            tracer, metricsServer);
+        GroupServiceImpl groupService = new GroupServiceImpl(groupDirectory, authInterceptor);
         FileServiceImpl fileService = new FileServiceImpl(fileStorage, tracer);
         HealthServiceImpl healthService = new HealthServiceImpl();
         
@@ -159,12 +188,14 @@ public class Main {
             fileService,
             healthService,
             authInterceptor,
-            metricsInterceptor
+            metricsInterceptor,
+            methodRegistry
         );
         
         // 7.5. Start HTTP REST Gateway for web interface
         int httpPort = Integer.parseInt(System.getenv().getOrDefault("HTTP_PORT", "8081"));
-        RestGateway restGateway = new RestGateway(httpPort, authService, messageService, messageRepository, fileStorage, messageProducer);
+        RestGateway restGateway = new RestGateway(httpPort, authService, messageService, messageStore, userDirectory,
+            groupDirectory, fileStorage, messageProducer);
         restGateway.start();
         System.out.println("✓ HTTP REST Gateway started on port " + httpPort);
         
@@ -175,7 +206,9 @@ public class Main {
             restGateway.stop();
             grpcServer.stop();
             messageProducer.close();
-            cassandraConnection.close();
+            if (cassandraConnection != null) {
+                cassandraConnection.close();
+            }
             metricsServer.stop();
             System.out.println("gRPC API service stopped.");
         }));
@@ -1,15 +1,29 @@
 package chat4all.api.cassandra;
 
+import chat4all.api.store.ChangePage;
+import chat4all.api.store.ConversationPage;
+import chat4all.api.store.Group;
+import chat4all.api.store.GroupDirectory;
+import chat4all.api.store.MessageStore;
+import chat4all.api.store.StatusStore;
+import chat4all.api.store.UserDirectory;
+import chat4all.shared.Logger;
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
 import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
 
 /**
  * CassandraMessageRepository - Repository para queries READ-ONLY de mensagens
@@ -19,16 +33,16 @@ import java.util.Map;
  * 
  * CASSANDRA QUERY PATTERNS:
  * 
- * PRIMARY KEY = (conversation_id, timestamp)
+ * PRIMARY KEY = (conversation_id, seq)
  *   ↓
  * Partition Key: conversation_id → Distribui dados entre nós
- * Clustering Key: timestamp → Ordena dentro da partição
+ * Clustering Key: seq → Ordena dentro da partição (sequência por conversação)
  * 
  * QUERY EFICIENTE:
  * ```sql
  * SELECT * FROM messages 
  * WHERE conversation_id = 'conv_123'  ← Partition key (obrigatório!)
- * ORDER BY timestamp ASC              ← Clustering key (grátis!)
+ * ORDER BY seq ASC                    ← Clustering key (grátis!)
  * LIMIT 50;                           ← Pagination
  * ```
  * 
@@ -45,17 +59,34 @@ import java.util.Map;
  *    - Problema: OFFSET alto = lento (Cassandra lê e descarta rows)
  *    - OK para Fase 1 educacional
  * 
- * 2. CURSOR-BASED (produção real):
- *    - Usa último timestamp como cursor
- *    - WHERE timestamp > ? LIMIT 50
- *    - Mais eficiente, sem OFFSET
+ * 2. CURSOR-BASED (after_seq):
+ *    - Usa o seq da última mensagem recebida como cursor
+ *    - WHERE seq > ? LIMIT 50
+ *    - Mais eficiente, sem OFFSET; seq não colide como timestamp
+ * 
+ * Implementa as interfaces de chat4all.api.store (MessageStore, StatusStore,
+ * GroupDirectory, UserDirectory); InMemoryMessageRepository é a alternativa sem I/O.
  * 
  * @author Chat4All Educational Project
  */
-public class CassandraMessageRepository {
+public class CassandraMessageRepository implements MessageStore, StatusStore, GroupDirectory, UserDirectory {
+    
+    private static final Logger log = new Logger("api-service");
+    
+    // Teto de conversas lidas por inbox (ordenação é feita em memória)
+    private static final int MAX_INBOX_CONVERSATIONS = 1000;
     
     private final CqlSession session;
     private final PreparedStatement getMessagesStatement;
+    private final PreparedStatement getMessagesAfterSeqStatement;
+    private final PreparedStatement getChangesStatement;
+    private final PreparedStatement getInboxStatement;
+    private final PreparedStatement getUnreadStatement;
+    private final PreparedStatement saveReadWatermarkStatement;
+    private final PreparedStatement getReadWatermarksStatement;
+    private final PreparedStatement getLastSeqStatement;
+    private final long syncSettleMs;
+    private final long syncRetentionMs;
     
     /**
      * Cria repository com PreparedStatement
@@ -74,13 +105,54 @@ public class CassandraMessageRepository {
         
         // Query otimizada: usa partition key + clustering key (Phase 2: includes file fields)
         this.getMessagesStatement = session.prepare(
-            "SELECT conversation_id, timestamp, message_id, sender_id, content, status, file_id, file_metadata " +
+            "SELECT conversation_id, seq, timestamp, message_id, sender_id, content, status, file_id, file_metadata " +
             "FROM messages " +
             "WHERE conversation_id = ? " +
-            "ORDER BY timestamp ASC"
+            "ORDER BY seq ASC"
             // LIMIT aplicado dinamicamente no bind
         );
         
+        // Cursor: range query na clustering key, sem descartar rows
+        this.getMessagesAfterSeqStatement = session.prepare(
+            "SELECT conversation_id, seq, timestamp, message_id, sender_id, content, status, file_id, file_metadata " +
+            "FROM messages " +
+            "WHERE conversation_id = ? AND seq > ? " +
+            "ORDER BY seq ASC " +
+            "LIMIT ?"
+        );
+        
+        // Sync feed: faixa (cursor, agora - settle) da partição do usuário
+        this.getChangesStatement = session.prepare(
+            "SELECT change_id, change_type, conversation_id, message_id, seq, sender_id, content, status, " +
+            "file_id, actor_id, timestamp " +
+            "FROM user_changes " +
+            "WHERE user_id = ? AND change_id > ? AND change_id < ? " +
+            "LIMIT ?"
+        );
+        // Inbox: uma partição por tabela (user_id)
+        this.getInboxStatement = session.prepare(
+            "SELECT conversation_id, last_message_id, last_sender_id, last_preview, last_message_at, last_seq " +
+            "FROM user_conversations WHERE user_id = ? LIMIT " + MAX_INBOX_CONVERSATIONS
+        );
+        this.getUnreadStatement = session.prepare(
+            "SELECT conversation_id, unread FROM user_conversation_unread WHERE user_id = ? LIMIT " + MAX_INBOX_CONVERSATIONS
+        );
+        // Marcas de leitura: USING TIMESTAMP = read_seq → o maior seq sempre vence
+        this.saveReadWatermarkStatement = session.prepare(
+            "UPDATE read_watermarks USING TIMESTAMP ? SET read_seq = ?, read_at = ? " +
+            "WHERE conversation_id = ? AND user_id = ?"
+        );
+        this.getReadWatermarksStatement = session.prepare(
+            "SELECT user_id, read_seq FROM read_watermarks WHERE conversation_id = ?"
+        );
+        // Última linha da partição (clustering key seq em ordem inversa)
+        this.getLastSeqStatement = session.prepare(
+            "SELECT seq FROM messages WHERE conversation_id = ? ORDER BY seq DESC LIMIT 1"
+        );
+        
+        this.syncSettleMs = Long.parseLong(System.getenv().getOrDefault("SYNC_SETTLE_MS", "2000"));
+        this.syncRetentionMs = Long.parseLong(System.getenv().getOrDefault("SYNC_RETENTION_SECONDS", "604800")) * 1000;
+        
         System.out.println("✓ CassandraMessageRepository initialized");
     }
     
@@ -88,7 +160,7 @@ public class CassandraMessageRepository {
      * Busca mensagens de uma conversação com paginação
      * 
      * FLUXO:
-     * 1. Query Cassandra: WHERE conversation_id = ? ORDER BY timestamp
+     * 1. Query Cassandra: WHERE conversation_id = ? ORDER BY seq
      * 2. Fetch LIMIT + OFFSET rows (não há OFFSET nativo)
      * 3. Descartar primeiras OFFSET rows (simula pagination)
      * 4. Retornar até LIMIT rows
@@ -99,8 +171,9 @@ public class CassandraMessageRepository {
      * 
      * EDUCATIONAL NOTE: Cursor-based pagination seria O(limit) sempre:
      * ```java
-     * WHERE conversation_id = ? AND timestamp > lastTimestamp LIMIT ?
+     * WHERE conversation_id = ? AND seq > lastSeq LIMIT ?
      * ```
+     * (ver getMessagesAfter)
      * 
      * FORMATO DE RETORNO:
      * ```json
@@ -110,6 +183,7 @@ public class CassandraMessageRepository {
      *     "conversation_id": "conv_abc",
      *     "sender_id": "user_a",
      *     "content": "Hello!",
+     *     "seq": 42,
      *     "timestamp": 1700000000000,
      *     "status": "DELIVERED"
      *   }
@@ -121,6 +195,7 @@ public class CassandraMessageRepository {
      * @param offset Quantas mensagens pular (default: 0)
      * @return Lista de mensagens como Maps (JSON-ready)
      */
+    @Override
     public List<Map<String, Object>> getMessages(String conversationId, int limit, int offset) {
         List<Map<String, Object>> messages = new ArrayList<>();
         
@@ -153,59 +228,384 @@ public class CassandraMessageRepository {
                     break;
                 }
                 
-                // Converter Row → Map (JSON-ready)
-                Map<String, Object> message = new HashMap<>();
-                message.put("message_id", row.getString("message_id"));
-                message.put("conversation_id", row.getString("conversation_id"));
-                message.put("sender_id", row.getString("sender_id"));
-                message.put("content", row.getString("content"));
-                message.put("status", row.getString("status"));
+                messages.add(toMessage(row));
+                rowIndex++;
+            }
+            applyReadWatermarks(conversationId, messages);
+            
+            log.debug("✓ Retrieved {} messages for conversation {} (limit={}, offset={})", messages.size(), conversationId, safeLimit, safeOffset);
+            
+            return messages;
+            
+        } catch (Exception e) {
+            log.error("✗ Failed to retrieve messages for {}: {}", conversationId, e.getMessage());
+            throw new RuntimeException("Failed to query messages", e);
+        }
+    }
+    
+    /**
+     * Busca mensagens depois de um cursor (seq da última mensagem que o cliente já tem)
+     * 
+     * Custo O(limit) em qualquer ponto da conversa, ao contrário do OFFSET.
+     * 
+     * @param conversationId ID da conversação (partition key)
+     * @param afterSeq Cursor exclusivo (0 = desde o início)
+     * @param limit Máximo de mensagens a retornar (entre 1 e 100)
+     * @return Lista de mensagens como Maps (JSON-ready), em ordem de seq
+     */
+    @Override
+    public List<Map<String, Object>> getMessagesAfter(String conversationId, long afterSeq, int limit) {
+        if (conversationId == null || conversationId.trim().isEmpty()) {
+            throw new IllegalArgumentException("conversation_id cannot be null or empty");
+        }
+        
+        int safeLimit = Math.min(Math.max(limit, 1), 100);
+        long safeAfterSeq = Math.max(afterSeq, 0);
+        
+        try {
+            ResultSet rs = session.execute(getMessagesAfterSeqStatement.bind(conversationId, safeAfterSeq, safeLimit));
+            
+            List<Map<String, Object>> messages = new ArrayList<>();
+            for (Row row : rs) {
+                messages.add(toMessage(row));
+            }
+            applyReadWatermarks(conversationId, messages);
+            
+            log.debug("✓ Retrieved {} messages for conversation {} (after_seq={}, limit={})", messages.size(), conversationId, safeAfterSeq, safeLimit);
+            
+            return messages;
+            
+        } catch (Exception e) {
+            log.error("✗ Failed to retrieve messages for {}: {}", conversationId, e.getMessage());
+            throw new RuntimeException("Failed to query messages", e);
+        }
+    }
+    
+    /**
+     * Sync incremental: mudanças (mensagens novas e transições de status) do usuário depois do cursor
+     * 
+     * FLUXO:
+     * 1. Cliente sem cursor → começa do início do feed (últimos 7 dias)
+     * 2. Lê UMA partição: user_changes WHERE user_id = ? AND change_id > cursor
+     * 3. Só devolve mudanças com mais de SYNC_SETTLE_MS (relógios dos workers)
+     * 4. Cliente guarda next_cursor e chama de novo (has_more = true → imediatamente)
+     * 
+     * RESET: cursor mais velho que a retenção do feed → linhas já expiraram;
+     * cliente deve recarregar as conversas com GetMessages e recomeçar sem cursor.
+     * 
+     * FILTRO POR CONVERSA: aplicado depois da leitura; o cursor avança mesmo sobre
+     * mudanças filtradas (use sempre o mesmo conjunto de conversas com um cursor).
+     * 
+     * @param userId Dono do feed (do token)
+     * @param cursor change_id da última mudança recebida (null/vazio = início)
+     * @param conversationIds Conversas de interesse (vazio = todas)
+     * @param limit Máximo de mudanças lidas (entre 1 e 500)
+     * @throws IllegalArgumentException se o cursor não for um TIMEUUID
+     */
+    @Override
+    public ChangePage getChangesSince(String userId, String cursor, Set<String> conversationIds, int limit) {
+        if (userId == null || userId.trim().isEmpty()) {
+            throw new IllegalArgumentException("user_id cannot be null or empty");
+        }
+        
+        int safeLimit = Math.min(Math.max(limit, 1), 500);
+        long now = System.currentTimeMillis();
+        
+        UUID from;
+        if (cursor == null || cursor.isEmpty()) {
+            from = Uuids.startOf(0);
+        } else {
+            try {
+                from = UUID.fromString(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid sync cursor: " + cursor);
+            }
+            if (from.version() != 1) {
+                throw new IllegalArgumentException("Invalid sync cursor: " + cursor);
+            }
+            if (Uuids.unixTimestamp(from) < now - syncRetentionMs) {
+                return new ChangePage(new ArrayList<>(), null, false, true);
+            }
+        }
+        UUID until = Uuids.startOf(now - syncSettleMs);
+        
+        try {
+            ResultSet rs = session.execute(getChangesStatement.bind(userId, from, until, safeLimit));
+            
+            List<Map<String, Object>> changes = new ArrayList<>();
+            UUID last = from;
+            int read = 0;
+            for (Row row : rs) {
+                read++;
+                last = row.getUuid("change_id");
+                String conversationId = row.getString("conversation_id");
+                if (conversationIds != null && !conversationIds.isEmpty() && !conversationIds.contains(conversationId)) {
+                    continue;
+                }
                 
-                // Timestamp: converter para epoch millis (compatível com frontend)
+                Map<String, Object> change = new HashMap<>();
+                change.put("change_id", last.toString());
+                change.put("type", row.getString("change_type"));
+                change.put("conversation_id", conversationId);
+                if (row.getString("message_id") != null) {
+                    change.put("message_id", row.getString("message_id"));
+                }
+                change.put("seq", row.getLong("seq"));
+                change.put("status", row.getString("status"));
+                if (row.getString("sender_id") != null) {
+                    change.put("sender_id", row.getString("sender_id"));
+                    change.put("content", row.getString("content"));
+                }
+                if (row.getString("file_id") != null) {
+                    change.put("file_id", row.getString("file_id"));
+                }
+                if (row.getString("actor_id") != null) {
+                    change.put("actor_id", row.getString("actor_id"));
+                }
                 Instant timestamp = row.getInstant("timestamp");
                 if (timestamp != null) {
-                    message.put("timestamp", timestamp.toEpochMilli());
+                    change.put("timestamp", timestamp.toEpochMilli());
                 }
-                
-                // Phase 2: File attachment metadata
-                String fileId = row.getString("file_id");
-                if (fileId != null && !fileId.isEmpty()) {
-                    message.put("file_id", fileId);
-                    
-                    // File metadata map
-                    Map<String, String> fileMetadata = row.getMap("file_metadata", String.class, String.class);
-                    if (fileMetadata != null && !fileMetadata.isEmpty()) {
-                        // Extrair file_name e file_size para o nível principal
-                        String fileName = fileMetadata.get("file_name");
-                        String fileSize = fileMetadata.get("file_size");
-                        
-                        if (fileName != null) {
-                            message.put("file_name", fileName);
-                        }
-                        if (fileSize != null && !fileSize.isEmpty()) {
-                            try {
-                                message.put("file_size", Long.parseLong(fileSize));
-                            } catch (NumberFormatException e) {
-                                System.err.println("[GetMessages] Error parsing file_size: " + fileSize);
-                                message.put("file_size", 0L);
-                            }
-                        }
-                    }
+                changes.add(change);
+            }
+            
+            String nextCursor = read > 0 ? last.toString() : (cursor == null || cursor.isEmpty() ? null : cursor);
+            log.debug("✓ Sync for {}: {} changes (read {}, limit={})", userId, changes.size(), read, safeLimit);
+            
+            return new ChangePage(changes, nextCursor, read >= safeLimit, false);
+            
+        } catch (Exception e) {
+            log.error("✗ Failed to read change feed for {}: {}", userId, e.getMessage());
+            throw new RuntimeException("Failed to query change feed", e);
+        }
+    }
+    
+    /**
+     * Lista de conversas do usuário (inbox), mais recentes primeiro
+     * 
+     * CUSTO: uma leitura de partição em user_conversations + uma em
+     * user_conversation_unread, em paralelo - independente do número de conversas.
+     * Antes: um getMessages por conversa.
+     * 
+     * PAGINAÇÃO: a partição é ordenada por conversation_id, então a ordem por
+     * atividade é feita em memória (até MAX_INBOX_CONVERSATIONS). O page_token é
+     * "<last_message_at>:<conversation_id>" do último item da página anterior.
+     * 
+     * @param userId Dono da inbox (do token)
+     * @param pageToken Token da página anterior (null/vazio = primeira página)
+     * @param limit Tamanho da página (entre 1 e 100)
+     * @throws IllegalArgumentException se o page_token for inválido
+     */
+    @Override
+    public ConversationPage listConversations(String userId, String pageToken, int limit) {
+        if (userId == null || userId.trim().isEmpty()) {
+            throw new IllegalArgumentException("user_id cannot be null or empty");
+        }
+        int safeLimit = Math.min(Math.max(limit, 1), 100);
+        
+        long afterAt = Long.MAX_VALUE;
+        String afterId = "";
+        if (pageToken != null && !pageToken.isEmpty()) {
+            int separator = pageToken.indexOf(':');
+            try {
+                afterAt = Long.parseLong(pageToken.substring(0, separator));
+                afterId = pageToken.substring(separator + 1);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid page token: " + pageToken);
+            }
+        }
+        
+        try {
+            CompletionStage<AsyncResultSet> unreadFuture =
+                session.executeAsync(getUnreadStatement.bind(userId));
+            ResultSet inboxRows = session.execute(getInboxStatement.bind(userId));
+            
+            List<Map<String, Object>> all = new ArrayList<>();
+            for (Row row : inboxRows) {
+                Map<String, Object> conversation = new HashMap<>();
+                conversation.put("conversation_id", row.getString("conversation_id"));
+                conversation.put("last_message_id", row.getString("last_message_id"));
+                conversation.put("last_sender_id", row.getString("last_sender_id"));
+                conversation.put("last_preview", row.getString("last_preview"));
+                Instant lastAt = row.getInstant("last_message_at");
+                conversation.put("last_message_at", lastAt != null ? lastAt.toEpochMilli() : 0L);
+                conversation.put("last_seq", row.getLong("last_seq"));
+                conversation.put("unread", 0L);
+                all.add(conversation);
+            }
+            
+            // Contadores: junta pelo conversation_id (podem estar negativos após retries)
+            Map<String, Long> unread = new HashMap<>();
+            AsyncResultSet page =
+                unreadFuture.toCompletableFuture().join();
+            while (true) {
+                for (Row row : page.currentPage()) {
+                    unread.put(row.getString("conversation_id"), Math.max(0L, row.getLong("unread")));
                 }
-                
-                messages.add(message);
-                rowIndex++;
+                if (!page.hasMorePages()) {
+                    break;
+                }
+                page = page.fetchNextPage().toCompletableFuture().join();
+            }
+            for (Map<String, Object> conversation : all) {
+                conversation.put("unread", unread.getOrDefault((String) conversation.get("conversation_id"), 0L));
             }
             
-            System.out.println("✓ Retrieved " + messages.size() + " messages for conversation " + conversationId +
-                             " (limit=" + safeLimit + ", offset=" + safeOffset + ")");
+            // Mais recente primeiro; empate desempata por conversation_id
+            all.sort(Comparator.<Map<String, Object>>comparingLong(c -> (Long) c.get("last_message_at")).reversed()
+                .thenComparing(c -> (String) c.get("conversation_id")));
             
-            return messages;
+            List<Map<String, Object>> result = new ArrayList<>();
+            boolean hasMore = false;
+            for (Map<String, Object> conversation : all) {
+                long at = (Long) conversation.get("last_message_at");
+                String id = (String) conversation.get("conversation_id");
+                if (at > afterAt || (at == afterAt && id.compareTo(afterId) <= 0)) {
+                    continue; // já entregue em páginas anteriores
+                }
+                if (result.size() == safeLimit) {
+                    hasMore = true;
+                    break;
+                }
+                result.add(conversation);
+            }
+            
+            String nextPageToken = null;
+            if (hasMore) {
+                Map<String, Object> last = result.get(result.size() - 1);
+                nextPageToken = last.get("last_message_at") + ":" + last.get("conversation_id");
+            }
+            
+            log.debug("✓ Listed {} of {} conversations for {}", result.size(), all.size(), userId);
+            
+            return new ConversationPage(result, nextPageToken, hasMore);
             
         } catch (Exception e) {
-            System.err.println("✗ Failed to retrieve messages for " + conversationId + ": " + e.getMessage());
-            throw new RuntimeException("Failed to query messages", e);
+            log.error("✗ Failed to list conversations for {}: {}", userId, e.getMessage());
+            throw new RuntimeException("Failed to list conversations", e);
+        }
+    }
+    
+    /**
+     * Grava a marca de leitura de um usuário numa conversa
+     * 
+     * EDUCATIONAL NOTE: USING TIMESTAMP = read_seq
+     * - Cassandra resolve escritas concorrentes por last-write-wins no timestamp
+     * - Usando o próprio seq como timestamp, a "última" escrita é a de MAIOR seq:
+     *   uma marca atrasada/duplicada nunca faz a marca voltar
+     * - Sem read-before-write e sem LWT
+     * - Por isso read_seq NUNCA pode vir cru do cliente: um Long.MAX_VALUE viraria
+     *   um timestamp que nenhuma escrita futura supera. O MessageServiceImpl
+     *   limita o valor a getLastSeq() antes de chamar este método
+     * 
+     * @param conversationId Conversa
+     * @param userId Leitor
+     * @param readSeq Maior seq lido (inclusive)
+     * @param readAt Momento da leitura (epoch millis)
+     */
+    @Override
+    public void saveReadWatermark(String conversationId, String userId, long readSeq, long readAt) {
+        session.execute(saveReadWatermarkStatement.bind(
+            readSeq, readSeq, Instant.ofEpochMilli(readAt), conversationId, userId));
+        log.debug("✓ Read watermark: {} read {} up to seq {}", userId, conversationId, readSeq);
+    }
+    
+    /**
+     * Maior seq da conversação: uma linha, lida do fim da partição
+     */
+    @Override
+    public long getLastSeq(String conversationId) {
+        Row row = session.execute(getLastSeqStatement.bind(conversationId)).one();
+        return row != null ? row.getLong("seq") : 0;
+    }
+    
+    /**
+     * Marcas de leitura de todos os participantes (user_id → read_seq)
+     */
+    @Override
+    public Map<String, Long> getReadWatermarks(String conversationId) {
+        Map<String, Long> watermarks = new HashMap<>();
+        for (Row row : session.execute(getReadWatermarksStatement.bind(conversationId))) {
+            watermarks.put(row.getString("user_id"), row.getLong("read_seq"));
         }
+        return watermarks;
+    }
+    
+    /**
+     * Deriva READ das marcas de leitura
+     * 
+     * Mensagem é READ se algum participante além do remetente tem read_seq >= seq.
+     * Uma leitura de partição pequena (uma linha por participante) por página.
+     * Status já gravado por mensagem (caminho legado) é mantido.
+     */
+    private void applyReadWatermarks(String conversationId, List<Map<String, Object>> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Map<String, Long> watermarks = getReadWatermarks(conversationId);
+        if (watermarks.isEmpty()) {
+            return;
+        }
+        for (Map<String, Object> message : messages) {
+            if ("READ".equals(message.get("status"))) {
+                continue;
+            }
+            long seq = (Long) message.get("seq");
+            Object senderId = message.get("sender_id");
+            for (Map.Entry<String, Long> watermark : watermarks.entrySet()) {
+                if (watermark.getValue() >= seq && !watermark.getKey().equals(senderId)) {
+                    message.put("status", "READ");
+                    break;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Converte Row → Map (JSON-ready)
+     */
+    private Map<String, Object> toMessage(Row row) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("message_id", row.getString("message_id"));
+        message.put("conversation_id", row.getString("conversation_id"));
+        message.put("sender_id", row.getString("sender_id"));
+        message.put("content", row.getString("content"));
+        message.put("status", row.getString("status"));
+        message.put("seq", row.getLong("seq"));
+        
+        // Timestamp: converter para epoch millis (compatível com frontend)
+        Instant timestamp = row.getInstant("timestamp");
+        if (timestamp != null) {
+            message.put("timestamp", timestamp.toEpochMilli());
+        }
+        
+        // Phase 2: File attachment metadata
+        String fileId = row.getString("file_id");
+        if (fileId != null && !fileId.isEmpty()) {
+            message.put("file_id", fileId);
+            
+            // File metadata map
+            Map<String, String> fileMetadata = row.getMap("file_metadata", String.class, String.class);
+            if (fileMetadata != null && !fileMetadata.isEmpty()) {
+                // Extrair file_name e file_size para o nível principal
+                String fileName = fileMetadata.get("file_name");
+                String fileSize = fileMetadata.get("file_size");
+                
+                if (fileName != null) {
+                    message.put("file_name", fileName);
+                }
+                if (fileSize != null && !fileSize.isEmpty()) {
+                    try {
+                        message.put("file_size", Long.parseLong(fileSize));
+                    } catch (NumberFormatException e) {
+                        log.warn("[GetMessages] Error parsing file_size: {}", fileSize);
+                        message.put("file_size", 0L);
+                    }
+                }
+            }
+        }
+        
+        return message;
     }
     
     /**
@@ -214,8 +614,9 @@ public class CassandraMessageRepository {
      * @param messageId Message ID to query
      * @return Map with message data, or null if not found
      */
+    @Override
     public Map<String, Object> getMessageById(String messageId) {
-        String query = "SELECT conversation_id, timestamp, message_id, sender_id, content, status, " +
+        String query = "SELECT conversation_id, seq, timestamp, message_id, sender_id, content, status, " +
                       "delivered_at, read_at, file_id, file_metadata " +
                       "FROM chat4all.messages WHERE message_id = ? ALLOW FILTERING";
         
@@ -229,6 +630,7 @@ public class CassandraMessageRepository {
         
         Map<String, Object> message = new HashMap<>();
         message.put("conversation_id", row.getString("conversation_id"));
+        message.put("seq", row.getLong("seq"));
         message.put("timestamp", row.getInstant("timestamp"));
         message.put("message_id", row.getString("message_id"));
         message.put("sender_id", row.getString("sender_id"));
@@ -246,15 +648,16 @@ public class CassandraMessageRepository {
      * 
      * EDUCATIONAL NOTE: Two-step process required for Cassandra
      * 1. Query by message_id (secondary index) to get full primary key
-     * 2. Update using conversation_id + timestamp (partition + clustering key)
+     * 2. Update using conversation_id + seq (partition + clustering key)
      * 
      * @param messageId Message ID to update
      * @param status New status ("READ")
      * @param readAt Read timestamp (epoch millis)
      */
+    @Override
     public void updateMessageStatus(String messageId, String status, long readAt) {
         // Step 1: Query to get primary key components
-        String selectQuery = "SELECT conversation_id, timestamp FROM chat4all.messages " +
+        String selectQuery = "SELECT conversation_id, seq FROM chat4all.messages " +
                            "WHERE message_id = ? ALLOW FILTERING";
         PreparedStatement selectStmt = session.prepare(selectQuery);
         ResultSet resultSet = session.execute(selectStmt.bind(messageId));
@@ -266,17 +669,17 @@ public class CassandraMessageRepository {
         }
         
         String conversationId = row.getString("conversation_id");
-        Instant messageTimestamp = row.getInstant("timestamp");
+        long seq = row.getLong("seq");
         
         // Step 2: Update using full primary key
         String update = "UPDATE chat4all.messages " +
                        "SET status = ?, read_at = ? " +
-                       "WHERE conversation_id = ? AND timestamp = ?";
+                       "WHERE conversation_id = ? AND seq = ?";
         
         PreparedStatement updateStmt = session.prepare(update);
         Instant readAtInstant = Instant.ofEpochMilli(readAt);
         
-        session.execute(updateStmt.bind(status, readAtInstant, conversationId, messageTimestamp));
+        session.execute(updateStmt.bind(status, readAtInstant, conversationId, seq));
         
         System.out.println("✓ Updated message status: " + messageId + " → " + status);
     }
@@ -300,10 +703,12 @@ public class CassandraMessageRepository {
      * ```
      * 
      * Fase 1: Simplificação - não implementamos count (client pode inferir se retornou < limit)
+     * Não lidas por conversa: ver listConversations (user_conversation_unread)
      * 
      * @param conversationId ID da conversação
      * @return Total de mensagens (aproximado)
      */
+    @Override
     public long countMessages(String conversationId) {
         // Simplified: retorna -1 (não implementado para Fase 1)
         // Em produção: usar COUNTER table
@@ -314,31 +719,7 @@ public class CassandraMessageRepository {
     // GROUP OPERATIONS (for gRPC GroupService)
     // ========================================================================
     
-    /**
-     * Group domain model
-     */
-    public static class Group {
-        private String groupId;
-        private String name;
-        private List<String> participantIds;
-        private String type;
-        private long createdAt;
-        
-        public Group(String groupId, String name, List<String> participantIds, String type, long createdAt) {
-            this.groupId = groupId;
-            this.name = name;
-            this.participantIds = participantIds;
-            this.type = type;
-            this.createdAt = createdAt;
-        }
-        
-        public String getGroupId() { return groupId; }
-        public String getName() { return name; }
-        public List<String> getParticipantIds() { return participantIds; }
-        public String getType() { return type; }
-        public long getCreatedAt() { return createdAt; }
-    }
-    
+    @Override
     public void createGroup(String groupId, String name, List<String> participantIds, String type) {
         System.out.println("[createGroup] Criando grupo:");
         System.out.println("  - groupId: " + groupId);
@@ -361,6 +742,7 @@ public class CassandraMessageRepository {
         System.out.println("✓ Group created: " + groupId + " with " + participantIds.size() + " participants");
     }
     
+    @Override
     public void addParticipantToGroup(String groupId, String userId) {
         // 1. Get current participants
         String selectQuery = "SELECT participant_ids FROM chat4all.conversations WHERE conversation_id = ?";
@@ -392,6 +774,7 @@ public class CassandraMessageRepository {
         }
     }
     
+    @Override
     public void removeParticipantFromGroup(String groupId, String userId) {
         // 1. Get current participants
         String selectQuery = "SELECT participant_ids FROM chat4all.conversations WHERE conversation_id = ?";
@@ -421,6 +804,7 @@ public class CassandraMessageRepository {
         }
     }
     
+    @Override
     public java.util.Optional<Group> getGroup(String groupId) {
         String query = "SELECT conversation_id, type, participant_ids, created_at FROM chat4all.conversations WHERE conversation_id = ?";
         PreparedStatement statement = session.prepare(query);
@@ -459,6 +843,7 @@ public class CassandraMessageRepository {
         return java.util.Optional.of(group);
     }
     
+    @Override
     public List<Group> getUserGroups(String userId) {
         System.out.println("[getUserGroups] Buscando grupos para userId: " + userId);
         
@@ -520,12 +905,14 @@ public class CassandraMessageRepository {
     // USER OPERATIONS (for gRPC AuthService)
     // ========================================================================
     
+    @Override
     public void createUser(String userId, String username, String email, String passwordHash) {
         String insert = "INSERT INTO chat4all.users (user_id, username, email, password, created_at) VALUES (?, ?, ?, ?, ?)";
         PreparedStatement stmt = session.prepare(insert);
         session.execute(stmt.bind(userId, username, email, passwordHash, Instant.now()));
     }
     
+    @Override
     public java.util.Optional<Map<String, Object>> getUserByUsername(String username) {
         String query = "SELECT user_id, username, email, password, created_at FROM chat4all.users WHERE username = ? LIMIT 1 ALLOW FILTERING";
         PreparedStatement stmt = session.prepare(query);
@@ -549,6 +936,7 @@ public class CassandraMessageRepository {
     /**
      * Get all users (for user list in web interface)
      */
+    @Override
     public List<Map<String, Object>> getAllUsers() {
         String query = "SELECT user_id, username, email, created_at FROM chat4all.users";
         PreparedStatement stmt = session.prepare(query);
@@ -566,51 +954,4 @@ public class CassandraMessageRepository {
         
         return users;
     }
-    
-    /**
-     * Save message directly (for REST API bypass)
-     */
-    public void saveMessageDirect(String messageId, String conversationId, String senderId, String content, long timestamp) {
-        saveMessageDirect(messageId, conversationId, senderId, content, timestamp, null, null);
-    }
-    
-    public void saveMessageDirect(String messageId, String conversationId, String senderId, String content, long timestamp, String fileId, Map<String, String> fileMetadata) {
-        String query;
-        PreparedStatement stmt;
-        
-        if (fileId != null && !fileId.isEmpty()) {
-            // INSERT com file_id e file_metadata
-            query = "INSERT INTO chat4all.messages " +
-                "(conversation_id, timestamp, message_id, sender_id, content, status, file_id, file_metadata) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-            
-            stmt = session.prepare(query);
-            session.execute(stmt.bind(
-                conversationId,
-                java.time.Instant.ofEpochMilli(timestamp),
-                messageId,
-                senderId,
-                content,
-                "SENT",
-                fileId,
-                fileMetadata
-            ));
-        } else {
-            // INSERT sem file_id
-            query = "INSERT INTO chat4all.messages " +
-                "(conversation_id, timestamp, message_id, sender_id, content, status) " +
-                "VALUES (?, ?, ?, ?, ?, ?)";
-            
-            stmt = session.prepare(query);
-            session.execute(stmt.bind(
-                conversationId,
-                java.time.Instant.ofEpochMilli(timestamp),
-                messageId,
-                senderId,
-                content,
-                "SENT"
-            ));
-        }
-    }
 }
-
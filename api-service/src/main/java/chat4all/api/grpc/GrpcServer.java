@@ -1,15 +1,18 @@
 package chat4all.api.grpc;
 
 import chat4all.api.grpc.interceptor.AuthInterceptor;
+import chat4all.api.grpc.interceptor.GrpcMethodRegistry;
 import chat4all.api.grpc.interceptor.MetricsInterceptor;
 import chat4all.api.grpc.service.*;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
+import io.grpc.ServerServiceDefinition;
 import io.grpc.protobuf.services.ProtoReflectionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.List;
 
 public class GrpcServer {
     
@@ -24,15 +27,27 @@ public class GrpcServer {
             FileServiceImpl fileService,
             HealthServiceImpl healthService,
             AuthInterceptor authInterceptor,
-            MetricsInterceptor metricsInterceptor) {
+            MetricsInterceptor metricsInterceptor,
+            GrpcMethodRegistry methodRegistry) {
         
-        this.server = ServerBuilder.forPort(port)
-            .addService(authService)
-            .addService(messageService)
-            .addService(groupService)
-            .addService(fileService)
-            .addService(healthService)
-            .addService(ProtoReflectionService.newInstance())
+        List<ServerServiceDefinition> definitions = List.of(
+            authService.bindService(),
+            messageService.bindService(),
+            groupService.bindService(),
+            fileService.bindService(),
+            healthService.bindService(),
+            ProtoReflectionService.newInstance().bindService()
+        );
+        
+        // Build the method table once so interceptors only do O(1) lookups per call
+        ServerBuilder<?> builder = ServerBuilder.forPort(port);
+        for (ServerServiceDefinition definition : definitions) {
+            methodRegistry.register(definition);
+            builder.addService(definition);
+        }
+        log.info("Registered {} gRPC methods", methodRegistry.size());
+        
+        this.server = builder
             .intercept(metricsInterceptor)
             .intercept(authInterceptor)
             .maxInboundMessageSize(100 * 1024 * 1024)
@@ -3,6 +3,8 @@ package chat4all.api.grpc.interceptor;
 import chat4all.api.auth.JwtAuthenticator;
 import io.grpc.*;
 
+import java.util.Set;
+
 /**
  * AuthInterceptor - JWT authentication for gRPC
  */
@@ -11,18 +13,23 @@ public class AuthInterceptor implements ServerInterceptor {
     public static final Context.Key<String> USER_ID = Context.key("userId");
     public static final Context.Key<String> USERNAME = Context.key("username");
     
-    private static final String[] PUBLIC_METHODS = {
+    public static final Set<String> PUBLIC_METHODS = Set.of(
         "chat4all.v1.AuthService/Register",
         "chat4all.v1.AuthService/Login",
         "chat4all.v1.HealthService/Check",
         "chat4all.v1.HealthService/GetMetrics",
         "grpc.reflection.v1alpha.ServerReflection/ServerReflectionInfo"
-    };
+    );
+    
+    private static final Metadata.Key<String> AUTHORIZATION =
+        Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER);
     
     private final JwtAuthenticator jwtAuthenticator;
+    private final GrpcMethodRegistry methodRegistry;
     
-    public AuthInterceptor(JwtAuthenticator jwtAuthenticator) {
+    public AuthInterceptor(JwtAuthenticator jwtAuthenticator, GrpcMethodRegistry methodRegistry) {
         this.jwtAuthenticator = jwtAuthenticator;
+        this.methodRegistry = methodRegistry;
     }
     
     @Override
@@ -33,15 +40,13 @@ public class AuthInterceptor implements ServerInterceptor {
         
         String methodName = call.getMethodDescriptor().getFullMethodName();
         
-        // Skip auth for public methods
-        for (String publicMethod : PUBLIC_METHODS) {
-            if (methodName.equals(publicMethod)) {
-                return next.startCall(call, headers);
-            }
+        // Skip auth for public methods (O(1) lookup in the precomputed registry)
+        if (methodRegistry.lookup(methodName).isPublic()) {
+            return next.startCall(call, headers);
         }
         
         // Extract authorization header
-        String authHeader = headers.get(Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER));
+        String authHeader = headers.get(AUTHORIZATION);
         
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             call.close(Status.UNAUTHENTICATED.withDescription("Missing or invalid authorization header"), new Metadata());
@@ -1,46 +1,45 @@
 package chat4all.api.grpc.interceptor;
 
 import io.grpc.*;
-import io.micrometer.core.instrument.Counter;
-import io.micrometer.core.instrument.Timer;
 import io.micrometer.prometheus.PrometheusConfig;
 import io.micrometer.prometheus.PrometheusMeterRegistry;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * MetricsInterceptor - Prometheus metrics for gRPC
+ * 
+ * Meters are pre-created per method in GrpcMethodRegistry; each call only does
+ * a map lookup and records into existing Counter/Timer instances.
  */
 public class MetricsInterceptor implements ServerInterceptor {
     
     public static final PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
     
+    private final GrpcMethodRegistry methodRegistry;
+    
+    public MetricsInterceptor(GrpcMethodRegistry methodRegistry) {
+        this.methodRegistry = methodRegistry;
+    }
+    
     @Override
     public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
             ServerCall<ReqT, RespT> call,
             Metadata headers,
             ServerCallHandler<ReqT, RespT> next) {
         
-        String methodName = call.getMethodDescriptor().getFullMethodName();
-        Timer.Sample sample = Timer.start(registry);
-        
-        Counter.builder("grpc_server_calls_total")
-            .tag("method", methodName)
-            .register(registry)
-            .increment();
+        GrpcMethodRegistry.MethodInfo method = methodRegistry.lookup(call.getMethodDescriptor().getFullMethodName());
+        long startNanos = System.nanoTime();
+        method.calls().increment();
         
         ServerCall<ReqT, RespT> monitoringCall = new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
             @Override
             public void close(Status status, Metadata trailers) {
-                sample.stop(Timer.builder("grpc_server_call_duration_seconds")
-                    .tag("method", methodName)
-                    .tag("status", status.getCode().name())
-                    .register(registry));
+                Status.Code code = status.getCode();
+                method.duration(code).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
                 
-                if (!status.isOk()) {
-                    Counter.builder("grpc_server_errors_total")
-                        .tag("method", methodName)
-                        .tag("code", status.getCode().name())
-                        .register(registry)
-                        .increment();
+                if (code != Status.Code.OK) {
+                    method.errors(code).increment();
                 }
                 
                 super.close(status, trailers);
@@ -1,7 +1,7 @@
 package chat4all.api.grpc.service;
 
 import chat4all.api.auth.TokenGenerator;
-import chat4all.api.cassandra.CassandraMessageRepository;
+import chat4all.api.store.UserDirectory;
 import chat4all.grpc.generated.v1.*;
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
@@ -16,9 +16,9 @@ public class AuthServiceImpl extends AuthServiceGrpc.AuthServiceImplBase {
     
     private static final Logger log = LoggerFactory.getLogger(AuthServiceImpl.class);
     private final TokenGenerator tokenGenerator;
-    private final CassandraMessageRepository repository;
+    private final UserDirectory repository;
     
-    public AuthServiceImpl(TokenGenerator tokenGenerator, CassandraMessageRepository repository) {
+    public AuthServiceImpl(TokenGenerator tokenGenerator, UserDirectory repository) {
         this.tokenGenerator = tokenGenerator;
         this.repository = repository;
     }
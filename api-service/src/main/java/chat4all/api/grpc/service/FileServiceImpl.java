@@ -2,6 +2,7 @@ package chat4all.api.grpc.service;
 
 import chat4all.api.storage.MinioFileStorage;
 import chat4all.grpc.generated.v1.*;
+import chat4all.shared.Checksum;
 import chat4all.shared.tracing.TracingUtils;
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
@@ -13,7 +14,9 @@ import java.io.InputStream;
 import java.security.MessageDigest;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * FileServiceImpl - Upload/Download de arquivos com suporte a resumo
@@ -51,6 +54,12 @@ public class FileServiceImpl extends FileServiceGrpc.FileServiceImplBase {
     private static final int CHUNK_SIZE = 1_048_576; // 1MB
     private static final int BUFFER_FLUSH_SIZE = 10_485_760; // 10MB - flush to MinIO
     
+    // Verifica o checksum do chunk em outra thread enquanto o digest do arquivo consome
+    // os mesmos bytes (FILE_CHECKSUM_PARALLEL=false desliga; sem efeito com 1 CPU)
+    private static final boolean PARALLEL_CHUNK_VERIFICATION =
+        Boolean.parseBoolean(System.getenv().getOrDefault("FILE_CHECKSUM_PARALLEL", "true"))
+            && Runtime.getRuntime().availableProcessors() > 1;
+    
     public FileServiceImpl(MinioFileStorage fileStorage, Tracer tracer) {
         this.fileStorage = fileStorage;
         this.tracer = tracer;
@@ -90,7 +99,7 @@ public class FileServiceImpl extends FileServiceGrpc.FileServiceImplBase {
                             ? "upload_" + UUID.randomUUID().toString() 
                             : chunk.getSessionId();
                         
-                        digest = MessageDigest.getInstance("SHA-256");
+                        digest = Checksum.newSha256();
                         
                         // Valida tamanho do arquivo (RF-003)
                         if (metadata.getSizeBytes() > MAX_FILE_SIZE) {
@@ -110,22 +119,26 @@ public class FileServiceImpl extends FileServiceGrpc.FileServiceImplBase {
                     byte[] content = chunk.getContent().toByteArray();
                     
                     // Valida checksum do chunk (RF-004)
-                    if (!chunk.getChunkChecksum().isEmpty()) {
-                        MessageDigest chunkDigest = MessageDigest.getInstance("SHA-256");
-                        byte[] chunkHash = chunkDigest.digest(content);
-                        String chunkHashHex = bytesToHex(chunkHash);
-                        
-                        if (!chunkHashHex.equals(chunk.getChunkChecksum())) {
-                            responseObserver.onError(Status.DATA_LOSS
-                                .withDescription("Chunk checksum mismatch at offset " + chunk.getOffset())
-                                .asRuntimeException());
+                    // Chunks grandes: hash do chunk em paralelo com o digest do arquivo
+                    String expectedChunkChecksum = chunk.getChunkChecksum();
+                    CompletableFuture<Boolean> chunkCheck = null;
+                    if (!expectedChunkChecksum.isEmpty()) {
+                        if (PARALLEL_CHUNK_VERIFICATION && content.length >= Checksum.PARALLEL_THRESHOLD_BYTES) {
+                            chunkCheck = Checksum.matchesSha256Async(content, expectedChunkChecksum, ForkJoinPool.commonPool());
+                        } else if (!Checksum.matchesSha256(content, expectedChunkChecksum)) {
+                            rejectChunk(chunk);
                             return;
                         }
                     }
                     
+                    digest.update(content);
+                    if (chunkCheck != null && !chunkCheck.join()) {
+                        rejectChunk(chunk);
+                        return;
+                    }
+                    
                     // Adiciona chunk à lista (não descarta dados)
                     chunks.add(content);
-                    digest.update(content);
                     totalBytesReceived += content.length;
                     
                     // Valida limite durante upload (RF-003)
@@ -155,6 +168,12 @@ public class FileServiceImpl extends FileServiceGrpc.FileServiceImplBase {
                 }
             }
             
+            private void rejectChunk(FileChunk chunk) {
+                responseObserver.onError(Status.DATA_LOSS
+                    .withDescription("Chunk checksum mismatch at offset " + chunk.getOffset())
+                    .asRuntimeException());
+            }
+            
             @Override
             public void onError(Throwable t) {
                 System.err.println("❌ Upload error for session " + sessionId + ": " + t.getMessage());
@@ -182,7 +201,7 @@ public class FileServiceImpl extends FileServiceGrpc.FileServiceImplBase {
                     
                     // Calcula checksum final
                     byte[] fileHash = digest.digest();
-                    String checksumHex = bytesToHex(fileHash);
+                    String checksumHex = Checksum.toHex(fileHash);
                     
                     // Valida checksum do arquivo completo (se fornecido)
                     if (!metadata.getChecksum().isEmpty() && 
@@ -204,13 +223,14 @@ public class FileServiceImpl extends FileServiceGrpc.FileServiceImplBase {
                     }
                     System.out.println("   ✓ File reassembled: " + fileBytes.length + " bytes");
                     
-                    // Salva no MinIO
+                    // Salva no MinIO (checksum já calculado no streaming: não re-hasheia o arquivo)
                     String fileId = "file_" + UUID.randomUUID().toString();
                     MinioFileStorage.UploadResult result = fileStorage.uploadFile(
                         metadata.getFilename(),
                         fileBytes,
                         metadata.getMimeType(),
-                        metadata.getConversationId()
+                        metadata.getConversationId(),
+                        checksumHex
                     );
                     
                     // Remove sessão concluída
@@ -398,17 +418,6 @@ public class FileServiceImpl extends FileServiceGrpc.FileServiceImplBase {
         }
     }
     
-    /**
-     * Converte bytes para hexadecimal
-     */
-    private static String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b));
-        }
-        return sb.toString();
-    }
-    
     /**
      * Metadados de arquivo armazenado
      * Em produção, seria tabela Cassandra
@@ -1,7 +1,7 @@
 package chat4all.api.grpc.service;
 
-import chat4all.api.cassandra.CassandraMessageRepository;
 import chat4all.api.grpc.interceptor.AuthInterceptor;
+import chat4all.api.store.GroupDirectory;
 import chat4all.grpc.generated.v1.*;
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
@@ -11,10 +11,10 @@ import java.util.UUID;
 
 public class GroupServiceImpl extends GroupServiceGrpc.GroupServiceImplBase {
     
-    private final CassandraMessageRepository repository;
+    private final GroupDirectory repository;
     private final AuthInterceptor interceptor;
     
-    public GroupServiceImpl(CassandraMessageRepository repository, AuthInterceptor interceptor) {
+    public GroupServiceImpl(GroupDirectory repository, AuthInterceptor interceptor) {
         this.repository = repository;
         this.interceptor = interceptor;
     }
@@ -1,10 +1,15 @@
 package chat4all.api.grpc.service;
 
-import chat4all.api.cassandra.CassandraMessageRepository;
 import chat4all.api.grpc.interceptor.AuthInterceptor;
 import chat4all.api.kafka.MessageProducer;
 import chat4all.api.metrics.PrometheusMetricsServer;
+import chat4all.api.store.ChangePage;
+import chat4all.api.store.ConversationPage;
+import chat4all.api.store.GroupDirectory;
+import chat4all.api.store.MessageStore;
+import chat4all.api.store.StatusStore;
 import chat4all.grpc.generated.v1.*;
+import chat4all.shared.kafka.StatusEventCodec;
 import chat4all.shared.tracing.TracingUtils;
 import io.grpc.Context;
 import io.grpc.Status;
@@ -14,6 +19,7 @@ import io.opentelemetry.api.trace.Tracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -22,13 +28,18 @@ public class MessageServiceImpl extends MessageServiceGrpc.MessageServiceImplBas
     
     private static final Logger log = LoggerFactory.getLogger(MessageServiceImpl.class);
     private final MessageProducer messageProducer;
-    private final CassandraMessageRepository repository;
+    private final MessageStore repository;
+    private final StatusStore statusStore;
+    private final GroupDirectory groupDirectory;
     private final Tracer tracer;
     private final PrometheusMetricsServer metricsServer;
     
-    public MessageServiceImpl(MessageProducer messageProducer, CassandraMessageRepository repository, Tracer tracer, PrometheusMetricsServer metricsServer) {
+    public MessageServiceImpl(MessageProducer messageProducer, MessageStore repository, StatusStore statusStore,
+                              GroupDirectory groupDirectory, Tracer tracer, PrometheusMetricsServer metricsServer) {
         this.messageProducer = messageProducer;
         this.repository = repository;
+        this.statusStore = statusStore;
+        this.groupDirectory = groupDirectory;
         this.tracer = tracer;
         this.metricsServer = metricsServer;
     }
@@ -60,24 +71,25 @@ public class MessageServiceImpl extends MessageServiceGrpc.MessageServiceImplBas
             long timestamp = System.currentTimeMillis();
             
             span.setAttribute("message_id", messageId);
-            span.addEvent("message_created");
+            TracingUtils.addHotPathEvent(span, "message_created");
             
+            // Trace context goes in the Kafka "traceparent" header (MessageProducer), not in the JSON
             String messageJson = String.format(
-                "{\"message_id\":\"%s\",\"conversation_id\":\"%s\",\"sender_id\":\"%s\",\"content\":\"%s\",\"timestamp\":%d,\"status\":\"ACCEPTED\",\"event_type\":\"MESSAGE_SENT\",\"trace_id\":\"%s\"}",
-                messageId, conversationId, userId, content.replace("\"", "\\\""), timestamp, TracingUtils.getCurrentTraceId()
+                "{\"message_id\":\"%s\",\"conversation_id\":\"%s\",\"sender_id\":\"%s\",\"content\":\"%s\",\"timestamp\":%d,\"status\":\"ACCEPTED\",\"event_type\":\"MESSAGE_SENT\"}",
+                messageId, conversationId, userId, content.replace("\"", "\\\""), timestamp
             );
             
             // Publish to Kafka and wait for confirmation
             log.info("Publishing message {} to Kafka topic...", messageId);
-            span.addEvent("kafka_publish_start");
+            TracingUtils.addHotPathEvent(span, "kafka_publish_start");
             try {
                 java.util.concurrent.Future<org.apache.kafka.clients.producer.RecordMetadata> future = 
-                    messageProducer.publish(conversationId, messageJson);
+                    messageProducer.publish(conversationId, messageJson, timestamp);
                 log.info("Waiting for Kafka acknowledgment...");
                 org.apache.kafka.clients.producer.RecordMetadata metadata = future.get(5, java.util.concurrent.TimeUnit.SECONDS);
                 log.info("✅ Message published to Kafka: {} (partition={}, offset={})", 
                     messageId, metadata.partition(), metadata.offset());
-                span.addEvent("kafka_publish_success");
+                TracingUtils.addHotPathEvent(span, "kafka_publish_success");
                 span.setAttribute("kafka.partition", metadata.partition());
                 span.setAttribute("kafka.offset", metadata.offset());
                 metricsServer.incrementMessagesSent();
@@ -99,7 +111,7 @@ public class MessageServiceImpl extends MessageServiceGrpc.MessageServiceImplBas
                 .build();
             
             log.info("✓ Message sent: {}", messageId);
-            span.addEvent("response_sent");
+            TracingUtils.addHotPathEvent(span, "response_sent");
             responseObserver.onNext(response);
             responseObserver.onCompleted();
             
@@ -123,8 +135,12 @@ public class MessageServiceImpl extends MessageServiceGrpc.MessageServiceImplBas
             String conversationId = request.getConversationId();
             int limit = Math.min(request.getLimit() > 0 ? request.getLimit() : 50, 100);
             int offset = (int) request.getOffset();
+            long afterSeq = request.getAfterSeq();
             
-            List<Map<String, Object>> messages = repository.getMessages(conversationId, limit, offset);
+            // after_seq > 0: cursor na clustering key (O(limit)); senão, offset legado
+            List<Map<String, Object>> messages = afterSeq > 0
+                ? repository.getMessagesAfter(conversationId, afterSeq, limit)
+                : repository.getMessages(conversationId, limit, offset);
             
             GetMessagesResponse.Builder builder = GetMessagesResponse.newBuilder()
                 .setConversationId(conversationId);
@@ -137,6 +153,7 @@ public class MessageServiceImpl extends MessageServiceGrpc.MessageServiceImplBas
                     .setContent((String) msg.get("content"))
                     .setStatus((String) msg.get("status"))
                     .setTimestamp((Long) msg.get("timestamp"))
+                    .setSeq((Long) msg.get("seq"))
                     .setFileId(msg.get("file_id") != null ? (String) msg.get("file_id") : "")
                     .build();
                 
@@ -159,10 +176,115 @@ public class MessageServiceImpl extends MessageServiceGrpc.MessageServiceImplBas
         }
     }
     
+    @Override
+    public void syncChanges(SyncChangesRequest request, StreamObserver<SyncChangesResponse> responseObserver) {
+        try {
+            String userId = AuthInterceptor.USER_ID.get(Context.current());
+            int limit = request.getLimit() > 0 ? request.getLimit() : 100;
+            
+            ChangePage page = repository.getChangesSince(
+                userId, request.getCursor(), new HashSet<>(request.getConversationIdsList()), limit);
+            
+            SyncChangesResponse.Builder builder = SyncChangesResponse.newBuilder()
+                .setHasMore(page.isHasMore())
+                .setResetRequired(page.isResetRequired());
+            if (page.getNextCursor() != null) {
+                builder.setNextCursor(page.getNextCursor());
+            }
+            
+            for (Map<String, Object> change : page.getChanges()) {
+                Message.Builder msg = Message.newBuilder()
+                    .setMessageId((String) change.get("message_id"))
+                    .setConversationId((String) change.get("conversation_id"))
+                    .setSeq((Long) change.get("seq"));
+                if (change.get("status") != null) {
+                    msg.setStatus((String) change.get("status"));
+                }
+                if (change.get("sender_id") != null) {
+                    msg.setSenderId((String) change.get("sender_id"));
+                }
+                if (change.get("content") != null) {
+                    msg.setContent((String) change.get("content"));
+                }
+                if (change.get("file_id") != null) {
+                    msg.setFileId((String) change.get("file_id"));
+                }
+                if (change.get("timestamp") != null) {
+                    msg.setTimestamp((Long) change.get("timestamp"));
+                }
+                
+                builder.addChanges(Change.newBuilder()
+                    .setChangeId((String) change.get("change_id"))
+                    .setType((String) change.get("type"))
+                    .setMessage(msg)
+                    .build());
+            }
+            
+            responseObserver.onNext(builder.build());
+            responseObserver.onCompleted();
+            
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+        } catch (Exception e) {
+            log.error("❌ Sync changes failed", e);
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+    
+    @Override
+    public void listConversations(ListConversationsRequest request, StreamObserver<ListConversationsResponse> responseObserver) {
+        try {
+            String userId = AuthInterceptor.USER_ID.get(Context.current());
+            int limit = request.getLimit() > 0 ? request.getLimit() : 20;
+            
+            ConversationPage page =
+                repository.listConversations(userId, request.getPageToken(), limit);
+            
+            ListConversationsResponse.Builder builder = ListConversationsResponse.newBuilder()
+                .setHasMore(page.isHasMore());
+            if (page.getNextPageToken() != null) {
+                builder.setNextPageToken(page.getNextPageToken());
+            }
+            
+            for (Map<String, Object> conversation : page.getConversations()) {
+                ConversationSummary.Builder summary = ConversationSummary.newBuilder()
+                    .setConversationId((String) conversation.get("conversation_id"))
+                    .setLastMessageAt((Long) conversation.get("last_message_at"))
+                    .setLastSeq((Long) conversation.get("last_seq"))
+                    .setUnread((Long) conversation.get("unread"));
+                if (conversation.get("last_message_id") != null) {
+                    summary.setLastMessageId((String) conversation.get("last_message_id"));
+                }
+                if (conversation.get("last_sender_id") != null) {
+                    summary.setLastSenderId((String) conversation.get("last_sender_id"));
+                }
+                if (conversation.get("last_preview") != null) {
+                    summary.setLastPreview((String) conversation.get("last_preview"));
+                }
+                builder.addConversations(summary);
+            }
+            
+            responseObserver.onNext(builder.build());
+            responseObserver.onCompleted();
+            
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+        } catch (Exception e) {
+            log.error("❌ List conversations failed", e);
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+    
     @Override
     public void markAsRead(MarkAsReadRequest request, StreamObserver<MarkAsReadResponse> responseObserver) {
         try {
-            repository.updateMessageStatus(request.getMessageId(), "READ", System.currentTimeMillis());
+            if (!request.getConversationId().isEmpty() && request.getReadUpToSeq() > 0) {
+                markConversationAsRead(request, responseObserver);
+                return;
+            }
+            
+            // Legado: uma mensagem por chamada (SELECT ALLOW FILTERING + UPDATE)
+            statusStore.updateMessageStatus(request.getMessageId(), "READ", System.currentTimeMillis());
             
             MarkAsReadResponse response = MarkAsReadResponse.newBuilder()
                 .setSuccess(true)
@@ -178,6 +300,68 @@ public class MessageServiceImpl extends MessageServiceGrpc.MessageServiceImplBas
         }
     }
     
+    /**
+     * Marca de leitura: "li a conversa até read_up_to_seq"
+     * 
+     * 0. Validação: só participantes marcam leitura (PERMISSION_DENIED) e o seq
+     *    é limitado ao último seq da conversa. read_seq vira o USING TIMESTAMP da
+     *    escrita: um valor inventado (ex: Long.MAX_VALUE) congelaria a marca
+     * 1. Uma escrita em read_watermarks (o leitor vem do JWT, não do request)
+     * 2. Um evento read_watermark no tópico de status: o worker reduz o unread
+     *    do leitor para last_seq - read_seq (marca parcial também conta),
+     *    grava o feed de sync e notifica os outros participantes via WebSocket
+     */
+    private void markConversationAsRead(MarkAsReadRequest request, StreamObserver<MarkAsReadResponse> responseObserver) {
+        String userId = AuthInterceptor.USER_ID.get(Context.current());
+        String conversationId = request.getConversationId();
+        
+        if (!isParticipant(conversationId, userId)) {
+            responseObserver.onError(Status.PERMISSION_DENIED
+                .withDescription("User is not a participant of " + conversationId).asRuntimeException());
+            return;
+        }
+        
+        long lastSeq = statusStore.getLastSeq(conversationId);
+        if (lastSeq <= 0) {
+            responseObserver.onError(Status.FAILED_PRECONDITION
+                .withDescription("Conversation has no messages: " + conversationId).asRuntimeException());
+            return;
+        }
+        // Cliente à frente do servidor (ou valor inválido): marca até a última mensagem existente
+        long readUpToSeq = Math.min(request.getReadUpToSeq(), lastSeq);
+        long now = System.currentTimeMillis();
+        
+        statusStore.saveReadWatermark(conversationId, userId, readUpToSeq, now);
+        messageProducer.publishStatus(conversationId, StatusEventCodec.encodeWatermark(
+            new StatusEventCodec.ReadWatermark(conversationId, userId, readUpToSeq, now)));
+        
+        responseObserver.onNext(MarkAsReadResponse.newBuilder()
+            .setSuccess(true)
+            .setMessage("Conversation marked as read up to seq " + readUpToSeq)
+            .build());
+        responseObserver.onCompleted();
+    }
+    
+    /**
+     * Participantes: os dois usuários de direct_user_<A>_user_<B>, ou os membros
+     * do grupo (group_*). Outros formatos de conversation_id não têm dono conhecido.
+     */
+    private boolean isParticipant(String conversationId, String userId) {
+        if (userId == null) {
+            return false;
+        }
+        if (conversationId.startsWith("direct_user_")) {
+            String[] users = conversationId.substring("direct_user_".length()).split("_user_");
+            return users.length == 2 && (userId.equals("user_" + users[0]) || userId.equals("user_" + users[1]));
+        }
+        if (conversationId.startsWith("group_")) {
+            return groupDirectory.getGroup(conversationId)
+                .map(group -> group.getParticipantIds().contains(userId))
+                .orElse(false);
+        }
+        return false;
+    }
+    
     @Override
     public StreamObserver<SendMessageRequest> streamMessages(StreamObserver<MessageNotification> responseObserver) {
         return new StreamObserver<SendMessageRequest>() {
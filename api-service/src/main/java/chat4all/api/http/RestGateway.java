@@ -1,7 +1,13 @@
 package chat4all.api.http;
 
-import chat4all.api.cassandra.CassandraMessageRepository;
+import chat4all.shared.Logger;
 import chat4all.api.grpc.service.*;
+import chat4all.api.store.ChangePage;
+import chat4all.api.store.ConversationPage;
+import chat4all.api.store.Group;
+import chat4all.api.store.GroupDirectory;
+import chat4all.api.store.MessageStore;
+import chat4all.api.store.UserDirectory;
 import chat4all.api.storage.MinioFileStorage;
 import chat4all.grpc.generated.v1.*;
 import com.google.gson.Gson;
@@ -24,16 +30,22 @@ import java.util.concurrent.CompletableFuture;
  * - POST /users - Register new user
  * - GET  /users - List all users
  * - POST /auth - Login
- * - GET  /messages?conversationId=X - Get messages
+ * - GET  /messages?conversationId=X[&afterSeq=N] - Get messages (afterSeq: cursor)
  * - POST /messages - Send message
+ * - GET  /conversations?pageToken=T[&limit=N] - Inbox (last message + unread per conversation)
+ * - GET  /sync?cursor=C[&conversationIds=a,b][&limit=N] - Incremental sync (changes after cursor)
  */
 public class RestGateway {
     
+    private static final Logger log = new Logger("api-service");
+    
     private final HttpServer server;
     private final Gson gson;
     private final AuthServiceImpl authService;
     private final MessageServiceImpl messageService;
-    private final CassandraMessageRepository messageRepository;
+    private final MessageStore messageRepository;
+    private final UserDirectory userDirectory;
+    private final GroupDirectory groupDirectory;
     private final MinioFileStorage fileStorage;
     private final chat4all.api.kafka.MessageProducer messageProducer;
     
@@ -56,12 +68,14 @@ public class RestGateway {
         }
     }
     
-    public RestGateway(int port, AuthServiceImpl authService, MessageServiceImpl messageService, CassandraMessageRepository messageRepository, MinioFileStorage fileStorage, chat4all.api.kafka.MessageProducer messageProducer) throws IOException {
+    public RestGateway(int port, AuthServiceImpl authService, MessageServiceImpl messageService, MessageStore messageRepository, UserDirectory userDirectory, GroupDirectory groupDirectory, MinioFileStorage fileStorage, chat4all.api.kafka.MessageProducer messageProducer) throws IOException {
         this.server = HttpServer.create(new InetSocketAddress(port), 0);
         this.gson = new Gson();
         this.authService = authService;
         this.messageService = messageService;
         this.messageRepository = messageRepository;
+        this.userDirectory = userDirectory;
+        this.groupDirectory = groupDirectory;
         this.fileStorage = fileStorage;
         this.messageProducer = messageProducer;
         
@@ -70,6 +84,8 @@ public class RestGateway {
         server.createContext("/users", new UsersHandler());
         server.createContext("/auth", new AuthHandler());
         server.createContext("/messages", new MessagesHandler());
+        server.createContext("/sync", new SyncHandler());
+        server.createContext("/conversations", new ConversationsHandler());
         server.createContext("/groups", new GroupsHandler());
         server.createContext("/files/upload", new FileUploadHandler());
         server.createContext("/files/", new FileDownloadHandler());
@@ -134,6 +150,28 @@ public class RestGateway {
         return null;
     }
     
+    /**
+     * Extrai o userId (claim "sub") do token JWT, ou null se ausente/inválido
+     */
+    private String getUserIdFromToken(HttpExchange exchange) {
+        String token = getAuthToken(exchange);
+        if (token == null) {
+            return null;
+        }
+        try {
+            String[] parts = token.split("\\.");
+            if (parts.length == 3) {
+                String payload = new String(Base64.getUrlDecoder().decode(parts[1]), "UTF-8");
+                @SuppressWarnings("unchecked")
+                Map<String, Object> claims = gson.fromJson(payload, Map.class);
+                return (String) claims.get("sub");
+            }
+        } catch (Exception e) {
+            System.err.println("Erro ao decodificar token: " + e.getMessage());
+        }
+        return null;
+    }
+    
     /**
      * /health - Health check
      */
@@ -233,7 +271,7 @@ public class RestGateway {
         private void handleListUsers(HttpExchange exchange) throws IOException {
             try {
                 // Listar todos os usuários do Cassandra
-                List<Map<String, Object>> users = messageRepository.getAllUsers();
+                List<Map<String, Object>> users = userDirectory.getAllUsers();
                 sendResponse(exchange, 200, users);
             } catch (Exception e) {
                 e.printStackTrace();
@@ -324,10 +362,18 @@ public class RestGateway {
                 }
                 
                 String conversationId = null;
+                long afterSeq = 0;
                 for (String param : query.split("&")) {
                     String[] parts = param.split("=");
                     if (parts.length == 2 && "conversationId".equals(parts[0])) {
                         conversationId = parts[1];
+                    } else if (parts.length == 2 && "afterSeq".equals(parts[0])) {
+                        try {
+                            afterSeq = Long.parseLong(parts[1]);
+                        } catch (NumberFormatException e) {
+                            sendError(exchange, 400, "Invalid afterSeq parameter");
+                            return;
+                        }
                     }
                 }
                 
@@ -336,7 +382,10 @@ public class RestGateway {
                     return;
                 }
                 
-                List<Map<String, Object>> messages = messageRepository.getMessages(conversationId, 100, 0);
+                // afterSeq: só mensagens novas desde a última que o cliente já tem
+                List<Map<String, Object>> messages = afterSeq > 0
+                    ? messageRepository.getMessagesAfter(conversationId, afterSeq, 100)
+                    : messageRepository.getMessages(conversationId, 100, 0);
                 sendResponse(exchange, 200, messages);
                 
             } catch (Exception e) {
@@ -348,7 +397,7 @@ public class RestGateway {
         private void handleSendMessage(HttpExchange exchange) throws IOException {
             try {
                 String body = new String(exchange.getRequestBody().readAllBytes(), "UTF-8");
-                System.out.println("[SendMessage] Request body: " + body);
+                log.debug("[SendMessage] Request body: {}", body);
                 
                 @SuppressWarnings("unchecked")
                 Map<String, Object> request = gson.fromJson(body, Map.class);
@@ -360,10 +409,7 @@ public class RestGateway {
                 String fileName = (String) request.get("fileName");
                 Object fileSizeObj = request.get("fileSize");
                 
-                System.out.println("[SendMessage] Parsed - conversationId: " + conversationId + 
-                                   ", senderId: " + senderId + ", content: " + content +
-                                   ", fileId: " + fileId + ", fileName: " + fileName + 
-                                   ", fileSize: " + fileSizeObj);
+                log.debug("[SendMessage] Parsed - conversationId: {}, senderId: {}, content: {}, fileId: {}, fileName: {}, fileSize: {}", conversationId, senderId, content, fileId, fileName, fileSizeObj);
                 
                 if (conversationId == null || content == null || senderId == null) {
                     sendError(exchange, 400, "Missing required fields (conversationId, content, senderId)");
@@ -379,7 +425,7 @@ public class RestGateway {
                     Map<String, String> fileMetadata = null;
                     String fileMetadataJson = "null";
                     if (fileId != null && !fileId.isEmpty()) {
-                        System.out.println("[SendMessage] Mensagem com arquivo: " + fileId);
+                        log.debug("[SendMessage] Mensagem com arquivo: {}", fileId);
                         fileMetadata = new HashMap<>();
                         fileMetadata.put("file_name", fileName != null ? fileName : "arquivo");
                         if (fileSizeObj != null) {
@@ -393,9 +439,9 @@ public class RestGateway {
                                 fileSize = Long.parseLong(String.valueOf(fileSizeObj));
                             }
                             fileMetadata.put("file_size", String.valueOf(fileSize));
-                            System.out.println("[SendMessage] File size converted: " + fileSize);
+                            log.debug("[SendMessage] File size converted: {}", fileSize);
                         }
-                        System.out.println("[SendMessage] File metadata: " + fileMetadata);
+                        log.debug("[SendMessage] File metadata: {}", fileMetadata);
                         fileMetadataJson = gson.toJson(fileMetadata);
                     }
                     
@@ -406,8 +452,8 @@ public class RestGateway {
                         "{\"message_id\":\"%s\",\"conversation_id\":\"%s\",\"sender_id\":\"%s\",\"content\":\"%s\",\"timestamp\":%d,\"file_id\":\"%s\",\"file_metadata\":%s,\"status\":\"SENT\",\"event_type\":\"MESSAGE_SENT\"}",
                         messageId, conversationId, senderId, content.replace("\"", "\\\""), timestamp, fileIdSafe, fileMetadataJson
                     );
-                    messageProducer.publish(conversationId, messageJson);
-                    System.out.println("[SendMessage] 📤 Mensagem publicada no Kafka (Router Worker salvará no Cassandra e notificará membros)");
+                    messageProducer.publish(conversationId, messageJson, timestamp);
+                    log.debug("[SendMessage] 📤 Mensagem publicada no Kafka (Router Worker salvará no Cassandra e notificará membros)");
                     
                     Map<String, Object> response = new HashMap<>();
                     response.put("messageId", messageId);
@@ -415,7 +461,7 @@ public class RestGateway {
                     response.put("timestamp", timestamp);
                     sendResponse(exchange, 201, response);
                 } catch (Exception dbError) {
-                    System.err.println("[SendMessage] Database error: " + dbError.getMessage());
+                    log.error("[SendMessage] Database error: {}", dbError.getMessage());
                     dbError.printStackTrace();
                     sendError(exchange, 500, "Error saving message");
                 }
@@ -427,6 +473,142 @@ public class RestGateway {
         }
     }
     
+    // =============================================================================
+    // SYNC HANDLER
+    // =============================================================================
+    
+    /**
+     * /sync - Mensagens e mudanças de status depois de um cursor
+     * 
+     * Resposta: {"changes": [...], "next_cursor": "...", "has_more": false, "reset_required": false}
+     */
+    class SyncHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (handleCorsPreFlight(exchange)) return;
+            
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+            
+            try {
+                String userId = getUserIdFromToken(exchange);
+                if (userId == null) {
+                    sendError(exchange, 401, "Authorization required");
+                    return;
+                }
+                
+                String cursor = null;
+                Set<String> conversationIds = new HashSet<>();
+                int limit = 100;
+                String query = exchange.getRequestURI().getQuery();
+                if (query != null) {
+                    for (String param : query.split("&")) {
+                        String[] parts = param.split("=");
+                        if (parts.length != 2) {
+                            continue;
+                        }
+                        if ("cursor".equals(parts[0])) {
+                            cursor = parts[1];
+                        } else if ("conversationIds".equals(parts[0])) {
+                            conversationIds.addAll(Arrays.asList(parts[1].split(",")));
+                        } else if ("limit".equals(parts[0])) {
+                            try {
+                                limit = Integer.parseInt(parts[1]);
+                            } catch (NumberFormatException e) {
+                                sendError(exchange, 400, "Invalid limit parameter");
+                                return;
+                            }
+                        }
+                    }
+                }
+                
+                ChangePage page =
+                    messageRepository.getChangesSince(userId, cursor, conversationIds, limit);
+                
+                Map<String, Object> response = new HashMap<>();
+                response.put("changes", page.getChanges());
+                response.put("next_cursor", page.getNextCursor());
+                response.put("has_more", page.isHasMore());
+                response.put("reset_required", page.isResetRequired());
+                sendResponse(exchange, 200, response);
+                
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+            } catch (Exception e) {
+                e.printStackTrace();
+                sendError(exchange, 500, "Error syncing changes");
+            }
+        }
+    }
+    
+    // =============================================================================
+    // CONVERSATIONS HANDLER
+    // =============================================================================
+    
+    /**
+     * /conversations - Inbox do usuário do token, mais recentes primeiro
+     * 
+     * Resposta: {"conversations": [...], "next_page_token": "...", "has_more": false}
+     */
+    class ConversationsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (handleCorsPreFlight(exchange)) return;
+            
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+            
+            try {
+                String userId = getUserIdFromToken(exchange);
+                if (userId == null) {
+                    sendError(exchange, 401, "Authorization required");
+                    return;
+                }
+                
+                String pageToken = null;
+                int limit = 20;
+                String query = exchange.getRequestURI().getQuery();
+                if (query != null) {
+                    for (String param : query.split("&")) {
+                        String[] parts = param.split("=");
+                        if (parts.length != 2) {
+                            continue;
+                        }
+                        if ("pageToken".equals(parts[0])) {
+                            pageToken = parts[1];
+                        } else if ("limit".equals(parts[0])) {
+                            try {
+                                limit = Integer.parseInt(parts[1]);
+                            } catch (NumberFormatException e) {
+                                sendError(exchange, 400, "Invalid limit parameter");
+                                return;
+                            }
+                        }
+                    }
+                }
+                
+                ConversationPage page =
+                    messageRepository.listConversations(userId, pageToken, limit);
+                
+                Map<String, Object> response = new HashMap<>();
+                response.put("conversations", page.getConversations());
+                response.put("next_page_token", page.getNextPageToken());
+                response.put("has_more", page.isHasMore());
+                sendResponse(exchange, 200, response);
+                
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+            } catch (Exception e) {
+                e.printStackTrace();
+                sendError(exchange, 500, "Error listing conversations");
+            }
+        }
+    }
+    
     // =============================================================================
     // GROUPS HANDLER
     // =============================================================================
@@ -511,7 +693,7 @@ public class RestGateway {
                 System.out.println("📝 Creating group: " + groupName);
                 System.out.println("   Participants (including creator): " + allParticipants.size());
                 
-                messageRepository.createGroup(groupId, groupName, allParticipants, "GROUP");
+                groupDirectory.createGroup(groupId, groupName, allParticipants, "GROUP");
                 
                 // Criar resposta
                 Map<String, Object> response = new HashMap<>();
@@ -559,11 +741,11 @@ public class RestGateway {
                 System.out.println("[ListGroups] Buscando grupos para usuário: " + userId);
                 
                 // Buscar grupos do usuário no Cassandra
-                List<CassandraMessageRepository.Group> groups = messageRepository.getUserGroups(userId);
+                List<Group> groups = groupDirectory.getUserGroups(userId);
                 
                 // Converter para formato JSON
                 List<Map<String, Object>> groupsList = new ArrayList<>();
-                for (CassandraMessageRepository.Group group : groups) {
+                for (Group group : groups) {
                     Map<String, Object> groupMap = new HashMap<>();
                     groupMap.put("group_id", group.getGroupId());
                     groupMap.put("name", group.getName());
@@ -1,6 +1,9 @@
 package chat4all.api.kafka;
 
+import chat4all.shared.kafka.KafkaTraceHeaders;
+import chat4all.shared.metrics.MessageLatencyMetrics;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
@@ -42,8 +45,10 @@ import java.util.concurrent.Future;
  */
 public class MessageProducer {
     
-    private final KafkaProducer<String, String> producer;
+    private final Producer<String, String> producer;
     private final String topic;
+    private final String statusTopic;
+    private volatile MessageLatencyMetrics latencyMetrics;
     
     /**
      * Creates a MessageProducer
@@ -52,10 +57,45 @@ public class MessageProducer {
      * @param topic Topic name (e.g., "messages")
      */
     public MessageProducer(String bootstrapServers, String topic) {
+        this(bootstrapServers, topic, "status-updates");
+    }
+    
+    /**
+     * Creates a MessageProducer that also publishes status events (read watermarks)
+     * 
+     * @param bootstrapServers Kafka broker addresses
+     * @param topic Messages topic name
+     * @param statusTopic Status topic name (e.g., "status-updates")
+     */
+    public MessageProducer(String bootstrapServers, String topic, String statusTopic) {
         this.topic = topic;
+        this.statusTopic = statusTopic;
         this.producer = createProducer(bootstrapServers);
     }
     
+    /**
+     * Creates a MessageProducer on an existing producer
+     * (e.g. the in-memory topics of the end-to-end harness in benchmarks)
+     * 
+     * @param producer Producer to publish with (closed by close())
+     * @param topic Messages topic name
+     * @param statusTopic Status topic name
+     */
+    public MessageProducer(Producer<String, String> producer, String topic, String statusTopic) {
+        this.topic = topic;
+        this.statusTopic = statusTopic;
+        this.producer = producer;
+    }
+    
+    /**
+     * Enables the api_to_kafka latency histogram for publish(..., acceptedAt)
+     * 
+     * @param latencyMetrics Stage latency histograms of this service
+     */
+    public void setLatencyMetrics(MessageLatencyMetrics latencyMetrics) {
+        this.latencyMetrics = latencyMetrics;
+    }
+    
     /**
      * Creates and configures Kafka producer
      * 
@@ -124,6 +164,9 @@ public class MessageProducer {
      * 4. Producer sends batch to Kafka broker
      * 5. Broker writes to partition and returns metadata
      * 
+     * TRACING: the current span (e.g. MessageService/SendMessage) travels in the
+     * "traceparent" header, so the worker's span joins the same trace.
+     * 
      * EDUCATIONAL NOTE ON ASYNC:
      * - send() returns immediately (doesn't wait for Kafka)
      * - Future.get() blocks until write completes (if you want to wait)
@@ -143,7 +186,31 @@ public class MessageProducer {
         
         // Send async (returns Future immediately)
         // Producer will batch and send to Kafka
-        return producer.send(record);
+        return producer.send(KafkaTraceHeaders.inject(record));
+    }
+    
+    /**
+     * Publishes a message and records API accept → Kafka ack latency
+     * 
+     * EDUCATIONAL NOTE: The latency is recorded in the producer callback (I/O thread),
+     * when the broker acknowledges the write; linger.ms batching is part of this stage.
+     * 
+     * @param conversationId Conversation ID (partition key)
+     * @param messageJson Message JSON string
+     * @param acceptedAt Accept timestamp (MessageEvent.timestamp, epoch millis)
+     * @return Future with RecordMetadata (partition, offset)
+     */
+    public Future<RecordMetadata> publish(String conversationId, String messageJson, long acceptedAt) {
+        MessageLatencyMetrics metrics = latencyMetrics;
+        if (metrics == null) {
+            return publish(conversationId, messageJson);
+        }
+        ProducerRecord<String, String> record = new ProducerRecord<>(topic, conversationId, messageJson);
+        return producer.send(KafkaTraceHeaders.inject(record), (metadata, exception) -> {
+            if (exception == null) {
+                metrics.recordSince(MessageLatencyMetrics.Stage.API_TO_KAFKA, acceptedAt);
+            }
+        });
     }
     
     /**
@@ -166,7 +233,20 @@ public class MessageProducer {
             messageJson
         );
         
-        producer.send(record, callback);
+        producer.send(KafkaTraceHeaders.inject(record), callback);
+    }
+    
+    /**
+     * Publishes a status event (e.g. read watermark) to the status topic (async)
+     * 
+     * Same producer as messages: one connection pool, one batch buffer.
+     * 
+     * @param key Partition key (conversation_id for watermarks)
+     * @param eventJson Event JSON (StatusEventCodec format)
+     * @return Future with RecordMetadata
+     */
+    public Future<RecordMetadata> publishStatus(String key, String eventJson) {
+        return producer.send(KafkaTraceHeaders.inject(new ProducerRecord<>(statusTopic, key, eventJson)));
     }
     
     /**
@@ -1,5 +1,6 @@
 package chat4all.api.metrics;
 
+import chat4all.shared.metrics.MessageLatencyMetrics;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
@@ -30,6 +31,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * - up: Health check (1=up, 0=down)
  * - messages_sent_total: Total de mensagens enviadas
  * - messages_delivered_total: Total de mensagens entregues
+ * - message_stage_latency_seconds{stage="api_to_kafka"}: aceite → ack do Kafka
  * 
  * ENDPOINT: http://localhost:8080/metrics
  * 
@@ -53,6 +55,9 @@ public class PrometheusMetricsServer {
     // Timers (para histogramas de latência)
     private final ConcurrentHashMap<String, Timer> timers;
     
+    // Latência por etapa do caminho da mensagem (mesmos nomes no worker e no gateway)
+    private final MessageLatencyMetrics latencyMetrics;
+    
     // Health status
     private final AtomicInteger upStatus;
     
@@ -84,6 +89,8 @@ public class PrometheusMetricsServer {
             .description("Total messages delivered")
             .register(registry);
         
+        this.latencyMetrics = new MessageLatencyMetrics(registry, "api-service");
+        
         // Gauge para health status
         registry.gauge("up", upStatus);
         
@@ -198,4 +205,11 @@ public class PrometheusMetricsServer {
     public MeterRegistry getRegistry() {
         return registry;
     }
+    
+    /**
+     * Histogramas de latência por etapa (api_to_kafka é registrado pelo MessageProducer)
+     */
+    public MessageLatencyMetrics getLatencyMetrics() {
+        return latencyMetrics;
+    }
 }
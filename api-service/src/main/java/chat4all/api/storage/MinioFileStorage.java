@@ -1,11 +1,11 @@
 package chat4all.api.storage;
 
+import chat4all.shared.Checksum;
 import io.minio.*;
 import io.minio.http.Method;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
-import java.security.MessageDigest;
 import java.util.UUID;
 
 /**
@@ -64,17 +64,22 @@ public class MinioFileStorage {
      * Upload file to MinIO
      */
     public UploadResult uploadFile(String filename, byte[] data, String mimeType, String conversationId) {
+        return uploadFile(filename, data, mimeType, conversationId, null);
+    }
+    
+    /**
+     * Upload file to MinIO
+     * 
+     * @param sha256Hex checksum já calculado pelo chamador (ex: digest do upload em chunks),
+     *                  ou null para calcular aqui
+     */
+    public UploadResult uploadFile(String filename, byte[] data, String mimeType, String conversationId, String sha256Hex) {
         try {
             String fileId = "file_" + UUID.randomUUID().toString();
             String objectName = conversationId + "/" + fileId + "_" + filename;
             
             // Calculate checksum
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = md.digest(data);
-            StringBuilder checksum = new StringBuilder();
-            for (byte b : hashBytes) {
-                checksum.append(String.format("%02x", b));
-            }
+            String checksum = sha256Hex != null ? sha256Hex : Checksum.sha256Hex(data);
             
             // Upload to MinIO
             minioClient.putObject(
@@ -86,7 +91,7 @@ public class MinioFileStorage {
                     .build()
             );
             
-            return new UploadResult(fileId, filename, data.length, checksum.toString(), objectName);
+            return new UploadResult(fileId, filename, data.length, checksum, objectName);
             
         } catch (Exception e) {
             throw new RuntimeException("Failed to upload file", e);
@@ -0,0 +1,26 @@
+package chat4all.api.store;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Página do feed de sync (resultado de getChangesSince)
+ */
+public class ChangePage {
+    private final List<Map<String, Object>> changes;
+    private final String nextCursor;
+    private final boolean hasMore;
+    private final boolean resetRequired;
+    
+    public ChangePage(List<Map<String, Object>> changes, String nextCursor, boolean hasMore, boolean resetRequired) {
+        this.changes = changes;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+        this.resetRequired = resetRequired;
+    }
+    
+    public List<Map<String, Object>> getChanges() { return changes; }
+    public String getNextCursor() { return nextCursor; }
+    public boolean isHasMore() { return hasMore; }
+    public boolean isResetRequired() { return resetRequired; }
+}
@@ -0,0 +1,23 @@
+package chat4all.api.store;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Página da lista de conversas (resultado de listConversations)
+ */
+public class ConversationPage {
+    private final List<Map<String, Object>> conversations;
+    private final String nextPageToken;
+    private final boolean hasMore;
+    
+    public ConversationPage(List<Map<String, Object>> conversations, String nextPageToken, boolean hasMore) {
+        this.conversations = conversations;
+        this.nextPageToken = nextPageToken;
+        this.hasMore = hasMore;
+    }
+    
+    public List<Map<String, Object>> getConversations() { return conversations; }
+    public String getNextPageToken() { return nextPageToken; }
+    public boolean isHasMore() { return hasMore; }
+}
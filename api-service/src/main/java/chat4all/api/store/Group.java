@@ -0,0 +1,28 @@
+package chat4all.api.store;
+
+import java.util.List;
+
+/**
+ * Group domain model
+ */
+public class Group {
+    private String groupId;
+    private String name;
+    private List<String> participantIds;
+    private String type;
+    private long createdAt;
+    
+    public Group(String groupId, String name, List<String> participantIds, String type, long createdAt) {
+        this.groupId = groupId;
+        this.name = name;
+        this.participantIds = participantIds;
+        this.type = type;
+        this.createdAt = createdAt;
+    }
+    
+    public String getGroupId() { return groupId; }
+    public String getName() { return name; }
+    public List<String> getParticipantIds() { return participantIds; }
+    public String getType() { return type; }
+    public long getCreatedAt() { return createdAt; }
+}
@@ -0,0 +1,29 @@
+package chat4all.api.store;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * GroupDirectory - Grupos e participantes (GroupService, POST/GET /groups)
+ */
+public interface GroupDirectory {
+
+    void createGroup(String groupId, String name, List<String> participantIds, String type);
+
+    /**
+     * @throws IllegalArgumentException se o grupo não existir
+     */
+    void addParticipantToGroup(String groupId, String userId);
+
+    /**
+     * @throws IllegalArgumentException se o grupo não existir
+     */
+    void removeParticipantFromGroup(String groupId, String userId);
+
+    Optional<Group> getGroup(String groupId);
+
+    /**
+     * Grupos (conversation_id "group_*") em que o usuário participa
+     */
+    List<Group> getUserGroups(String userId);
+}
@@ -0,0 +1,736 @@
+package chat4all.api.store;
+
+import chat4all.shared.Logger;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * InMemoryMessageRepository - MessageStore/StatusStore/GroupDirectory/UserDirectory sem Cassandra
+ *
+ * PROPÓSITO:
+ * - Dev mode da API (STORAGE_BACKEND=memory): registro, login e grupos sem subir Cassandra
+ * - Testes de performance que isolam o custo de CPU da API do custo de I/O
+ * - NÃO é durável: tudo some quando o processo termina
+ *
+ * Na arquitetura real quem grava mensagens é o router-worker; aqui elas entram por
+ * appendMessage() (testes, harness ou seed de dev), que também faz o papel do
+ * ConversationInbox e do UserChangeFeed do worker.
+ *
+ * ESTRUTURAS (compactas, sem um Map por mensagem):
+ * - ConversationLog: arrays paralelos por conversa (String[] ids/sender/content,
+ *   long[] timestamp/read_at, byte[] status). seq = posição + 1, então
+ *   getMessagesAfter(afterSeq) começa direto no índice, sem varrer a partição
+ * - messageIndex: message_id → (log, índice) para getMessageById/updateMessageStatus
+ * - ChangeLog por usuário: long[] ids + buffer circular limitado (CHANGE_RETENTION);
+ *   cursor = id global decimal, resetRequired quando o cursor caiu fora do buffer
+ * - Grupos com participantes copy-on-write (String[]) e índice user → grupos
+ */
+public class InMemoryMessageRepository implements MessageStore, StatusStore, GroupDirectory, UserDirectory {
+
+    private static final Logger log = new Logger("api-service");
+
+    // Mudanças mantidas por usuário (equivalente ao SYNC_RETENTION_SECONDS do Cassandra)
+    static final int CHANGE_RETENTION = 10_000;
+    static final int PREVIEW_LENGTH = 100;
+
+    // Códigos de status: 1 byte por mensagem em vez de uma referência a String
+    private static final String[] STATUSES = {"SENT", "DELIVERED", "READ", "FAILED"};
+    private static final byte SENT = 0;
+    private static final byte READ = 2;
+
+    private final Map<String, ConversationLog> conversations = new ConcurrentHashMap<>();
+    private final Map<String, MessageRef> messageIndex = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Long>> watermarks = new ConcurrentHashMap<>();
+    private final Map<String, Inbox> inboxes = new ConcurrentHashMap<>();
+    private final Map<String, ChangeLog> changeLogs = new ConcurrentHashMap<>();
+    private final AtomicLong changeIds = new AtomicLong();
+
+    private final Map<String, GroupEntry> groups = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> groupsByUser = new ConcurrentHashMap<>();
+    private final Map<String, UserEntry> usersByUsername = new ConcurrentHashMap<>();
+
+    // ========================================================================
+    // WRITE PATH (papel do router-worker)
+    // ========================================================================
+
+    /**
+     * Grava mensagem com status SENT e atualiza inbox + change feed dos participantes
+     *
+     * @param participantIds participantes da conversa; null = membros do grupo
+     *                       (conversation_id "group_*") ou só o remetente
+     * @return seq atribuído na conversação
+     */
+    public long appendMessage(String conversationId, String messageId, String senderId, String content,
+                              String fileId, long timestamp, Collection<String> participantIds) {
+        if (conversationId == null || conversationId.trim().isEmpty()) {
+            throw new IllegalArgumentException("conversation_id cannot be null or empty");
+        }
+        ConversationLog conversation = conversations.computeIfAbsent(conversationId, ConversationLog::new);
+        long seq;
+        synchronized (conversation) {
+            if (messageIndex.containsKey(messageId)) {
+                return messageIndex.get(messageId).seq();
+            }
+            seq = conversation.append(messageId, senderId, content, fileId, timestamp);
+            messageIndex.put(messageId, new MessageRef(conversation, (int) seq - 1));
+            conversation.participants.add(senderId);
+            if (participantIds != null) {
+                conversation.participants.addAll(participantIds);
+            } else {
+                GroupEntry group = groups.get(conversationId);
+                if (group != null) {
+                    conversation.participants.addAll(Arrays.asList(group.participants));
+                }
+            }
+        }
+
+        String preview = content == null ? "" :
+            content.length() > PREVIEW_LENGTH ? content.substring(0, PREVIEW_LENGTH) : content;
+        for (String userId : conversation.participantsSnapshot()) {
+            inboxes.computeIfAbsent(userId, u -> new Inbox())
+                .onMessage(conversationId, messageId, senderId, preview, timestamp, seq, !userId.equals(senderId));
+            Map<String, Object> change = change("MESSAGE", conversationId, messageId, seq, "SENT", timestamp);
+            change.put("sender_id", senderId);
+            change.put("content", content);
+            if (fileId != null) {
+                change.put("file_id", fileId);
+            }
+            record(userId, change);
+        }
+        return seq;
+    }
+
+    // ========================================================================
+    // MessageStore
+    // ========================================================================
+
+    @Override
+    public List<Map<String, Object>> getMessages(String conversationId, int limit, int offset) {
+        if (conversationId == null || conversationId.trim().isEmpty()) {
+            throw new IllegalArgumentException("conversation_id cannot be null or empty");
+        }
+        int safeLimit = Math.min(Math.max(limit, 1), 100);
+        int safeOffset = Math.max(offset, 0);
+        return read(conversationId, safeOffset, safeLimit);
+    }
+
+    @Override
+    public List<Map<String, Object>> getMessagesAfter(String conversationId, long afterSeq, int limit) {
+        if (conversationId == null || conversationId.trim().isEmpty()) {
+            throw new IllegalArgumentException("conversation_id cannot be null or empty");
+        }
+        int safeLimit = Math.min(Math.max(limit, 1), 100);
+        long safeAfterSeq = Math.max(afterSeq, 0);
+        // seq denso: a mensagem seq N está no índice N-1, então after_seq é o índice inicial
+        return read(conversationId, (int) Math.min(safeAfterSeq, Integer.MAX_VALUE), safeLimit);
+    }
+
+    @Override
+    public ChangePage getChangesSince(String userId, String cursor, Set<String> conversationIds, int limit) {
+        if (userId == null || userId.trim().isEmpty()) {
+            throw new IllegalArgumentException("user_id cannot be null or empty");
+        }
+        int safeLimit = Math.min(Math.max(limit, 1), 500);
+        long from = 0;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                from = Long.parseLong(cursor);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid sync cursor: " + cursor);
+            }
+            if (from < 0) {
+                throw new IllegalArgumentException("Invalid sync cursor: " + cursor);
+            }
+        }
+        ChangeLog changeLog = changeLogs.get(userId);
+        if (changeLog == null) {
+            return new ChangePage(new ArrayList<>(), cursor == null || cursor.isEmpty() ? null : cursor, false, false);
+        }
+        return changeLog.since(from, cursor, conversationIds, safeLimit);
+    }
+
+    @Override
+    public ConversationPage listConversations(String userId, String pageToken, int limit) {
+        if (userId == null || userId.trim().isEmpty()) {
+            throw new IllegalArgumentException("user_id cannot be null or empty");
+        }
+        int safeLimit = Math.min(Math.max(limit, 1), 100);
+        long afterAt = Long.MAX_VALUE;
+        String afterId = "";
+        if (pageToken != null && !pageToken.isEmpty()) {
+            int separator = pageToken.indexOf(':');
+            try {
+                afterAt = Long.parseLong(pageToken.substring(0, separator));
+                afterId = pageToken.substring(separator + 1);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid page token: " + pageToken);
+            }
+        }
+
+        Inbox inbox = inboxes.get(userId);
+        List<Map<String, Object>> all = inbox != null ? inbox.snapshot() : new ArrayList<>();
+        // Mesma ordem e mesmo formato de token que o CassandraMessageRepository
+        all.sort(Comparator.<Map<String, Object>>comparingLong(c -> (Long) c.get("last_message_at")).reversed()
+            .thenComparing(c -> (String) c.get("conversation_id")));
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        boolean hasMore = false;
+        for (Map<String, Object> conversation : all) {
+            long at = (Long) conversation.get("last_message_at");
+            String id = (String) conversation.get("conversation_id");
+            if (at > afterAt || (at == afterAt && id.compareTo(afterId) <= 0)) {
+                continue;
+            }
+            if (result.size() == safeLimit) {
+                hasMore = true;
+                break;
+            }
+            result.add(conversation);
+        }
+        String nextPageToken = null;
+        if (hasMore) {
+            Map<String, Object> last = result.get(result.size() - 1);
+            nextPageToken = last.get("last_message_at") + ":" + last.get("conversation_id");
+        }
+        return new ConversationPage(result, nextPageToken, hasMore);
+    }
+
+    @Override
+    public Map<String, Object> getMessageById(String messageId) {
+        MessageRef ref = messageIndex.get(messageId);
+        if (ref == null) {
+            return null;
+        }
+        ConversationLog conversation = ref.conversation;
+        synchronized (conversation) {
+            int i = ref.index;
+            Map<String, Object> message = new HashMap<>();
+            message.put("conversation_id", conversation.conversationId);
+            message.put("seq", (long) i + 1);
+            message.put("timestamp", Instant.ofEpochMilli(conversation.timestamps[i]));
+            message.put("message_id", conversation.messageIds[i]);
+            message.put("sender_id", conversation.senderIds[i]);
+            message.put("content", conversation.contents[i]);
+            message.put("status", STATUSES[conversation.statuses[i]]);
+            message.put("delivered_at", null);
+            message.put("read_at", conversation.readAts[i] != 0 ? Instant.ofEpochMilli(conversation.readAts[i]) : null);
+            message.put("file_id", conversation.fileIds[i]);
+            return message;
+        }
+    }
+
+    @Override
+    public long countMessages(String conversationId) {
+        ConversationLog conversation = conversations.get(conversationId);
+        if (conversation == null) {
+            return 0;
+        }
+        synchronized (conversation) {
+            return conversation.size;
+        }
+    }
+
+    // ========================================================================
+    // StatusStore
+    // ========================================================================
+
+    @Override
+    public void updateMessageStatus(String messageId, String status, long readAt) {
+        byte code = statusCode(status);
+        if (code < 0) {
+            throw new IllegalArgumentException("Unknown status: " + status);
+        }
+        MessageRef ref = messageIndex.get(messageId);
+        if (ref == null) {
+            log.error("✗ Message not found: {}", messageId);
+            return;
+        }
+        ConversationLog conversation = ref.conversation;
+        List<String> participants;
+        boolean becameRead;
+        String senderId;
+        synchronized (conversation) {
+            becameRead = code == READ && conversation.statuses[ref.index] != READ;
+            senderId = conversation.senderIds[ref.index];
+            conversation.statuses[ref.index] = code;
+            conversation.readAts[ref.index] = readAt;
+            participants = conversation.participantsSnapshot();
+        }
+        if (becameRead && conversation.conversationId.startsWith("direct_")) {
+            // Mesma regra do ConversationInbox do worker: -1 só para quem ainda não tem marca de leitura
+            Map<String, Long> marks = watermarks.getOrDefault(conversation.conversationId, Map.of());
+            for (String userId : participants) {
+                Inbox inbox = inboxes.get(userId);
+                if (!userId.equals(senderId) && !marks.containsKey(userId) && inbox != null) {
+                    inbox.decrementUnread(conversation.conversationId);
+                }
+            }
+        }
+        for (String userId : participants) {
+            record(userId, change("STATUS", conversation.conversationId, messageId, ref.seq(), status, readAt));
+        }
+    }
+
+    @Override
+    public void saveReadWatermark(String conversationId, String userId, long readSeq, long readAt) {
+        // Equivalente ao USING TIMESTAMP = read_seq: o maior seq sempre vence
+        long effectiveReadSeq = watermarks.computeIfAbsent(conversationId, c -> new ConcurrentHashMap<>())
+            .merge(userId, readSeq, Math::max);
+        // Mesma regra do ConversationInbox do worker: unread do leitor <= last_seq - read_seq
+        Inbox inbox = inboxes.get(userId);
+        if (inbox != null) {
+            inbox.capUnread(conversationId, effectiveReadSeq);
+        }
+        ConversationLog conversation = conversations.get(conversationId);
+        if (conversation != null) {
+            List<String> participants;
+            synchronized (conversation) {
+                participants = conversation.participantsSnapshot();
+            }
+            for (String participant : participants) {
+                Map<String, Object> change = change("READ_WATERMARK", conversationId, null, readSeq, "READ", readAt);
+                change.put("actor_id", userId);
+                record(participant, change);
+            }
+        }
+    }
+
+    @Override
+    public long getLastSeq(String conversationId) {
+        // seq = posição + 1: o último seq é o tamanho do log
+        return countMessages(conversationId);
+    }
+
+    @Override
+    public Map<String, Long> getReadWatermarks(String conversationId) {
+        Map<String, Long> conversationWatermarks = watermarks.get(conversationId);
+        return conversationWatermarks != null ? new HashMap<>(conversationWatermarks) : new HashMap<>();
+    }
+
+    // ========================================================================
+    // GroupDirectory
+    // ========================================================================
+
+    @Override
+    public void createGroup(String groupId, String name, List<String> participantIds, String type) {
+        String[] participants = new LinkedHashSet<>(participantIds).toArray(new String[0]);
+        groups.put(groupId, new GroupEntry(name, type, participants, System.currentTimeMillis()));
+        for (String userId : participants) {
+            groupsByUser.computeIfAbsent(userId, u -> ConcurrentHashMap.newKeySet()).add(groupId);
+        }
+        log.debug("✓ Group created: {} with {} participants", groupId, participants.length);
+    }
+
+    @Override
+    public void addParticipantToGroup(String groupId, String userId) {
+        GroupEntry group = requireGroup(groupId);
+        synchronized (group) {
+            if (Arrays.asList(group.participants).contains(userId)) {
+                return;
+            }
+            String[] participants = Arrays.copyOf(group.participants, group.participants.length + 1);
+            participants[participants.length - 1] = userId;
+            group.participants = participants;
+        }
+        groupsByUser.computeIfAbsent(userId, u -> ConcurrentHashMap.newKeySet()).add(groupId);
+    }
+
+    @Override
+    public void removeParticipantFromGroup(String groupId, String userId) {
+        GroupEntry group = requireGroup(groupId);
+        synchronized (group) {
+            group.participants = Arrays.stream(group.participants)
+                .filter(participant -> !participant.equals(userId))
+                .toArray(String[]::new);
+        }
+        Set<String> userGroups = groupsByUser.get(userId);
+        if (userGroups != null) {
+            userGroups.remove(groupId);
+        }
+    }
+
+    @Override
+    public Optional<Group> getGroup(String groupId) {
+        GroupEntry group = groups.get(groupId);
+        return group != null ? Optional.of(group.toGroup(groupId)) : Optional.empty();
+    }
+
+    @Override
+    public List<Group> getUserGroups(String userId) {
+        List<Group> result = new ArrayList<>();
+        Set<String> groupIds = groupsByUser.get(userId);
+        if (groupIds == null) {
+            return result;
+        }
+        for (String groupId : groupIds) {
+            GroupEntry group = groups.get(groupId);
+            // Mesmo filtro do Cassandra: só conversas de grupo
+            if (group != null && groupId.startsWith("group_")) {
+                result.add(group.toGroup(groupId));
+            }
+        }
+        return result;
+    }
+
+    // ========================================================================
+    // UserDirectory
+    // ========================================================================
+
+    @Override
+    public void createUser(String userId, String username, String email, String passwordHash) {
+        usersByUsername.put(username, new UserEntry(userId, username, email, passwordHash, System.currentTimeMillis()));
+    }
+
+    @Override
+    public Optional<Map<String, Object>> getUserByUsername(String username) {
+        UserEntry user = usersByUsername.get(username);
+        if (user == null) {
+            return Optional.empty();
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("user_id", user.userId);
+        result.put("username", user.username);
+        result.put("email", user.email);
+        result.put("password_hash", user.passwordHash);
+        result.put("created_at", user.createdAt);
+        return Optional.of(result);
+    }
+
+    @Override
+    public List<Map<String, Object>> getAllUsers() {
+        List<Map<String, Object>> users = new ArrayList<>(usersByUsername.size());
+        for (UserEntry user : usersByUsername.values()) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("userId", user.userId);
+            result.put("username", user.username);
+            result.put("email", user.email);
+            result.put("createdAt", user.createdAt);
+            users.add(result);
+        }
+        return users;
+    }
+
+    // ========================================================================
+    // Internals
+    // ========================================================================
+
+    private List<Map<String, Object>> read(String conversationId, int from, int limit) {
+        List<Map<String, Object>> messages = new ArrayList<>();
+        ConversationLog conversation = conversations.get(conversationId);
+        if (conversation == null) {
+            return messages;
+        }
+        synchronized (conversation) {
+            int to = (int) Math.min((long) from + limit, conversation.size);
+            for (int i = from; i < to; i++) {
+                messages.add(conversation.toMessage(i));
+            }
+        }
+        applyReadWatermarks(conversationId, messages);
+        return messages;
+    }
+
+    private void applyReadWatermarks(String conversationId, List<Map<String, Object>> messages) {
+        Map<String, Long> conversationWatermarks = watermarks.get(conversationId);
+        if (messages.isEmpty() || conversationWatermarks == null) {
+            return;
+        }
+        for (Map<String, Object> message : messages) {
+            if ("READ".equals(message.get("status"))) {
+                continue;
+            }
+            long seq = (Long) message.get("seq");
+            Object senderId = message.get("sender_id");
+            for (Map.Entry<String, Long> watermark : conversationWatermarks.entrySet()) {
+                if (watermark.getValue() >= seq && !watermark.getKey().equals(senderId)) {
+                    message.put("status", "READ");
+                    break;
+                }
+            }
+        }
+    }
+
+    private static Map<String, Object> change(String type, String conversationId, String messageId, long seq,
+                                              String status, long timestamp) {
+        Map<String, Object> change = new HashMap<>();
+        change.put("type", type);
+        change.put("conversation_id", conversationId);
+        if (messageId != null) {
+            change.put("message_id", messageId);
+        }
+        change.put("seq", seq);
+        change.put("status", status);
+        change.put("timestamp", timestamp);
+        return change;
+    }
+
+    private void record(String userId, Map<String, Object> change) {
+        ChangeLog changeLog = changeLogs.computeIfAbsent(userId, u -> new ChangeLog());
+        synchronized (changeLog) {
+            // id alocado sob o lock do usuário: o log de cada usuário fica ordenado
+            long id = changeIds.incrementAndGet();
+            change.put("change_id", Long.toString(id));
+            changeLog.add(id, change);
+        }
+    }
+
+    private GroupEntry requireGroup(String groupId) {
+        GroupEntry group = groups.get(groupId);
+        if (group == null) {
+            throw new IllegalArgumentException("Group not found: " + groupId);
+        }
+        return group;
+    }
+
+    private static byte statusCode(String status) {
+        for (byte i = 0; i < STATUSES.length; i++) {
+            if (STATUSES[i].equals(status)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Mensagens de uma conversa em arrays paralelos (acesso sob o lock do próprio log)
+     */
+    private static final class ConversationLog {
+        final String conversationId;
+        final Set<String> participants = new LinkedHashSet<>();
+        int size;
+        String[] messageIds = new String[16];
+        String[] senderIds = new String[16];
+        String[] contents = new String[16];
+        String[] fileIds = new String[16];
+        long[] timestamps = new long[16];
+        long[] readAts = new long[16];
+        byte[] statuses = new byte[16];
+
+        ConversationLog(String conversationId) {
+            this.conversationId = conversationId;
+        }
+
+        long append(String messageId, String senderId, String content, String fileId, long timestamp) {
+            if (size == messageIds.length) {
+                int capacity = size * 2;
+                messageIds = Arrays.copyOf(messageIds, capacity);
+                senderIds = Arrays.copyOf(senderIds, capacity);
+                contents = Arrays.copyOf(contents, capacity);
+                fileIds = Arrays.copyOf(fileIds, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                readAts = Arrays.copyOf(readAts, capacity);
+                statuses = Arrays.copyOf(statuses, capacity);
+            }
+            messageIds[size] = messageId;
+            senderIds[size] = senderId;
+            contents[size] = content;
+            fileIds[size] = fileId;
+            timestamps[size] = timestamp;
+            statuses[size] = SENT;
+            return ++size;
+        }
+
+        Map<String, Object> toMessage(int i) {
+            Map<String, Object> message = new HashMap<>();
+            message.put("message_id", messageIds[i]);
+            message.put("conversation_id", conversationId);
+            message.put("sender_id", senderIds[i]);
+            message.put("content", contents[i]);
+            message.put("status", STATUSES[statuses[i]]);
+            message.put("seq", (long) i + 1);
+            message.put("timestamp", timestamps[i]);
+            if (fileIds[i] != null && !fileIds[i].isEmpty()) {
+                message.put("file_id", fileIds[i]);
+            }
+            return message;
+        }
+
+        List<String> participantsSnapshot() {
+            return new ArrayList<>(participants);
+        }
+    }
+
+    private static final class MessageRef {
+        final ConversationLog conversation;
+        final int index;
+
+        MessageRef(ConversationLog conversation, int index) {
+            this.conversation = conversation;
+            this.index = index;
+        }
+
+        long seq() {
+            return index + 1L;
+        }
+    }
+
+    /**
+     * Inbox de um usuário: conversation_id → última mensagem + contador de não lidas
+     */
+    private static final class Inbox {
+        private final Map<String, InboxEntry> entries = new HashMap<>();
+
+        synchronized void onMessage(String conversationId, String messageId, String senderId, String preview,
+                                    long at, long seq, boolean unread) {
+            InboxEntry entry = entries.computeIfAbsent(conversationId, c -> new InboxEntry());
+            // Mensagem mais antiga (retry fora de ordem) não sobrescreve a preview mais nova
+            if (seq > entry.lastSeq) {
+                entry.lastMessageId = messageId;
+                entry.lastSenderId = senderId;
+                entry.lastPreview = preview;
+                entry.lastAt = at;
+                entry.lastSeq = seq;
+            }
+            if (unread) {
+                entry.unread++;
+            }
+        }
+
+        /**
+         * Marca de leitura: só reduz, nunca devolve leituras por mensagem ao contador
+         */
+        synchronized void capUnread(String conversationId, long readSeq) {
+            InboxEntry entry = entries.get(conversationId);
+            if (entry != null) {
+                entry.unread = Math.min(entry.unread, Math.max(0, entry.lastSeq - readSeq));
+            }
+        }
+
+        synchronized void decrementUnread(String conversationId) {
+            InboxEntry entry = entries.get(conversationId);
+            if (entry != null && entry.unread > 0) {
+                entry.unread--;
+            }
+        }
+
+        synchronized List<Map<String, Object>> snapshot() {
+            List<Map<String, Object>> conversations = new ArrayList<>(entries.size());
+            for (Map.Entry<String, InboxEntry> e : entries.entrySet()) {
+                InboxEntry entry = e.getValue();
+                Map<String, Object> conversation = new HashMap<>();
+                conversation.put("conversation_id", e.getKey());
+                conversation.put("last_message_id", entry.lastMessageId);
+                conversation.put("last_sender_id", entry.lastSenderId);
+                conversation.put("last_preview", entry.lastPreview);
+                conversation.put("last_message_at", entry.lastAt);
+                conversation.put("last_seq", entry.lastSeq);
+                conversation.put("unread", entry.unread);
+                conversations.add(conversation);
+            }
+            return conversations;
+        }
+    }
+
+    private static final class InboxEntry {
+        String lastMessageId;
+        String lastSenderId;
+        String lastPreview;
+        long lastAt;
+        long lastSeq;
+        long unread;
+    }
+
+    /**
+     * Buffer circular de mudanças de um usuário (ids crescentes em long[])
+     */
+    private static final class ChangeLog {
+        private final long[] ids = new long[CHANGE_RETENTION];
+        private final Object[] changes = new Object[CHANGE_RETENTION];
+        private int head;   // posição da mudança mais antiga
+        private int size;
+        private long evictedUpTo;   // maior id já descartado pelo buffer
+
+        void add(long id, Map<String, Object> change) {
+            int tail = (head + size) % CHANGE_RETENTION;
+            if (size == CHANGE_RETENTION) {
+                evictedUpTo = ids[head];
+                head = (head + 1) % CHANGE_RETENTION;
+                size--;
+            }
+            ids[tail] = id;
+            changes[tail] = change;
+            size++;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized ChangePage since(long from, String cursor, Set<String> conversationIds, int limit) {
+            if (from < evictedUpTo) {
+                // Cursor mais antigo que a retenção: cliente precisa recarregar do zero
+                return new ChangePage(new ArrayList<>(), null, false, true);
+            }
+            // Busca binária do primeiro id > from no buffer circular
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ids[(head + mid) % CHANGE_RETENTION] <= from) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            List<Map<String, Object>> result = new ArrayList<>();
+            long last = from;
+            int read = 0;
+            for (int i = lo; i < size && read < limit; i++) {
+                int slot = (head + i) % CHANGE_RETENTION;
+                read++;
+                last = ids[slot];
+                Map<String, Object> change = (Map<String, Object>) changes[slot];
+                if (conversationIds != null && !conversationIds.isEmpty()
+                    && !conversationIds.contains((String) change.get("conversation_id"))) {
+                    continue;
+                }
+                result.add(new HashMap<>(change));
+            }
+            String nextCursor = read > 0 ? Long.toString(last) : (cursor == null || cursor.isEmpty() ? null : cursor);
+            return new ChangePage(result, nextCursor, read >= limit, false);
+        }
+    }
+
+    private static final class GroupEntry {
+        final String name;
+        final String type;
+        final long createdAt;
+        volatile String[] participants;
+
+        GroupEntry(String name, String type, String[] participants, long createdAt) {
+            this.name = name;
+            this.type = type;
+            this.participants = participants;
+            this.createdAt = createdAt;
+        }
+
+        Group toGroup(String groupId) {
+            return new Group(groupId, name, new ArrayList<>(Arrays.asList(participants)), type, createdAt);
+        }
+    }
+
+    private static final class UserEntry {
+        final String userId;
+        final String username;
+        final String email;
+        final String passwordHash;
+        final long createdAt;
+
+        UserEntry(String userId, String username, String email, String passwordHash, long createdAt) {
+            this.userId = userId;
+            this.username = username;
+            this.email = email;
+            this.passwordHash = passwordHash;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package chat4all.api.store;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * MessageStore - Leitura de mensagens, inbox e sync feed pela API
+ *
+ * Implementações:
+ * - CassandraMessageRepository: produção
+ * - InMemoryMessageRepository: dev mode (STORAGE_BACKEND=memory) e testes de performance
+ *
+ * Mensagens são retornadas como Maps JSON-ready (message_id, conversation_id,
+ * sender_id, content, status, seq, timestamp, file_*).
+ */
+public interface MessageStore {
+
+    /**
+     * Mensagens da conversação em ordem de seq (limit entre 1 e 100, offset >= 0)
+     */
+    List<Map<String, Object>> getMessages(String conversationId, int limit, int offset);
+
+    /**
+     * Mensagens com seq > afterSeq (paginação por cursor)
+     */
+    List<Map<String, Object>> getMessagesAfter(String conversationId, long afterSeq, int limit);
+
+    /**
+     * Mudanças do usuário após o cursor (sync incremental)
+     *
+     * @throws IllegalArgumentException se o cursor não for válido para esta implementação
+     */
+    ChangePage getChangesSince(String userId, String cursor, Set<String> conversationIds, int limit);
+
+    /**
+     * Inbox do usuário: última mensagem + não lidas, mais recente primeiro
+     *
+     * @throws IllegalArgumentException se o pageToken não for válido
+     */
+    ConversationPage listConversations(String userId, String pageToken, int limit);
+
+    /**
+     * Mensagem por message_id, ou null se não existir
+     */
+    Map<String, Object> getMessageById(String messageId);
+
+    /**
+     * Total de mensagens da conversação (-1 se a implementação não suporta)
+     */
+    long countMessages(String conversationId);
+}
@@ -0,0 +1,29 @@
+package chat4all.api.store;
+
+import java.util.Map;
+
+/**
+ * StatusStore - Status de leitura (READ por mensagem e marcas de leitura por conversa)
+ */
+public interface StatusStore {
+
+    /**
+     * Atualiza o status de uma mensagem (ex: READ) com o instante da leitura
+     */
+    void updateMessageStatus(String messageId, String status, long readAt);
+
+    /**
+     * Marca de leitura: userId leu conversationId até readSeq (nunca regride)
+     */
+    void saveReadWatermark(String conversationId, String userId, long readSeq, long readAt);
+
+    /**
+     * Maior seq gravado na conversação (0 se não há mensagens): teto das marcas de leitura
+     */
+    long getLastSeq(String conversationId);
+
+    /**
+     * user_id → read_seq de todos os leitores da conversação
+     */
+    Map<String, Long> getReadWatermarks(String conversationId);
+}
@@ -0,0 +1,23 @@
+package chat4all.api.store;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * UserDirectory - Cadastro e consulta de usuários (AuthService, GET /users)
+ */
+public interface UserDirectory {
+
+    void createUser(String userId, String username, String email, String passwordHash);
+
+    /**
+     * Usuário como Map (user_id, username, email, password_hash, created_at)
+     */
+    Optional<Map<String, Object>> getUserByUsername(String username);
+
+    /**
+     * Todos os usuários (userId, username, email, createdAt) - sem hash de senha
+     */
+    List<Map<String, Object>> getAllUsers();
+}
@@ -0,0 +1,67 @@
+package chat4all.api.grpc.interceptor;
+
+import chat4all.api.grpc.service.HealthServiceImpl;
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * GrpcMethodRegistryTest - Tabela de métodos usada pelos interceptors
+ */
+public class GrpcMethodRegistryTest {
+    
+    private SimpleMeterRegistry meterRegistry;
+    private GrpcMethodRegistry methodRegistry;
+    
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        methodRegistry = new GrpcMethodRegistry(meterRegistry, AuthInterceptor.PUBLIC_METHODS);
+        methodRegistry.register(new HealthServiceImpl().bindService());
+    }
+    
+    /**
+     * GIVEN: HealthService registered
+     * WHEN: Looking up its methods
+     * THEN: Auth policy comes from PUBLIC_METHODS and meters already exist
+     */
+    @Test
+    public void testRegisteredMethodsCarryPolicyAndMeters() {
+        GrpcMethodRegistry.MethodInfo check = methodRegistry.lookup("chat4all.v1.HealthService/Check");
+        
+        assertThat(methodRegistry.size()).isEqualTo(2);
+        assertThat(check.isPublic()).isTrue();
+        assertThat(meterRegistry.find("grpc_server_calls_total")
+            .tag("method", "chat4all.v1.HealthService/Check").counter()).isNotNull();
+        assertThat(meterRegistry.find("grpc_server_call_duration_seconds")
+            .tag("status", "OK").timer()).isNotNull();
+    }
+    
+    /**
+     * GIVEN: Same method looked up twice
+     * WHEN: Recording calls and errors
+     * THEN: The same meter instances are reused
+     */
+    @Test
+    public void testLookupReusesMeters() {
+        GrpcMethodRegistry.MethodInfo first = methodRegistry.lookup("chat4all.v1.HealthService/GetMetrics");
+        GrpcMethodRegistry.MethodInfo second = methodRegistry.lookup("chat4all.v1.HealthService/GetMetrics");
+        
+        assertThat(second).isSameAs(first);
+        assertThat(first.errors(Status.Code.INTERNAL)).isSameAs(second.errors(Status.Code.INTERNAL));
+        assertThat(first.duration(Status.Code.OK)).isSameAs(second.duration(Status.Code.OK));
+    }
+    
+    /**
+     * GIVEN: Method not declared by any registered service
+     * WHEN: Looking it up
+     * THEN: It requires authentication
+     */
+    @Test
+    public void testUnknownMethodIsProtected() {
+        assertThat(methodRegistry.lookup("chat4all.v1.MessageService/SendMessage").isPublic()).isFalse();
+    }
+}
@@ -0,0 +1,117 @@
+package chat4all.api.grpc.service;
+
+import chat4all.api.grpc.interceptor.AuthInterceptor;
+import chat4all.api.kafka.MessageProducer;
+import chat4all.api.store.InMemoryMessageRepository;
+import chat4all.grpc.generated.v1.MarkAsReadRequest;
+import chat4all.grpc.generated.v1.MarkAsReadResponse;
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.opentelemetry.api.OpenTelemetry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * MessageServiceImplTest - Validação das marcas de leitura (MarkAsRead por conversa)
+ */
+public class MessageServiceImplTest {
+
+    private static final String DIRECT = "direct_user_a_user_b";
+
+    private InMemoryMessageRepository repository;
+    private MockProducer<String, String> producer;
+    private MessageServiceImpl service;
+
+    /**
+     * Guarda a resposta ou o erro de uma chamada unária
+     */
+    private static final class Recorder implements StreamObserver<MarkAsReadResponse> {
+        MarkAsReadResponse response;
+        Throwable error;
+
+        @Override
+        public void onNext(MarkAsReadResponse value) {
+            response = value;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        repository = new InMemoryMessageRepository();
+        producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        service = new MessageServiceImpl(new MessageProducer(producer, "messages", "status-updates"),
+            repository, repository, repository, OpenTelemetry.noop().getTracer("test"), null);
+        for (int i = 1; i <= 3; i++) {
+            repository.appendMessage(DIRECT, "msg_" + i, "user_a", "hi", null, 1000L + i, List.of("user_a", "user_b"));
+        }
+    }
+
+    private Recorder markAsRead(String userId, String conversationId, long readUpToSeq) {
+        Recorder recorder = new Recorder();
+        MarkAsReadRequest request = MarkAsReadRequest.newBuilder()
+            .setConversationId(conversationId)
+            .setReadUpToSeq(readUpToSeq)
+            .build();
+        Context.current().withValue(AuthInterceptor.USER_ID, userId).run(() -> service.markAsRead(request, recorder));
+        return recorder;
+    }
+
+    /**
+     * GIVEN: Uma conversa com 3 mensagens
+     * WHEN: O participante marca leitura até Long.MAX_VALUE
+     * THEN: A marca é limitada ao último seq (3), no store e no evento publicado
+     */
+    @Test
+    public void testReadSeqIsClampedToLastSeq() {
+        Recorder recorder = markAsRead("user_b", DIRECT, Long.MAX_VALUE);
+
+        assertThat(recorder.error).isNull();
+        assertThat(recorder.response.getSuccess()).isTrue();
+        assertThat(repository.getReadWatermarks(DIRECT)).containsEntry("user_b", 3L);
+        assertThat(producer.history()).singleElement()
+            .satisfies(record -> assertThat(record.value()).contains("3").doesNotContain(String.valueOf(Long.MAX_VALUE)));
+
+        // Marca limitada não trava o avanço: novas mensagens continuam marcáveis
+        repository.appendMessage(DIRECT, "msg_4", "user_a", "hi", null, 2000L, null);
+        markAsRead("user_b", DIRECT, 4);
+        assertThat(repository.getReadWatermarks(DIRECT)).containsEntry("user_b", 4L);
+    }
+
+    /**
+     * GIVEN: Uma conversa direta e um grupo do qual user_c não faz parte
+     * WHEN: user_c tenta marcar leitura nas duas
+     * THEN: PERMISSION_DENIED, nada é gravado nem publicado
+     */
+    @Test
+    public void testNonParticipantIsRejected() {
+        repository.createGroup("group_1", "Equipe", List.of("user_a", "user_b"), "GROUP");
+        repository.appendMessage("group_1", "msg_g1", "user_a", "hi", null, 1000L, null);
+
+        Recorder direct = markAsRead("user_c", DIRECT, 1);
+        Recorder group = markAsRead("user_c", "group_1", 1);
+        Recorder member = markAsRead("user_b", "group_1", 1);
+
+        assertThat(Status.fromThrowable(direct.error).getCode()).isEqualTo(Status.Code.PERMISSION_DENIED);
+        assertThat(Status.fromThrowable(group.error).getCode()).isEqualTo(Status.Code.PERMISSION_DENIED);
+        assertThat(member.error).isNull();
+        assertThat(repository.getReadWatermarks(DIRECT)).isEmpty();
+        assertThat(repository.getReadWatermarks("group_1")).containsOnlyKeys("user_b");
+        assertThat(producer.history()).hasSize(1);
+    }
+}
@@ -0,0 +1,157 @@
+package chat4all.api.store;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * InMemoryMessageRepositoryTest - Backend em memória das interfaces de storage da API
+ */
+public class InMemoryMessageRepositoryTest {
+
+    private static final List<String> DIRECT = List.of("user_a", "user_b");
+
+    private InMemoryMessageRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        repository = new InMemoryMessageRepository();
+    }
+
+    /**
+     * GIVEN: Five messages appended to one conversation
+     * WHEN: Reading with offset and with the after_seq cursor
+     * THEN: Both pages come back in seq order starting at the right message
+     */
+    @Test
+    public void testPaginationByOffsetAndCursor() {
+        for (int i = 1; i <= 5; i++) {
+            long seq = repository.appendMessage("direct_user_a_user_b", "msg_" + i, "user_a", "hello " + i,
+                null, 1000L + i, DIRECT);
+            assertThat(seq).isEqualTo(i);
+        }
+
+        List<Map<String, Object>> page = repository.getMessages("direct_user_a_user_b", 2, 1);
+        List<Map<String, Object>> after = repository.getMessagesAfter("direct_user_a_user_b", 3, 100);
+
+        assertThat(page).extracting(m -> m.get("message_id")).containsExactly("msg_2", "msg_3");
+        assertThat(after).extracting(m -> m.get("seq")).containsExactly(4L, 5L);
+        assertThat(repository.countMessages("direct_user_a_user_b")).isEqualTo(5);
+        assertThat(repository.getMessages("unknown", 10, 0)).isEmpty();
+    }
+
+    /**
+     * GIVEN: user_b read the conversation up to seq 2
+     * WHEN: Reading messages and the inbox
+     * THEN: Messages up to seq 2 show READ and user_b's unread counter drops to last_seq - read_seq
+     */
+    @Test
+    public void testReadWatermarkMarksMessagesAndLowersUnread() {
+        for (int i = 1; i <= 3; i++) {
+            repository.appendMessage("direct_user_a_user_b", "msg_" + i, "user_a", "hi", null, 1000L + i, DIRECT);
+        }
+        assertThat(repository.listConversations("user_b", null, 10).getConversations().get(0).get("unread"))
+            .isEqualTo(3L);
+
+        repository.saveReadWatermark("direct_user_a_user_b", "user_b", 2, 5000L);
+        repository.saveReadWatermark("direct_user_a_user_b", "user_b", 1, 6000L);
+
+        assertThat(repository.getReadWatermarks("direct_user_a_user_b")).containsEntry("user_b", 2L);
+        assertThat(repository.getMessages("direct_user_a_user_b", 10, 0))
+            .extracting(m -> m.get("status")).containsExactly("READ", "READ", "SENT");
+        assertThat(repository.listConversations("user_b", null, 10).getConversations().get(0).get("unread"))
+            .isEqualTo(1L);
+    }
+
+    /**
+     * GIVEN: Four messages; user_b marks up to seq 2
+     * WHEN: msg_2 (already covered) and msg_4 become READ one by one, then a late watermark arrives
+     * THEN: The per-message READs don't touch a counter owned by the watermark, and nothing goes below 0
+     */
+    @Test
+    public void testWatermarkThenPerMessageReadKeepsUnreadConsistent() {
+        for (int i = 1; i <= 4; i++) {
+            repository.appendMessage("direct_user_a_user_b", "msg_" + i, "user_a", "hi", null, 1000L + i, DIRECT);
+        }
+        repository.updateMessageStatus("msg_1", "READ", 2000L);
+        assertThat(unread("user_b")).isEqualTo(3L);
+
+        repository.saveReadWatermark("direct_user_a_user_b", "user_b", 2, 3000L);
+        assertThat(unread("user_b")).isEqualTo(2L);
+
+        repository.updateMessageStatus("msg_2", "READ", 4000L);
+        repository.updateMessageStatus("msg_4", "READ", 4000L);
+        assertThat(unread("user_b")).isEqualTo(2L);
+
+        repository.saveReadWatermark("direct_user_a_user_b", "user_b", 1, 5000L);
+        assertThat(unread("user_b")).isEqualTo(2L);
+        repository.saveReadWatermark("direct_user_a_user_b", "user_b", 4, 6000L);
+        assertThat(unread("user_b")).isEqualTo(0L);
+    }
+
+    private Object unread(String userId) {
+        return repository.listConversations(userId, null, 10).getConversations().get(0).get("unread");
+    }
+
+    /**
+     * GIVEN: Changes recorded for user_b in two conversations
+     * WHEN: Syncing with a small limit and a conversation filter
+     * THEN: The cursor resumes after the last change read and invalid cursors are rejected
+     */
+    @Test
+    public void testChangeFeedCursor() {
+        repository.appendMessage("direct_user_a_user_b", "msg_1", "user_a", "one", null, 1001L, DIRECT);
+        repository.appendMessage("direct_user_b_user_c", "msg_2", "user_c", "two", null, 1002L, List.of("user_b", "user_c"));
+        repository.updateMessageStatus("msg_1", "READ", 2000L);
+
+        ChangePage first = repository.getChangesSince("user_b", null, null, 2);
+        ChangePage rest = repository.getChangesSince("user_b", first.getNextCursor(), Set.of("direct_user_a_user_b"), 10);
+
+        assertThat(first.getChanges()).extracting(c -> c.get("message_id")).containsExactly("msg_1", "msg_2");
+        assertThat(first.isHasMore()).isTrue();
+        assertThat(rest.getChanges()).extracting(c -> c.get("type")).containsExactly("STATUS");
+        assertThat(rest.isHasMore()).isFalse();
+        assertThatThrownBy(() -> repository.getChangesSince("user_b", "not-a-cursor", null, 10))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * GIVEN: A group created with two members
+     * WHEN: Adding and removing participants
+     * THEN: getGroup and getUserGroups reflect the membership
+     */
+    @Test
+    public void testGroupMembership() {
+        repository.createGroup("group_1", "Equipe", List.of("user_a", "user_b"), "GROUP");
+        repository.addParticipantToGroup("group_1", "user_c");
+        repository.removeParticipantFromGroup("group_1", "user_a");
+
+        assertThat(repository.getGroup("group_1")).get()
+            .extracting(Group::getParticipantIds).isEqualTo(List.of("user_b", "user_c"));
+        assertThat(repository.getUserGroups("user_c")).extracting(Group::getName).containsExactly("Equipe");
+        assertThat(repository.getUserGroups("user_a")).isEmpty();
+        assertThatThrownBy(() -> repository.addParticipantToGroup("group_missing", "user_a"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * GIVEN: A registered user
+     * WHEN: Looking it up by username and listing all users
+     * THEN: The lookup carries the password hash and the listing does not
+     */
+    @Test
+    public void testUserDirectory() {
+        repository.createUser("user_1", "alice", "alice@example.com", "hash");
+
+        assertThat(repository.getUserByUsername("alice")).get()
+            .satisfies(user -> assertThat(user).containsEntry("user_id", "user_1").containsEntry("password_hash", "hash"));
+        assertThat(repository.getUserByUsername("bob")).isEmpty();
+        assertThat(repository.getAllUsers()).singleElement()
+            .satisfies(user -> assertThat(user).containsEntry("username", "alice").doesNotContainKey("password_hash"));
+    }
+}
@@ -0,0 +1,43 @@
+#!/bin/bash
+# Roda os benchmarks JMH e compara com o baseline versionado
+#
+# Uso:
+#   ./benchmarks/run-benchmarks.sh                  # todos, compara com baseline/results.json
+#   ./benchmarks/run-benchmarks.sh MessageProcessor # só os que casam com o regex
+#   UPDATE_BASELINE=1 ./benchmarks/run-benchmarks.sh # grava o resultado como novo baseline
+#
+# Variáveis:
+#   THRESHOLD  regressão tolerada em % (padrão 10)
+#   JMH_ARGS   argumentos extras do JMH (ex.: "-wi 1 -i 3 -prof gc")
+
+set -e
+
+SCRIPT_DIR="$(cd "$(dirname "${BASH_SOURCE[0]}")" && pwd)"
+ROOT_DIR="$(dirname "$SCRIPT_DIR")"
+JAR="$SCRIPT_DIR/target/benchmarks.jar"
+BASELINE="$SCRIPT_DIR/baseline/results.json"
+RESULT="$SCRIPT_DIR/target/jmh-results.json"
+
+# Linhas de log INFO por mensagem iriam para o stdout do fork e dominariam a medida
+export LOG_LEVEL=WARN
+
+if [ ! -f "$JAR" ]; then
+    echo "📦 Building benchmarks.jar..."
+    (cd "$ROOT_DIR" && mvn -B -q -pl benchmarks -am package -DskipTests)
+fi
+
+echo "⏱️  Running JMH ${1:-(all benchmarks)}..."
+java -jar "$JAR" ${JMH_ARGS} -rf json -rff "$RESULT" "$@"
+
+if [ -n "$UPDATE_BASELINE" ]; then
+    mkdir -p "$(dirname "$BASELINE")"
+    cp "$RESULT" "$BASELINE"
+    echo "✅ Baseline updated: $BASELINE"
+    exit 0
+fi
+
+if [ -f "$BASELINE" ]; then
+    java -cp "$JAR" chat4all.benchmarks.CompareBaseline "$BASELINE" "$RESULT" "${THRESHOLD:-10}"
+else
+    echo "⚠️ No baseline at $BASELINE (run with UPDATE_BASELINE=1 to create one)"
+fi
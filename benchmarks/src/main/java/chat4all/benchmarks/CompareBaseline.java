@@ -0,0 +1,118 @@
+package chat4all.benchmarks;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * CompareBaseline - Compara dois resultados JMH (-rf json) e falha em regressão
+ *
+ * USO:
+ * ```
+ * java -cp benchmarks/target/benchmarks.jar chat4all.benchmarks.CompareBaseline \
+ *     benchmarks/baseline/results.json target/jmh-results.json [thresholdPercent]
+ * ```
+ *
+ * Cada benchmark é identificado por nome + @Param. Para modos de tempo (avgt,
+ * sample, ss) maior é pior; para thrpt menor é pior. Uma regressão só conta se
+ * passar do limiar (padrão 10%) — o ruído de 1 fork em máquina compartilhada
+ * fica facilmente em 3-5%.
+ *
+ * Exit code: 0 sem regressões, 1 com regressões, 2 em erro de uso.
+ */
+public final class CompareBaseline {
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10.0;
+
+    private CompareBaseline() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareBaseline <baseline.json> <current.json> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+
+        Map<String, JSONObject> baseline = load(Paths.get(args[0]));
+        Map<String, JSONObject> current = load(Paths.get(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, JSONObject> entry : new TreeMap<>(current).entrySet()) {
+            JSONObject before = baseline.get(entry.getKey());
+            JSONObject after = entry.getValue();
+            double afterScore = score(after);
+            String unit = after.getJSONObject("primaryMetric").getString("scoreUnit");
+            if (before == null) {
+                System.out.printf("%-70s %14s %14s %9s%n", entry.getKey(), "-", format(afterScore, unit), "new");
+                continue;
+            }
+            double beforeScore = score(before);
+            double changePercent = (afterScore - beforeScore) / beforeScore * 100.0;
+            // thrpt: menos ops/s é pior; demais modos: mais tempo por op é pior
+            double worsePercent = "thrpt".equals(after.getString("mode")) ? -changePercent : changePercent;
+            boolean regression = worsePercent > threshold;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14s %14s %+8.1f%%%s%n", entry.getKey(), format(beforeScore, unit),
+                format(afterScore, unit), changePercent, regression ? "  ❌ REGRESSION" : "");
+        }
+        for (String missing : baseline.keySet()) {
+            if (!current.containsKey(missing)) {
+                System.out.printf("%-70s %14s %14s %9s%n", missing, "", "-", "missing");
+            }
+        }
+
+        if (regressions > 0) {
+            System.out.println("❌ " + regressions + " benchmark(s) regressed more than " + threshold + "%");
+            System.exit(1);
+        }
+        System.out.println("✅ No regressions above " + threshold + "%");
+    }
+
+    private static Map<String, JSONObject> load(Path file) throws IOException {
+        JSONArray results = new JSONArray(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        Map<String, JSONObject> byKey = new LinkedHashMap<>();
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            byKey.put(key(result), result);
+        }
+        return byKey;
+    }
+
+    /**
+     * Nome curto (sem o pacote) + parâmetros ordenados, ex.: MessageProcessorBenchmark.process:mix=group
+     */
+    private static String key(JSONObject result) {
+        String benchmark = result.getString("benchmark");
+        int method = benchmark.lastIndexOf('.');
+        int type = benchmark.lastIndexOf('.', method - 1);
+        StringBuilder key = new StringBuilder(benchmark.substring(type + 1));
+        JSONObject params = result.optJSONObject("params");
+        if (params != null) {
+            for (String name : new TreeMap<>(params.toMap()).keySet()) {
+                key.append(':').append(name).append('=').append(params.get(name));
+            }
+        }
+        return key.toString();
+    }
+
+    private static double score(JSONObject result) {
+        return result.getJSONObject("primaryMetric").getDouble("score");
+    }
+
+    private static String format(double score, String unit) {
+        return String.format("%.1f %s", score, unit);
+    }
+}
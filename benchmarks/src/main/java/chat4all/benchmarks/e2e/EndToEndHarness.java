@@ -0,0 +1,388 @@
+package chat4all.benchmarks.e2e;
+
+import chat4all.api.kafka.MessageProducer;
+import chat4all.benchmarks.e2e.MessageMix.Kind;
+import chat4all.shared.Logger;
+import chat4all.shared.MessageEvent;
+import chat4all.shared.NotificationEnvelope;
+import chat4all.shared.kafka.StatusEventCodec;
+import chat4all.shared.kafka.StatusEventCodec.StatusUpdate;
+import chat4all.shared.kafka.StatusEventPublisher;
+import chat4all.shared.metrics.MessageLatencyMetrics;
+import chat4all.websocket.NotificationWebSocketServer;
+import chat4all.websocket.RedisNotificationSubscriber;
+import chat4all.worker.processing.MessageProcessor;
+import chat4all.worker.routing.ConnectorRouter;
+import chat4all.worker.store.InMemoryChangeFeed;
+import chat4all.worker.store.InMemoryInboxStore;
+import chat4all.worker.store.InMemoryMessageStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * EndToEndHarness - Throughput ponta a ponta num único processo, sem rede
+ *
+ * PROPÓSITO: medir o caminho API → worker → conectores → gateway num laptop,
+ * sem o docker-compose de load-tests/ (Kafka, Cassandra, Redis, MinIO).
+ * ==================
+ *
+ * O QUE É REAL E O QUE É SUBSTITUTO:
+ * ```
+ * API          MessageProducer real (mesmos headers/partition key) sobre InMemoryTopics
+ * Kafka        InMemoryTopics: partição por key, um consumidor por partição
+ * Worker       MessageProcessor + ConnectorRouter reais; Cassandra → InMemoryMessageStore,
+ *              InMemoryChangeFeed e InMemoryInboxStore
+ * Redis        InMemoryPubSub (fila única, como a conexão SUBSCRIBE do gateway);
+ *              payloads montados pelo RedisNotificationPublisher real
+ * Conectores   StatusEventPublisher real; a chamada à plataforma é um sleep opcional
+ * Status       StatusEventCodec real; UPDATE de status no store em memória
+ * Gateway      RedisNotificationSubscriber.onNotification + NotificationWebSocketServer
+ *              reais, com sessões LoopbackSessions autenticadas por JWT
+ * ```
+ *
+ * NÃO MEDIDO: gRPC/HTTP da API, upload de arquivos (o mix "file" envia só a
+ * referência file_id, como depois do upload), READ agendado pelos conectores,
+ * replay de reconexão, retry topics.
+ *
+ * COMO RODAR:
+ * ```
+ * mvn -B -pl benchmarks -am package -DskipTests
+ * LOG_LEVEL=WARN HARNESS_MESSAGES=200000 HARNESS_MIX=direct=60,group=25,file=5,connector=10 \
+ *     java -cp benchmarks/target/benchmarks.jar chat4all.benchmarks.e2e.EndToEndHarness
+ * ```
+ *
+ * CONFIGURAÇÃO (ambiente):
+ * - HARNESS_MESSAGES (100000), HARNESS_WARMUP_MESSAGES (20000)
+ * - HARNESS_MIX (direct=70,group=20,file=5,connector=5)
+ * - HARNESS_SENDERS (4): threads da "API"; HARNESS_RATE (0 = sem limite) em msgs/s
+ * - HARNESS_PARTITIONS (4): partições por tópico = consumidores por serviço
+ * - HARNESS_USERS (1000), HARNESS_GROUPS (50), HARNESS_GROUP_SIZE (20)
+ * - HARNESS_CONNECTOR_LATENCY_MS (0): latência simulada da plataforma externa
+ * - HARNESS_DRAIN_TIMEOUT_S (120)
+ * - WORKER_SIMULATED_DELIVERY_MS: aqui o padrão é 0 (o worker real usa 100)
+ * - STATUS_PUBLISH_MODE / STATUS_LINGER_MS / STATUS_BATCH_MAX / STATUS_BATCH_SHARDS: como nos conectores
+ *
+ * RELATÓRIO: throughput de aceite e de conclusão, entregas nos sockets e
+ * percentis por etapa (tempo no handler de cada serviço e espera em cada fila),
+ * mais ponta a ponta até o socket (e2e:socket) e até o DELIVERED aplicado (e2e:connector).
+ */
+public final class EndToEndHarness {
+
+    private static final String JWT_SECRET = "harness-secret";
+    private static final String MESSAGES_TOPIC = "messages";
+    private static final String STATUS_TOPIC = "status-updates";
+    private static final String[] CONNECTORS = {"whatsapp", "instagram"};
+
+    private final int users;
+    private final int groups;
+    private final int groupSize;
+    private final int senders;
+    private final long rate;
+    private final long connectorLatencyMs;
+    private final MessageMix mix;
+
+    private final StageStats stats = new StageStats();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicLong pendingStatus = new AtomicLong();
+    private final Map<String, Long> acceptedNanos = new ConcurrentHashMap<>();
+    private final Map<Kind, LongAdder> generated = new ConcurrentHashMap<>();
+    private final LongAdder expectedDeliveries = new LongAdder();
+
+    private final InMemoryTopics topics;
+    private final InMemoryPubSub pubSub;
+    private final InMemoryMessageStore store = new InMemoryMessageStore();
+    private final LoopbackSessions sessions = new LoopbackSessions();
+    private final List<StatusEventPublisher> statusPublishers = new ArrayList<>();
+    private MessageProducer apiProducer;
+    private long socketSendsBaseline;
+
+    private EndToEndHarness() {
+        this.users = intEnv("HARNESS_USERS", 1000);
+        this.groups = intEnv("HARNESS_GROUPS", 50);
+        this.groupSize = Math.min(intEnv("HARNESS_GROUP_SIZE", 20), users);
+        this.senders = intEnv("HARNESS_SENDERS", 4);
+        this.rate = Long.parseLong(env("HARNESS_RATE", "0"));
+        this.connectorLatencyMs = Long.parseLong(env("HARNESS_CONNECTOR_LATENCY_MS", "0"));
+        this.mix = MessageMix.parse(env("HARNESS_MIX", "direct=70,group=20,file=5,connector=5"));
+        this.topics = new InMemoryTopics(intEnv("HARNESS_PARTITIONS", 4), inFlight, stats);
+        this.pubSub = new InMemoryPubSub(inFlight, stats, "gateway");
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Gateway/API logam via slf4j-simple: uma linha INFO por sessão conectada
+        System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+        if (new Logger("harness").isEnabled(Logger.Level.INFO)) {
+            System.err.println("⚠️ LOG_LEVEL is INFO: per-message log lines will dominate the run (use LOG_LEVEL=WARN)");
+        }
+
+        EndToEndHarness harness = new EndToEndHarness();
+        harness.start();
+
+        int warmup = intEnv("HARNESS_WARMUP_MESSAGES", 20_000);
+        long drainTimeoutMs = TimeUnit.SECONDS.toMillis(intEnv("HARNESS_DRAIN_TIMEOUT_S", 120));
+        if (warmup > 0) {
+            System.out.println("🔥 Warmup: " + warmup + " messages");
+            harness.run(warmup, drainTimeoutMs);
+            harness.resetStats();
+        }
+
+        int messages = intEnv("HARNESS_MESSAGES", 100_000);
+        System.out.println("⏱️  Measuring: " + messages + " messages, mix " + harness.mix);
+        harness.report(messages, harness.run(messages, drainTimeoutMs));
+        harness.stop();
+    }
+
+    private void start() {
+        seedDirectory();
+
+        // Worker: mesmo processamento do KafkaMessageConsumer.process, sem o span
+        MessageProcessor processor = new MessageProcessor(store, new ConnectorRouter(topics.producer()),
+            new PubSubNotificationPublisher(pubSub), new InMemoryChangeFeed(store), new InMemoryInboxStore(store));
+        processor.setSimulatedDeliveryMs(Long.parseLong(env("WORKER_SIMULATED_DELIVERY_MS", "0")));
+        topics.subscribe(MESSAGES_TOPIC, "worker", record -> processor.process(MessageEvent.fromJson(record.value())));
+
+        // Conectores: "chamada à plataforma" + DELIVERED pelo StatusEventPublisher real
+        for (String connector : CONNECTORS) {
+            StatusEventPublisher statusPublisher = new StatusEventPublisher(topics.producer(), STATUS_TOPIC, connector,
+                StatusEventPublisher.Mode.valueOf(env("STATUS_PUBLISH_MODE", "BATCHED").toUpperCase()),
+                Long.parseLong(env("STATUS_LINGER_MS", "20")),
+                intEnv("STATUS_BATCH_MAX", 200),
+                intEnv("STATUS_BATCH_SHARDS", 8));
+            statusPublishers.add(statusPublisher);
+            topics.subscribe(connector + "-outbound", "connector:" + connector, record -> {
+                MessageEvent event = MessageEvent.fromJson(record.value());
+                if (connectorLatencyMs > 0) {
+                    Thread.sleep(connectorLatencyMs);
+                }
+                // Contado antes do publish: no modo COMPACT o status espera o flusher fora de inFlight
+                pendingStatus.incrementAndGet();
+                statusPublisher.publish(event.getMessageId(), "DELIVERED");
+            });
+        }
+
+        // Status: parse do StatusUpdateConsumer + UPDATE no store
+        topics.subscribe(STATUS_TOPIC, "status", record -> {
+            if (StatusEventCodec.decodeWatermark(record.value()) != null) {
+                return;
+            }
+            for (StatusUpdate update : StatusEventCodec.decode(record.value())) {
+                store.updateMessageStatus(update.getMessageId(), null, 0, update.getStatus());
+                recordEndToEnd("e2e:connector", update.getMessageId());
+                pendingStatus.decrementAndGet();
+            }
+        });
+
+        // Gateway: servidor nunca iniciado (sem porta), sessões em loopback
+        NotificationWebSocketServer server = new NotificationWebSocketServer(
+            new InetSocketAddress("127.0.0.1", 0), JWT_SECRET);
+        RedisNotificationSubscriber subscriber = new RedisNotificationSubscriber("127.0.0.1", 6379, server,
+            new MessageLatencyMetrics(new SimpleMeterRegistry(), "websocket-gateway"));
+        sessions.connect(server, JWT_SECRET, userIds());
+        pubSub.subscribe((channel, message) -> {
+            subscriber.onNotification(channel, message);
+            recordEndToEnd("e2e:socket", NotificationEnvelope.stringField(message, "message_id"));
+        });
+
+        apiProducer = new MessageProducer(topics.producer(), MESSAGES_TOPIC, STATUS_TOPIC);
+
+        System.out.println("✅ Harness ready: " + users + " users connected, " + groups + " groups of "
+            + groupSize + ", " + senders + " senders" + (rate > 0 ? " at " + rate + " msgs/s" : " (unthrottled)"));
+    }
+
+    private void seedDirectory() {
+        for (int u = 0; u < users; u++) {
+            store.putUser(userId(u), "user" + u);
+        }
+        for (int g = 0; g < groups; g++) {
+            List<String> members = new ArrayList<>(groupSize);
+            for (int m = 0; m < groupSize; m++) {
+                members.add(userId((g * groupSize + m) % users));
+            }
+            store.putGroup(groupId(g), "Group " + g, members);
+        }
+    }
+
+    /**
+     * Gera messages mensagens e espera o pipeline esvaziar
+     *
+     * @return nanos do primeiro aceite até o pipeline vazio
+     */
+    private long run(int messages, long drainTimeoutMs) throws InterruptedException {
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<>(senders);
+        for (int s = 0; s < senders; s++) {
+            int count = messages / senders + (s < messages % senders ? 1 : 0);
+            long seed = start + s;
+            Thread thread = new Thread(() -> send(count, new Random(seed)), "api-sender-" + s);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long deadline = System.currentTimeMillis() + drainTimeoutMs;
+        while (inFlight.get() > 0 || pendingStatus.get() > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                System.err.println("⚠️ Drain timeout: " + inFlight.get() + " records and "
+                    + pendingStatus.get() + " statuses still in flight");
+                break;
+            }
+            Thread.sleep(1);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Uma thread da "API": monta o evento e publica pelo MessageProducer
+     */
+    private void send(int count, Random random) {
+        long intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(senders) / rate : 0;
+        long next = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            if (intervalNanos > 0) {
+                next += intervalNanos;
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            Kind kind = mix.pick(random);
+            long begin = System.nanoTime();
+            MessageEvent event = newEvent(kind, random);
+            acceptedNanos.put(event.getMessageId(), begin);
+            apiProducer.publish(event.getConversationId(), event.toJson(), event.getTimestamp());
+            stats.record("api", System.nanoTime() - begin);
+            generated.computeIfAbsent(kind, k -> new LongAdder()).increment();
+        }
+    }
+
+    private MessageEvent newEvent(Kind kind, Random random) {
+        String messageId = "msg_" + UUID.randomUUID();
+        int sender = random.nextInt(users);
+        String conversationId;
+        if (kind == Kind.GROUP) {
+            int group = random.nextInt(groups);
+            sender = (group * groupSize + random.nextInt(groupSize)) % users;
+            conversationId = groupId(group);
+            expectedDeliveries.add(groupSize - 1);
+        } else {
+            int peer = (sender + 1 + random.nextInt(users - 1)) % users;
+            conversationId = "direct_" + userId(Math.min(sender, peer)) + "_" + userId(Math.max(sender, peer));
+            if (kind != Kind.CONNECTOR) {
+                expectedDeliveries.increment();
+            }
+        }
+
+        MessageEvent event = new MessageEvent(messageId, conversationId, userId(sender),
+            "Mensagem de carga do harness #" + messageId.substring(4, 12), System.currentTimeMillis(), "MESSAGE_SENT");
+        if (kind == Kind.FILE) {
+            Map<String, String> fileMetadata = new HashMap<>();
+            fileMetadata.put("file_name", "relatorio.pdf");
+            fileMetadata.put("file_size", String.valueOf(1 + random.nextInt(10_000_000)));
+            event.setFileId("file_" + UUID.randomUUID());
+            event.setFileMetadata(fileMetadata);
+        } else if (kind == Kind.CONNECTOR) {
+            event.setRecipientId(random.nextBoolean()
+                ? "whatsapp:+55119" + String.format("%08d", random.nextInt(100_000_000))
+                : "instagram:@user" + random.nextInt(users));
+        }
+        return event;
+    }
+
+    private void recordEndToEnd(String stage, String messageId) {
+        Long accepted = messageId == null ? null : acceptedNanos.get(messageId);
+        if (accepted != null) {
+            stats.record(stage, System.nanoTime() - accepted);
+        }
+    }
+
+    private void resetStats() {
+        stats.reset();
+        acceptedNanos.clear();
+        generated.clear();
+        expectedDeliveries.reset();
+        store.clearMessages();
+        socketSendsBaseline = sessions.notificationsSent();
+    }
+
+    private void report(int messages, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long processed = stats.count("worker");
+        long delivered = stats.count("e2e:socket");
+
+        System.out.println();
+        System.out.println("===========================================");
+        System.out.println("  End-to-end harness results");
+        System.out.println("===========================================");
+        System.out.printf("Messages:    %d in %.2f s → %.0f msgs/s (accept → pipeline drained)%n",
+            messages, seconds, messages / seconds);
+        System.out.printf("Generated:   %s%n", generated);
+        System.out.printf("Worker:      %d processed%n", processed);
+        System.out.printf("Deliveries:  %d / %d expected socket deliveries → %.0f deliveries/s (%d socket sends)%n",
+            delivered, expectedDeliveries.sum(), delivered / seconds, sessions.notificationsSent() - socketSendsBaseline);
+        System.out.printf("Connectors:  %d DELIVERED statuses applied%n", stats.count("e2e:connector"));
+        System.out.println();
+
+        List<String> stages = new ArrayList<>();
+        stages.add("api");
+        stages.add("queue:" + MESSAGES_TOPIC);
+        stages.add("worker");
+        for (String connector : CONNECTORS) {
+            stages.add("queue:" + connector + "-outbound");
+            stages.add("connector:" + connector);
+        }
+        stages.add("queue:" + STATUS_TOPIC);
+        stages.add("status");
+        stages.add("queue:pubsub");
+        stages.add("gateway");
+        stages.add("e2e:socket");
+        stages.add("e2e:connector");
+        stats.print(System.out, stages.toArray(new String[0]));
+    }
+
+    private void stop() throws InterruptedException {
+        for (StatusEventPublisher statusPublisher : statusPublishers) {
+            statusPublisher.close();
+        }
+        apiProducer.close();
+        topics.stop();
+        pubSub.stop();
+    }
+
+    private List<String> userIds() {
+        List<String> ids = new ArrayList<>(users);
+        for (int u = 0; u < users; u++) {
+            ids.add(userId(u));
+        }
+        return ids;
+    }
+
+    private static String userId(int index) {
+        return "user_" + index;
+    }
+
+    private static String groupId(int index) {
+        return "group_" + index;
+    }
+
+    private static int intEnv(String key, int defaultValue) {
+        return Integer.parseInt(env(key, String.valueOf(defaultValue)));
+    }
+
+    private static String env(String key, String defaultValue) {
+        return System.getenv().getOrDefault(key, defaultValue);
+    }
+}
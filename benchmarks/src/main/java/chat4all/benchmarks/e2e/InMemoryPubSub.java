@@ -0,0 +1,104 @@
+package chat4all.benchmarks.e2e;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * InMemoryPubSub - Substituto do Redis (Pub/Sub + IDs do log de notificações)
+ *
+ * Como a conexão SUBSCRIBE do gateway: uma única thread recebe as mensagens de
+ * todos os canais, na ordem de publicação. publish() só enfileira (o PUBLISH do
+ * Redis também não espera o subscriber).
+ *
+ * O log por usuário (XADD) não é guardado, só os IDs são gerados no formato do
+ * Redis Stream ("<ms>-<seq>"): o harness não exercita replay de reconexão.
+ */
+final class InMemoryPubSub {
+
+    /**
+     * Recebe mensagens de todos os canais (papel do JedisPubSub.onMessage)
+     */
+    interface Subscriber {
+        void onMessage(String channel, String message);
+    }
+
+    private final LinkedBlockingQueue<Published> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong streamSequence = new AtomicLong();
+    private final AtomicLong inFlight;
+    private final StageStats stats;
+    private final String stage;
+    private Thread dispatcher;
+    private volatile boolean running = true;
+
+    /**
+     * @param stage etapa medida no subscriber; a espera na fila vai em "queue:pubsub"
+     */
+    InMemoryPubSub(AtomicLong inFlight, StageStats stats, String stage) {
+        this.inFlight = inFlight;
+        this.stats = stats;
+        this.stage = stage;
+    }
+
+    void subscribe(Subscriber subscriber) {
+        dispatcher = new Thread(() -> dispatch(subscriber), "pubsub-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    void publish(String channel, String message) {
+        inFlight.incrementAndGet();
+        queue.add(new Published(channel, message, System.nanoTime()));
+    }
+
+    /**
+     * Próximo ID de entrada do log (XADD com ID automático)
+     */
+    String nextStreamId() {
+        return System.currentTimeMillis() + "-" + streamSequence.getAndIncrement();
+    }
+
+    private void dispatch(Subscriber subscriber) {
+        while (running) {
+            Published published;
+            try {
+                published = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (published == null) {
+                continue;
+            }
+            long start = System.nanoTime();
+            stats.record("queue:pubsub", start - published.publishedNanos);
+            try {
+                subscriber.onMessage(published.channel, published.message);
+            } catch (Exception e) {
+                stats.error(stage);
+            } finally {
+                stats.record(stage, System.nanoTime() - start);
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    void stop() throws InterruptedException {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.join(1_000);
+        }
+    }
+
+    private static final class Published {
+        final String channel;
+        final String message;
+        final long publishedNanos;
+
+        Published(String channel, String message, long publishedNanos) {
+            this.channel = channel;
+            this.message = message;
+            this.publishedNanos = publishedNanos;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package chat4all.benchmarks.e2e;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * InMemoryTopics - Tópicos "tipo Kafka" dentro do processo
+ *
+ * O suficiente do contrato do Kafka para os serviços não perceberem a troca:
+ * - Partição pelo hash da key (mesma key → mesma partição → ordem preservada)
+ * - Um consumidor (thread) por partição, como num consumer group estável
+ * - Headers do ProducerRecord viajam até o ConsumerRecord (traceparent)
+ * - Offset por partição e timestamp de criação no registro
+ *
+ * Sem durabilidade, rebalance, retenção ou serialização em bytes: o harness mede
+ * o custo dos serviços, não o do broker.
+ *
+ * IN-FLIGHT: cada registro conta em inFlight do envio até o handler do consumidor
+ * terminar. Handlers publicam o que geram ANTES de retornar, então inFlight só
+ * chega a zero quando o pipeline inteiro esvaziou.
+ */
+final class InMemoryTopics {
+
+    /**
+     * Handler de um registro (o "corpo do poll loop" de cada serviço)
+     */
+    interface RecordHandler {
+        void handle(ConsumerRecord<String, String> record) throws Exception;
+    }
+
+    private final int partitions;
+    private final AtomicLong inFlight;
+    private final StageStats stats;
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final List<Thread> consumerThreads = new ArrayList<>();
+    private volatile boolean running = true;
+
+    InMemoryTopics(int partitions, AtomicLong inFlight, StageStats stats) {
+        this.partitions = partitions;
+        this.inFlight = inFlight;
+        this.stats = stats;
+    }
+
+    /**
+     * Producer que publica nestes tópicos (um por serviço, como no deploy real)
+     */
+    MockProducer<String, String> producer() {
+        return new TopicProducer();
+    }
+
+    /**
+     * Inicia um consumidor por partição do tópico
+     *
+     * @param stage etapa medida (tempo no handler); a espera na fila vai em "queue:" + topic
+     */
+    void subscribe(String topicName, String stage, RecordHandler handler) {
+        Topic topic = topic(topicName);
+        for (int p = 0; p < partitions; p++) {
+            LinkedBlockingQueue<Entry> queue = topic.queues[p];
+            Thread thread = new Thread(() -> consume(topicName, stage, queue, handler), stage + "-" + topicName + "-" + p);
+            thread.setDaemon(true);
+            consumerThreads.add(thread);
+            thread.start();
+        }
+    }
+
+    private void consume(String topicName, String stage, LinkedBlockingQueue<Entry> queue, RecordHandler handler) {
+        String queueStage = "queue:" + topicName;
+        while (running) {
+            Entry entry;
+            try {
+                entry = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (entry == null) {
+                continue;
+            }
+            long start = System.nanoTime();
+            stats.record(queueStage, start - entry.enqueuedNanos);
+            try {
+                handler.handle(entry.record);
+            } catch (Exception e) {
+                stats.error(stage);
+            } finally {
+                stats.record(stage, System.nanoTime() - start);
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    void stop() throws InterruptedException {
+        running = false;
+        for (Thread thread : consumerThreads) {
+            thread.join(1_000);
+        }
+    }
+
+    private Topic topic(String name) {
+        return topics.computeIfAbsent(name, n -> new Topic(partitions));
+    }
+
+    private static final class Topic {
+        final LinkedBlockingQueue<Entry>[] queues;
+        final AtomicLong[] offsets;
+
+        @SuppressWarnings("unchecked")
+        Topic(int partitions) {
+            queues = new LinkedBlockingQueue[partitions];
+            offsets = new AtomicLong[partitions];
+            for (int p = 0; p < partitions; p++) {
+                queues[p] = new LinkedBlockingQueue<>();
+                offsets[p] = new AtomicLong();
+            }
+        }
+    }
+
+    private static final class Entry {
+        final ConsumerRecord<String, String> record;
+        final long enqueuedNanos;
+
+        Entry(ConsumerRecord<String, String> record, long enqueuedNanos) {
+            this.record = record;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    /**
+     * MockProducer que entrega nas filas em vez de guardar o histórico
+     *
+     * Sobrescreve send() por inteiro: o histórico do MockProducer cresceria sem
+     * limite num teste de carga.
+     */
+    private final class TopicProducer extends MockProducer<String, String> {
+
+        TopicProducer() {
+            super(true, new StringSerializer(), new StringSerializer());
+        }
+
+        @Override
+        public Future<RecordMetadata> send(ProducerRecord<String, String> record) {
+            return send(record, null);
+        }
+
+        @Override
+        public Future<RecordMetadata> send(ProducerRecord<String, String> record, Callback callback) {
+            Topic topic = topic(record.topic());
+            int partition = record.key() == null ? 0 : Math.floorMod(record.key().hashCode(), partitions);
+            long offset = topic.offsets[partition].getAndIncrement();
+            long timestamp = System.currentTimeMillis();
+
+            ConsumerRecord<String, String> consumerRecord = new ConsumerRecord<>(
+                record.topic(), partition, offset, timestamp, TimestampType.CREATE_TIME,
+                -1, -1, record.key(), record.value(), new RecordHeaders(record.headers().toArray()), Optional.empty());
+            inFlight.incrementAndGet();
+            topic.queues[partition].add(new Entry(consumerRecord, System.nanoTime()));
+
+            RecordMetadata metadata = new RecordMetadata(
+                new TopicPartition(record.topic(), partition), offset, 0, timestamp, -1, -1);
+            if (callback != null) {
+                callback.onCompletion(metadata, null);
+            }
+            return CompletableFuture.completedFuture(metadata);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package chat4all.benchmarks.e2e;
+
+import chat4all.websocket.NotificationWebSocketServer;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.enums.ReadyState;
+import org.java_websocket.handshake.ClientHandshake;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LoopbackSessions - "Clientes" WebSocket conectados ao gateway sem rede
+ *
+ * Cada sessão passa pelo onOpen real (token JWT, SessionRegistry) e recebe pelo
+ * broadcast real do NotificationWebSocketServer: os frames são montados pelo
+ * Draft_6455 e contados aqui em vez de escritos num socket. O servidor nunca é
+ * iniciado (nenhuma porta aberta).
+ */
+final class LoopbackSessions {
+
+    // Um Draft para todas as sessões: o broadcast monta os frames uma vez por Draft
+    private final Draft draft = new Draft_6455();
+    private final AtomicLong notificationsSent = new AtomicLong();
+
+    /**
+     * Conecta uma sessão por usuário
+     */
+    void connect(NotificationWebSocketServer server, String jwtSecret, Collection<String> userIds) {
+        Algorithm algorithm = Algorithm.HMAC256(jwtSecret);
+        for (String userId : userIds) {
+            String token = JWT.create().withSubject(userId).sign(algorithm);
+            server.onOpen(newSession(), handshake("/notifications?token=" + token));
+        }
+    }
+
+    /**
+     * Notificações recebidas pelos clientes (sem contar a confirmação "connected")
+     */
+    long notificationsSent() {
+        return notificationsSent.get();
+    }
+
+    private WebSocket newSession() {
+        Object[] attachment = new Object[1];
+        return (WebSocket) Proxy.newProxyInstance(
+            WebSocket.class.getClassLoader(),
+            new Class<?>[] {WebSocket.class},
+            (self, method, args) -> {
+                switch (method.getName()) {
+                    case "sendFrame":
+                        notificationsSent.incrementAndGet();
+                        return null;
+                    case "send":
+                    case "close":
+                    case "closeConnection":
+                    case "sendPing":
+                        return null;
+                    case "getDraft":
+                        return draft;
+                    case "isOpen":
+                        return true;
+                    case "isClosing":
+                    case "isClosed":
+                    case "isFlushAndClose":
+                    case "hasBufferedData":
+                    case "hasSSLSupport":
+                        return false;
+                    case "getReadyState":
+                        return ReadyState.OPEN;
+                    case "setAttachment":
+                        attachment[0] = args[0];
+                        return null;
+                    case "getAttachment":
+                        return attachment[0];
+                    case "hashCode":
+                        return System.identityHashCode(self);
+                    case "equals":
+                        return self == args[0];
+                    case "toString":
+                        return "LoopbackSession";
+                    default:
+                        return null;
+                }
+            });
+    }
+
+    private static ClientHandshake handshake(String resourceDescriptor) {
+        return (ClientHandshake) Proxy.newProxyInstance(
+            ClientHandshake.class.getClassLoader(),
+            new Class<?>[] {ClientHandshake.class},
+            (self, method, args) -> {
+                switch (method.getName()) {
+                    case "getResourceDescriptor":
+                        return resourceDescriptor;
+                    case "hasFieldValue":
+                        return false;
+                    case "getContent":
+                        return new byte[0];
+                    case "hashCode":
+                        return System.identityHashCode(self);
+                    case "equals":
+                        return self == args[0];
+                    default:
+                        return null;
+                }
+            });
+    }
+}
@@ -0,0 +1,78 @@
+package chat4all.benchmarks.e2e;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * MessageMix - Proporção dos tipos de mensagem gerados
+ *
+ * Formato (HARNESS_MIX): "direct=70,group=20,file=5,connector=5" — pesos
+ * relativos, não precisam somar 100; tipos omitidos têm peso 0.
+ */
+final class MessageMix {
+
+    enum Kind {
+        DIRECT,     // 1:1 entre usuários conectados ao gateway
+        GROUP,      // grupo de HARNESS_GROUP_SIZE membros
+        FILE,       // 1:1 com file_id + file_metadata (anexo já enviado ao storage)
+        CONNECTOR   // recipient whatsapp:/instagram: → tópico do conector → status DELIVERED
+    }
+
+    private final Kind[] kinds;
+    private final int[] cumulativeWeights;
+    private final int totalWeight;
+    private final Map<Kind, Integer> weights;
+
+    private MessageMix(Map<Kind, Integer> weights) {
+        this.weights = weights;
+        this.kinds = weights.keySet().toArray(new Kind[0]);
+        this.cumulativeWeights = new int[kinds.length];
+        int total = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            total += weights.get(kinds[i]);
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Message mix needs at least one positive weight");
+        }
+        this.totalWeight = total;
+    }
+
+    static MessageMix parse(String spec) {
+        Map<Kind, Integer> weights = new EnumMap<>(Kind.class);
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry (expected kind=weight): " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                weights.put(Kind.valueOf(pair[0].trim().toUpperCase()), weight);
+            }
+        }
+        return new MessageMix(weights);
+    }
+
+    Kind pick(Random random) {
+        int roll = random.nextInt(totalWeight);
+        for (int i = 0; i < kinds.length; i++) {
+            if (roll < cumulativeWeights[i]) {
+                return kinds[i];
+            }
+        }
+        return kinds[kinds.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Kind, Integer> entry : weights.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(entry.getKey().name().toLowerCase()).append('=').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,31 @@
+package chat4all.benchmarks.e2e;
+
+import chat4all.shared.NotificationEnvelope;
+import chat4all.worker.notifications.RedisNotificationPublisher;
+
+import java.util.Collection;
+
+/**
+ * PubSubNotificationPublisher - RedisNotificationPublisher sobre o InMemoryPubSub
+ *
+ * Só o transporte muda (publishToUsers): os payloads são montados pelo código
+ * do worker, com stream_id prefixado como no caminho XADD + PUBLISH. O pool
+ * Jedis do construtor é preguiçoso e nunca é usado.
+ */
+final class PubSubNotificationPublisher extends RedisNotificationPublisher {
+
+    private final InMemoryPubSub pubSub;
+
+    PubSubNotificationPublisher(InMemoryPubSub pubSub) {
+        super("127.0.0.1", 6379);
+        this.pubSub = pubSub;
+    }
+
+    @Override
+    protected void publishToUsers(Collection<String> recipientUserIds, String payload) {
+        for (String recipientUserId : recipientUserIds) {
+            pubSub.publish(NotificationEnvelope.channelFor(recipientUserId),
+                NotificationEnvelope.withStreamId(payload, pubSub.nextStreamId()));
+        }
+    }
+}
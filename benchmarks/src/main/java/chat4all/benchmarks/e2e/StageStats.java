@@ -0,0 +1,76 @@
+package chat4all.benchmarks.e2e;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * StageStats - Histogramas de latência por etapa (nanossegundos)
+ *
+ * MessageLatencyMetrics (Micrometer, resolução de ms, janela deslizante) serve ao
+ * Prometheus; aqui as etapas em memória ficam abaixo de 1 ms e o relatório é
+ * sobre a rodada inteira, então cada etapa tem um ConcurrentHistogram próprio
+ * (HdrHistogram, gravação sem lock, 3 dígitos significativos).
+ */
+final class StageStats {
+
+    private static final long MAX_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    void record(String stage, long nanos) {
+        histograms.computeIfAbsent(stage, s -> new ConcurrentHistogram(MAX_TRACKABLE_NANOS, 3))
+            .recordValue(Math.min(Math.max(0, nanos), MAX_TRACKABLE_NANOS));
+    }
+
+    void error(String stage) {
+        errors.computeIfAbsent(stage, s -> new LongAdder()).increment();
+    }
+
+    /**
+     * Descarta as amostras (fim do warmup; nenhuma etapa pode estar gravando)
+     */
+    void reset() {
+        histograms.clear();
+        errors.clear();
+    }
+
+    long count(String stage) {
+        Histogram histogram = histograms.get(stage);
+        return histogram == null ? 0 : histogram.getTotalCount();
+    }
+
+    /**
+     * Tabela em µs, na ordem dada (etapas sem amostras são omitidas)
+     */
+    void print(PrintStream out, String... stages) {
+        out.printf("%-26s %10s %10s %10s %10s %10s %10s %8s%n",
+            "stage", "count", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "errors");
+        for (String stage : stages) {
+            Histogram histogram = histograms.get(stage);
+            if (histogram == null || histogram.getTotalCount() == 0) {
+                continue;
+            }
+            LongAdder errorCount = errors.get(stage);
+            out.printf("%-26s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %8d%n",
+                stage,
+                histogram.getTotalCount(),
+                micros(histogram.getValueAtPercentile(50)),
+                micros(histogram.getValueAtPercentile(90)),
+                micros(histogram.getValueAtPercentile(99)),
+                micros(histogram.getValueAtPercentile(99.9)),
+                micros(histogram.getMaxValue()),
+                errorCount == null ? 0 : errorCount.sum());
+        }
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1_000.0;
+    }
+}
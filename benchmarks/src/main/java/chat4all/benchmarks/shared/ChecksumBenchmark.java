@@ -0,0 +1,61 @@
+package chat4all.benchmarks.shared;
+
+import chat4all.shared.Checksum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ChecksumBenchmark - verificação de checksum por chunk no upload de arquivos
+ *
+ * - verifyChunk: o que FileServiceImpl faz por chunk com chunk_checksum
+ *   (SHA-256 no digest da thread + comparação com o hex recebido)
+ * - chunkHashes: sha256HexChunks de 8 chunks (paralelo a partir de 256KB no total),
+ *   cada hash codificado em hex pela tabela
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChecksumBenchmark {
+
+    @Param({"65536", "1048576"})
+    public int chunkBytes;
+
+    private byte[] chunk;
+    private byte[] file;
+    private String expectedHex;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        chunk = new byte[chunkBytes];
+        random.nextBytes(chunk);
+        file = new byte[chunkBytes * 8];
+        random.nextBytes(file);
+        expectedHex = Checksum.sha256Hex(chunk);
+    }
+
+    @Benchmark
+    public boolean verifyChunk() {
+        return Checksum.matchesSha256(chunk, expectedHex);
+    }
+
+    @Benchmark
+    public String[] chunkHashes() {
+        return Checksum.sha256HexChunks(file, chunkBytes);
+    }
+}
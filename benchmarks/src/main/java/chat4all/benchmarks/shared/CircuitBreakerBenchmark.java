@@ -0,0 +1,62 @@
+package chat4all.benchmarks.shared;
+
+import chat4all.shared.patterns.GenericCircuitBreaker;
+import chat4all.shared.patterns.GenericCircuitBreaker.WindowType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CircuitBreakerBenchmark - allowRequest + record* com contenção
+ *
+ * Um breaker compartilhado por 4 threads, como nos conectores (várias threads de
+ * envio, um breaker por conector). ~10% de falhas: abaixo do limiar de 50% e sem
+ * limite de falhas seguidas, então o circuito fica CLOSED e mede-se o caminho
+ * comum (CAS na palavra de estado + gravação na janela).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class CircuitBreakerBenchmark {
+
+    @Param({"TIME", "COUNT"})
+    public String window;
+
+    private GenericCircuitBreaker breaker;
+
+    @Setup
+    public void setup() {
+        WindowType type = WindowType.valueOf(window);
+        breaker = new GenericCircuitBreaker("benchmark", type, type == WindowType.TIME ? 60 : 100,
+            50, 10, Integer.MAX_VALUE, 30_000, 3);
+    }
+
+    @Benchmark
+    public boolean call() {
+        boolean allowed = breaker.allowRequest();
+        if (allowed) {
+            if (ThreadLocalRandom.current().nextInt(10) == 0) {
+                breaker.recordFailure();
+            } else {
+                breaker.recordSuccess();
+            }
+        }
+        return allowed;
+    }
+}
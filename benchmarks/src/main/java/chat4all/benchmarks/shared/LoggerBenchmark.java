@@ -0,0 +1,69 @@
+package chat4all.benchmarks.shared;
+
+import chat4all.shared.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LoggerBenchmark - Custo do Logger no caminho quente, só pela API pública
+ *
+ * - format: substituição dos {} (SLF4J style) com 2 argumentos
+ * - context: setTraceId/setConversationId/setMessageId + clearContext, feito
+ *   pelo worker a cada mensagem
+ * - disabledDebug: chamada em nível desligado (deve ser ~1 ns, só o level check)
+ *
+ * Linhas habilitadas não entram aqui: iriam para o stdout do fork e a medida
+ * passaria a ser do pipe do JMH, não do Logger.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggerBenchmark {
+
+    private final String pattern = "✓ Message {} persisted with seq {}";
+    private final String traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+    private final String conversationId = "direct_user_a_user_b";
+    private final String messageId = "msg_6f1c2a9e-3b7d-4c1e-9a55-0d2f8e4b7c11";
+    private final Long seq = 4_217L;
+
+    private Logger logger;
+
+    @Setup
+    public void setup() {
+        logger = new Logger("router-worker");
+        if (logger.isDebugEnabled()) {
+            System.err.println("⚠️ LOG_LEVEL enables DEBUG: disabledDebug will measure real writes");
+        }
+    }
+
+    @Benchmark
+    public String format() {
+        return Logger.format(pattern, messageId, seq);
+    }
+
+    @Benchmark
+    public void context() {
+        Logger.setTraceId(traceId);
+        Logger.setConversationId(conversationId);
+        Logger.setMessageId(messageId);
+        Logger.clearContext();
+    }
+
+    @Benchmark
+    public void disabledDebug() {
+        logger.debug(pattern, messageId, seq);
+    }
+}
@@ -0,0 +1,70 @@
+package chat4all.benchmarks.shared;
+
+import chat4all.shared.MessageEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageEventJsonBenchmark - MessageEvent.toJson / fromJson
+ *
+ * Os dois lados do tópico "messages": a API (e o ConnectorRouter) serializam,
+ * o worker e os conectores desserializam cada registro.
+ *
+ * PAYLOADS:
+ * - text: mensagem de texto com aspas e acentos (caminho de escape)
+ * - file: anexo com file_id e file_metadata (mapa aninhado)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageEventJsonBenchmark {
+
+    @Param({"text", "file"})
+    public String payload;
+
+    private MessageEvent event;
+    private String json;
+
+    @Setup
+    public void setup() {
+        event = new MessageEvent("msg_6f1c2a9e-3b7d-4c1e-9a55-0d2f8e4b7c11", "direct_user_a_user_b", "user_a",
+            "Oi! Você viu o \"relatório\" de ontem? Preciso da revisão até amanhã às 10h.",
+            1_737_124_245_123L, "MESSAGE_SENT");
+        if ("file".equals(payload)) {
+            Map<String, String> metadata = new LinkedHashMap<>();
+            metadata.put("filename", "relatorio-q4.pdf");
+            metadata.put("size_bytes", "2457600");
+            metadata.put("mime_type", "application/pdf");
+            metadata.put("checksum", "sha256:9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08");
+            event.setFileId("file_2b7e1516-28ae-4d2a-a6f7-1588091cf4d2");
+            event.setFileMetadata(metadata);
+        }
+        json = event.toJson();
+    }
+
+    @Benchmark
+    public String toJson() {
+        return event.toJson();
+    }
+
+    @Benchmark
+    public MessageEvent fromJson() {
+        return MessageEvent.fromJson(json);
+    }
+}
@@ -0,0 +1,86 @@
+package chat4all.benchmarks.shared;
+
+import chat4all.shared.kafka.StatusEventCodec;
+import chat4all.shared.kafka.StatusEventCodec.ReadWatermark;
+import chat4all.shared.kafka.StatusEventCodec.StatusUpdate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StatusEventCodecBenchmark - Parse dos registros de status-updates
+ *
+ * O antigo StatusUpdateConsumer.parseJson foi substituído pelo StatusEventCodec;
+ * este é o parse que o StatusUpdateConsumer faz por registro:
+ * decodeWatermark() primeiro e, se não for watermark, decode().
+ *
+ * - single: um DELIVERED (modos SINGLE/BATCHED do publisher)
+ * - batch: um registro COMPACT com 200 status (STATUS_BATCH_MAX padrão)
+ * - watermark: "leu até seq N" publicado pela API
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusEventCodecBenchmark {
+
+    private static final int BATCH_SIZE = 200;
+
+    private String single;
+    private String batch;
+    private String watermark;
+
+    @Setup
+    public void setup() {
+        long now = 1_737_124_245_123L;
+        single = StatusEventCodec.encodeSingle("msg_6f1c2a9e-3b7d-4c1e-9a55-0d2f8e4b7c11", "DELIVERED", now, "whatsapp");
+
+        List<StatusUpdate> updates = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            updates.add(new StatusUpdate("msg_6f1c2a9e-3b7d-4c1e-9a55-" + String.format("%012d", i),
+                i % 2 == 0 ? "DELIVERED" : "READ", now + i));
+        }
+        batch = StatusEventCodec.encodeBatch("whatsapp", updates);
+
+        watermark = StatusEventCodec.encodeWatermark(new ReadWatermark("direct_user_a_user_b", "user_b", 4_217, now));
+    }
+
+    @Benchmark
+    public Object single() {
+        return parse(single);
+    }
+
+    @Benchmark
+    public Object batch() {
+        return parse(batch);
+    }
+
+    @Benchmark
+    public Object watermark() {
+        return parse(watermark);
+    }
+
+    /**
+     * Mesma ordem do StatusUpdateConsumer.processStatusUpdate
+     */
+    private static Object parse(String json) {
+        ReadWatermark readWatermark = StatusEventCodec.decodeWatermark(json);
+        if (readWatermark != null) {
+            return readWatermark;
+        }
+        return StatusEventCodec.decode(json);
+    }
+}
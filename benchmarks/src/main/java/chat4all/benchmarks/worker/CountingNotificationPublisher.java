@@ -0,0 +1,45 @@
+package chat4all.benchmarks.worker;
+
+import chat4all.worker.notifications.RedisNotificationPublisher;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CountingNotificationPublisher - RedisNotificationPublisher que só conta
+ *
+ * O pool Jedis do construtor é preguiçoso (nenhuma conexão é aberta); os métodos
+ * de publicação são sobrescritos e nunca pegam um recurso do pool.
+ */
+public class CountingNotificationPublisher extends RedisNotificationPublisher {
+
+    private final AtomicLong notifications = new AtomicLong();
+
+    public CountingNotificationPublisher() {
+        super("127.0.0.1", 6379);
+    }
+
+    public long getNotificationCount() {
+        return notifications.get();
+    }
+
+    @Override
+    public void publishNewMessageNotification(String recipientUserId, String messageId, String senderId,
+                                              String senderUsername, String conversationId, String content,
+                                              String fileId, String groupName, long acceptedAt) {
+        notifications.incrementAndGet();
+    }
+
+    @Override
+    public void publishGroupNotification(Collection<String> recipientUserIds, String messageId, String senderId,
+                                         String senderUsername, String conversationId, String content,
+                                         String fileId, String groupName, long acceptedAt) {
+        notifications.addAndGet(recipientUserIds.size());
+    }
+
+    @Override
+    public void publishReadWatermark(Collection<String> recipientUserIds, String conversationId,
+                                     String readerId, long readSeq) {
+        notifications.addAndGet(recipientUserIds.size());
+    }
+}
@@ -0,0 +1,118 @@
+package chat4all.benchmarks.worker;
+
+import chat4all.shared.Logger;
+import chat4all.shared.MessageEvent;
+import chat4all.worker.processing.MessageProcessor;
+import chat4all.worker.routing.ConnectorRouter;
+import chat4all.worker.store.InMemoryChangeFeed;
+import chat4all.worker.store.InMemoryInboxStore;
+import chat4all.worker.store.InMemoryMessageStore;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageProcessorBenchmark - MessageProcessor.process() sem I/O
+ *
+ * Implementações em memória no lugar de Cassandra (InMemoryMessageStore, InMemoryChangeFeed e
+ * InMemoryInboxStore do worker: o fan-out do feed e da inbox entra na medida), Kafka dos
+ * conectores (MockProducer no ConnectorRouter) e Redis (CountingNotificationPublisher).
+ * A entrega local simulada (sleep de 100ms) é desligada: mede-se só CPU/alocação
+ * do worker por mensagem.
+ *
+ * MIX:
+ * - direct: conversa 1:1 → recipient extraído do conversation_id + 1 notificação
+ * - group: grupo de 20 membros → nome/membros do grupo + 19 notificações
+ * - connector: recipient "whatsapp:..." → MessageEvent.toJson + send no MockProducer
+ *
+ * Rodar com LOG_LEVEL=WARN (run-benchmarks.sh): com INFO, as duas linhas de log por
+ * mensagem vão para o stdout do fork e dominam a medida.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageProcessorBenchmark {
+
+    private static final int GROUP_SIZE = 20;
+
+    @Param({"direct", "group", "connector"})
+    public String mix;
+
+    private InMemoryMessageStore store;
+    private MockProducer<String, String> connectorProducer;
+    private MessageProcessor processor;
+    private long sequence;
+
+    @Setup
+    public void setup() {
+        if (new Logger("benchmarks").isEnabled(Logger.Level.INFO)) {
+            System.err.println("⚠️ LOG_LEVEL is INFO: per-message log lines will be part of the measurement");
+        }
+
+        store = new InMemoryMessageStore();
+        store.putUser("user_a", "alice");
+        List<String> members = new ArrayList<>();
+        for (int i = 0; i < GROUP_SIZE; i++) {
+            members.add(i == 0 ? "user_a" : "user_" + i);
+        }
+        store.putGroup("group_bench", "Benchmark group", members);
+
+        connectorProducer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        processor = new MessageProcessor(store, new ConnectorRouter(connectorProducer),
+            new CountingNotificationPublisher(), new InMemoryChangeFeed(store), new InMemoryInboxStore(store));
+        processor.setSimulatedDeliveryMs(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() {
+        // Sem isso o Set de deduplicação e o histórico do MockProducer crescem a cada iteração
+        store.clearMessages();
+        connectorProducer.clear();
+    }
+
+    @Benchmark
+    public boolean process() {
+        return processor.process(nextEvent());
+    }
+
+    private MessageEvent nextEvent() {
+        String conversationId;
+        switch (mix) {
+            case "group":
+                conversationId = "group_bench";
+                break;
+            case "direct":
+            case "connector":
+                conversationId = "direct_user_a_user_b";
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mix: " + mix);
+        }
+        MessageEvent event = new MessageEvent("msg_bench_" + (sequence++), conversationId, "user_a",
+            "Olá! Mensagem de tamanho típico para medir o caminho do worker sem I/O.",
+            System.currentTimeMillis(), "MESSAGE_SENT");
+        if ("connector".equals(mix)) {
+            event.setRecipientId("whatsapp:+5511999999999");
+        }
+        return event;
+    }
+}
@@ -1,5 +1,7 @@
 package chat4all.connector.instagram;
 
+import chat4all.shared.tracing.TracingConfig;
+
 /**
  * Instagram Connector Mock - Entry Point
  * 
@@ -61,14 +63,24 @@ public class Main {
             System.getenv().getOrDefault("HEALTH_PORT", "8084")
         );
         
+        String jaegerEndpoint = System.getenv().getOrDefault(
+            "JAEGER_ENDPOINT",
+            "http://jaeger:14250"
+        );
+        
         System.out.println("Configuration:");
         System.out.println("  Kafka Bootstrap Servers: " + kafkaBootstrapServers);
         System.out.println("  Consumer Group ID: " + consumerGroupId);
         System.out.println("  Inbound Topic: " + inboundTopic);
         System.out.println("  Status Topic: " + statusTopic);
         System.out.println("  Health Check Port: " + healthPort);
+        System.out.println("  Jaeger: " + jaegerEndpoint);
         System.out.println("");
         
+        // Tracing first: the connector and its StatusPublisher continue the worker's traces
+        TracingConfig.initialize("connector-instagram", jaegerEndpoint,
+            ConnectorMetricsRegistry.getInstance().getPrometheusRegistry());
+        
         // Create status publisher (for publishing DELIVERED events)
         StatusPublisher statusPublisher = new StatusPublisher(
             kafkaBootstrapServers,
@@ -1,11 +1,7 @@
 package chat4all.connector.instagram;
 
-import org.apache.kafka.clients.producer.KafkaProducer;
-import org.apache.kafka.clients.producer.ProducerConfig;
-import org.apache.kafka.clients.producer.ProducerRecord;
-import org.apache.kafka.common.serialization.StringSerializer;
-
-import java.util.Properties;
+import chat4all.shared.connector.DeliveryStatusPublisher;
+import chat4all.shared.kafka.StatusEventPublisher;
 
 /**
  * Status Publisher - Publishes delivery/read status updates to Kafka
@@ -29,14 +25,15 @@ import java.util.Properties;
  * - Fire-and-forget pattern: no need to wait for acknowledgment
  * - Idempotent: same status update can be sent multiple times safely
  * - Kafka ensures delivery (retries, acknowledgments)
+ * - Producer batching/compression and the compact multi-status record are
+ *   handled by the shared StatusEventPublisher (STATUS_PUBLISH_MODE)
  * 
  * @author Chat4All Team
- * @version 1.0.0
+ * @version 1.1.0
  */
-public class StatusPublisher {
+public class StatusPublisher implements DeliveryStatusPublisher {
     
-    private final KafkaProducer<String, String> producer;
-    private final String statusTopic;
+    private final StatusEventPublisher publisher;
     
     /**
      * Constructor
@@ -45,97 +42,22 @@ public class StatusPublisher {
      * @param statusTopic Topic for publishing status updates
      */
     public StatusPublisher(String kafkaBootstrapServers, String statusTopic) {
-        this.statusTopic = statusTopic;
-        
-        // Configure Kafka producer
-        Properties props = new Properties();
-        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaBootstrapServers);
-        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
-        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
-        props.put(ProducerConfig.ACKS_CONFIG, "1"); // Leader acknowledgment
-        props.put(ProducerConfig.RETRIES_CONFIG, "3"); // Retry on failure
-        props.put(ProducerConfig.CLIENT_ID_CONFIG, "instagram-connector-status-publisher");
-        
-        this.producer = new KafkaProducer<>(props);
-        
-        System.out.println("✅ StatusPublisher initialized");
-        System.out.println("   Publishing to topic: " + statusTopic);
+        this.publisher = StatusEventPublisher.fromEnv(kafkaBootstrapServers, statusTopic, "instagram");
     }
     
     /**
      * Publish DELIVERED status for a message
      * 
      * Educational Notes:
-     * - Uses message_id as Kafka key for partitioning
+     * - Uses message_id as Kafka key for partitioning (or a hash shard of it in compact mode)
      * - Same message_id always goes to same partition (ordering guaranteed)
      * - Fire-and-forget: doesn't wait for acknowledgment
      * 
      * @param messageId Message ID that was delivered
      */
+    @Override
     public void publishDelivered(String messageId) {
-        try {
-            // Build JSON event (manual serialization for educational clarity)
-            String event = buildStatusEvent(messageId, "DELIVERED");
-            
-            // Create producer record (key = message_id, value = JSON event)
-            ProducerRecord<String, String> record = new ProducerRecord<>(
-                statusTopic,
-                messageId, // Key: ensures same message goes to same partition
-                event      // Value: JSON event payload
-            );
-            
-            // Send asynchronously (fire-and-forget)
-            producer.send(record, (metadata, exception) -> {
-                if (exception != null) {
-                    System.err.println("❌ Failed to publish status update: " + exception.getMessage());
-                } else {
-                    System.out.println("[Status] Published DELIVERED for " + messageId + 
-                                     " (partition: " + metadata.partition() + 
-                                     ", offset: " + metadata.offset() + ")");
-                }
-            });
-            
-        } catch (Exception e) {
-            System.err.println("❌ Error publishing status: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-    
-    /**
-     * Build status event JSON
-     * 
-     * Educational Note:
-     * - Manual JSON serialization (no Jackson/Gson dependency)
-     * - Shows exact event structure for learning purposes
-     * 
-     * @param messageId Message ID
-     * @param status Status value (DELIVERED, READ)
-     * @return JSON string
-     */
-    private String buildStatusEvent(String messageId, String status) {
-        long timestamp = System.currentTimeMillis();
-        
-        return String.format(
-            "{\"message_id\":\"%s\",\"status\":\"%s\",\"timestamp\":%d,\"connector\":\"instagram\"}",
-            escapeJson(messageId),
-            escapeJson(status),
-            timestamp
-        );
-    }
-    
-    /**
-     * Escape special characters in JSON strings
-     * 
-     * @param str String to escape
-     * @return Escaped string
-     */
-    private String escapeJson(String str) {
-        if (str == null) return "";
-        return str.replace("\\", "\\\\")
-                  .replace("\"", "\\\"")
-                  .replace("\n", "\\n")
-                  .replace("\r", "\\r")
-                  .replace("\t", "\\t");
+        publish(messageId, "DELIVERED");
     }
     
     /**
@@ -143,34 +65,18 @@ public class StatusPublisher {
      * 
      * Educational Notes:
      * - Simulates user reading the message (Phase 2 requirement)
-     * - Uses message_id as Kafka key for partitioning
      * - Fire-and-forget: doesn't wait for acknowledgment
      * 
      * @param messageId Message ID that was read
      */
+    @Override
     public void publishRead(String messageId) {
+        publish(messageId, "READ");
+    }
+    
+    private void publish(String messageId, String status) {
         try {
-            // Build JSON event (manual serialization for educational clarity)
-            String event = buildStatusEvent(messageId, "READ");
-            
-            // Create producer record (key = message_id, value = JSON event)
-            ProducerRecord<String, String> record = new ProducerRecord<>(
-                statusTopic,
-                messageId, // Key: ensures same message goes to same partition
-                event      // Value: JSON event payload
-            );
-            
-            // Send asynchronously (fire-and-forget)
-            producer.send(record, (metadata, exception) -> {
-                if (exception != null) {
-                    System.err.println("❌ Failed to publish status update: " + exception.getMessage());
-                } else {
-                    System.out.println("[Status] Published READ for " + messageId + 
-                                     " (partition: " + metadata.partition() + 
-                                     ", offset: " + metadata.offset() + ")");
-                }
-            });
-            
+            publisher.publish(messageId, status);
         } catch (Exception e) {
             System.err.println("❌ Error publishing status: " + e.getMessage());
             e.printStackTrace();
@@ -180,13 +86,10 @@ public class StatusPublisher {
     /**
      * Close the producer and release resources
      * 
-     * Called during shutdown
+     * Called during shutdown (flushes pending batches first)
      */
     public void close() {
-        if (producer != null) {
-            producer.flush(); // Wait for pending sends
-            producer.close();
-            System.out.println("✅ StatusPublisher closed");
-        }
+        publisher.close();
+        System.out.println("✅ StatusPublisher closed");
     }
 }
@@ -1,5 +1,7 @@
 package chat4all.connector.whatsapp;
 
+import chat4all.shared.tracing.TracingConfig;
+
 /**
  * WhatsApp Connector Mock - Entry Point
  * 
@@ -61,14 +63,24 @@ public class Main {
             System.getenv().getOrDefault("HEALTH_PORT", "8083")
         );
         
+        String jaegerEndpoint = System.getenv().getOrDefault(
+            "JAEGER_ENDPOINT",
+            "http://jaeger:14250"
+        );
+        
         System.out.println("Configuration:");
         System.out.println("  Kafka Bootstrap Servers: " + kafkaBootstrapServers);
         System.out.println("  Consumer Group ID: " + consumerGroupId);
         System.out.println("  Inbound Topic: " + inboundTopic);
         System.out.println("  Status Topic: " + statusTopic);
         System.out.println("  Health Check Port: " + healthPort);
+        System.out.println("  Jaeger: " + jaegerEndpoint);
         System.out.println("");
         
+        // Tracing first: the connector and its StatusPublisher continue the worker's traces
+        TracingConfig.initialize("connector-whatsapp", jaegerEndpoint,
+            ConnectorMetricsRegistry.getInstance().getPrometheusRegistry());
+        
         // Create status publisher (for publishing DELIVERED events)
         StatusPublisher statusPublisher = new StatusPublisher(
             kafkaBootstrapServers,
@@ -1,19 +1,19 @@
 package chat4all.connector.whatsapp;
 
+import chat4all.shared.Logger;
 import chat4all.shared.MessageEvent;
 import chat4all.shared.connector.BaseConnector;
+import chat4all.shared.connector.ConnectorConsumerLoop;
 import chat4all.shared.connector.ConnectorException;
 import chat4all.shared.connector.WebhookEvent;
-import org.apache.kafka.clients.consumer.ConsumerConfig;
-import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
-import org.apache.kafka.common.serialization.StringDeserializer;
+import chat4all.shared.kafka.ConsumerLagMonitor;
+import chat4all.shared.kafka.RetryRouter;
+import chat4all.shared.kafka.RetryTopicConsumer;
+import chat4all.shared.kafka.RetryTopics;
 
-import java.time.Duration;
-import java.util.Collections;
-import java.util.Properties;
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * WhatsApp Connector - Refatorado para usar BaseConnector
@@ -45,10 +45,15 @@ import java.util.Random;
  */
 public class WhatsAppConnector extends BaseConnector {
     
-    private final KafkaConsumer<String, String> consumer;
-    private final StatusPublisher statusPublisher;
-    private final Random random;
-    private volatile boolean running;
+    private static final Logger log = new Logger("connector-whatsapp");
+    
+    private final ConnectorConsumerLoop consumerLoop;
+    private final List<RetryTopicConsumer> retryConsumers = new ArrayList<>();
+    private final List<Thread> retryThreads = new ArrayList<>();
+    
+    // Chamadas simultâneas à API da plataforma (ajustar ao rate limit da conta)
+    private static final int MAX_IN_FLIGHT =
+        Integer.parseInt(System.getenv().getOrDefault("CONNECTOR_MAX_IN_FLIGHT", "16"));
     
     /**
      * Constructor
@@ -64,27 +69,34 @@ public class WhatsAppConnector extends BaseConnector {
         String inboundTopic,
         StatusPublisher statusPublisher
     ) {
-        super(); // Inicializa BaseConnector (circuit breaker, etc)
-        this.statusPublisher = statusPublisher;
-        this.random = new Random();
-        this.running = true;
+        // BaseConnector: circuit breaker, rate limiter and the delivery path (DELIVERED/READ, retry routing)
+        // Failed sends go to <topic>-retry-5s → <topic>-retry-1m → <topic>-dlq
+        super(statusPublisher, new RetryRouter(kafkaBootstrapServers, RetryTopics.fromEnv(inboundTopic)));
+        
+        // Keep circuit_breaker_state (read by /actuator/health) in sync with the shared breaker
+        ConnectorMetricsRegistry metrics = ConnectorMetricsRegistry.getInstance();
+        getCircuitBreaker().setTransitionListener((from, to) -> {
+            metrics.setCircuitBreakerState(to.name());
+            metrics.recordCircuitBreakerTransition(from.name(), to.name());
+        });
         
-        // Configure Kafka consumer
-        Properties props = new Properties();
-        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaBootstrapServers);
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, consumerGroupId);
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
-        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false"); // Manual commit
-        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "10"); // Process in small batches
+        RetryRouter retryRouter = getRetryRouter();
+        RetryTopics retryTopics = retryRouter.getTopics();
+        for (int tier = 0; tier < retryTopics.getTierCount(); tier++) {
+            retryConsumers.add(new RetryTopicConsumer(
+                kafkaBootstrapServers, consumerGroupId, retryTopics, tier, this::retryMessage, retryRouter));
+        }
         
-        this.consumer = new KafkaConsumer<>(props);
-        this.consumer.subscribe(Collections.singletonList(inboundTopic));
+        // Poll → dispatch per recipient → watermark commit; this connector only supplies the platform call
+        ConsumerLagMonitor lagMonitor = ConsumerLagMonitor.fromEnv(
+            kafkaBootstrapServers, consumerGroupId, metrics.getPrometheusRegistry());
+        this.consumerLoop = new ConnectorConsumerLoop(getConnectorId(), kafkaBootstrapServers, consumerGroupId,
+            inboundTopic, MAX_IN_FLIGHT, retryRouter, lagMonitor, this::processTraced);
         
         System.out.println("✅ WhatsApp connector initialized");
         System.out.println("   Subscribed to topic: " + inboundTopic);
         System.out.println("   Consumer group: " + consumerGroupId);
+        System.out.println("   Max in-flight API calls: " + MAX_IN_FLIGHT);
     }
     
     @Override
@@ -103,25 +115,29 @@ public class WhatsAppConnector extends BaseConnector {
     }
     
     /**
-     * NÃO IMPLEMENTADO - Este conector usa padrão diferente (Kafka Consumer)
+     * Platform send - the only WhatsApp-specific step of the delivery path
+     * 
+     * BaseConnector.processTraced() waits for rate limit and circuit breaker, then
+     * calls this; DELIVERED/READ and retry routing also stay in BaseConnector.
      * 
-     * Para MessageEvent direto, usar: sendMessageImpl()
-     * Para Kafka consumer, usar: run()
+     * @param message MessageEvent consumed from the outbound topic
+     * @return true if the platform accepted the message
      */
     @Override
-    protected boolean sendMessageImpl(MessageEvent message) throws Exception {
-        // Este conector processa via Kafka Consumer (run loop)
-        // Não é usado diretamente. Para usar, remover Kafka consumer e usar direto.
-        throw new UnsupportedOperationException("Use run() for Kafka consumer mode");
+    protected boolean sendMessageImpl(MessageEvent message) {
+        // In real system, extract the phone number from conversation participants
+        String recipientId = message.getRecipientId() != null ? message.getRecipientId() : message.getSenderId();
+        return simulateApiCall(message.getMessageId(), recipientId);
     }
     
     /**
      * Main run loop - consumes and processes messages
      * 
      * Educational Notes:
-     * - Poll with timeout: blocks for max 1 second waiting for messages
-     * - Commit after processing: ensures at-least-once delivery
-     * - Graceful shutdown: checks running flag after each poll
+     * - Poll, per-recipient dispatch and watermark commit live in ConnectorConsumerLoop
+     * - Failed sends are moved to retry topics (RetryRouter) instead of skipped;
+     *   retry tiers run on their own consumer threads
+     * - Graceful shutdown: stop() ends the poll loop within one poll timeout
      */
     public void run() {
         System.out.println("");
@@ -132,106 +148,26 @@ public class WhatsAppConnector extends BaseConnector {
         System.out.println("===========================================");
         System.out.println("");
         
-        while (running) {
-            try {
-                // Poll for messages (blocks for max 1 second)
-                ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(1));
-                
-                if (records.isEmpty()) {
-                    continue; // No messages, poll again
-                }
-                
-                System.out.println("▼ Polled " + records.count() + " message(s)");
-                System.out.println("");
-                
-                // Process each message
-                for (ConsumerRecord<String, String> record : records) {
-                    processMessage(record);
-                }
-                
-                // Commit offsets after successful processing
-                consumer.commitSync();
-                System.out.println("✅ Committed offsets for " + records.count() + " message(s)");
-                System.out.println("");
-                
-            } catch (Exception e) {
-                System.err.println("❌ Error in consumer loop: " + e.getMessage());
-                e.printStackTrace();
-                // Continue running despite errors (fault tolerance)
-            }
+        for (RetryTopicConsumer retryConsumer : retryConsumers) {
+            Thread thread = new Thread(retryConsumer, getConnectorId() + "-" + retryConsumer.getTopic());
+            thread.setDaemon(true);
+            retryThreads.add(thread);
+            thread.start();
         }
         
-        // Cleanup
-        consumer.close();
-        System.out.println("✅ Consumer closed");
-    }
-    
-    /**
-     * Process a single message from Kafka
-     * 
-     * Flow:
-     * 1. Deserialize MessageEvent from JSON
-     * 2. Log message consumption
-     * 3. Simulate WhatsApp API call (random delay)
-     * 4. Publish DELIVERED status update
-     * 
-     * REFATORAÇÃO: Agora usa circuit breaker herdado de BaseConnector
-     * 
-     * @param record Kafka consumer record
-     */
-    private void processMessage(ConsumerRecord<String, String> record) {
-        try {
-            System.out.println("─────────────────────────────────");
-            System.out.println("Partition: " + record.partition() + " | Offset: " + record.offset() + " | Key: " + record.key());
-            System.out.println("");
-            
-            // Deserialize MessageEvent
-            String messageJson = record.value();
-            MessageEvent event = MessageEvent.fromJson(messageJson);
-            
-            String messageId = event.getMessageId();
-            String recipientId = event.getSenderId(); // In real system, extract from conversation participants
-            
-            System.out.println("[WhatsApp] Consumed message: " + messageId);
-            System.out.println("[WhatsApp] Recipient: " + recipientId);
-            System.out.println("[WhatsApp] Content: " + event.getContent());
-            
-            // Check circuit breaker (herdado de BaseConnector)
-            if (!getCircuitBreaker().allowRequest()) {
-                System.err.println("⚠️ [WhatsApp] Circuit breaker OPEN, skipping API call for: " + messageId);
-                // Message stays in Kafka, will retry later when circuit closes
-                return;
-            }
-            
-            // Simulate WhatsApp Business API call
-            boolean success = simulateApiCall(messageId, recipientId);
-            
-            // Update circuit breaker based on result
-            if (success) {
-                getCircuitBreaker().recordSuccess();
-                
-                // Publish DELIVERED status
-                statusPublisher.publishDelivered(messageId);
-                
-                // Schedule READ status simulation after random delay (2-5 seconds)
-                // Simulates user receiving notification and reading the message
-                scheduleReadStatus(messageId);
-                
-                System.out.println("✅ Processing complete for message: " + messageId);
-            } else {
-                getCircuitBreaker().recordFailure();
-                System.err.println("❌ Failed to deliver message: " + messageId);
+        // Blocks until stop(); drains in-flight calls and commits the final watermark
+        consumerLoop.run();
+        
+        retryConsumers.forEach(RetryTopicConsumer::stop);
+        for (Thread thread : retryThreads) {
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-            
-            System.out.println("");
-            
-        } catch (Exception e) {
-            System.err.println("❌ Error processing message: " + e.getMessage());
-            e.printStackTrace();
-            // Record failure
-            getCircuitBreaker().recordFailure();
-            // Don't rethrow - continue processing other messages
         }
+        closeDelivery();
+        System.out.println("✅ Consumer closed");
     }
     
     /**
@@ -250,63 +186,30 @@ public class WhatsAppConnector extends BaseConnector {
     private boolean simulateApiCall(String messageId, String recipientId) {
         try {
             // Simulate 10% failure rate for circuit breaker testing
-            boolean shouldFail = random.nextInt(10) == 0;
+            boolean shouldFail = ThreadLocalRandom.current().nextInt(10) == 0;
             
             if (shouldFail) {
-                System.err.println("[WhatsApp] ✗ Simulated API failure for " + recipientId);
+                log.warn("[WhatsApp] ✗ Simulated API failure for {}", recipientId);
                 return false;
             }
             
             // Random delay between 200-500ms
-            int delayMs = 200 + random.nextInt(300);
+            int delayMs = 200 + ThreadLocalRandom.current().nextInt(300);
             
-            System.out.println("[WhatsApp] Simulating API call...");
-            System.out.println("  → Latency: " + delayMs + "ms");
+            log.debug("[WhatsApp] Simulating API call (latency: {}ms)", delayMs);
             
             Thread.sleep(delayMs);
             
-            System.out.println("[WhatsApp] ✓ Delivered to " + recipientId);
+            log.debug("[WhatsApp] ✓ Delivered to {}", recipientId);
             return true;
             
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            System.err.println("❌ API simulation interrupted");
+            log.warn("❌ API simulation interrupted");
             return false;
         }
     }
     
-    /**
-     * Schedule READ status publication after random delay
-     * 
-     * Educational Notes:
-     * - Simulates user receiving push notification and opening the message
-     * - Random delay (2-5 seconds) mimics real-world user behavior
-     * - Runs in background thread to not block message processing
-     * - Phase 2 requirement: SENT → DELIVERED → READ lifecycle
-     * 
-     * @param messageId Message ID to mark as read
-     */
-    private void scheduleReadStatus(String messageId) {
-        // Random delay between 2000-5000ms (2-5 seconds)
-        int delayMs = 2000 + random.nextInt(3000);
-        
-        // Run in background thread
-        new Thread(() -> {
-            try {
-                System.out.println("[WhatsApp] Scheduling READ status for " + messageId + " in " + delayMs + "ms");
-                Thread.sleep(delayMs);
-                
-                // Publish READ status
-                statusPublisher.publishRead(messageId);
-                System.out.println("[WhatsApp] ✓ User read message: " + messageId);
-                
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                System.err.println("⚠️  READ status simulation interrupted for: " + messageId);
-            }
-        }).start();
-    }
-    
     /**
      * Process webhook event from WhatsApp platform
      * 
@@ -366,6 +269,7 @@ public class WhatsAppConnector extends BaseConnector {
      * Called by shutdown hook in Main.java
      */
     public void stop() {
-        this.running = false;
+        running = false;
+        consumerLoop.stop();
     }
 }
@@ -1,12 +1,23 @@
 package chat4all.worker;
 
+import chat4all.shared.kafka.RetryRouter;
+import chat4all.shared.kafka.RetryTopicConsumer;
+import chat4all.shared.kafka.RetryTopics;
+import chat4all.shared.tracing.TracingConfig;
 import chat4all.worker.cassandra.CassandraConnection;
 import chat4all.worker.cassandra.CassandraMessageStore;
+import chat4all.worker.cassandra.ConversationInbox;
+import chat4all.worker.cassandra.ConversationParticipants;
+import chat4all.worker.cassandra.UserChangeFeed;
 import chat4all.worker.http.MetricsServer;
 import chat4all.worker.kafka.KafkaMessageConsumer;
+import chat4all.worker.metrics.WorkerMetricsRegistry;
 import chat4all.worker.processing.MessageProcessor;
 import chat4all.worker.status.StatusUpdateConsumer;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Main - Router Worker Entry Point
  * 
@@ -94,6 +105,7 @@ public class Main {
         // Redis configuration for WebSocket notifications
         String redisHost = System.getenv().getOrDefault("REDIS_HOST", "redis");
         int redisPort = Integer.parseInt(System.getenv().getOrDefault("REDIS_PORT", "6379"));
+        String jaegerEndpoint = System.getenv().getOrDefault("JAEGER_ENDPOINT", "http://jaeger:14250");
         
         System.out.println("Configuration:");
         System.out.println("  Kafka: " + kafkaBootstrap);
@@ -103,6 +115,7 @@ public class Main {
         System.out.println("  Status Group: " + statusGroupId);
         System.out.println("  Metrics Port: " + metricsPort);
         System.out.println("  Redis: " + redisHost + ":" + redisPort);
+        System.out.println("  Jaeger: " + jaegerEndpoint);
         System.out.println("===========================================\n");
         
         // Initialize Metrics Server (Phase 3: Observability)
@@ -117,10 +130,18 @@ public class Main {
         }
         System.out.println();
         
+        // Initialize tracing before any consumer/producer grabs a Tracer
+        // (spans continue the API trace through the Kafka "traceparent" header)
+        TracingConfig.initialize("router-worker", jaegerEndpoint, WorkerMetricsRegistry.getInstance().getMeterRegistry());
+        System.out.println("✓ OpenTelemetry initialized - Jaeger: " + jaegerEndpoint + "\n");
+        
         // Initialize Cassandra connection
         System.out.println("▶ Initializing Cassandra...");
         CassandraConnection cassandraConnection = new CassandraConnection();
         CassandraMessageStore messageStore = new CassandraMessageStore(cassandraConnection.getSession());
+        ConversationParticipants participants = new ConversationParticipants(cassandraConnection.getSession());
+        UserChangeFeed changeFeed = new UserChangeFeed(cassandraConnection.getSession(), participants);
+        ConversationInbox inbox = new ConversationInbox(cassandraConnection.getSession(), participants);
         System.out.println();
         
         // Initialize connector router (Phase 5: external platform routing)
@@ -136,26 +157,54 @@ public class Main {
         
         // Initialize message processor
         System.out.println("▶ Initializing message processor...");
-        MessageProcessor messageProcessor = new MessageProcessor(messageStore, connectorRouter, notificationPublisher);
+        MessageProcessor messageProcessor = new MessageProcessor(messageStore, connectorRouter, notificationPublisher, changeFeed, inbox);
         System.out.println("✓ MessageProcessor initialized\n");
         
+        // Initialize retry/DLQ routing (failed messages leave the main partition)
+        System.out.println("▶ Initializing retry topics...");
+        RetryTopics retryTopics = RetryTopics.fromEnv(kafkaTopic);
+        RetryRouter retryRouter = new RetryRouter(kafkaBootstrap, retryTopics);
+        System.out.println();
+        
         // Initialize Kafka consumer
         System.out.println("▶ Initializing Kafka consumer...");
         KafkaMessageConsumer consumer = new KafkaMessageConsumer(
             kafkaBootstrap,
             kafkaTopic,
             kafkaGroupId,
-            messageProcessor
+            messageProcessor,
+            retryRouter
         );
         System.out.println();
         
+        // Retry tiers reprocess through the main consumer (same span/trace handling)
+        List<RetryTopicConsumer> retryConsumers = new ArrayList<>();
+        List<Thread> retryThreads = new ArrayList<>();
+        for (int tier = 0; tier < retryTopics.getTierCount(); tier++) {
+            RetryTopicConsumer retryConsumer = new RetryTopicConsumer(
+                kafkaBootstrap,
+                kafkaGroupId,
+                retryTopics,
+                tier,
+                consumer::process,
+                retryRouter
+            );
+            retryConsumers.add(retryConsumer);
+            retryThreads.add(new Thread(retryConsumer, "retry-consumer-" + retryConsumer.getTopic()));
+        }
+        System.out.println();
+        
         // Initialize Status Update Consumer (Phase 7: Status Lifecycle)
         System.out.println("▶ Initializing status update consumer...");
         StatusUpdateConsumer statusConsumer = new StatusUpdateConsumer(
             kafkaBootstrap,
             statusGroupId,
             statusTopic,
-            cassandraConnection
+            cassandraConnection,
+            changeFeed,
+            inbox,
+            participants,
+            notificationPublisher
         );
         System.out.println();
         
@@ -166,6 +215,9 @@ public class Main {
         statusConsumerThread.start();
         System.out.println("✓ Status consumer thread started\n");
         
+        retryThreads.forEach(Thread::start);
+        System.out.println("✓ " + retryThreads.size() + " retry consumer thread(s) started\n");
+        
         // Register shutdown hook for graceful cleanup
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("\n⊗ Shutdown signal received");
@@ -173,6 +225,16 @@ public class Main {
             metricsServer.stop();
             System.out.println("▶ Stopping message consumer...");
             consumer.stop();
+            System.out.println("▶ Stopping retry consumers...");
+            retryConsumers.forEach(RetryTopicConsumer::stop);
+            for (Thread retryThread : retryThreads) {
+                try {
+                    retryThread.join(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            retryRouter.close();
             System.out.println("▶ Stopping status consumer...");
             statusConsumer.shutdown();
             try {
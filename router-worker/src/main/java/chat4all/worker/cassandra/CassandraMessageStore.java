@@ -1,12 +1,15 @@
 package chat4all.worker.cassandra;
 
+import chat4all.shared.Logger;
+import chat4all.worker.store.GroupDirectory;
+import chat4all.worker.store.MessageStore;
+import chat4all.worker.store.StatusStore;
+import chat4all.worker.store.UserDirectory;
 import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
 import com.datastax.oss.driver.api.core.cql.Row;
 
-import java.time.Instant;
-
 /**
  * CassandraMessageStore - Persistência de mensagens no Cassandra
  * 
@@ -35,30 +38,38 @@ import java.time.Instant;
  * ```
  * 
  * OPERATIONS:
- * - saveMessage(): INSERT com status SENT
+ * - saveMessage(): aloca seq + INSERT com status SENT
  * - updateMessageStatus(): UPDATE status (SENT → DELIVERED)
- * - messageExists(): SELECT para deduplicação
+ * - findExisting(): SELECT para deduplicação (e retomada de retries)
+ * - getUsername()/getGroupName()/getGroupMembers(): metadados para notificações
+ * 
+ * Implementa as interfaces de chat4all.worker.store (MessageStore, StatusStore,
+ * UserDirectory, GroupDirectory); InMemoryMessageStore é a alternativa sem I/O.
  * 
  * SCHEMA REMINDER:
  * ```sql
  * CREATE TABLE messages (
  *     conversation_id text,
+ *     seq bigint,
  *     timestamp timestamp,
- *     message_id text PRIMARY KEY,
+ *     message_id text,
  *     sender_id text,
  *     content text,
- *     status text
+ *     status text,
+ *     PRIMARY KEY (conversation_id, seq)
  * );
  * ```
  * 
  * @author Chat4All Educational Project
  */
-public class CassandraMessageStore {
+public class CassandraMessageStore implements MessageStore, StatusStore, UserDirectory, GroupDirectory {
+    
+    private static final Logger log = new Logger("router-worker");
     
     private final CqlSession session;
+    private final ConversationSequenceAllocator sequenceAllocator;
     private final PreparedStatement insertStatement;
     private final PreparedStatement updateStatusStatement;
-    private final PreparedStatement checkExistsStatement;
     private final PreparedStatement getMessageStatement;
     private final PreparedStatement getUsernameStatement;
     private final PreparedStatement getGroupNameStatement;
@@ -76,29 +87,25 @@ public class CassandraMessageStore {
      */
     public CassandraMessageStore(CqlSession session) {
         this.session = session;
+        this.sequenceAllocator = ConversationSequenceAllocator.fromEnv(session);
         
         // Prepara INSERT statement (Phase 2: includes file_id and file_metadata)
         // EDUCATIONAL NOTE: ? são placeholders para parâmetros
         this.insertStatement = session.prepare(
-            "INSERT INTO messages (conversation_id, timestamp, message_id, sender_id, content, status, file_id, file_metadata) " +
-            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)"
+            "INSERT INTO messages (conversation_id, seq, timestamp, message_id, sender_id, content, status, file_id, file_metadata) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)"
         );
         
         // Prepara UPDATE statement
-        // NOTA: Precisamos de conversation_id e timestamp porque são a PRIMARY KEY
+        // NOTA: Precisamos de conversation_id e seq porque são a PRIMARY KEY
         // message_id não está na primary key, então fazemos um SELECT primeiro
         this.updateStatusStatement = session.prepare(
-            "UPDATE messages SET status = ? WHERE conversation_id = ? AND timestamp = ?"
+            "UPDATE messages SET status = ? WHERE conversation_id = ? AND seq = ?"
         );
         
-        // Prepara SELECT para buscar conversation_id e timestamp por message_id
+        // Prepara SELECT para deduplicação: seq e status de uma mensagem já gravada
         this.getMessageStatement = session.prepare(
-            "SELECT conversation_id, timestamp FROM messages WHERE message_id = ? LIMIT 1 ALLOW FILTERING"
-        );
-        
-        // Prepara SELECT para verificar existência (deduplicação)
-        this.checkExistsStatement = session.prepare(
-            "SELECT message_id FROM messages WHERE message_id = ? LIMIT 1 ALLOW FILTERING"
+            "SELECT seq, status FROM messages WHERE message_id = ? LIMIT 1 ALLOW FILTERING"
         );
 
         this.getUsernameStatement = session.prepare(
@@ -120,6 +127,8 @@ public class CassandraMessageStore {
      * Salva mensagem no Cassandra
      * 
      * FLUXO:
+     * 0. Aloca o próximo seq da conversação (ConversationSequenceAllocator),
+     *    a menos que o consumer já tenha atribuído um (retries reusam o seq)
      * 1. Bind parâmetros ao PreparedStatement
      * 2. Execute INSERT
      * 3. Cassandra distribui dado baseado em partition key (conversation_id)
@@ -146,11 +155,18 @@ public class CassandraMessageStore {
      * @param message MessageEntity a ser salva
      * @return true se salvou, false se erro
      */
+    @Override
     public boolean saveMessage(MessageEntity message) {
         try {
+            // Clustering key: sequência da conversação (não o timestamp do cliente)
+            if (message.getSeq() <= 0) {
+                message.setSeq(sequenceAllocator.next(message.getConversationId()));
+            }
+            
             // Bind parâmetros ao PreparedStatement (Phase 2: includes file fields)
             session.execute(insertStatement.bind(
                 message.getConversationId(),
+                message.getSeq(),
                 message.getTimestamp(),
                 message.getMessageId(),
                 message.getSenderId(),
@@ -160,18 +176,30 @@ public class CassandraMessageStore {
                 message.getFileMetadata()    // Phase 2: file metadata map
             ));
             
-            String fileInfo = message.getFileId() != null ? 
-                " [file: " + message.getFileId() + "]" : "";
-            System.out.println("✓ Saved message: " + message.getMessageId() + 
-                             " (conv: " + message.getConversationId() + ")" + fileInfo);
+            if (log.isDebugEnabled()) {
+                String fileInfo = message.getFileId() != null ? 
+                    " [file: " + message.getFileId() + "]" : "";
+                log.debug("✓ Saved message: {} (conv: {}, seq: {}){}",
+                    message.getMessageId(), message.getConversationId(), message.getSeq(), fileInfo);
+            }
             return true;
             
         } catch (Exception e) {
-            System.err.println("✗ Failed to save message " + message.getMessageId() + ": " + e.getMessage());
+            log.error("✗ Failed to save message {}: {}", message.getMessageId(), e.getMessage());
             return false;
         }
     }
     
+    /**
+     * Reserva o próximo seq da conversação (bloco local do ConversationSequenceAllocator)
+     * 
+     * @throws IllegalStateException se não conseguir reservar um bloco
+     */
+    @Override
+    public long nextSeq(String conversationId) {
+        return sequenceAllocator.next(conversationId);
+    }
+    
     /**
      * Atualiza status da mensagem
      * 
@@ -190,25 +218,26 @@ public class CassandraMessageStore {
      * 
      * EDUCATIONAL NOTE: PRIMARY KEY Requirement
      * - UPDATE no Cassandra requer TODA a primary key
-     * - Nossa PRIMARY KEY = (conversation_id, timestamp)
+     * - Nossa PRIMARY KEY = (conversation_id, seq)
      * - message_id tem índice secundário, mas não é primary key
-     * - Solução: Primeiro SELECT para buscar (conversation_id, timestamp)
+     * - Solução: Primeiro SELECT para buscar (conversation_id, seq)
      * 
      * @param messageId ID da mensagem
      * @param conversationId ID da conversação (parte da PK)
-     * @param timestamp Timestamp da mensagem (parte da PK)
+     * @param seq Número de sequência da mensagem (parte da PK)
      * @param newStatus Novo status (SENT, DELIVERED, READ)
      * @return true se atualizou, false se erro
      */
-    public boolean updateMessageStatus(String messageId, String conversationId, Instant timestamp, String newStatus) {
+    @Override
+    public boolean updateMessageStatus(String messageId, String conversationId, long seq, String newStatus) {
         try {
-            session.execute(updateStatusStatement.bind(newStatus, conversationId, timestamp));
+            session.execute(updateStatusStatement.bind(newStatus, conversationId, seq));
             
-            System.out.println("✓ Updated message " + messageId + " status to: " + newStatus);
+            log.debug("✓ Updated message {} status to: {}", messageId, newStatus);
             return true;
             
         } catch (Exception e) {
-            System.err.println("✗ Failed to update status for " + messageId + ": " + e.getMessage());
+            log.error("✗ Failed to update status for {}: {}", messageId, e.getMessage());
             return false;
         }
     }
@@ -232,40 +261,57 @@ public class CassandraMessageStore {
      * 3. CRASH antes de commitar offset
      * 4. Worker reinicia
      * 5. Kafka reenvia msg_123 (offset não commitado)
-     * 6. messageExists() retorna true → SKIP reprocessamento
+     * 6. findExisting() retorna true → SKIP reprocessamento
      * ```
      * 
+     * RETOMADA:
+     * - Se a falha foi DEPOIS do save (roteamento, notificação), o retry encontra
+     *   a mensagem ainda SENT; o seq e o status gravados voltam na entidade e o
+     *   MessageProcessor refaz só os passos seguintes, sem alocar outro seq
+     * 
      * PERFORMANCE:
      * - SELECT com LIMIT 1 (para assim que achar)
      * - message_id é PRIMARY KEY (índice, busca rápida)
      * 
-     * @param messageId ID da mensagem a verificar
+     * @param message Entidade com o message_id a verificar (recebe seq e status gravados)
      * @return true se existe, false se não existe
      */
-    public boolean messageExists(String messageId) {
+    @Override
+    public boolean findExisting(MessageEntity message) {
+        String messageId = message.getMessageId();
         try {
-            ResultSet rs = session.execute(checkExistsStatement.bind(messageId));
+            ResultSet rs = session.execute(getMessageStatement.bind(messageId));
             Row row = rs.one();
             
-            boolean exists = (row != null);
-            
-            if (exists) {
-                System.out.println("⚠ Message " + messageId + " already exists (duplicate)");
+            if (row == null) {
+                return false;
             }
             
-            return exists;
+            message.setSeq(row.getLong("seq"));
+            message.setStatus(row.getString("status"));
+            log.debug("⚠ Message {} already exists (seq {}, status {})", messageId, message.getSeq(), message.getStatus());
+            return true;
             
         } catch (Exception e) {
-            System.err.println("✗ Failed to check existence for " + messageId + ": " + e.getMessage());
+            log.error("✗ Failed to check existence for {}: {}", messageId, e.getMessage());
             // Em caso de erro, assumir que NÃO existe (fail open)
             // Melhor reprocessar do que perder mensagem
             return false;
         }
     }
 
+    /**
+     * Descarta os blocos de sequência reservados (partições revogadas no rebalance)
+     */
+    @Override
+    public void releaseSequenceBlocks() {
+        sequenceAllocator.invalidateAll();
+    }
+
     /**
      * Busca username a partir do user_id. Retorna null se não encontrar.
      */
+    @Override
     public String getUsername(String userId) {
         try {
             ResultSet rs = session.execute(getUsernameStatement.bind(userId));
@@ -274,7 +320,7 @@ public class CassandraMessageStore {
                 return row.getString("username");
             }
         } catch (Exception e) {
-            System.err.println("✗ Failed to fetch username for " + userId + ": " + e.getMessage());
+            log.error("✗ Failed to fetch username for {}: {}", userId, e.getMessage());
         }
         return null;
     }
@@ -282,6 +328,7 @@ public class CassandraMessageStore {
     /**
      * Busca o nome do grupo em group_conversations. Retorna null se não encontrar.
      */
+    @Override
     public String getGroupName(String groupId) {
         try {
             ResultSet rs = session.execute(getGroupNameStatement.bind(groupId));
@@ -290,7 +337,7 @@ public class CassandraMessageStore {
                 return row.getString("name");
             }
         } catch (Exception e) {
-            System.err.println("✗ Failed to fetch group name for " + groupId + ": " + e.getMessage());
+            log.error("✗ Failed to fetch group name for {}: {}", groupId, e.getMessage());
         }
         return null;
     }
@@ -298,6 +345,7 @@ public class CassandraMessageStore {
     /**
      * Busca os member_ids do grupo. Retorna null se não encontrar.
      */
+    @Override
     public java.util.List<String> getGroupMembers(String groupId) {
         try {
             ResultSet rs = session.execute(getGroupMembersStatement.bind(groupId));
@@ -306,7 +354,7 @@ public class CassandraMessageStore {
                 return row.getList("member_ids", String.class);
             }
         } catch (Exception e) {
-            System.err.println("✗ Failed to fetch group members for " + groupId + ": " + e.getMessage());
+            log.error("✗ Failed to fetch group members for {}: {}", groupId, e.getMessage());
         }
         return null;
     }
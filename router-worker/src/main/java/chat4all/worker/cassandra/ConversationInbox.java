@@ -0,0 +1,217 @@
+package chat4all.worker.cassandra;
+
+import chat4all.shared.Logger;
+import chat4all.worker.store.InboxStore;
+import chat4all.worker.store.ParticipantDirectory;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ConversationInbox - Mantém a caixa de entrada de cada usuário
+ *
+ * PROPÓSITO EDUCACIONAL: Materialized View mantida pela aplicação
+ * ==================
+ *
+ * PROBLEMA:
+ * - Para montar a lista de conversas, o cliente chamava getMessages para CADA
+ *   conversa (N consultas) e countMessages() nem existia (-1)
+ *
+ * SOLUÇÃO (duas tabelas, mesma chave):
+ * ```
+ * user_conversations        (user_id, conversation_id) → última mensagem
+ * user_conversation_unread  (user_id, conversation_id) → unread COUNTER
+ * ```
+ * - ListConversations = uma leitura de partição em cada tabela (user_id)
+ * - Cassandra não mistura COUNTER com colunas comuns na mesma tabela,
+ *   por isso o contador fica separado
+ *
+ * ÚLTIMA MENSAGEM SEM READ-BEFORE-WRITE:
+ * - UPDATE ... USING TIMESTAMP <timestamp da mensagem em micros>
+ * - Cassandra resolve conflitos por last-write-wins no timestamp da escrita:
+ *   uma mensagem antiga reprocessada (retry) NÃO sobrescreve a preview mais nova
+ *
+ * CONTADOR:
+ * - +1 para cada participante (exceto remetente) quando a mensagem é salva
+ * - Marca de leitura (read_watermarks) é a fonte da verdade: o contador DO LEITOR
+ *   passa a ser no máximo last_seq - read_seq (marca parcial também reduz)
+ * - -1 quando a mensagem vira READ, só em conversas diretas e só enquanto o
+ *   destinatário não tem marca de leitura. O status é por mensagem, sem o
+ *   leitor: numa direta o único destinatário é quem leu, mas depois da primeira
+ *   marca não dá para saber se a mensagem já estava coberta por ela (o -1
+ *   contaria a mesma leitura duas vezes). A partir daí só as marcas mexem.
+ *   Em grupos um READ não diz QUEM leu; cada membro depende da própria marca.
+ * - Counters não são idempotentes: um retry depois do increment conta duas vezes.
+ *   A API limita o valor exibido a >= 0.
+ */
+public class ConversationInbox implements InboxStore {
+
+    private static final Logger log = new Logger("router-worker");
+
+    // Preview curta: o suficiente para a lista de conversas
+    static final int PREVIEW_LENGTH = 100;
+
+    private final CqlSession session;
+    private final ParticipantDirectory participants;
+    private final PreparedStatement updateLastMessageStatement;
+    private final PreparedStatement incrementUnreadStatement;
+    private final PreparedStatement decrementUnreadStatement;
+    private final PreparedStatement getLastSeqStatement;
+    private final PreparedStatement getUnreadStatement;
+    private final PreparedStatement subtractUnreadStatement;
+    private final PreparedStatement getReadSeqStatement;
+
+    public ConversationInbox(CqlSession session, ParticipantDirectory participants) {
+        this.session = session;
+        this.participants = participants;
+
+        this.updateLastMessageStatement = session.prepare(
+            "UPDATE user_conversations USING TIMESTAMP ? " +
+            "SET last_message_id = ?, last_sender_id = ?, last_preview = ?, last_message_at = ?, last_seq = ? " +
+            "WHERE user_id = ? AND conversation_id = ?"
+        );
+        this.incrementUnreadStatement = session.prepare(
+            "UPDATE user_conversation_unread SET unread = unread + 1 WHERE user_id = ? AND conversation_id = ?"
+        );
+        this.decrementUnreadStatement = session.prepare(
+            "UPDATE user_conversation_unread SET unread = unread - 1 WHERE user_id = ? AND conversation_id = ?"
+        );
+        this.getLastSeqStatement = session.prepare(
+            "SELECT last_seq FROM user_conversations WHERE user_id = ? AND conversation_id = ?"
+        );
+        this.getUnreadStatement = session.prepare(
+            "SELECT unread FROM user_conversation_unread WHERE user_id = ? AND conversation_id = ?"
+        );
+        this.subtractUnreadStatement = session.prepare(
+            "UPDATE user_conversation_unread SET unread = unread - ? WHERE user_id = ? AND conversation_id = ?"
+        );
+        // Gravada pela API antes do evento; USING TIMESTAMP = read_seq → sempre a maior marca
+        this.getReadSeqStatement = session.prepare(
+            "SELECT read_seq FROM read_watermarks WHERE conversation_id = ? AND user_id = ?"
+        );
+
+        System.out.println("✓ ConversationInbox initialized");
+    }
+
+    /**
+     * Mensagem salva: atualiza a última mensagem de todos e o contador dos destinatários
+     */
+    @Override
+    public void recordMessage(MessageEntity message) {
+        String conversationId = message.getConversationId();
+        Set<String> users = new LinkedHashSet<>(participants.of(conversationId));
+        users.add(message.getSenderId());
+
+        Instant at = message.getTimestamp();
+        long writeTimestampMicros = TimeUnit.MILLISECONDS.toMicros(at.toEpochMilli());
+        String preview = preview(message.getContent());
+
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        for (String userId : users) {
+            if (userId == null || userId.isEmpty()) {
+                continue;
+            }
+            pending.add(session.executeAsync(updateLastMessageStatement.bind(
+                writeTimestampMicros, message.getMessageId(), message.getSenderId(), preview, at,
+                message.getSeq(), userId, conversationId
+            )).toCompletableFuture());
+            if (!userId.equals(message.getSenderId())) {
+                pending.add(session.executeAsync(
+                    incrementUnreadStatement.bind(userId, conversationId)).toCompletableFuture());
+            }
+        }
+        await(pending, message.getMessageId());
+    }
+
+    /**
+     * Mensagem virou READ: -1 no contador do destinatário (só conversas diretas
+     * e só enquanto ele não tem marca de leitura)
+     */
+    @Override
+    public void recordRead(String conversationId, String messageId, String senderId) {
+        if (!conversationId.startsWith("direct_")) {
+            return; // grupo: leitor desconhecido, fica para a marca de leitura de cada membro
+        }
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        for (String userId : participants.of(conversationId)) {
+            if (userId == null || userId.equals(senderId)) {
+                continue;
+            }
+            try {
+                if (readSeq(conversationId, userId) > 0) {
+                    continue; // a marca de leitura é dona do contador (recordReadWatermark)
+                }
+            } catch (Exception e) {
+                log.error("✗ Failed to read watermark of {}: {}", userId + " in " + conversationId, e.getMessage());
+                continue; // sem saber, não decrementa: a próxima marca corrige
+            }
+            pending.add(session.executeAsync(
+                decrementUnreadStatement.bind(userId, conversationId)).toCompletableFuture());
+        }
+        await(pending, messageId);
+    }
+
+    /**
+     * Marca de leitura: o contador do leitor passa a ser no máximo last_seq - read_seq
+     *
+     * - Usa a maior marca entre o evento e read_watermarks: um evento atrasado
+     *   (marca antiga) não devolve mensagens já lidas ao contador
+     * - Counter não tem SET: lê o valor atual e subtrai a diferença. Mensagens
+     *   que chegarem entre a leitura e a subtração continuam contadas.
+     * - Só reduz: se o contador já está abaixo (READs por mensagem antes da
+     *   primeira marca), essas leituras não são desfeitas
+     */
+    @Override
+    public void recordReadWatermark(String conversationId, String userId, long readSeq) {
+        try {
+            long effectiveReadSeq = Math.max(readSeq, readSeq(conversationId, userId));
+            Row last = session.execute(getLastSeqStatement.bind(userId, conversationId)).one();
+            long lastSeq = last != null && !last.isNull("last_seq") ? last.getLong("last_seq") : 0;
+            long target = Math.max(0, lastSeq - effectiveReadSeq);
+
+            Row row = session.execute(getUnreadStatement.bind(userId, conversationId)).one();
+            long unread = row != null ? row.getLong("unread") : 0;
+            if (unread > target) {
+                session.execute(subtractUnreadStatement.bind(unread - target, userId, conversationId));
+            }
+        } catch (Exception e) {
+            log.error("✗ Failed to update unread of {}: {}", userId + " in " + conversationId, e.getMessage());
+        }
+    }
+
+    /**
+     * Marca de leitura gravada pela API (0 se o usuário nunca marcou)
+     */
+    private long readSeq(String conversationId, String userId) {
+        Row row = session.execute(getReadSeqStatement.bind(conversationId, userId)).one();
+        return row != null && !row.isNull("read_seq") ? row.getLong("read_seq") : 0;
+    }
+
+    /**
+     * Inbox é derivada: falhas são logadas, não derrubam o processamento
+     */
+    private void await(List<CompletableFuture<?>> pending, String messageId) {
+        for (CompletableFuture<?> future : pending) {
+            try {
+                future.join();
+            } catch (Exception e) {
+                log.error("✗ Failed to update inbox for {}: {}", messageId, e.getMessage());
+            }
+        }
+    }
+
+    static String preview(String content) {
+        if (content == null) {
+            return "";
+        }
+        return content.length() > PREVIEW_LENGTH ? content.substring(0, PREVIEW_LENGTH) : content;
+    }
+}
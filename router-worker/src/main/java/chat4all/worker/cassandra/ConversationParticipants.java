@@ -0,0 +1,100 @@
+package chat4all.worker.cassandra;
+
+import chat4all.shared.Logger;
+import chat4all.worker.store.ParticipantDirectory;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ConversationParticipants - Quem participa de uma conversa
+ *
+ * - direct_user_<A>_user_<B> → [user_A, user_B] (extraído do ID, sem consulta)
+ * - group_* → group_conversations.member_ids
+ * - outros → conversations.participant_ids
+ *
+ * CACHE: grupos e conversas consultados ficam PARTICIPANTS_CACHE_MS (padrão 30s)
+ * em memória. Cada mensagem de grupo precisa dos membros várias vezes (feed de
+ * sync, inbox, status); sem cache seriam várias leituras por mensagem.
+ * Trade-off: um membro novo pode levar até 30s para começar a receber.
+ */
+public class ConversationParticipants implements ParticipantDirectory {
+
+    private static final Logger log = new Logger("router-worker");
+
+    private static final int MAX_CACHED_CONVERSATIONS = 10_000;
+
+    private static final class Entry {
+        final List<String> users;
+        final long expiresAt;
+
+        Entry(List<String> users, long expiresAt) {
+            this.users = users;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final CqlSession session;
+    private final PreparedStatement groupMembersStatement;
+    private final PreparedStatement participantsStatement;
+    private final long cacheMs;
+    private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+
+    public ConversationParticipants(CqlSession session) {
+        this.session = session;
+        this.cacheMs = Long.parseLong(System.getenv().getOrDefault("PARTICIPANTS_CACHE_MS", "30000"));
+        this.groupMembersStatement = session.prepare(
+            "SELECT member_ids FROM group_conversations WHERE group_id = ? LIMIT 1"
+        );
+        this.participantsStatement = session.prepare(
+            "SELECT participant_ids FROM conversations WHERE conversation_id = ?"
+        );
+    }
+
+    /**
+     * Participantes da conversa (lista vazia se não encontrar)
+     */
+    @Override
+    public List<String> of(String conversationId) {
+        if (conversationId.startsWith("direct_")) {
+            return ParticipantDirectory.directParticipants(conversationId);
+        }
+
+        long now = System.currentTimeMillis();
+        Entry entry = cache.get(conversationId);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.users;
+        }
+
+        List<String> users = load(conversationId);
+        if (!users.isEmpty()) {
+            if (cache.size() >= MAX_CACHED_CONVERSATIONS) {
+                cache.clear();
+            }
+            cache.put(conversationId, new Entry(users, now + cacheMs));
+        }
+        return users;
+    }
+
+    private List<String> load(String conversationId) {
+        try {
+            if (conversationId.startsWith("group_")) {
+                Row row = session.execute(groupMembersStatement.bind(conversationId)).one();
+                if (row != null && !row.isNull("member_ids")) {
+                    return Collections.unmodifiableList(row.getList("member_ids", String.class));
+                }
+            }
+            Row row = session.execute(participantsStatement.bind(conversationId)).one();
+            if (row != null && !row.isNull("participant_ids")) {
+                return Collections.unmodifiableList(row.getList("participant_ids", String.class));
+            }
+        } catch (Exception e) {
+            log.error("✗ Failed to resolve participants of {}: {}", conversationId, e.getMessage());
+        }
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,166 @@
+package chat4all.worker.cassandra;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ConversationSequenceAllocator - Números de sequência por conversação
+ *
+ * PROPÓSITO EDUCACIONAL: Block Allocation + Lightweight Transactions
+ * ==================
+ *
+ * POR QUE NÃO TIMESTAMP?
+ * - Dois workers (ou relógios diferentes) podem gerar o mesmo milissegundo
+ *   → mesma PRIMARY KEY → uma mensagem sobrescreve a outra
+ * - Relógio que volta (NTP) bagunça a ordem da conversa
+ * - Cliente não consegue pedir "tudo depois da mensagem N" sem ambiguidade
+ *
+ * COMO FUNCIONA (blocos reservados com LWT):
+ * ```
+ * conversation_sequences: conv_123 → next_seq = 201
+ *
+ * Worker reserva [201, 301) com:
+ *   UPDATE conversation_sequences SET next_seq = 301
+ *   WHERE conversation_id = 'conv_123' IF next_seq = 201
+ *
+ * Próximas 100 mensagens: seq = 201, 202, ... sem ir ao Cassandra
+ * ```
+ * - Uma LWT (Paxos, ~4 round trips) a cada SEQ_BLOCK_SIZE mensagens, não a cada uma
+ * - Dois workers nunca recebem o mesmo bloco (IF next_seq = ? falha para um deles)
+ *
+ * MONOTONICIDADE:
+ * - O tópico messages é particionado por conversation_id: só o dono da partição
+ *   aloca para a conversa, então a sequência cresce na ordem do log do Kafka
+ * - No rebalance o bloco local é descartado (invalidateAll): o novo dono
+ *   reserva um bloco NOVO, sempre acima de qualquer número já entregue
+ * - Blocos descartados deixam buracos: seq é crescente, não contínuo
+ *
+ * RETRIES:
+ * - As camadas de retry podem cair em outro worker. Por isso o seq é reservado
+ *   pelo dono da partição antes da primeira tentativa e viaja no header
+ *   x-conversation-seq (KafkaMessageConsumer); o retry reusa o número e não
+ *   chama next() fora de ordem
+ *
+ * @author Chat4All Educational Project
+ */
+public class ConversationSequenceAllocator {
+
+    // Tentativas de CAS antes de desistir (contenção real só existe em rebalance)
+    private static final int MAX_CAS_ATTEMPTS = 10;
+
+    // Limite de conversas com bloco em memória (evita crescer sem fim)
+    private static final int MAX_CACHED_CONVERSATIONS = 100_000;
+
+    /**
+     * Bloco reservado: próximos números livres são [next, end)
+     */
+    private static final class Range {
+        long next;
+        long end;
+    }
+
+    private final CqlSession session;
+    private final int blockSize;
+    private final PreparedStatement selectStatement;
+    private final PreparedStatement insertStatement;
+    private final PreparedStatement casStatement;
+    private final ConcurrentHashMap<String, Range> ranges = new ConcurrentHashMap<>();
+    private final AtomicLong blocksReserved = new AtomicLong();
+
+    public ConversationSequenceAllocator(CqlSession session, int blockSize) {
+        this.session = session;
+        this.blockSize = Math.max(1, blockSize);
+
+        this.selectStatement = session.prepare(
+            "SELECT next_seq FROM conversation_sequences WHERE conversation_id = ?"
+        );
+        this.insertStatement = session.prepare(
+            "INSERT INTO conversation_sequences (conversation_id, next_seq) VALUES (?, ?) IF NOT EXISTS"
+        );
+        this.casStatement = session.prepare(
+            "UPDATE conversation_sequences SET next_seq = ? WHERE conversation_id = ? IF next_seq = ?"
+        );
+
+        System.out.println("✓ ConversationSequenceAllocator initialized (block size: " + this.blockSize + ")");
+    }
+
+    /**
+     * Cria o allocator lendo SEQ_BLOCK_SIZE do ambiente (padrão: 100)
+     */
+    public static ConversationSequenceAllocator fromEnv(CqlSession session) {
+        int blockSize = Integer.parseInt(System.getenv().getOrDefault("SEQ_BLOCK_SIZE", "100"));
+        return new ConversationSequenceAllocator(session, blockSize);
+    }
+
+    /**
+     * Próximo número de sequência da conversa (começa em 1)
+     *
+     * @throws IllegalStateException se não conseguir reservar um bloco
+     */
+    public long next(String conversationId) {
+        if (ranges.size() > MAX_CACHED_CONVERSATIONS) {
+            ranges.clear(); // só custa uma LWT extra na próxima mensagem de cada conversa
+        }
+        Range range = ranges.computeIfAbsent(conversationId, id -> new Range());
+        synchronized (range) {
+            if (range.next >= range.end) {
+                reserve(conversationId, range);
+            }
+            return range.next++;
+        }
+    }
+
+    /**
+     * Reserva o próximo bloco no Cassandra (compare-and-set em next_seq)
+     */
+    private void reserve(String conversationId, Range range) {
+        Row row = session.execute(selectStatement.bind(conversationId)).one();
+
+        for (int attempt = 0; attempt < MAX_CAS_ATTEMPTS; attempt++) {
+            ResultSet rs;
+            long start;
+            if (row == null) {
+                start = 1;
+                rs = session.execute(insertStatement.bind(conversationId, start + blockSize));
+            } else {
+                start = row.getLong("next_seq");
+                rs = session.execute(casStatement.bind(start + blockSize, conversationId, start));
+            }
+
+            if (rs.wasApplied()) {
+                range.next = start;
+                range.end = start + blockSize;
+                blocksReserved.incrementAndGet();
+                return;
+            }
+
+            // Outro worker ganhou: a LWT não aplicada já devolve o valor atual
+            row = rs.one();
+            if (row != null && row.isNull("next_seq")) {
+                row = null; // linha apagada entre as tentativas
+            }
+        }
+
+        throw new IllegalStateException("Could not reserve sequence block for " + conversationId
+            + " after " + MAX_CAS_ATTEMPTS + " attempts");
+    }
+
+    /**
+     * Descarta todos os blocos locais
+     *
+     * Chamado quando partições são revogadas: outro worker passa a alocar para
+     * essas conversas e números antigos deste bloco ficariam fora de ordem.
+     */
+    public void invalidateAll() {
+        ranges.clear();
+    }
+
+    public long getBlocksReserved() {
+        return blocksReserved.get();
+    }
+}
@@ -13,24 +13,27 @@ import java.util.UUID;
  * ```sql
  * CREATE TABLE messages (
  *     conversation_id text,
+ *     seq bigint,
  *     timestamp timestamp,
- *     message_id text PRIMARY KEY,
+ *     message_id text,
  *     sender_id text,
  *     content text,
- *     status text
+ *     status text,
+ *     PRIMARY KEY (conversation_id, seq)
  * );
  * ```
  * 
  * PARTITION KEY vs CLUSTERING KEY:
  * - Partition Key (conversation_id): Distribui dados entre nós
- * - Clustering Key (timestamp): Ordena dados DENTRO da partição
+ * - Clustering Key (seq): Ordena dados DENTRO da partição
+ *   (seq vem do ConversationSequenceAllocator no momento do saveMessage)
  * 
  * EXEMPLO: 3 mensagens na conversação "conv_abc"
  * ```
  * Nó 1 (partition: conv_abc)
- *   ├─ timestamp: 2024-01-01T10:00:00 → msg_001 (SENT)
- *   ├─ timestamp: 2024-01-01T10:01:00 → msg_002 (DELIVERED)
- *   └─ timestamp: 2024-01-01T10:02:00 → msg_003 (SENT)
+ *   ├─ seq: 1 → msg_001 (SENT)
+ *   ├─ seq: 2 → msg_002 (DELIVERED)
+ *   └─ seq: 3 → msg_003 (SENT)
  * ```
  * 
  * POR QUE ESSA ESTRUTURA?
@@ -53,6 +56,7 @@ public class MessageEntity {
     private final String senderId;
     private final String content;
     private String status;
+    private long seq; // Atribuído pelo CassandraMessageStore ao salvar (0 = ainda não salvo)
     private final String fileId; // Phase 2: File attachment support
     private final java.util.Map<String, String> fileMetadata; // Phase 2: File metadata
     
@@ -60,7 +64,7 @@ public class MessageEntity {
      * Construtor completo
      * 
      * @param conversationId ID da conversação (partition key)
-     * @param timestamp Momento de criação (clustering key)
+     * @param timestamp Momento de criação
      * @param messageId ID único da mensagem (primary key adicional)
      * @param senderId Quem enviou
      * @param content Texto da mensagem (max 10KB na validação da API)
@@ -146,10 +150,22 @@ public class MessageEntity {
         this.status = status;
     }
     
+    public long getSeq() {
+        return seq;
+    }
+    
+    /**
+     * Define o número de sequência (clustering key) - usado pelo CassandraMessageStore
+     */
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+    
     @Override
     public String toString() {
         return "MessageEntity{" +
                 "conversationId='" + conversationId + '\'' +
+                ", seq=" + seq +
                 ", timestamp=" + timestamp +
                 ", messageId='" + messageId + '\'' +
                 ", senderId='" + senderId + '\'' +
@@ -0,0 +1,149 @@
+package chat4all.worker.cassandra;
+
+import chat4all.shared.Logger;
+import chat4all.worker.store.ChangeFeedStore;
+import chat4all.worker.store.ParticipantDirectory;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UserChangeFeed - Feed de mudanças por usuário (tabela user_changes)
+ *
+ * PROPÓSITO EDUCACIONAL: Fan-out on Write para sync incremental
+ * ==================
+ *
+ * PROBLEMA:
+ * - Cliente fazia polling de GET /messages?conversationId=X para CADA conversa
+ * - Cada polling relia páginas que o cliente já tinha
+ *
+ * SOLUÇÃO:
+ * - Cada mudança relevante para um usuário vira UMA linha na partição dele:
+ * ```
+ * user_changes (user_id = 'user_a')
+ *   ├─ change_id: t1 → MESSAGE msg_001 (conv_x, seq 41)
+ *   ├─ change_id: t2 → STATUS  msg_001 DELIVERED
+ *   ├─ change_id: t3 → MESSAGE msg_002 (conv_y, seq 7)
+ *   └─ change_id: t4 → READ_WATERMARK conv_x até seq 41 (actor: user_b)
+ * ```
+ * - Sync = "WHERE user_id = ? AND change_id > cursor": uma partição, só o delta
+ *
+ * QUEM RECEBE A MUDANÇA:
+ * - Participantes da conversa (ConversationParticipants)
+ * - O remetente também (outros dispositivos dele precisam da mensagem)
+ *
+ * CONSISTÊNCIA: o feed é derivado. Se a escrita falhar, a mensagem já está em
+ * messages e o cliente recupera via GetMessages(after_seq); por isso falhas aqui
+ * são logadas, não propagadas.
+ *
+ * EDUCATIONAL NOTE: change_id é um TIMEUUID gerado no worker. Relógios de workers
+ * diferentes não são idênticos, então a API só entrega mudanças mais velhas que
+ * alguns segundos (SYNC_SETTLE_MS) - senão um cursor poderia "pular" uma escrita
+ * atrasada de outro worker.
+ *
+ * @author Chat4All Educational Project
+ */
+public class UserChangeFeed implements ChangeFeedStore {
+
+    private static final Logger log = new Logger("router-worker");
+
+    private final CqlSession session;
+    private final PreparedStatement insertStatement;
+    private final ParticipantDirectory participants;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public UserChangeFeed(CqlSession session, ParticipantDirectory participants) {
+        this.session = session;
+        this.participants = participants;
+
+        // TTL vem do default_time_to_live da tabela (retenção do feed)
+        this.insertStatement = session.prepare(
+            "INSERT INTO user_changes (user_id, change_id, change_type, conversation_id, message_id, seq, " +
+            "sender_id, content, status, file_id, actor_id, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+        );
+
+        System.out.println("✓ UserChangeFeed initialized");
+    }
+
+    /**
+     * Registra uma mensagem nova para todos os participantes (e o remetente)
+     */
+    @Override
+    public void recordMessage(MessageEntity message) {
+        Set<String> users = new LinkedHashSet<>(participants.of(message.getConversationId()));
+        users.add(message.getSenderId());
+
+        write(users, TYPE_MESSAGE, message.getConversationId(), message.getMessageId(), message.getSeq(),
+            message.getSenderId(), message.getContent(), message.getStatus(), message.getFileId(),
+            null, message.getTimestamp());
+    }
+
+    /**
+     * Registra uma transição de status (DELIVERED/READ) para os participantes
+     */
+    @Override
+    public void recordStatus(String conversationId, String messageId, long seq, String status, long timestampMillis) {
+        write(participants.of(conversationId), TYPE_STATUS, conversationId, messageId, seq,
+            null, null, status, null, null, Instant.ofEpochMilli(timestampMillis));
+    }
+
+    /**
+     * Registra que userId leu a conversa até readSeq (uma linha por participante)
+     */
+    @Override
+    public void recordReadWatermark(String conversationId, String userId, long readSeq, long timestampMillis) {
+        Set<String> users = new LinkedHashSet<>(participants.of(conversationId));
+        users.add(userId);
+        write(users, TYPE_READ_WATERMARK, conversationId, null, readSeq,
+            null, null, "READ", null, userId, Instant.ofEpochMilli(timestampMillis));
+    }
+
+    /**
+     * Uma linha por usuário, em paralelo (partições diferentes: nada de BATCH)
+     */
+    private void write(Iterable<String> users, String type, String conversationId, String messageId, long seq,
+                       String senderId, String content, String status, String fileId, String actorId,
+                       Instant timestamp) {
+        UUID changeId = Uuids.timeBased();
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        for (String userId : users) {
+            if (userId == null || userId.isEmpty()) {
+                continue;
+            }
+            pending.add(session.executeAsync(insertStatement.bind(
+                userId, changeId, type, conversationId, messageId, seq,
+                senderId, content, status, fileId, actorId, timestamp
+            )).toCompletableFuture());
+        }
+
+        int failures = 0;
+        for (CompletableFuture<?> future : pending) {
+            try {
+                future.join();
+            } catch (Exception e) {
+                failures++;
+                log.error("✗ Failed to write {} change: {}", type + " " + messageId, e.getMessage());
+            }
+        }
+        written.addAndGet(pending.size() - failures);
+        failed.addAndGet(failures);
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+}
@@ -1,16 +1,38 @@
 package chat4all.worker.kafka;
 
+import chat4all.shared.Logger;
 import chat4all.shared.MessageEvent;
+import chat4all.shared.kafka.ConsumerLagMonitor;
+import chat4all.shared.kafka.KafkaTraceHeaders;
+import chat4all.shared.kafka.RetryRouter;
+import chat4all.shared.metrics.MessageLatencyMetrics;
+import chat4all.shared.tracing.TracingUtils;
+import chat4all.worker.metrics.WorkerMetricsRegistry;
 import chat4all.worker.processing.MessageProcessor;
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
 import org.apache.kafka.common.serialization.StringDeserializer;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * KafkaMessageConsumer - Consumidor Kafka para tópico "messages"
@@ -46,13 +68,43 @@ import java.util.Properties;
  * - Trade-off: pode processar 2x se crashar antes de commitar
  * - Solução: Idempotência (message_id deduplication)
  * 
+ * FALHAS (retry não bloqueante):
+ * - Mensagem com erro vai para messages-retry-5s → messages-retry-1m → messages-dlq
+ *   (RetryRouter), e o lote segue normalmente
+ * - Se nem o produce para o retry funcionar, a partição é rebobinada (seek) até
+ *   o registro e nada a partir dele é commitado; o worker continua vivo
+ * - Antes: a exceção saía do loop e o worker inteiro parava na mensagem venenosa
+ * 
+ * SEQ DA CONVERSA:
+ * - No tópico principal (particionado por conversation_id) o seq é reservado
+ *   antes da primeira tentativa e gravado no header x-conversation-seq
+ * - O RetryRouter copia o header: a camada de retry, em qualquer worker, reusa
+ *   o mesmo seq em vez de alocar um bloco novo fora de ordem
+ * 
+ * TRACING:
+ * - Cada registro é processado num span CONSUMER filho do span da API (header traceparent)
+ * - Com o span atual, ConnectorRouter e a notificação Redis levam o mesmo trace adiante
+ * 
  * @author Chat4All Educational Project
  */
 public class KafkaMessageConsumer {
     
+    private static final Logger log = new Logger("router-worker");
+    
+    // Espera antes de reprocessar uma partição rebobinada (retry/DLQ indisponível)
+    private static final long ROUTE_FAILURE_BACKOFF_MS =
+        Long.parseLong(System.getenv().getOrDefault("RETRY_ROUTE_BACKOFF_MS", "1000"));
+    
+    /** Seq da conversa atribuído pelo dono da partição (sobrevive às camadas de retry) */
+    public static final String HEADER_SEQ = "x-conversation-seq";
+    
     private final KafkaConsumer<String, String> consumer;
     private final MessageProcessor processor;
+    private final RetryRouter retryRouter;
     private final String topic;
+    private final MessageLatencyMetrics latencyMetrics = WorkerMetricsRegistry.getInstance().getLatencyMetrics();
+    private final ConsumerLagMonitor lagMonitor;
+    private final Tracer tracer = GlobalOpenTelemetry.getTracer("chat4all.worker");
     private volatile boolean running = true;
     
     /**
@@ -85,10 +137,13 @@ public class KafkaMessageConsumer {
      * @param topic Tópico a consumir (e.g., "messages")
      * @param groupId Consumer group ID
      * @param processor Processador de mensagens
+     * @param retryRouter Destino das mensagens com falha (camadas de retry / DLQ)
      */
-    public KafkaMessageConsumer(String bootstrapServers, String topic, String groupId, MessageProcessor processor) {
+    public KafkaMessageConsumer(String bootstrapServers, String topic, String groupId, MessageProcessor processor,
+                                RetryRouter retryRouter) {
         this.topic = topic;
         this.processor = processor;
+        this.retryRouter = retryRouter;
         
         // Configuração do consumer
         Properties props = new Properties();
@@ -111,6 +166,11 @@ public class KafkaMessageConsumer {
         
         this.consumer = new KafkaConsumer<>(props);
         
+        // Lag por partição calculado fora da thread de poll; o total alimenta kafka_consumer_lag (health)
+        WorkerMetricsRegistry metrics = WorkerMetricsRegistry.getInstance();
+        this.lagMonitor = ConsumerLagMonitor.fromEnv(bootstrapServers, groupId, metrics.getMeterRegistry());
+        lagMonitor.setTotalLagListener(metrics::updateConsumerLag);
+        
         System.out.println("✓ KafkaMessageConsumer created:");
         System.out.println("  Bootstrap servers: " + bootstrapServers);
         System.out.println("  Topic: " + topic);
@@ -129,8 +189,9 @@ public class KafkaMessageConsumer {
      *       - Deserializar JSON → MessageEvent
      *       - Chamar processor.process()
      *       - Se sucesso: continuar
-     *       - Se erro: throw exception (não commita)
-     *   [3] commitSync() → confirma processamento ao Kafka
+     *       - Se erro: RetryRouter → próxima camada de retry (ou DLQ)
+     *       - Se nem o roteamento funcionar: seek de volta ao registro (não commita)
+     *   [3] commitSync(offsets) → confirma só o que foi processado ou roteado
      * }
      * ```
      * 
@@ -152,7 +213,21 @@ public class KafkaMessageConsumer {
     public void startConsuming() {
         try {
             // Subscribe ao tópico
-            consumer.subscribe(Collections.singletonList(topic));
+            // Rebalance: blocos de seq das conversas revogadas não valem mais
+            consumer.subscribe(Collections.singletonList(topic), new ConsumerRebalanceListener() {
+                @Override
+                public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                    if (!partitions.isEmpty()) {
+                        processor.onPartitionsRevoked();
+                        System.out.println("↺ Partitions revoked " + partitions + " - sequence blocks released");
+                    }
+                }
+                
+                @Override
+                public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                    // Blocos novos são reservados sob demanda
+                }
+            });
             System.out.println("✓ Subscribed to topic: " + topic);
             System.out.println("▶ Starting consumer loop...\n");
             
@@ -160,48 +235,66 @@ public class KafkaMessageConsumer {
             while (running) {
                 // [1] POLL - Busca mensagens do Kafka (timeout: 1 segundo)
                 ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(1));
+                lagMonitor.recordPoll(consumer, records);
                 
                 if (records.isEmpty()) {
                     // Sem mensagens novas, continuar aguardando
                     continue;
                 }
                 
-                System.out.println("▼ Polled " + records.count() + " messages");
+                log.debug("▼ Polled {} messages", records.count());
                 
                 // [2] PROCESS - Processar cada mensagem
+                // Offsets concluídos por partição; partições rebobinadas param no registro que falhou
+                Map<TopicPartition, OffsetAndMetadata> completed = new HashMap<>();
+                Set<TopicPartition> rewound = new HashSet<>();
                 for (ConsumerRecord<String, String> record : records) {
+                    TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+                    if (rewound.contains(partition)) {
+                        continue; // posteriores ao registro rebobinado voltam no próximo poll
+                    }
                     try {
                         // Log da mensagem recebida
-                        System.out.println("\n─────────────────────────────────");
-                        System.out.println("Partition: " + record.partition() + 
-                                         " | Offset: " + record.offset() +
-                                         " | Key: " + record.key());
+                        log.debug("Partition: {} | Offset: {} | Key: {}",
+                            record.partition(), record.offset(), record.key());
                         
-                        // Deserializar JSON → MessageEvent
-                        MessageEvent event = MessageEvent.fromJson(record.value());
+                        // Kafka → worker: CreateTime do record (definido pelo producer da API) até o poll
+                        latencyMetrics.recordSince(MessageLatencyMetrics.Stage.KAFKA_TO_WORKER, record.timestamp());
                         
-                        // Processar mensagem
-                        processor.process(event);
+                        process(record);
                         
                     } catch (Exception e) {
-                        // Erro no processamento: log e RE-THROW
-                        System.err.println("✗ Error processing record at offset " + record.offset());
-                        e.printStackTrace();
+                        // Erro no processamento: tirar do caminho e seguir com o lote
+                        log.error("✗ Error processing record at offset {}: {}", record.offset(), e.getMessage());
                         
-                        // Re-throw para não commitar offset (Kafka reenviará)
-                        throw new RuntimeException("Processing failed", e);
+                        if (!routeToRetry(record, e)) {
+                            // Nem o retry aceitou: volta a partição para este registro e
+                            // não commita nada a partir dele (o próximo poll tenta de novo)
+                            consumer.seek(partition, record.offset());
+                            rewound.add(partition);
+                            continue;
+                        }
                     }
+                    completed.put(partition, new OffsetAndMetadata(record.offset() + 1));
                 }
                 
                 // [3] COMMIT - Confirmar processamento ao Kafka
-                // CRÍTICO: Só chega aqui se TODAS as mensagens do batch processaram
-                try {
-                    consumer.commitSync();
-                    System.out.println("\n✓ Committed offsets for " + records.count() + " messages\n");
-                    
-                } catch (Exception e) {
-                    System.err.println("✗ Failed to commit offsets: " + e.getMessage());
-                    // Se commit falhar, Kafka reenviará mensagens (dedup protege)
+                // CRÍTICO: só os offsets processados ou gravados em um tópico de retry;
+                // uma partição rebobinada commita até o registro anterior ao que falhou
+                if (!completed.isEmpty()) {
+                    try {
+                        consumer.commitSync(completed);
+                        log.debug("✓ Committed offsets {}", completed.values());
+                        
+                    } catch (Exception e) {
+                        log.error("✗ Failed to commit offsets: {}", e.getMessage());
+                        // Se commit falhar, Kafka reenviará mensagens (dedup protege)
+                    }
+                }
+                
+                if (!rewound.isEmpty()) {
+                    // Tópico de retry indisponível: espera antes de reprocessar
+                    Thread.sleep(ROUTE_FAILURE_BACKOFF_MS);
                 }
             }
             
@@ -215,6 +308,77 @@ public class KafkaMessageConsumer {
         }
     }
     
+    /**
+     * Envia o registro com falha para a próxima camada de retry (ou DLQ)
+     * 
+     * @return false se o produce falhou: o chamador rebobina a partição e não
+     *         commita o offset (o registro é reprocessado, dedup/retomada protegem)
+     */
+    private boolean routeToRetry(ConsumerRecord<String, String> record, Exception error) {
+        try {
+            retryRouter.route(record, error);
+            return true;
+        } catch (Exception routeError) {
+            log.error("✗ Could not route {} to retry, rewinding: {}",
+                record.topic() + "-" + record.partition() + "@" + record.offset(), routeError.getMessage());
+            return false;
+        } finally {
+            Logger.clearContext(); // contexto do registro roteado não vaza para o loop
+        }
+    }
+    
+    /**
+     * Processa um registro (tópico principal ou camada de retry) dentro do seu span
+     * 
+     * O span é filho do contexto gravado pelo producer; os headers copiados pelo
+     * RetryRouter mantêm as novas tentativas no mesmo trace.
+     * 
+     * @param record Registro com um MessageEvent em JSON
+     * @throws Exception falha de parse ou de processamento (o chamador roteia para retry)
+     */
+    public void process(ConsumerRecord<String, String> record) throws Exception {
+        Span span = KafkaTraceHeaders.startConsumerSpan(tracer, record);
+        try (Scope scope = span.makeCurrent()) {
+            TracingUtils.setLogTraceId(span);
+            
+            // Deserializar JSON → MessageEvent
+            MessageEvent event = MessageEvent.fromJson(record.value());
+            span.setAttribute("message_id", event.getMessageId());
+            
+            // Processar mensagem com o seq fixado na primeira tentativa
+            processor.process(event, assignSeq(record, event));
+        } catch (Exception e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+    
+    /**
+     * Seq da mensagem: o do header (retry) ou um novo, reservado agora e gravado
+     * no header para o RetryRouter levar adiante se esta tentativa falhar
+     * 
+     * Registros antigos de retry sem o header caem no caso "novo" (comportamento
+     * anterior: seq alocado pelo worker que faz o retry).
+     */
+    private long assignSeq(ConsumerRecord<String, String> record, MessageEvent event) {
+        Header header = record.headers().lastHeader(HEADER_SEQ);
+        if (header != null && header.value() != null) {
+            String value = new String(header.value(), StandardCharsets.UTF_8);
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                log.warn("⚠ Ignoring invalid {} header: {}", HEADER_SEQ, value);
+            }
+        }
+        long seq = processor.reserveSeq(event.getConversationId());
+        record.headers().remove(HEADER_SEQ);
+        record.headers().add(HEADER_SEQ, String.valueOf(seq).getBytes(StandardCharsets.UTF_8));
+        return seq;
+    }
+    
     /**
      * Para o consumer gracefully
      * 
@@ -233,6 +397,7 @@ public class KafkaMessageConsumer {
      * Fecha consumer e libera recursos
      */
     public void close() {
+        lagMonitor.close();
         if (consumer != null) {
             try {
                 consumer.close(Duration.ofSeconds(10));
@@ -1,5 +1,6 @@
 package chat4all.worker.metrics;
 
+import chat4all.shared.metrics.MessageLatencyMetrics;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -24,9 +25,11 @@ import java.util.concurrent.atomic.AtomicLong;
  * - messages_consumed_total{topic, partition} - Total consumed from Kafka
  * - messages_processed_total{status} - Messages processed (SENT, DELIVERED, FAILED)
  * - messages_failed_total{reason} - Processing failures
- * - kafka_consumer_lag{topic, partition} - Consumer lag
+ * - kafka_consumer_lag - Total consumer lag of the messages consumer
+ * - kafka_consumer_lag_by_partition / _by_topic, kafka_consumer_consumption_rate - see ConsumerLagMonitor
  * - processing_duration_seconds - Message processing time
  * - cassandra_write_duration_seconds - Cassandra write latency
+ * - message_stage_latency_seconds{stage} - kafka_to_worker, worker_to_cassandra, worker_to_redis
  * 
  * EDUCATIONAL NOTES:
  * - Consumer lag: Critical metric for scalability validation
@@ -52,6 +55,9 @@ public class WorkerMetricsRegistry {
     // Cassandra metrics
     private final Timer cassandraWriteDuration;
     
+    // Latência por etapa do caminho da mensagem (histogramas)
+    private final MessageLatencyMetrics latencyMetrics;
+    
     /**
      * Private constructor (Singleton pattern)
      */
@@ -99,6 +105,8 @@ public class WorkerMetricsRegistry {
                 .description("Cassandra write latency")
                 .tag("service", "router-worker")
                 .register(prometheusRegistry);
+        
+        this.latencyMetrics = new MessageLatencyMetrics(prometheusRegistry, "router-worker");
     }
     
     /**
@@ -131,6 +139,15 @@ public class WorkerMetricsRegistry {
         return prometheusRegistry;
     }
     
+    /**
+     * Stage latency histograms (shared names with API and gateway)
+     * 
+     * @return MessageLatencyMetrics
+     */
+    public MessageLatencyMetrics getLatencyMetrics() {
+        return latencyMetrics;
+    }
+    
     /**
      * Record message consumed from Kafka
      * 
@@ -198,7 +215,9 @@ public class WorkerMetricsRegistry {
     }
     
     /**
-     * Update consumer lag metric
+     * Update consumer lag metric (total of the messages consumer, fed by ConsumerLagMonitor)
+     * 
+     * Per-topic/per-partition gauges are registered by ConsumerLagMonitor itself.
      * 
      * @param lag Current lag (messages behind)
      */
@@ -206,21 +225,6 @@ public class WorkerMetricsRegistry {
         kafkaConsumerLag.set(lag);
     }
     
-    /**
-     * Record consumer lag by partition
-     * 
-     * @param topic Kafka topic
-     * @param partition Partition number
-     * @param lag Lag for this partition
-     */
-    public void recordConsumerLagByPartition(String topic, int partition, long lag) {
-        Gauge.builder("kafka_consumer_lag_by_partition", () -> lag)
-                .description("Consumer lag by partition")
-                .tag("topic", topic)
-                .tag("partition", String.valueOf(partition))
-                .register(prometheusRegistry);
-    }
-    
     /**
      * Scrape metrics in Prometheus format
      * 
@@ -1,9 +1,22 @@
 package chat4all.worker.notifications;
 
+import chat4all.shared.Logger;
+import chat4all.shared.NotificationEnvelope;
+import chat4all.shared.tracing.TracingUtils;
 import org.json.JSONObject;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.params.XAddParams;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 /**
  * RedisNotificationPublisher - Publica notificações no Redis Pub/Sub
@@ -36,12 +49,28 @@ import redis.clients.jedis.JedisPoolConfig;
  * CHANNEL NAMING:
  * - Pattern: notifications:{userId}
  * - Exemplo: notifications:user123
- * - WebSocket Gateway subscreve ao pattern: notifications:*
+ * - Cada WebSocket Gateway assina apenas os canais dos usuários conectados nele
+ * 
+ * LOG PARA RECONEXÃO:
+ * - Pub/Sub não tem persistência: quem está offline perde a notificação
+ * - Por isso cada notificação também vai para um Redis Stream por usuário
+ *   (notifications-log:{userId}), limitado com XADD MAXLEN ~ N e com TTL
+ * - O gateway reenvia o delta a partir do last_id informado pelo cliente
  * 
  * @author Chat4All Educational Project
  */
 public class RedisNotificationPublisher {
     
+    private static final Logger log = new Logger("router-worker");
+    
+    // Tamanho máximo (aproximado) do log por usuário
+    private static final long LOG_MAXLEN =
+        Long.parseLong(System.getenv().getOrDefault("NOTIFICATION_LOG_MAXLEN", "500"));
+    
+    // Usuários inativos por mais que isso têm o log descartado
+    private static final long LOG_TTL_SECONDS =
+        Long.parseLong(System.getenv().getOrDefault("NOTIFICATION_LOG_TTL_SECONDS", "604800"));
+    
     private final JedisPool jedisPool;
     
     public RedisNotificationPublisher(String redisHost, int redisPort) {
@@ -64,6 +93,7 @@ public class RedisNotificationPublisher {
      * @param conversationId ID da conversa
      * @param content Conteúdo da mensagem (preview)
      * @param fileId ID do arquivo anexado (pode ser null)
+     * @param acceptedAt instante de aceite na API (MessageEvent.timestamp), para latência ponta a ponta
      */
     public void publishNewMessageNotification(
         String recipientUserId,
@@ -73,40 +103,175 @@ public class RedisNotificationPublisher {
         String conversationId,
         String content,
         String fileId,
-        String groupName
+        String groupName,
+        long acceptedAt
     ) {
-        try (Jedis jedis = jedisPool.getResource()) {
-            // Criar payload JSON
+        try {
+            String payload = buildNewMessagePayload(
+                messageId, senderId, senderUsername, conversationId, content, fileId, groupName, acceptedAt);
+            
+            // Gravar no log do usuário e publicar no channel específico dele
+            publishToUsers(Collections.singletonList(recipientUserId), payload);
+            
+            log.debug("✓ Published notification to Redis channel: {}", NotificationEnvelope.channelFor(recipientUserId));
+            
+        } catch (Exception e) {
+            log.error("✗ Failed to publish notification to Redis: {}", e.getMessage());
+            // Não falhar processamento inteiro por falha de notificação
+            // Usuário receberá mensagem no próximo polling (fallback)
+        }
+    }
+    
+    /**
+     * Publica a MESMA notificação para vários membros de um grupo
+     * 
+     * EDUCATIONAL NOTE: O payload é serializado uma única vez e os PUBLISH
+     * são enviados em pipeline (1 round-trip ao Redis), em vez de montar um
+     * JSONObject e fazer um round-trip por membro.
+     * 
+     * @param recipientUserIds membros que devem ser notificados (sender já excluído)
+     */
+    public void publishGroupNotification(
+        Collection<String> recipientUserIds,
+        String messageId,
+        String senderId,
+        String senderUsername,
+        String conversationId,
+        String content,
+        String fileId,
+        String groupName,
+        long acceptedAt
+    ) {
+        if (recipientUserIds.isEmpty()) {
+            return;
+        }
+        try {
+            String payload = buildNewMessagePayload(
+                messageId, senderId, senderUsername, conversationId, content, fileId, groupName, acceptedAt);
+            
+            publishToUsers(recipientUserIds, payload);
+            
+            log.debug("✓ Published group notification to {} channels", recipientUserIds.size());
+            
+        } catch (Exception e) {
+            log.error("✗ Failed to publish group notification to Redis: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Publica UMA notificação "read_watermark" para os participantes
+     * 
+     * O cliente marca como lidas todas as mensagens da conversa com seq <= read_seq
+     * (em vez de receber um "read" por mensagem).
+     * 
+     * @param recipientUserIds participantes a notificar (o leitor já excluído)
+     */
+    public void publishReadWatermark(
+        Collection<String> recipientUserIds,
+        String conversationId,
+        String readerId,
+        long readSeq
+    ) {
+        if (recipientUserIds.isEmpty()) {
+            return;
+        }
+        try {
             JSONObject notification = new JSONObject();
-            notification.put("type", "new_message");
-            notification.put("message_id", messageId);
-            notification.put("sender_id", senderId);
-            if (senderUsername != null && !senderUsername.isEmpty()) {
-                notification.put("sender_username", senderUsername);
-            }
+            notification.put("type", "read_watermark");
             notification.put("conversation_id", conversationId);
-            notification.put("content", content);
+            notification.put("user_id", readerId);
+            notification.put("read_seq", readSeq);
             notification.put("timestamp", System.currentTimeMillis());
-
-            if (groupName != null && !groupName.isEmpty()) {
-                notification.put("group_name", groupName);
-            }
+            putTraceparent(notification);
             
-            if (fileId != null && !fileId.isEmpty()) {
-                notification.put("file_id", fileId);
-            }
-            
-            // Publicar no channel específico do usuário
-            String channel = "notifications:" + recipientUserId;
-            long subscribers = jedis.publish(channel, notification.toString());
+            publishToUsers(recipientUserIds, notification.toString());
             
-            System.out.println("✓ Published notification to Redis channel: " + channel + 
-                             " (subscribers: " + subscribers + ")");
+            log.debug("✓ Published read watermark ({} ≤ {}) to {} channels", conversationId, readSeq, recipientUserIds.size());
             
         } catch (Exception e) {
-            System.err.println("✗ Failed to publish notification to Redis: " + e.getMessage());
-            // Não falhar processamento inteiro por falha de notificação
-            // Usuário receberá mensagem no próximo polling (fallback)
+            log.error("✗ Failed to publish read watermark to Redis: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Grava o payload no log de cada usuário e publica no canal Pub/Sub
+     * 
+     * Duas rodadas em pipeline: XADD (+EXPIRE) para obter os IDs das entradas e,
+     * em seguida, PUBLISH com o stream_id prefixado ao JSON já serializado.
+     * 
+     * Protegido: o harness ponta a ponta (módulo benchmarks) troca o Redis por um
+     * Pub/Sub em memória aqui, mantendo a montagem dos payloads.
+     */
+    protected void publishToUsers(Collection<String> recipientUserIds, String payload) {
+        Map<String, String> entry = Collections.singletonMap(NotificationEnvelope.LOG_PAYLOAD_FIELD, payload);
+        XAddParams trim = XAddParams.xAddParams().maxLen(LOG_MAXLEN).approximateTrimming();
+        
+        try (Jedis jedis = jedisPool.getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<StreamEntryID>> ids = new ArrayList<>(recipientUserIds.size());
+            for (String recipientUserId : recipientUserIds) {
+                String logKey = NotificationEnvelope.logKeyFor(recipientUserId);
+                ids.add(pipeline.xadd(logKey, trim, entry));
+                pipeline.expire(logKey, LOG_TTL_SECONDS);
+            }
+            pipeline.sync();
+            
+            pipeline = jedis.pipelined();
+            int i = 0;
+            for (String recipientUserId : recipientUserIds) {
+                String streamId = ids.get(i++).get().toString();
+                pipeline.publish(NotificationEnvelope.channelFor(recipientUserId),
+                    NotificationEnvelope.withStreamId(payload, streamId));
+            }
+            pipeline.sync();
+        }
+    }
+    
+    /**
+     * Monta o payload JSON de "new_message" (igual para todos os destinatários)
+     */
+    private String buildNewMessagePayload(
+        String messageId,
+        String senderId,
+        String senderUsername,
+        String conversationId,
+        String content,
+        String fileId,
+        String groupName,
+        long acceptedAt
+    ) {
+        JSONObject notification = new JSONObject();
+        notification.put("type", "new_message");
+        notification.put("message_id", messageId);
+        notification.put("sender_id", senderId);
+        if (senderUsername != null && !senderUsername.isEmpty()) {
+            notification.put("sender_username", senderUsername);
+        }
+        notification.put("conversation_id", conversationId);
+        notification.put("content", content);
+        notification.put(NotificationEnvelope.TIMESTAMP_FIELD, System.currentTimeMillis());
+        notification.put(NotificationEnvelope.ACCEPTED_AT_FIELD, acceptedAt);
+
+        if (groupName != null && !groupName.isEmpty()) {
+            notification.put("group_name", groupName);
+        }
+        
+        if (fileId != null && !fileId.isEmpty()) {
+            notification.put("file_id", fileId);
+        }
+        putTraceparent(notification);
+        return notification.toString();
+    }
+    
+    /**
+     * Contexto do span atual (processamento do worker), para o gateway continuar o trace
+     * 
+     * Pub/Sub não tem headers: o traceparent viaja como campo do próprio JSON.
+     */
+    private static void putTraceparent(JSONObject notification) {
+        String traceparent = TracingUtils.currentTraceparent();
+        if (traceparent != null) {
+            notification.put(NotificationEnvelope.TRACEPARENT_FIELD, traceparent);
         }
     }
     
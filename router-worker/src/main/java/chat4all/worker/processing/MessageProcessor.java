@@ -1,11 +1,18 @@
 package chat4all.worker.processing;
 
+import chat4all.shared.Logger;
 import chat4all.shared.MessageEvent;
-import chat4all.worker.cassandra.CassandraMessageStore;
+import chat4all.shared.metrics.MessageLatencyMetrics.Stage;
 import chat4all.worker.cassandra.MessageEntity;
 import chat4all.worker.metrics.WorkerMetricsRegistry;
 import chat4all.worker.routing.ConnectorRouter;
 import chat4all.worker.notifications.RedisNotificationPublisher;
+import chat4all.worker.store.ChangeFeedStore;
+import chat4all.worker.store.GroupDirectory;
+import chat4all.worker.store.InboxStore;
+import chat4all.worker.store.MessageStore;
+import chat4all.worker.store.StatusStore;
+import chat4all.worker.store.UserDirectory;
 
 import java.time.Instant;
 
@@ -28,7 +35,9 @@ import java.time.Instant;
  *                              ↓
  *                           [3] Simulate Delivery (sleep)
  *                              ↓
- *                           [4] Update (status=DELIVERED)
+ *                           [4] Notify (Redis)
+ *                              ↓
+ *                           [5] Update (status=DELIVERED)
  * ```
  * 
  * POR QUE ESSE PADRÃO?
@@ -44,32 +53,84 @@ import java.time.Instant;
  * IDEMPOTÊNCIA:
  * - Processar mesma mensagem 2x não duplica no banco
  * - message_id único previne duplicação
+ * - DELIVERED é gravado por último: é o marcador de "processada por completo".
+ *   Mensagem já gravada mas ainda SENT (falha depois do save) é retomada pelo
+ *   retry: pula só o save e refaz roteamento, entrega e notificação
  * 
  * @author Chat4All Educational Project
  */
 public class MessageProcessor {
     
-    private final CassandraMessageStore messageStore;
+    private static final Logger log = new Logger("router-worker");
+    
+    private final MessageStore messageStore;
+    private final StatusStore statusStore;
+    private final UserDirectory userDirectory;
+    private final GroupDirectory groupDirectory;
     private final ConnectorRouter connectorRouter;
     private final WorkerMetricsRegistry metricsRegistry;
     private final RedisNotificationPublisher notificationPublisher;
+    private final ChangeFeedStore changeFeed;
+    private final InboxStore inbox;
+    
+    // Latência simulada da entrega local ([4]); 0 = sem sleep (benchmarks, harness)
+    private volatile long simulatedDeliveryMs =
+        Long.parseLong(System.getenv().getOrDefault("WORKER_SIMULATED_DELIVERY_MS", "100"));
     
     /**
      * Cria MessageProcessor
      * 
      * @param messageStore Store para persistir mensagens
+     * @param statusStore Store para transições de status (SENT → DELIVERED)
+     * @param userDirectory Usernames para as notificações
+     * @param groupDirectory Nome e membros dos grupos para o fan-out
      * @param connectorRouter Router para conectores externos (WhatsApp, Instagram, etc.)
      * @param notificationPublisher Publisher para notificações via Redis (opcional)
+     * @param changeFeed Feed de mudanças por usuário para sync incremental (opcional)
+     * @param inbox Caixa de entrada (última mensagem + não lidas) por usuário (opcional)
      */
     public MessageProcessor(
-        CassandraMessageStore messageStore, 
+        MessageStore messageStore,
+        StatusStore statusStore,
+        UserDirectory userDirectory,
+        GroupDirectory groupDirectory,
         ConnectorRouter connectorRouter,
-        RedisNotificationPublisher notificationPublisher
+        RedisNotificationPublisher notificationPublisher,
+        ChangeFeedStore changeFeed,
+        InboxStore inbox
     ) {
         this.messageStore = messageStore;
+        this.statusStore = statusStore;
+        this.userDirectory = userDirectory;
+        this.groupDirectory = groupDirectory;
         this.connectorRouter = connectorRouter;
         this.metricsRegistry = WorkerMetricsRegistry.getInstance();
         this.notificationPublisher = notificationPublisher;
+        this.changeFeed = changeFeed;
+        this.inbox = inbox;
+    }
+    
+    /**
+     * Cria MessageProcessor com um único store que implementa as quatro interfaces
+     * (CassandraMessageStore, InMemoryMessageStore)
+     */
+    public <S extends MessageStore & StatusStore & UserDirectory & GroupDirectory> MessageProcessor(
+        S store,
+        ConnectorRouter connectorRouter,
+        RedisNotificationPublisher notificationPublisher,
+        ChangeFeedStore changeFeed,
+        InboxStore inbox
+    ) {
+        this(store, store, store, store, connectorRouter, notificationPublisher, changeFeed, inbox);
+    }
+    
+    /**
+     * Sobrescreve a latência simulada da entrega local (WORKER_SIMULATED_DELIVERY_MS)
+     * 
+     * @param simulatedDeliveryMs milissegundos de sleep por entrega local (0 = nenhum)
+     */
+    public void setSimulatedDeliveryMs(long simulatedDeliveryMs) {
+        this.simulatedDeliveryMs = simulatedDeliveryMs;
     }
     
     /**
@@ -79,7 +140,9 @@ public class MessageProcessor {
      * 
      * [1] DEDUPLICAÇÃO:
      *     - Verifica se message_id já existe no banco
-     *     - Se existe: SKIP (mensagem duplicada do Kafka)
+     *     - Se existe com status além de SENT: SKIP (já processada por completo)
+     *     - Se existe com SENT: RESUME (retry de falha depois do save) - pula [2]
+     *       e segue com o seq já gravado
      *     - Se não existe: continuar processamento
      * 
      * [2] PERSIST (status=SENT):
@@ -88,17 +151,24 @@ public class MessageProcessor {
      *     - Se falhar: throw exception (Kafka não commitará offset)
      * 
      * [3] SIMULATE DELIVERY:
-     *     - Sleep 100ms (simula latência de rede)
+     *     - Sleep WORKER_SIMULATED_DELIVERY_MS (padrão 100ms, simula latência de rede)
      *     - Em produção: chamar API externa, enviar push notification, etc.
      * 
-     * [4] UPDATE STATUS (status=DELIVERED):
+     * [4] PUBLISH NOTIFICATION:
+     *     - Redis Pub/Sub para o WebSocket Gateway
+     * 
+     * [5] UPDATE STATUS (status=DELIVERED):
      *     - UPDATE no Cassandra
-     *     - Marca mensagem como entregue
+     *     - Marca mensagem como entregue (e como processada por completo)
      * 
      * EDUCATIONAL NOTE: Error Handling
      * - Se [2] falhar: exception → Kafka retry
-     * - Se [3] falhar: mensagem fica SENT → job async retentar depois
-     * - Se [4] falhar: mensagem fica SENT → eventual consistency
+     * - Se [3] ou [4] falharem: exception → retry retoma a partir do roteamento
+     *   (mensagem continua SENT)
+     * - Se [5] falhar: mensagem fica SENT → reentrega refaz a notificação
+     *   (at-least-once; o cliente deduplica por message_id)
+     * - Roteada para conector: fica SENT até o conector publicar DELIVERED; um
+     *   retry nesse intervalo roteia de novo (at-least-once para o conector)
      * 
      * KAFKA COMMIT:
      * - Só commitamos offset DEPOIS de process() retornar sem exception
@@ -108,25 +178,35 @@ public class MessageProcessor {
      * @return true se processou, false se duplicada/erro
      */
     public boolean process(MessageEvent event) {
+        return process(event, 0);
+    }
+    
+    /**
+     * Processa mensagem com o seq já atribuído pelo dono da partição
+     * 
+     * POR QUE ATRIBUIR ANTES?
+     * - Retries rodam em qualquer worker (tópicos de retry não seguem a partição
+     *   da conversa); alocar ali reservaria um bloco NOVO, acima de mensagens
+     *   posteriores já entregues, e o cursor after_seq pularia essas mensagens
+     * - Com o seq fixado na primeira tentativa, o retry grava no mesmo lugar da
+     *   sequência que a mensagem teria no tópico principal
+     * 
+     * @param event MessageEvent do Kafka
+     * @param assignedSeq seq reservado com reserveSeq() (0 = alocar ao gravar)
+     * @return true se processou, false se duplicada/erro
+     * @see #reserveSeq(String)
+     */
+    public boolean process(MessageEvent event, long assignedSeq) {
         String messageId = event.getMessageId();
         String conversationId = event.getConversationId();
         
         long startTime = System.currentTimeMillis();
         
-        System.out.println("\n▶ Processing message: " + messageId + 
-                         " (conv: " + conversationId + ")");
+        Logger.setMessageId(messageId);
+        Logger.setConversationId(conversationId);
+        log.info("▶ Processing message: {} (conv: {})", messageId, conversationId);
         
         try {
-            // [1] DEDUPLICAÇÃO - Verificar se mensagem já existe
-            if (messageStore.messageExists(messageId)) {
-                System.out.println("⊗ SKIP: Message " + messageId + " already processed (duplicate)");
-                long duration = System.currentTimeMillis() - startTime;
-                metricsRegistry.recordMessageProcessed("DUPLICATE", duration);
-                return false; // Duplicada, mas não é erro (retorna success para commitar offset)
-            }
-            
-            // [2] PERSIST - Salvar mensagem com status SENT (Phase 2: includes file attachment)
-            long cassandraStart = System.currentTimeMillis();
             MessageEntity entity = new MessageEntity(
                 event.getConversationId(),
                 Instant.ofEpochMilli(event.getTimestamp()),
@@ -138,21 +218,26 @@ public class MessageProcessor {
                 event.getFileMetadata() // Phase 2: file metadata
             );
             
-            boolean saved = messageStore.saveMessage(entity);
-            long cassandraDuration = System.currentTimeMillis() - cassandraStart;
-            metricsRegistry.recordCassandraWrite(cassandraDuration, saved);
-            
-            if (!saved) {
-                metricsRegistry.recordMessageFailed("cassandra_error");
-                throw new RuntimeException("Failed to save message to Cassandra");
+            // [1] DEDUPLICAÇÃO - Mensagem já gravada? (copia seq e status gravados)
+            if (messageStore.findExisting(entity)) {
+                if (!"SENT".equals(entity.getStatus())) {
+                    log.info("⊗ SKIP: Message {} already processed (duplicate, status {})", messageId, entity.getStatus());
+                    long duration = System.currentTimeMillis() - startTime;
+                    metricsRegistry.recordMessageProcessed("DUPLICATE", duration);
+                    return false; // Duplicada, mas não é erro (retorna success para commitar offset)
+                }
+                // Falhou depois do save: retoma sem gravar de novo (feed e inbox já registrados)
+                log.info("↻ RESUME: Message {} already saved (seq {}), retrying delivery", messageId, entity.getSeq());
+            } else {
+                if (assignedSeq > 0) {
+                    entity.setSeq(assignedSeq);
+                }
+                persist(entity);
             }
             
-            System.out.println("✓ [1/2] Saved with status=SENT");
-            
             // DEBUG: Check what we have
-            System.out.println("[DEBUG] recipient_id from event: " + event.getRecipientId());
-            System.out.println("[DEBUG] sender_id from event: " + event.getSenderId());
-            System.out.println("[DEBUG] conversation_id: " + conversationId);
+            log.debug("recipient_id from event: {}, sender_id: {}, conversation_id: {}",
+                event.getRecipientId(), event.getSenderId(), conversationId);
             
             // [3] ROUTE OR DELIVER - Check if should route to external connector
             // Determinar recipientId:
@@ -177,42 +262,39 @@ public class MessageProcessor {
 
                                 // Recipient é quem NÃO é o sender
                                 recipientId = event.getSenderId().equals(userA) ? userB : userA;
-                                System.out.println("[DEBUG] Extracted userA: " + userA);
-                                System.out.println("[DEBUG] Extracted userB: " + userB);
-                                System.out.println("[DEBUG] Sender is: " + event.getSenderId());
-                                System.out.println("[DEBUG] Extracted recipient: " + recipientId);
+                                log.debug("Extracted userA: {}, userB: {}, sender: {}, recipient: {}",
+                                    userA, userB, event.getSenderId(), recipientId);
                             } else {
-                                System.out.println("[WARN] Could not parse conversation_id - unexpected format: " + conversationId);
+                                log.warn("Could not parse conversation_id - unexpected format: {}", conversationId);
                             }
                         } else {
-                            System.out.println("[WARN] direct conversation_id missing user_ prefix: " + conversationId);
+                            log.warn("direct conversation_id missing user_ prefix: {}", conversationId);
                     }
                 } else if (conversationId.startsWith("group_")) {
-                    // Para grupos, notificações serão enviadas depois na seção [6]
+                    // Para grupos, notificações serão enviadas depois na seção [5]
                     // Aqui apenas marcamos como grupo para referência
-                    System.out.println("[DEBUG] Message for group: " + conversationId);
-                    // Marcar que precisa notificar grupo (será feito na seção [6])
+                    log.debug("Message for group: {}", conversationId);
+                    // Marcar que precisa notificar grupo (será feito na seção [5])
                     recipientId = "GROUP"; // Flag especial para indicar que é grupo
                 }
                 
                 if (recipientId == null || recipientId.isEmpty()) {
-                    System.out.println("[WARN] Could not determine recipient_id - skipping notification");
+                    log.warn("Could not determine recipient_id - skipping notification");
                 }
             } else {
-                System.out.println("[DEBUG] Using recipient_id from event: " + recipientId);
+                log.debug("Using recipient_id from event: {}", recipientId);
             }
             
             if (connectorRouter != null && connectorRouter.shouldRouteToConnector(recipientId)) {
                 // Route to external connector (WhatsApp, Instagram, etc.)
                 boolean routed = connectorRouter.routeToConnector(event);
                 if (routed) {
-                    System.out.println("✓ [2/2] Routed to external connector for recipient: " + recipientId);
-                    System.out.println("✓ Processing complete for message: " + messageId + " (routed to connector)");
+                    log.info("✓ Processing complete for message: {} (routed to connector for {})", messageId, recipientId);
                     long duration = System.currentTimeMillis() - startTime;
                     metricsRegistry.recordMessageProcessed("ROUTED", duration);
                     return true;
                 } else {
-                    System.err.println("⚠ Warning: Failed to route to connector, falling back to local delivery");
+                    log.warn("⚠ Failed to route to connector, falling back to local delivery");
                     // Fall through to local delivery
                 }
             }
@@ -221,31 +303,15 @@ public class MessageProcessor {
             // Em produção real: chamar API do serviço de push, SMS, etc.
             simulateDelivery(messageId);
             
-            System.out.println("✓ [2/2] Simulated delivery");
-            
-            // [5] UPDATE STATUS - Marcar como DELIVERED
-            cassandraStart = System.currentTimeMillis();
-            boolean updated = messageStore.updateMessageStatus(
-                messageId, 
-                entity.getConversationId(), 
-                entity.getTimestamp(), 
-                "DELIVERED"
-            );
-            cassandraDuration = System.currentTimeMillis() - cassandraStart;
-            metricsRegistry.recordCassandraWrite(cassandraDuration, updated);
-            
-            if (!updated) {
-                System.err.println("⚠ Warning: Failed to update status to DELIVERED for " + messageId);
-                // Não falhar todo o processamento por isso (eventual consistency)
-            } else {
-                System.out.println("✓ Status updated to DELIVERED");
-            }
+            log.debug("✓ [2/2] Simulated delivery");
             
-            // [6] PUBLISH NOTIFICATION - Notificar via Redis para WebSocket Gateway
+            // [5] PUBLISH NOTIFICATION - Notificar via Redis para WebSocket Gateway
             if (notificationPublisher != null) {
+                long redisStart = System.currentTimeMillis();
+                
                 // Caso 1: Mensagem 1:1 - notificar o recipientId
                 if (recipientId != null && !recipientId.isEmpty() && !recipientId.equals("GROUP")) {
-                    String senderUsername = messageStore.getUsername(event.getSenderId());
+                    String senderUsername = userDirectory.getUsername(event.getSenderId());
                     notificationPublisher.publishNewMessageNotification(
                         recipientId,
                         messageId,
@@ -254,54 +320,79 @@ public class MessageProcessor {
                         conversationId,
                         event.getContent(),
                         event.getFileId(),
-                        null  // Sem groupName para diretas
+                        null,  // Sem groupName para diretas
+                        event.getTimestamp()
                     );
-                    System.out.println("✓ Notification published to Redis for user: " + recipientId);
+                    log.debug("✓ Notification published to Redis for user: {}", recipientId);
                 }
                 
                 // Caso 2: Mensagem de grupo - notificar todos os membros
                 if (conversationId.startsWith("group_")) {
-                    System.out.println("[DEBUG] Detected group message for: " + conversationId);
+                    log.debug("Detected group message for: {}", conversationId);
                     String groupId = conversationId;
-                    java.util.List<String> groupMembers = messageStore.getGroupMembers(groupId);
-                    
-                    System.out.println("[DEBUG] getGroupMembers returned: " + groupMembers);
+                    java.util.List<String> groupMembers = groupDirectory.getGroupMembers(groupId);
                     
                     if (groupMembers != null && !groupMembers.isEmpty()) {
-                        System.out.println("[DEBUG] Publishing group notifications to " + groupMembers.size() + " members");
+                        log.debug("Publishing group notifications to {} members", groupMembers.size());
                         
-                        String senderUsername = messageStore.getUsername(event.getSenderId());
-                        String groupName = messageStore.getGroupName(groupId);
+                        String senderUsername = userDirectory.getUsername(event.getSenderId());
+                        String groupName = groupDirectory.getGroupName(groupId);
                         
+                        java.util.List<String> recipients = new java.util.ArrayList<>(groupMembers.size());
                         for (String memberId : groupMembers) {
                             if (!memberId.equals(event.getSenderId())) {  // Não notificar o sender
-                                System.out.println("  → Publishing to group member: " + memberId);
-                                notificationPublisher.publishNewMessageNotification(
-                                    memberId,
-                                    messageId,
-                                    event.getSenderId(),
-                                    senderUsername,
-                                    conversationId,
-                                    event.getContent(),
-                                    event.getFileId(),
-                                    groupName  // Incluir nome do grupo
-                                );
+                                recipients.add(memberId);
                             }
                         }
-                        System.out.println("✓ Notifications published to all group members");
+                        // Payload serializado uma vez e publicado para todos os membros
+                        notificationPublisher.publishGroupNotification(
+                            recipients,
+                            messageId,
+                            event.getSenderId(),
+                            senderUsername,
+                            conversationId,
+                            event.getContent(),
+                            event.getFileId(),
+                            groupName,  // Incluir nome do grupo
+                            event.getTimestamp()
+                        );
+                        log.debug("✓ Notifications published to all group members");
                     } else {
-                        System.out.println("[WARN] Could not find group members for " + groupId);
+                        log.warn("Could not find group members for {}", groupId);
                     }
                 }
+                metricsRegistry.getLatencyMetrics().recordSince(Stage.WORKER_TO_REDIS, redisStart);
             }
             
-            System.out.println("✓ Processing complete for message: " + messageId);
+            // [6] UPDATE STATUS - Marcar como DELIVERED (por último: marca a mensagem como processada)
+            long cassandraStart = System.currentTimeMillis();
+            boolean updated = statusStore.updateMessageStatus(
+                messageId, 
+                entity.getConversationId(), 
+                entity.getSeq(), 
+                "DELIVERED"
+            );
+            long cassandraDuration = System.currentTimeMillis() - cassandraStart;
+            metricsRegistry.recordCassandraWrite(cassandraDuration, updated);
+            
+            if (!updated) {
+                log.warn("⚠ Failed to update status to DELIVERED for {}", messageId);
+                // Não falhar todo o processamento por isso (eventual consistency)
+            } else {
+                log.debug("✓ Status updated to DELIVERED");
+                if (changeFeed != null) {
+                    changeFeed.recordStatus(conversationId, messageId, entity.getSeq(), "DELIVERED",
+                        System.currentTimeMillis());
+                }
+            }
+            
+            log.info("✓ Processing complete for message: {}", messageId);
             long duration = System.currentTimeMillis() - startTime;
             metricsRegistry.recordMessageProcessed("DELIVERED", duration);
             return true;
             
         } catch (RuntimeException e) {
-            System.err.println("✗ Error processing message " + messageId + ": " + e.getMessage());
+            log.error("✗ Error processing message {}: {}", messageId, e.getMessage());
             // Record failure metrics
             long duration = System.currentTimeMillis() - startTime;
             metricsRegistry.recordMessageFailed("runtime_error");
@@ -309,16 +400,67 @@ public class MessageProcessor {
             // Exception causa Kafka retry (não commita offset)
             throw e;
         } catch (Exception e) {
-            System.err.println("✗ Error processing message " + messageId + ": " + e.getMessage());
+            log.error("✗ Error processing message {}: {}", messageId, e.getMessage());
             // Record failure metrics
             long duration = System.currentTimeMillis() - startTime;
             metricsRegistry.recordMessageFailed("processing_error");
             metricsRegistry.recordMessageProcessed("FAILED", duration);
             // Exception causa Kafka retry (não commita offset)
             throw new RuntimeException("Processing failed for message " + messageId, e);
+        } finally {
+            Logger.clearContext();
         }
     }
     
+    /**
+     * [2] PERSIST - Salva a mensagem com status SENT (aloca o seq) e registra
+     * no feed de sync e na inbox
+     * 
+     * @throws RuntimeException se o save falhar (Kafka retry)
+     */
+    private void persist(MessageEntity entity) {
+        long cassandraStart = System.currentTimeMillis();
+        boolean saved = messageStore.saveMessage(entity);
+        long cassandraDuration = System.currentTimeMillis() - cassandraStart;
+        metricsRegistry.recordCassandraWrite(cassandraDuration, saved);
+        metricsRegistry.getLatencyMetrics().record(Stage.WORKER_TO_CASSANDRA, cassandraDuration);
+        
+        if (!saved) {
+            metricsRegistry.recordMessageFailed("cassandra_error");
+            throw new RuntimeException("Failed to save message to Cassandra");
+        }
+        
+        log.debug("✓ [1/2] Saved with status=SENT (seq {})", entity.getSeq());
+        
+        // Feed de sync: participantes recebem a mensagem no próximo /sync
+        if (changeFeed != null) {
+            changeFeed.recordMessage(entity);
+        }
+        
+        // Inbox: preview da última mensagem + contador de não lidas
+        if (inbox != null) {
+            inbox.recordMessage(entity);
+        }
+    }
+    
+    /**
+     * Reserva o seq de uma mensagem antes da primeira tentativa (só no dono da partição)
+     */
+    public long reserveSeq(String conversationId) {
+        return messageStore.nextSeq(conversationId);
+    }
+    
+    /**
+     * Partições do tópico messages foram revogadas (rebalance)
+     * 
+     * As conversas dessas partições passam para outro worker, que vai reservar
+     * novos blocos de seq. Os blocos locais precisam ser descartados para que,
+     * se as partições voltarem, a sequência não retroceda.
+     */
+    public void onPartitionsRevoked() {
+        messageStore.releaseSequenceBlocks();
+    }
+    
     /**
      * Simula entrega da mensagem ao destinatário
      * 
@@ -332,7 +474,7 @@ public class MessageProcessor {
      * - Publicar evento em outro sistema
      * 
      * PARA ESTE PROJETO DIDÁTICO:
-     * - Sleep 100ms (simula latência de rede)
+     * - Sleep WORKER_SIMULATED_DELIVERY_MS (padrão 100ms, simula latência de rede)
      * - Permite demonstrar status transitions (SENT → DELIVERED)
      * 
      * POR QUE NÃO IMPLEMENTAR DELIVERY REAL?
@@ -349,16 +491,19 @@ public class MessageProcessor {
      * @param messageId ID da mensagem sendo entregue
      */
     private void simulateDelivery(String messageId) {
+        long delayMs = simulatedDeliveryMs;
+        if (delayMs <= 0) {
+            return;
+        }
         try {
-            // Simula latência de entrega (100ms)
-            Thread.sleep(100);
+            // Simula latência de entrega (100ms por padrão)
+            Thread.sleep(delayMs);
             
-            // Em produção: log structured com trace_id
-            System.out.println("  → Delivered message " + messageId + " (simulated)");
+            log.debug("  → Delivered message {} (simulated)", messageId);
             
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            System.err.println("⚠ Delivery simulation interrupted for " + messageId);
+            log.warn("⚠ Delivery simulation interrupted for {}", messageId);
         }
     }
 }
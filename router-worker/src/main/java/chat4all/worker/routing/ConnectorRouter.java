@@ -1,8 +1,11 @@
 package chat4all.worker.routing;
 
+import chat4all.shared.Logger;
 import chat4all.shared.MessageEvent;
 import chat4all.shared.connector.ConnectorFactory;
+import chat4all.shared.kafka.KafkaTraceHeaders;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.serialization.StringSerializer;
@@ -50,7 +53,9 @@ import java.util.Properties;
  */
 public class ConnectorRouter {
     
-    private final KafkaProducer<String, String> producer;
+    private static final Logger log = new Logger("router-worker");
+    
+    private final Producer<String, String> producer;
     
     /**
      * Constructor
@@ -72,6 +77,15 @@ public class ConnectorRouter {
         System.out.println("[ConnectorRouter] Initialized");
     }
     
+    /**
+     * Constructor with a ready producer (e.g. MockProducer in benchmarks)
+     * 
+     * @param producer Producer for the connector topics
+     */
+    public ConnectorRouter(Producer<String, String> producer) {
+        this.producer = producer;
+    }
+    
     /**
      * Check if message should be routed to external connector
      * 
@@ -103,14 +117,14 @@ public class ConnectorRouter {
         try {
             String recipientId = extractRecipientId(event);
             if (recipientId == null) {
-                System.err.println("[ConnectorRouter] ❌ No recipient_id found in event");
+                log.error("[ConnectorRouter] ❌ No recipient_id found in event");
                 return false;
             }
             
             // Determine target topic based on recipient_id prefix
             String targetTopic = determineTargetTopic(recipientId);
             if (targetTopic == null) {
-                System.err.println("[ConnectorRouter] ❌ Unknown connector for: " + recipientId);
+                log.error("[ConnectorRouter] ❌ Unknown connector for: {}", recipientId);
                 return false;
             }
             
@@ -124,23 +138,21 @@ public class ConnectorRouter {
                 eventJson                   // Value: JSON event
             );
             
-            // Send asynchronously
-            producer.send(record, (metadata, exception) -> {
+            // Send asynchronously (traceparent header: connector span joins the message trace)
+            producer.send(KafkaTraceHeaders.inject(record), (metadata, exception) -> {
                 if (exception != null) {
-                    System.err.println("[ConnectorRouter] ❌ Failed to route to " + targetTopic + ": " + exception.getMessage());
+                    log.error("[ConnectorRouter] ❌ Failed to route to {}: {}", targetTopic, exception.getMessage());
                 } else {
-                    System.out.println("[ConnectorRouter] ✓ Routed to " + targetTopic + 
-                                     " (partition: " + metadata.partition() + 
-                                     ", offset: " + metadata.offset() + ")");
+                    log.debug("[ConnectorRouter] ✓ Routed to {} (partition: {}, offset: {})",
+                        targetTopic, metadata.partition(), metadata.offset());
                 }
             });
             
-            System.out.println("[ConnectorRouter] → Routing to " + targetTopic + " for " + recipientId);
+            log.debug("[ConnectorRouter] → Routing to {} for {}", targetTopic, recipientId);
             return true;
             
         } catch (Exception e) {
-            System.err.println("[ConnectorRouter] ❌ Error routing message: " + e.getMessage());
-            e.printStackTrace();
+            log.error("[ConnectorRouter] ❌ Error routing message", e);
             return false;
         }
     }
@@ -188,7 +200,7 @@ public class ConnectorRouter {
             return platform + "-outbound";
             
         } catch (Exception e) {
-            System.err.println("[ConnectorRouter] Error determining topic for: " + recipientId);
+            log.error("[ConnectorRouter] Error determining topic for: {}", recipientId);
             return null;
         }
     }
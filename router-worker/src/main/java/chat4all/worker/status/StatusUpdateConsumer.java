@@ -1,11 +1,27 @@
 package chat4all.worker.status;
 
+import chat4all.shared.Logger;
 import chat4all.worker.cassandra.CassandraConnection;
+import chat4all.worker.metrics.WorkerMetricsRegistry;
+import chat4all.worker.notifications.RedisNotificationPublisher;
+import chat4all.worker.store.ChangeFeedStore;
+import chat4all.worker.store.InboxStore;
+import chat4all.worker.store.ParticipantDirectory;
 import chat4all.shared.MessageStatus;
+import chat4all.shared.kafka.ConsumerLagMonitor;
+import chat4all.shared.kafka.KafkaTraceHeaders;
+import chat4all.shared.kafka.StatusEventCodec;
+import chat4all.shared.kafka.StatusEventCodec.ReadWatermark;
+import chat4all.shared.kafka.StatusEventCodec.StatusUpdate;
+import chat4all.shared.tracing.TracingUtils;
 import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
 import com.datastax.oss.driver.api.core.cql.Row;
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
@@ -14,8 +30,9 @@ import org.apache.kafka.common.serialization.StringDeserializer;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Map;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -47,6 +64,10 @@ import java.util.Properties;
  * }
  * ```
  * 
+ * Connectors in STATUS_PUBLISH_MODE=COMPACT send many statuses per record
+ * ({"type":"status_batch", "statuses":[[id, status, ts_delta], ...]});
+ * both formats are decoded by StatusEventCodec.
+ * 
  * STATE MACHINE:
  * - SENT → DELIVERED: Connector confirms delivery
  * - DELIVERED → READ: User marks as read
@@ -62,11 +83,19 @@ import java.util.Properties;
  */
 public class StatusUpdateConsumer {
     
+    private static final Logger log = new Logger("router-worker");
+    
     private final KafkaConsumer<String, String> consumer;
     private final CqlSession session;
     private final PreparedStatement selectStatement;
     private final PreparedStatement updateToDeliveredStatement;
     private final PreparedStatement updateToReadStatement;
+    private final ChangeFeedStore changeFeed;
+    private final InboxStore inbox;
+    private final ParticipantDirectory participants;
+    private final RedisNotificationPublisher notificationPublisher;
+    private final ConsumerLagMonitor lagMonitor;
+    private final Tracer tracer = GlobalOpenTelemetry.getTracer("chat4all.worker");
     private volatile boolean running;
     
     /**
@@ -76,31 +105,43 @@ public class StatusUpdateConsumer {
      * @param consumerGroupId Consumer group ID
      * @param statusTopic Status updates topic name
      * @param cassandraConnection Cassandra session
+     * @param changeFeed Per-user change feed for incremental sync (optional)
+     * @param inbox Per-user inbox (unread counters) (optional)
+     * @param participants Conversation participants (read watermark fan-out)
+     * @param notificationPublisher Redis publisher for WebSocket notifications (optional)
      */
     public StatusUpdateConsumer(
         String kafkaBootstrapServers,
         String consumerGroupId,
         String statusTopic,
-        CassandraConnection cassandraConnection
+        CassandraConnection cassandraConnection,
+        ChangeFeedStore changeFeed,
+        InboxStore inbox,
+        ParticipantDirectory participants,
+        RedisNotificationPublisher notificationPublisher
     ) {
         this.session = cassandraConnection.getSession();
+        this.changeFeed = changeFeed;
+        this.inbox = inbox;
+        this.participants = participants;
+        this.notificationPublisher = notificationPublisher;
         this.running = true;
         
         // Prepare Cassandra statements
         // Educational note: Using ALLOW FILTERING because message_id is a secondary index
         // In production, consider using a separate table with message_id as partition key
         this.selectStatement = session.prepare(
-            "SELECT conversation_id, timestamp, status FROM chat4all.messages WHERE message_id = ? ALLOW FILTERING"
+            "SELECT conversation_id, seq, sender_id, status FROM chat4all.messages WHERE message_id = ? ALLOW FILTERING"
         );
         
         this.updateToDeliveredStatement = session.prepare(
             "UPDATE chat4all.messages SET status = ?, delivered_at = ? " +
-            "WHERE conversation_id = ? AND timestamp = ?"
+            "WHERE conversation_id = ? AND seq = ?"
         );
         
         this.updateToReadStatement = session.prepare(
             "UPDATE chat4all.messages SET status = ?, read_at = ? " +
-            "WHERE conversation_id = ? AND timestamp = ?"
+            "WHERE conversation_id = ? AND seq = ?"
         );
         
         // Configure Kafka consumer
@@ -115,6 +156,8 @@ public class StatusUpdateConsumer {
         
         this.consumer = new KafkaConsumer<>(props);
         this.consumer.subscribe(Collections.singletonList(statusTopic));
+        this.lagMonitor = ConsumerLagMonitor.fromEnv(
+            kafkaBootstrapServers, consumerGroupId, WorkerMetricsRegistry.getInstance().getMeterRegistry());
         
         System.out.println("✅ StatusUpdateConsumer initialized");
         System.out.println("   Topic: " + statusTopic);
@@ -135,58 +178,116 @@ public class StatusUpdateConsumer {
         while (running) {
             try {
                 ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(1));
+                lagMonitor.recordPoll(consumer, records);
                 
                 if (records.isEmpty()) {
                     continue;
                 }
                 
-                System.out.println("▼ Received " + records.count() + " status update(s)");
+                log.debug("▼ Received {} status update(s)", records.count());
                 
                 for (ConsumerRecord<String, String> record : records) {
-                    processStatusUpdate(record);
+                    processTraced(record);
                 }
                 
                 // Commit offsets after processing batch
                 consumer.commitSync();
                 
             } catch (Exception e) {
-                System.err.println("❌ Error processing status updates: " + e.getMessage());
-                e.printStackTrace();
+                log.error("❌ Error processing status updates", e);
             }
         }
         
+        lagMonitor.close();
         consumer.close();
         System.out.println("StatusUpdateConsumer stopped");
     }
     
     /**
-     * Process individual status update event
+     * Process one status record inside a span continuing the connector's trace
      * 
-     * @param record Kafka record with status update
+     * Compact batches carry no traceparent (several traces per record): their span is a root.
+     */
+    private void processTraced(ConsumerRecord<String, String> record) {
+        Span span = KafkaTraceHeaders.startConsumerSpan(tracer, record);
+        try (Scope scope = span.makeCurrent()) {
+            TracingUtils.setLogTraceId(span);
+            processStatusUpdate(record);
+        } finally {
+            span.end();
+            Logger.clearContext();
+        }
+    }
+    
+    /**
+     * Process one status record (single status or compact batch)
+     * 
+     * @param record Kafka record with status update(s)
      */
     private void processStatusUpdate(ConsumerRecord<String, String> record) {
+        List<StatusUpdate> updates;
         try {
-            // Parse JSON manually (educational: no Jackson)
-            String json = record.value();
-            Map<String, Object> event = parseJson(json);
-            
-            String messageId = (String) event.get("message_id");
-            String newStatus = (String) event.get("status");
-            Long timestamp = ((Number) event.get("timestamp")).longValue();
-            
-            if (messageId == null || newStatus == null) {
-                System.err.println("⚠️  Invalid status update (missing fields): " + json);
+            ReadWatermark watermark = StatusEventCodec.decodeWatermark(record.value());
+            if (watermark != null) {
+                processReadWatermark(watermark);
                 return;
             }
-            
-            System.out.println("📨 Status update: " + messageId + " → " + newStatus);
-            
-            // Update message status in Cassandra
-            updateMessageStatus(messageId, newStatus, timestamp);
-            
+            updates = StatusEventCodec.decode(record.value());
         } catch (Exception e) {
-            System.err.println("❌ Failed to process status update: " + e.getMessage());
-            e.printStackTrace();
+            log.error("❌ Failed to parse status update: {}", e.getMessage());
+            return;
+        }
+        
+        if (updates.isEmpty()) {
+            log.warn("⚠️  Invalid status update (missing fields): {}", record.value());
+            return;
+        }
+        if (updates.size() > 1) {
+            log.debug("📦 Status batch with {} update(s)", updates.size());
+        }
+        
+        for (StatusUpdate update : updates) {
+            try {
+                Logger.setMessageId(update.getMessageId());
+                log.debug("📨 Status update: {} → {}", update.getMessageId(), update.getStatus());
+                
+                // Update message status in Cassandra
+                updateMessageStatus(update.getMessageId(), update.getStatus(), update.getTimestamp());
+                
+            } catch (Exception e) {
+                log.error("❌ Failed to process status update", e);
+            }
+        }
+    }
+    
+    /**
+     * Apply a read watermark ("user read conversation up to seq")
+     * 
+     * The watermark row itself is written by the API (read_watermarks). Here we
+     * only fan out the derived views - ONE event instead of one per message:
+     * 1. Reader's unread counter (inbox)
+     * 2. Sync feed of every participant
+     * 3. WebSocket notification to the other participants
+     * 
+     * Educational note: messages.status is NOT rewritten per message; the API
+     * derives READ from the watermarks when listing messages.
+     */
+    private void processReadWatermark(ReadWatermark watermark) {
+        String conversationId = watermark.getConversationId();
+        String readerId = watermark.getUserId();
+        Logger.setConversationId(conversationId);
+        log.info("📖 Read watermark: {} read {} up to seq {}", readerId, conversationId, watermark.getReadSeq());
+        
+        if (inbox != null) {
+            inbox.recordReadWatermark(conversationId, readerId, watermark.getReadSeq());
+        }
+        if (changeFeed != null) {
+            changeFeed.recordReadWatermark(conversationId, readerId, watermark.getReadSeq(), watermark.getTimestamp());
+        }
+        if (notificationPublisher != null && participants != null) {
+            List<String> others = new ArrayList<>(participants.of(conversationId));
+            others.remove(readerId);
+            notificationPublisher.publishReadWatermark(others, conversationId, readerId, watermark.getReadSeq());
         }
     }
     
@@ -213,12 +314,12 @@ public class StatusUpdateConsumer {
             
             Row row = resultSet.one();
             if (row == null) {
-                System.err.println("⚠️  Message not found: " + messageId);
+                log.warn("⚠️  Message not found: {}", messageId);
                 return;
             }
             
             String conversationId = row.getString("conversation_id");
-            Instant messageTimestamp = row.getInstant("timestamp");
+            long seq = row.getLong("seq");
             String currentStatusStr = row.getString("status");
             
             MessageStatus currentStatus = MessageStatus.fromString(currentStatusStr);
@@ -226,14 +327,13 @@ public class StatusUpdateConsumer {
             
             // 2. Validate transition
             if (!MessageStatus.isValidTransition(currentStatus, newStatus)) {
-                System.err.println("⚠️  Invalid transition: " + currentStatus + " → " + newStatus + 
-                    " (message: " + messageId + ")");
+                log.warn("⚠️  Invalid transition: {} → {} (message: {})", currentStatus, newStatus, messageId);
                 return;
             }
             
             // 3. Idempotency check (already in target state)
             if (currentStatus == newStatus) {
-                System.out.println("✓ Already in " + newStatus + " state (idempotent): " + messageId);
+                log.debug("✓ Already in {} state (idempotent): {}", newStatus, messageId);
                 return;
             }
             
@@ -247,10 +347,10 @@ public class StatusUpdateConsumer {
                         newStatus.getValue(),
                         timestampInstant,
                         conversationId,
-                        messageTimestamp
+                        seq
                     )
                 );
-                System.out.println("✓ Updated to DELIVERED: " + messageId);
+                log.debug("✓ Updated to DELIVERED: {}", messageId);
                 
             } else if (newStatus == MessageStatus.READ) {
                 session.execute(
@@ -258,51 +358,26 @@ public class StatusUpdateConsumer {
                         newStatus.getValue(),
                         timestampInstant,
                         conversationId,
-                        messageTimestamp
+                        seq
                     )
                 );
-                System.out.println("✓ Updated to READ: " + messageId);
+                log.debug("✓ Updated to READ: {}", messageId);
+                if (inbox != null) {
+                    inbox.recordRead(conversationId, messageId, row.getString("sender_id"));
+                }
+            }
+            
+            // 5. Sync feed: participants pick up the transition on their next /sync
+            if (changeFeed != null) {
+                changeFeed.recordStatus(conversationId, messageId, seq, newStatus.getValue(), timestamp);
             }
             
         } catch (Exception e) {
-            System.err.println("❌ Failed to update status for " + messageId + ": " + e.getMessage());
+            log.error("❌ Failed to update status for {}: {}", messageId, e.getMessage());
             throw new RuntimeException(e);
         }
     }
     
-    /**
-     * Parse JSON string to Map (manual parsing for educational purposes)
-     * 
-     * PRODUCTION NOTE: Use Jackson/Gson for real projects
-     * 
-     * @param json JSON string
-     * @return Map with parsed values
-     */
-    private Map<String, Object> parseJson(String json) {
-        // Remove braces and split by comma
-        json = json.trim().substring(1, json.length() - 1);
-        
-        java.util.Map<String, Object> map = new java.util.HashMap<>();
-        
-        String[] pairs = json.split(",");
-        for (String pair : pairs) {
-            String[] keyValue = pair.split(":", 2);
-            if (keyValue.length == 2) {
-                String key = keyValue[0].trim().replace("\"", "");
-                String value = keyValue[1].trim().replace("\"", "");
-                
-                // Try parse as number
-                if (key.equals("timestamp")) {
-                    map.put(key, Long.parseLong(value));
-                } else {
-                    map.put(key, value);
-                }
-            }
-        }
-        
-        return map;
-    }
-    
     /**
      * Graceful shutdown
      */
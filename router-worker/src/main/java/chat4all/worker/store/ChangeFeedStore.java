@@ -0,0 +1,30 @@
+package chat4all.worker.store;
+
+import chat4all.worker.cassandra.MessageEntity;
+
+/**
+ * ChangeFeedStore - Feed de mudanças por usuário lido pelo sync incremental (/sync)
+ *
+ * Derivado: falhas são logadas pela implementação e não derrubam o processamento.
+ */
+public interface ChangeFeedStore {
+
+    String TYPE_MESSAGE = "MESSAGE";
+    String TYPE_STATUS = "STATUS";
+    String TYPE_READ_WATERMARK = "READ_WATERMARK";
+
+    /**
+     * Mensagem nova para todos os participantes (e o remetente)
+     */
+    void recordMessage(MessageEntity message);
+
+    /**
+     * Transição de status (DELIVERED/READ) para os participantes
+     */
+    void recordStatus(String conversationId, String messageId, long seq, String status, long timestampMillis);
+
+    /**
+     * userId leu a conversa até readSeq (uma mudança por participante)
+     */
+    void recordReadWatermark(String conversationId, String userId, long readSeq, long timestampMillis);
+}
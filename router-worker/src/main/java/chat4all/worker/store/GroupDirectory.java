@@ -0,0 +1,19 @@
+package chat4all.worker.store;
+
+import java.util.List;
+
+/**
+ * GroupDirectory - Metadados de grupos usados no fan-out de notificações
+ */
+public interface GroupDirectory {
+
+    /**
+     * Nome do grupo. Retorna null se não encontrar.
+     */
+    String getGroupName(String groupId);
+
+    /**
+     * Membros do grupo. Retorna null se não encontrar.
+     */
+    List<String> getGroupMembers(String groupId);
+}
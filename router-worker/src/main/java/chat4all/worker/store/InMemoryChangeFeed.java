@@ -0,0 +1,61 @@
+package chat4all.worker.store;
+
+import chat4all.worker.cassandra.MessageEntity;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * InMemoryChangeFeed - ChangeFeedStore sem I/O (testes, benchmarks, harness)
+ *
+ * O feed só é lido pela API; no worker importa o fan-out (quem recebe cada
+ * mudança). Por isso guarda apenas um contador de mudanças por usuário, sem
+ * crescer com o número de mensagens.
+ */
+public class InMemoryChangeFeed implements ChangeFeedStore {
+
+    private final ParticipantDirectory participants;
+    private final Map<String, AtomicLong> changes = new ConcurrentHashMap<>();
+
+    public InMemoryChangeFeed(ParticipantDirectory participants) {
+        this.participants = participants;
+    }
+
+    @Override
+    public void recordMessage(MessageEntity message) {
+        Set<String> users = new LinkedHashSet<>(participants.of(message.getConversationId()));
+        users.add(message.getSenderId());
+        record(users);
+    }
+
+    @Override
+    public void recordStatus(String conversationId, String messageId, long seq, String status, long timestampMillis) {
+        record(participants.of(conversationId));
+    }
+
+    @Override
+    public void recordReadWatermark(String conversationId, String userId, long readSeq, long timestampMillis) {
+        Set<String> users = new LinkedHashSet<>(participants.of(conversationId));
+        users.add(userId);
+        record(users);
+    }
+
+    /**
+     * Mudanças registradas para userId
+     */
+    public long getChangeCount(String userId) {
+        AtomicLong count = changes.get(userId);
+        return count != null ? count.get() : 0;
+    }
+
+    private void record(Iterable<String> users) {
+        for (String userId : users) {
+            if (userId != null && !userId.isEmpty()) {
+                changes.computeIfAbsent(userId, u -> new AtomicLong()).incrementAndGet();
+            }
+        }
+    }
+}
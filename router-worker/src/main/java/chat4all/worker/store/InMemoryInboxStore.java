@@ -0,0 +1,98 @@
+package chat4all.worker.store;
+
+import chat4all.worker.cassandra.MessageEntity;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * InMemoryInboxStore - InboxStore sem I/O (testes, benchmarks, harness)
+ *
+ * Mesmas regras de contador do ConversationInbox:
+ * - +1 para cada destinatário quando a mensagem é salva
+ * - Marca de leitura: unread <= last_seq - read_seq (só reduz; a maior marca vence)
+ * - READ por mensagem: -1 só em conversas diretas e só sem marca de leitura
+ *
+ * ESTRUTURA: "user_id|conversation_id" → Entry (last_seq, unread, read_seq), campos
+ * protegidos pelo próprio Entry.
+ */
+public class InMemoryInboxStore implements InboxStore {
+
+    private static final class Entry {
+        long lastSeq;
+        long unread;
+        long readSeq;
+    }
+
+    private final ParticipantDirectory participants;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public InMemoryInboxStore(ParticipantDirectory participants) {
+        this.participants = participants;
+    }
+
+    @Override
+    public void recordMessage(MessageEntity message) {
+        String conversationId = message.getConversationId();
+        Set<String> users = new LinkedHashSet<>(participants.of(conversationId));
+        users.add(message.getSenderId());
+        for (String userId : users) {
+            if (userId == null || userId.isEmpty()) {
+                continue;
+            }
+            Entry entry = entries.computeIfAbsent(key(userId, conversationId), k -> new Entry());
+            synchronized (entry) {
+                entry.lastSeq = Math.max(entry.lastSeq, message.getSeq());
+                if (!userId.equals(message.getSenderId())) {
+                    entry.unread++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void recordRead(String conversationId, String messageId, String senderId) {
+        if (!conversationId.startsWith("direct_")) {
+            return;
+        }
+        for (String userId : participants.of(conversationId)) {
+            Entry entry = userId.equals(senderId) ? null : entries.get(key(userId, conversationId));
+            if (entry == null) {
+                continue;
+            }
+            synchronized (entry) {
+                if (entry.readSeq == 0 && entry.unread > 0) {
+                    entry.unread--;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void recordReadWatermark(String conversationId, String userId, long readSeq) {
+        Entry entry = entries.computeIfAbsent(key(userId, conversationId), k -> new Entry());
+        synchronized (entry) {
+            entry.readSeq = Math.max(entry.readSeq, readSeq);
+            entry.unread = Math.min(entry.unread, Math.max(0, entry.lastSeq - entry.readSeq));
+        }
+    }
+
+    /**
+     * Não lidas de userId na conversa (0 se não há entrada)
+     */
+    public long getUnread(String userId, String conversationId) {
+        Entry entry = entries.get(key(userId, conversationId));
+        if (entry == null) {
+            return 0;
+        }
+        synchronized (entry) {
+            return entry.unread;
+        }
+    }
+
+    private static String key(String userId, String conversationId) {
+        return userId + "|" + conversationId;
+    }
+}
@@ -0,0 +1,167 @@
+package chat4all.worker.store;
+
+import chat4all.shared.Logger;
+import chat4all.worker.cassandra.MessageEntity;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * InMemoryMessageStore - MessageStore/StatusStore/UserDirectory/GroupDirectory/ParticipantDirectory sem I/O
+ *
+ * PROPÓSITO:
+ * - Dev mode e testes de performance que isolam o custo de CPU do worker do custo
+ *   de I/O (benchmarks JMH e o harness end-to-end)
+ * - NÃO é durável: tudo some quando o processo termina
+ *
+ * ESTRUTURAS (compactas, sem boxing no caminho quente):
+ * - messages: message_id → Entry (conversation_id, seq long, status byte)
+ *   Não guarda conteúdo: o worker só precisa de deduplicação e da PK para o status
+ * - sequences: conversation_id → AtomicLong (seq monotônico por conversa, sem blocos)
+ * - groups: group_id → Group (nome + membros imutáveis; List.of é um array por baixo,
+ *   então o fan-out itera sem cópia)
+ *
+ * Inbox e feed de sync em memória: InMemoryInboxStore e InMemoryChangeFeed, que
+ * recebem este store como ParticipantDirectory (como no Cassandra).
+ */
+public class InMemoryMessageStore implements MessageStore, StatusStore, UserDirectory, GroupDirectory,
+        ParticipantDirectory {
+
+    private static final Logger log = new Logger("router-worker");
+
+    // Códigos de status: 1 byte por mensagem em vez de uma referência a String
+    private static final String[] STATUSES = {"SENT", "DELIVERED", "READ", "FAILED"};
+
+    private final Map<String, Entry> messages = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+    private final Map<String, String> usernames = new ConcurrentHashMap<>();
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+
+    private static final class Entry {
+        final String conversationId;
+        final long seq;
+        volatile byte status;
+
+        Entry(String conversationId, long seq, byte status) {
+            this.conversationId = conversationId;
+            this.seq = seq;
+            this.status = status;
+        }
+    }
+
+    private static final class Group {
+        final String name;
+        final List<String> members;
+
+        Group(String name, List<String> members) {
+            this.name = name;
+            this.members = members;
+        }
+    }
+
+    public void putUser(String userId, String username) {
+        usernames.put(userId, username);
+    }
+
+    public void putGroup(String groupId, String name, List<String> members) {
+        groups.put(groupId, new Group(name, List.copyOf(members)));
+    }
+
+    /**
+     * Esquece as mensagens gravadas (entre iterações de benchmark, para o mapa não
+     * crescer sem limite). Sequências, usuários e grupos são mantidos.
+     */
+    public void clearMessages() {
+        messages.clear();
+    }
+
+    public int messageCount() {
+        return messages.size();
+    }
+
+    /**
+     * Status atual da mensagem, ou null se não foi gravada
+     */
+    public String getStatus(String messageId) {
+        Entry entry = messages.get(messageId);
+        return entry != null ? STATUSES[entry.status] : null;
+    }
+
+    @Override
+    public boolean saveMessage(MessageEntity message) {
+        long seq = message.getSeq() > 0 ? message.getSeq() : nextSeq(message.getConversationId());
+        message.setSeq(seq);
+        byte status = statusCode(message.getStatus());
+        messages.put(message.getMessageId(), new Entry(message.getConversationId(), seq, status < 0 ? 0 : status));
+        return true;
+    }
+
+    @Override
+    public long nextSeq(String conversationId) {
+        return sequences.computeIfAbsent(conversationId, c -> new AtomicLong()).incrementAndGet();
+    }
+
+    @Override
+    public boolean findExisting(MessageEntity message) {
+        Entry entry = messages.get(message.getMessageId());
+        if (entry == null) {
+            return false;
+        }
+        message.setSeq(entry.seq);
+        message.setStatus(STATUSES[entry.status]);
+        return true;
+    }
+
+    @Override
+    public boolean updateMessageStatus(String messageId, String conversationId, long seq, String newStatus) {
+        byte status = statusCode(newStatus);
+        if (status < 0) {
+            log.error("✗ Unknown status {} for {}", newStatus, messageId);
+            return false;
+        }
+        Entry entry = messages.get(messageId);
+        if (entry == null) {
+            return false;
+        }
+        entry.status = status;
+        return true;
+    }
+
+    @Override
+    public String getUsername(String userId) {
+        return usernames.get(userId);
+    }
+
+    @Override
+    public String getGroupName(String groupId) {
+        Group group = groups.get(groupId);
+        return group != null ? group.name : null;
+    }
+
+    @Override
+    public List<String> getGroupMembers(String groupId) {
+        Group group = groups.get(groupId);
+        return group != null ? group.members : null;
+    }
+
+    @Override
+    public List<String> of(String conversationId) {
+        if (conversationId.startsWith("direct_")) {
+            return ParticipantDirectory.directParticipants(conversationId);
+        }
+        Group group = groups.get(conversationId);
+        return group != null ? group.members : Collections.emptyList();
+    }
+
+    private static byte statusCode(String status) {
+        for (byte i = 0; i < STATUSES.length; i++) {
+            if (STATUSES[i].equals(status)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
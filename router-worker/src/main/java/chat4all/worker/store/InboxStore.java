@@ -0,0 +1,29 @@
+package chat4all.worker.store;
+
+import chat4all.worker.cassandra.MessageEntity;
+
+/**
+ * InboxStore - Caixa de entrada por usuário (última mensagem + não lidas por conversa)
+ *
+ * Regras do contador (iguais em todas as implementações):
+ * - +1 para cada participante exceto o remetente quando a mensagem é salva
+ * - Marca de leitura: contador do leitor passa a ser no máximo last_seq - read_seq
+ * - READ por mensagem: -1 só em conversas diretas e só para quem ainda não tem marca
+ */
+public interface InboxStore {
+
+    /**
+     * Mensagem salva: última mensagem de todos e +1 no contador dos destinatários
+     */
+    void recordMessage(MessageEntity message);
+
+    /**
+     * Mensagem virou READ (status por mensagem, sem o leitor)
+     */
+    void recordRead(String conversationId, String messageId, String senderId);
+
+    /**
+     * userId leu a conversa até readSeq
+     */
+    void recordReadWatermark(String conversationId, String userId, long readSeq);
+}
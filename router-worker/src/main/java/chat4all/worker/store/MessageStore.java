@@ -0,0 +1,48 @@
+package chat4all.worker.store;
+
+import chat4all.worker.cassandra.MessageEntity;
+
+/**
+ * MessageStore - Escrita de mensagens pelo worker
+ *
+ * Implementações:
+ * - CassandraMessageStore: produção (tabela messages + ConversationSequenceAllocator)
+ * - InMemoryMessageStore: dev mode e benchmarks (sem I/O)
+ *
+ * EDUCATIONAL NOTE: MessageProcessor depende desta interface, não do Cassandra.
+ * Decorators (cache de deduplicação, escrita assíncrona) podem envolver qualquer
+ * implementação sem mudar o processamento.
+ */
+public interface MessageStore {
+
+    /**
+     * Persiste a mensagem; se o seq ainda não foi atribuído (0), aloca o próximo
+     * da conversação (entity.setSeq)
+     *
+     * @return true se salvou, false se erro
+     */
+    boolean saveMessage(MessageEntity message);
+
+    /**
+     * Reserva o próximo seq da conversação sem gravar nada
+     *
+     * O consumer do tópico principal (dono da partição) atribui o seq antes da
+     * primeira tentativa; as camadas de retry reusam o mesmo número.
+     */
+    long nextSeq(String conversationId);
+
+    /**
+     * Deduplicação e retomada: se message_id já foi gravado, copia o seq e o
+     * status gravados para a entidade (setSeq/setStatus)
+     *
+     * @return true se a mensagem já existe
+     */
+    boolean findExisting(MessageEntity message);
+
+    /**
+     * Descarta blocos de sequência reservados (partições revogadas no rebalance)
+     */
+    default void releaseSequenceBlocks() {
+        // Implementações sem reserva de blocos não têm nada a descartar
+    }
+}
@@ -0,0 +1,34 @@
+package chat4all.worker.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ParticipantDirectory - Quem participa de uma conversa (fan-out da inbox e do feed de sync)
+ */
+public interface ParticipantDirectory {
+
+    /**
+     * Participantes da conversa. Retorna lista vazia se não encontrar.
+     */
+    List<String> of(String conversationId);
+
+    /**
+     * Extrai os dois usuários de direct_user_<uuid>_user_<uuid> (sem consulta)
+     */
+    static List<String> directParticipants(String conversationId) {
+        String withoutPrefix = conversationId.substring("direct_".length());
+        if (!withoutPrefix.startsWith("user_")) {
+            return Collections.emptyList();
+        }
+        String[] parts = withoutPrefix.substring("user_".length()).split("_user_");
+        if (parts.length != 2) {
+            return Collections.emptyList();
+        }
+        List<String> users = new ArrayList<>(2);
+        users.add("user_" + parts[0]);
+        users.add("user_" + parts[1]);
+        return users;
+    }
+}
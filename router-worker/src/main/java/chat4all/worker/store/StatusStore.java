@@ -0,0 +1,18 @@
+package chat4all.worker.store;
+
+/**
+ * StatusStore - Transições de status de mensagens (SENT → DELIVERED → READ)
+ */
+public interface StatusStore {
+
+    /**
+     * Atualiza o status de uma mensagem já gravada
+     *
+     * @param messageId ID da mensagem
+     * @param conversationId ID da conversação (parte da PK no Cassandra)
+     * @param seq Número de sequência da mensagem (parte da PK no Cassandra)
+     * @param newStatus Novo status (SENT, DELIVERED, READ)
+     * @return true se atualizou, false se erro
+     */
+    boolean updateMessageStatus(String messageId, String conversationId, long seq, String newStatus);
+}
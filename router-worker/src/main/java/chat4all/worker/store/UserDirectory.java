@@ -0,0 +1,12 @@
+package chat4all.worker.store;
+
+/**
+ * UserDirectory - Consulta de usuários usada nas notificações
+ */
+public interface UserDirectory {
+
+    /**
+     * Username a partir do user_id. Retorna null se não encontrar.
+     */
+    String getUsername(String userId);
+}
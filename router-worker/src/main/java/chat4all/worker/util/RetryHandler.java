@@ -46,6 +46,11 @@ package chat4all.worker.util;
  * - Kafka Consumer: Exponential backoff for broker reconnection
  * - HTTP clients: 429 Too Many Requests -> exponential backoff
  * 
+ * NOT FOR KAFKA RECORDS:
+ * Sleeping inside a consumer loop blocks the whole partition. Failed records
+ * go to retry topics instead (chat4all.shared.kafka.RetryRouter / RetryTopicConsumer).
+ * Use this class only for short, local operations.
+ * 
  * @author Chat4All Educational Project
  * @version 1.0.0
  */
@@ -0,0 +1,221 @@
+package chat4all.worker.cassandra;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * ConversationInboxTest - Contador de não lidas com marcas de leitura e READ por mensagem
+ *
+ * As tabelas user_conversations, user_conversation_unread e read_watermarks são
+ * simuladas em memória por uma CqlSession fake (Proxy) que entende os
+ * statements da inbox (mesma técnica do ConversationSequenceAllocatorTest).
+ */
+public class ConversationInboxTest {
+
+    private static final String DIRECT = "direct_user_a_user_b";
+
+    private FakeInboxTables tables;
+    private ConversationInbox inbox;
+    private long nextSeq;
+
+    @BeforeEach
+    public void setUp() {
+        tables = new FakeInboxTables();
+        CqlSession session = tables.session();
+        inbox = new ConversationInbox(session, new ConversationParticipants(session));
+        nextSeq = 1;
+    }
+
+    /**
+     * Tabelas da inbox em memória, chave "user_id|conversation_id"
+     */
+    private static final class FakeInboxTables {
+        final Map<String, Long> lastSeq = new HashMap<>();
+        final Map<String, Long> unread = new HashMap<>();
+        final Map<String, Long> readSeq = new HashMap<>();
+        final Map<Object, Object[]> bound = Collections.synchronizedMap(new IdentityHashMap<>());
+
+        CqlSession session() {
+            return proxy(CqlSession.class, (method, args) -> {
+                switch (method) {
+                    case "prepare":
+                        return prepared((String) args[0]);
+                    case "execute":
+                        return execute(bound.remove(args[0]));
+                    case "executeAsync":
+                        execute(bound.remove(args[0]));
+                        return CompletableFuture.completedFuture(null);
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private PreparedStatement prepared(String query) {
+            return proxy(PreparedStatement.class, (method, args) -> {
+                if (!"bind".equals(method)) {
+                    return null;
+                }
+                BoundStatement statement = proxy(BoundStatement.class, (m, a) -> null);
+                bound.put(statement, new Object[] {query, args[0]});
+                return statement;
+            });
+        }
+
+        private synchronized ResultSet execute(Object[] statement) {
+            String query = (String) statement[0];
+            Object[] values = (Object[]) statement[1];
+            if (query.startsWith("UPDATE user_conversations")) {
+                lastSeq.merge(values[6] + "|" + values[7], (Long) values[5], Math::max);
+            } else if (query.contains("unread = unread + 1")) {
+                unread.merge(values[0] + "|" + values[1], 1L, Long::sum);
+            } else if (query.contains("unread = unread - 1")) {
+                unread.merge(values[0] + "|" + values[1], -1L, Long::sum);
+            } else if (query.contains("unread = unread - ?")) {
+                unread.merge(values[1] + "|" + values[2], -(Long) values[0], Long::sum);
+            } else if (query.startsWith("SELECT last_seq")) {
+                return result("last_seq", lastSeq.get(values[0] + "|" + values[1]));
+            } else if (query.startsWith("SELECT unread")) {
+                return result("unread", unread.get(values[0] + "|" + values[1]));
+            } else if (query.startsWith("SELECT read_seq")) {
+                return result("read_seq", readSeq.get(values[1] + "|" + values[0]));
+            }
+            return result(null, null);
+        }
+
+        private static ResultSet result(String column, Long value) {
+            Row row = value == null ? null : proxy(Row.class, (method, args) -> {
+                switch (method) {
+                    case "getLong":
+                        return column.equals(args[0]) ? value : 0L;
+                    case "isNull":
+                        return !column.equals(args[0]);
+                    default:
+                        return null;
+                }
+            });
+            return proxy(ResultSet.class, (method, args) -> "one".equals(method) ? row : null);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                    default:
+                        return handler.invoke(method.getName(), args);
+                }
+            });
+    }
+
+    /**
+     * user_a envia count mensagens para user_b
+     */
+    private void send(int count) {
+        for (int i = 0; i < count; i++) {
+            long seq = nextSeq++;
+            MessageEntity message = new MessageEntity(DIRECT, Instant.ofEpochMilli(1000L + seq), "msg_" + seq,
+                "user_a", "hi", "SENT");
+            message.setSeq(seq);
+            inbox.recordMessage(message);
+        }
+    }
+
+    /**
+     * Mesma ordem da API: grava read_watermarks (maior vence) e publica o evento
+     */
+    private void markRead(String userId, long readSeq) {
+        tables.readSeq.merge(userId + "|" + DIRECT, readSeq, Math::max);
+        inbox.recordReadWatermark(DIRECT, userId, readSeq);
+    }
+
+    private long unreadOf(String userId) {
+        return tables.unread.getOrDefault(userId + "|" + DIRECT, 0L);
+    }
+
+    /**
+     * GIVEN: 5 mensagens não lidas e uma marca de leitura até o seq 3
+     * WHEN: Chega o READ por mensagem de msg_3 (já coberta pela marca) e depois a marca vai até 5
+     * THEN: O READ não conta a mesma leitura de novo (continua 2) e o contador termina em 0, não -1
+     */
+    @Test
+    public void testWatermarkThenPerMessageReadDoesNotDoubleCount() {
+        send(5);
+        assertThat(unreadOf("user_b")).isEqualTo(5);
+
+        markRead("user_b", 3);
+        assertThat(unreadOf("user_b")).isEqualTo(2);
+
+        inbox.recordRead(DIRECT, "msg_3", "user_a");
+        assertThat(unreadOf("user_b")).isEqualTo(2);
+
+        markRead("user_b", 5);
+        assertThat(unreadOf("user_b")).isEqualTo(0);
+        assertThat(unreadOf("user_a")).isEqualTo(0);
+    }
+
+    /**
+     * GIVEN: 5 mensagens e marcas parciais
+     * WHEN: O usuário marca até 2, depois chega um evento atrasado com a marca 1
+     * THEN: A marca parcial reduz para 3 e a atrasada não devolve mensagens ao contador
+     */
+    @Test
+    public void testPartialWatermarkLowersUnread() {
+        send(5);
+
+        markRead("user_b", 2);
+        assertThat(unreadOf("user_b")).isEqualTo(3);
+
+        inbox.recordReadWatermark(DIRECT, "user_b", 1);
+        assertThat(unreadOf("user_b")).isEqualTo(3);
+
+        send(2);
+        assertThat(unreadOf("user_b")).isEqualTo(5);
+        markRead("user_b", 6);
+        assertThat(unreadOf("user_b")).isEqualTo(1);
+    }
+
+    /**
+     * GIVEN: Um destinatário que nunca marcou leitura
+     * WHEN: Duas mensagens viram READ e depois ele marca até a última
+     * THEN: Cada READ decrementa; a marca leva o contador a 0 sem ficar negativo
+     */
+    @Test
+    public void testPerMessageReadBeforeAnyWatermark() {
+        send(3);
+
+        inbox.recordRead(DIRECT, "msg_1", "user_a");
+        inbox.recordRead(DIRECT, "msg_2", "user_a");
+        assertThat(unreadOf("user_b")).isEqualTo(1);
+
+        markRead("user_b", 3);
+        assertThat(unreadOf("user_b")).isEqualTo(0);
+    }
+}
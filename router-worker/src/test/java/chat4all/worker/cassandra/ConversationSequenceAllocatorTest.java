@@ -0,0 +1,278 @@
+package chat4all.worker.cassandra;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * ConversationSequenceAllocatorTest - Blocos reservados com CAS, contenção e rebalance
+ *
+ * A tabela conversation_sequences é simulada em memória por uma CqlSession fake
+ * (Proxy) que entende os três statements do allocator; o CAS é um
+ * ConcurrentHashMap.replace(), com a mesma semântica do IF next_seq = ?.
+ */
+public class ConversationSequenceAllocatorTest {
+
+    private static final String CONVERSATION = "direct_user_a_user_b";
+
+    private FakeSequenceTable table;
+
+    @BeforeEach
+    public void setUp() {
+        table = new FakeSequenceTable();
+    }
+
+    /**
+     * conversation_sequences em memória, compartilhada pelos "workers" de um teste
+     */
+    private static final class FakeSequenceTable {
+        final Map<String, Long> nextSeq = new ConcurrentHashMap<>();
+        final Map<Object, Object[]> bound = Collections.synchronizedMap(new IdentityHashMap<>());
+        final AtomicInteger casAttempts = new AtomicInteger();
+
+        // CAS a perder: antes de aplicar, "outro worker" reserva stealSize números
+        final AtomicInteger stealNext = new AtomicInteger();
+        volatile long stealSize;
+
+        CqlSession session() {
+            return proxy(CqlSession.class, (method, args) -> {
+                switch (method) {
+                    case "prepare":
+                        return prepared((String) args[0]);
+                    case "execute":
+                        Object[] statement = bound.remove(args[0]);
+                        return execute((String) statement[0], (Object[]) statement[1]);
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private PreparedStatement prepared(String query) {
+            return proxy(PreparedStatement.class, (method, args) -> {
+                if (!"bind".equals(method)) {
+                    return null;
+                }
+                BoundStatement statement = proxy(BoundStatement.class, (m, a) -> null);
+                bound.put(statement, new Object[] {query, args[0]});
+                return statement;
+            });
+        }
+
+        private ResultSet execute(String query, Object[] values) {
+            if (query.startsWith("SELECT")) {
+                return result(true, nextSeq.get((String) values[0]));
+            }
+            if (query.startsWith("INSERT")) {
+                String conversationId = (String) values[0];
+                Long current = nextSeq.putIfAbsent(conversationId, (Long) values[1]);
+                return result(current == null, current);
+            }
+            // UPDATE ... SET next_seq = ? WHERE conversation_id = ? IF next_seq = ?
+            casAttempts.incrementAndGet();
+            String conversationId = (String) values[1];
+            long expected = (Long) values[2];
+            if (stealNext.getAndDecrement() > 0) {
+                nextSeq.compute(conversationId, (id, current) -> current + stealSize);
+            }
+            boolean applied = nextSeq.replace(conversationId, expected, (Long) values[0]);
+            return result(applied, applied ? null : nextSeq.get(conversationId));
+        }
+
+        /**
+         * ResultSet de uma linha (ou vazio); LWT não aplicada devolve o valor atual
+         */
+        private static ResultSet result(boolean applied, Long value) {
+            Row row = value == null ? null : proxy(Row.class, (method, args) -> {
+                switch (method) {
+                    case "getLong":
+                        return value;
+                    case "isNull":
+                        return false;
+                    default:
+                        return null;
+                }
+            });
+            return proxy(ResultSet.class, (method, args) -> {
+                switch (method) {
+                    case "wasApplied":
+                        return applied;
+                    case "one":
+                        return row;
+                    default:
+                        return null;
+                }
+            });
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                    default:
+                        return handler.invoke(method.getName(), args);
+                }
+            });
+    }
+
+    /**
+     * GIVEN: Uma conversa nova e blocos de 10
+     * WHEN: O allocator entrega 25 números
+     * THEN: Sequência 1..25 sem buracos, com 3 reservas (uma LWT por bloco)
+     */
+    @Test
+    public void testSequentialNumbersFromReservedBlocks() {
+        ConversationSequenceAllocator allocator = new ConversationSequenceAllocator(table.session(), 10);
+
+        for (long expected = 1; expected <= 25; expected++) {
+            assertThat(allocator.next(CONVERSATION)).isEqualTo(expected);
+        }
+        assertThat(allocator.getBlocksReserved()).isEqualTo(3);
+        assertThat(table.nextSeq).containsEntry(CONVERSATION, 31L);
+        assertThat(allocator.next("group_1")).isEqualTo(1);
+    }
+
+    /**
+     * GIVEN: Outro worker ganha o CAS duas vezes seguidas
+     * WHEN: O allocator reserva o próximo bloco
+     * THEN: Tenta de novo com o valor devolvido pela LWT e fica com o bloco seguinte
+     */
+    @Test
+    public void testCasContentionRetriesWithCurrentValue() {
+        ConversationSequenceAllocator allocator = new ConversationSequenceAllocator(table.session(), 10);
+        allocator.next(CONVERSATION); // cria a linha: next_seq = 11
+        allocator.invalidateAll();
+
+        table.stealSize = 10;
+        table.stealNext.set(2);
+
+        assertThat(allocator.next(CONVERSATION)).isEqualTo(31);
+        assertThat(table.casAttempts.get()).isEqualTo(3);
+        assertThat(table.nextSeq).containsEntry(CONVERSATION, 41L);
+    }
+
+    /**
+     * GIVEN: Contenção que nunca acaba
+     * WHEN: O allocator esgota as tentativas de CAS
+     * THEN: Falha com IllegalStateException (a mensagem vai para o retry) em vez de repetir um número
+     */
+    @Test
+    public void testCasContentionGivesUpAfterMaxAttempts() {
+        ConversationSequenceAllocator allocator = new ConversationSequenceAllocator(table.session(), 10);
+        allocator.next(CONVERSATION);
+        allocator.invalidateAll();
+
+        table.stealSize = 10;
+        table.stealNext.set(Integer.MAX_VALUE);
+
+        assertThatThrownBy(() -> allocator.next(CONVERSATION))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining(CONVERSATION);
+    }
+
+    /**
+     * GIVEN: Worker 1 dono da partição com um bloco pela metade
+     * WHEN: A partição vai para o worker 2 e depois volta (invalidateAll a cada revogação)
+     * THEN: Cada dono continua acima de tudo que já foi entregue; sem invalidateAll o
+     *       worker 1 voltaria a usar o bloco antigo e a sequência retrocederia
+     */
+    @Test
+    public void testInvalidateAllKeepsOrderAcrossRebalance() {
+        ConversationSequenceAllocator worker1 = new ConversationSequenceAllocator(table.session(), 10);
+        ConversationSequenceAllocator worker2 = new ConversationSequenceAllocator(table.session(), 10);
+
+        List<Long> delivered = new ArrayList<>();
+        delivered.add(worker1.next(CONVERSATION));
+        delivered.add(worker1.next(CONVERSATION));
+
+        // Rebalance: worker 1 perde a partição
+        worker1.invalidateAll();
+        delivered.add(worker2.next(CONVERSATION));
+        delivered.add(worker2.next(CONVERSATION));
+
+        // A partição volta para o worker 1
+        worker2.invalidateAll();
+        delivered.add(worker1.next(CONVERSATION));
+
+        assertThat(delivered).containsExactly(1L, 2L, 11L, 12L, 21L).isSorted();
+
+        // Contraste: um bloco que não foi descartado entregaria números antigos
+        ConversationSequenceAllocator notInvalidated = new ConversationSequenceAllocator(table.session(), 10);
+        long first = notInvalidated.next(CONVERSATION);
+        worker1.invalidateAll();
+        assertThat(worker1.next(CONVERSATION)).isGreaterThan(first);
+        assertThat(notInvalidated.next(CONVERSATION)).isLessThan(worker1.next(CONVERSATION));
+    }
+
+    /**
+     * GIVEN: Dois workers alocando para a mesma conversa ao mesmo tempo (blocos pequenos)
+     * WHEN: Todas as threads terminam
+     * THEN: Nenhum número é entregue duas vezes
+     */
+    @Test
+    public void testConcurrentWorkersNeverShareNumbers() throws Exception {
+        ConversationSequenceAllocator worker1 = new ConversationSequenceAllocator(table.session(), 5);
+        ConversationSequenceAllocator worker2 = new ConversationSequenceAllocator(table.session(), 5);
+        int threads = 4;
+        int perThread = 2_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                ConversationSequenceAllocator allocator = t % 2 == 0 ? worker1 : worker2;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    List<Long> seqs = new ArrayList<>(perThread);
+                    for (int i = 0; i < perThread; i++) {
+                        seqs.add(allocator.next(CONVERSATION));
+                    }
+                    return seqs;
+                }));
+            }
+            start.countDown();
+
+            List<Long> all = new ArrayList<>();
+            for (Future<List<Long>> future : futures) {
+                List<Long> seqs = future.get();
+                assertThat(seqs).as("per-thread order").isSorted();
+                all.addAll(seqs);
+            }
+            assertThat(all).hasSize(threads * perThread).doesNotHaveDuplicates();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
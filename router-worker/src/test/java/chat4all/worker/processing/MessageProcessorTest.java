@@ -0,0 +1,130 @@
+package chat4all.worker.processing;
+
+import chat4all.shared.MessageEvent;
+import chat4all.worker.cassandra.MessageEntity;
+import chat4all.worker.notifications.RedisNotificationPublisher;
+import chat4all.worker.store.InMemoryChangeFeed;
+import chat4all.worker.store.InMemoryInboxStore;
+import chat4all.worker.store.InMemoryMessageStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * MessageProcessorTest - Deduplicação e retomada de mensagens reprocessadas pelo retry
+ */
+public class MessageProcessorTest {
+
+    private static final String CONVERSATION = "direct_user_a_user_b";
+
+    private InMemoryMessageStore store;
+    private InMemoryInboxStore inbox;
+    private InMemoryChangeFeed changeFeed;
+    private FlakyNotificationPublisher publisher;
+    private MessageProcessor processor;
+
+    /**
+     * Publisher sem Redis: conta notificações e falha as primeiras N chamadas
+     */
+    private static final class FlakyNotificationPublisher extends RedisNotificationPublisher {
+        final AtomicInteger failuresLeft = new AtomicInteger();
+        final AtomicInteger published = new AtomicInteger();
+
+        FlakyNotificationPublisher() {
+            super("127.0.0.1", 6379);
+        }
+
+        @Override
+        public void publishNewMessageNotification(String recipientUserId, String messageId, String senderId,
+                                                  String senderUsername, String conversationId, String content,
+                                                  String fileId, String groupName, long acceptedAt) {
+            if (failuresLeft.getAndDecrement() > 0) {
+                throw new IllegalStateException("Redis unavailable");
+            }
+            published.incrementAndGet();
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        store = new InMemoryMessageStore();
+        publisher = new FlakyNotificationPublisher();
+        inbox = new InMemoryInboxStore(store);
+        changeFeed = new InMemoryChangeFeed(store);
+        processor = new MessageProcessor(store, null, publisher, changeFeed, inbox);
+        processor.setSimulatedDeliveryMs(0);
+    }
+
+    private static MessageEvent event(String messageId) {
+        return new MessageEvent(messageId, CONVERSATION, "user_a", "hello", 1000L, "MESSAGE_SENT");
+    }
+
+    private long seqOf(String messageId) {
+        MessageEntity probe = new MessageEntity(CONVERSATION, Instant.EPOCH, messageId, "user_a", "", "SENT");
+        assertThat(store.findExisting(probe)).isTrue();
+        return probe.getSeq();
+    }
+
+    /**
+     * GIVEN: A notificação falha depois que a mensagem foi gravada como SENT
+     * WHEN: O retry reprocessa o mesmo evento
+     * THEN: A mensagem não é gravada de novo (mesmo seq, inbox e feed contados uma vez),
+     *       a notificação sai e o status vira DELIVERED
+     */
+    @Test
+    public void testRetryResumesAfterFailureFollowingSave() {
+        publisher.failuresLeft.set(1);
+
+        assertThatThrownBy(() -> processor.process(event("msg_1"))).isInstanceOf(IllegalStateException.class);
+        assertThat(store.getStatus("msg_1")).isEqualTo("SENT");
+        long seq = seqOf("msg_1");
+
+        assertThat(processor.process(event("msg_1"))).isTrue();
+
+        assertThat(store.getStatus("msg_1")).isEqualTo("DELIVERED");
+        assertThat(seqOf("msg_1")).isEqualTo(seq);
+        assertThat(store.messageCount()).isEqualTo(1);
+        assertThat(publisher.published.get()).isEqualTo(1);
+        assertThat(inbox.getUnread("user_b", CONVERSATION)).isEqualTo(1);
+        assertThat(changeFeed.getChangeCount("user_b")).isEqualTo(2); // MESSAGE + STATUS DELIVERED
+
+        processor.process(event("msg_2"));
+        assertThat(seqOf("msg_2")).isEqualTo(seq + 1);
+    }
+
+    /**
+     * GIVEN: msg_1 recebeu o seq na primeira tentativa (dono da partição) e falhou antes do save
+     * WHEN: msg_2 é processada e só depois o retry de msg_1 chega com o seq reservado
+     * THEN: msg_1 é gravada com o seq original, abaixo de msg_2, sem alocar outro número
+     */
+    @Test
+    public void testRetryReusesSeqAssignedBeforeFirstAttempt() {
+        long assigned = processor.reserveSeq(CONVERSATION);
+
+        processor.process(event("msg_2"), processor.reserveSeq(CONVERSATION));
+        assertThat(processor.process(event("msg_1"), assigned)).isTrue();
+
+        assertThat(seqOf("msg_1")).isEqualTo(assigned);
+        assertThat(seqOf("msg_2")).isEqualTo(assigned + 1);
+        assertThat(processor.reserveSeq(CONVERSATION)).isEqualTo(assigned + 2);
+    }
+
+    /**
+     * GIVEN: Uma mensagem processada por completo (DELIVERED)
+     * WHEN: O Kafka reentrega o mesmo evento
+     * THEN: É descartada como duplicada, sem notificar de novo
+     */
+    @Test
+    public void testFullyProcessedMessageIsSkipped() {
+        assertThat(processor.process(event("msg_1"))).isTrue();
+
+        assertThat(processor.process(event("msg_1"))).isFalse();
+
+        assertThat(store.getStatus("msg_1")).isEqualTo("DELIVERED");
+        assertThat(publisher.published.get()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,212 @@
+package chat4all.shared;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * AsyncLogWriter - Ring buffer lock-free + thread escritora para o Logger
+ *
+ * PROPÓSITO EDUCACIONAL: Por que System.out limita throughput?
+ * ==================
+ * - PrintStream.println é synchronized: todas as threads disputam o mesmo lock
+ * - System.out tem autoflush: cada linha é uma syscall write() no container
+ * - A thread que processa a mensagem fica parada esperando o I/O do log
+ *
+ * SOLUÇÃO (produtores múltiplos, um consumidor):
+ * ```
+ * thread Kafka ─┐                        ┌──────────────┐
+ * thread HTTP  ─┼─► ring buffer (CAS) ──►│ log-writer   │──► stdout (buffer 64KB,
+ * thread retry ─┘   [seq|linha][seq|..]  └──────────────┘     flush quando esvazia)
+ * ```
+ * - Cada slot tem um número de sequência (fila limitada de Dmitry Vyukov):
+ *   o produtor reserva a posição com um CAS e publica escrevendo a sequência;
+ *   nenhum lock, nenhuma alocação por linha além da própria linha (byte[] UTF-8)
+ * - Fila cheia: a linha é descartada e contada (log nunca bloqueia o hot path);
+ *   WARN/ERROR vão direto para stdout em vez de serem perdidos
+ * - Linhas descartadas são reportadas pela própria thread escritora
+ *
+ * CONFIGURAÇÃO:
+ * - LOG_ASYNC (true): false = escrita síncrona (comportamento antigo)
+ * - LOG_QUEUE_SIZE (8192): arredondado para potência de 2
+ *
+ * EDUCATIONAL NOTE: a thread escritora é daemon e um shutdown hook esvazia o
+ * buffer, então as últimas linhas antes de um stop não se perdem.
+ */
+final class AsyncLogWriter {
+
+    // Espera máxima da thread escritora com a fila vazia
+    private static final long MAX_PARK_NANOS = 10_000_000L; // 10ms
+
+    private static final AsyncLogWriter INSTANCE = new AsyncLogWriter(
+        Boolean.parseBoolean(System.getenv().getOrDefault("LOG_ASYNC", "true")),
+        Integer.parseInt(System.getenv().getOrDefault("LOG_QUEUE_SIZE", "8192")),
+        new FileOutputStream(FileDescriptor.out)
+    );
+
+    private final boolean async;
+    private final int mask;
+    private final byte[][] lines;
+    private final AtomicLongArray sequences;
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    private long dequeuePosition; // só a thread escritora
+    private final AtomicLong dropped = new AtomicLong();
+    private long reportedDrops; // só a thread escritora
+    private final OutputStream out;
+    private final Thread writer;
+
+    AsyncLogWriter(boolean async, int queueSize, OutputStream target) {
+        this.async = async;
+        int capacity = Integer.highestOneBit(Math.max(2, queueSize - 1)) << 1;
+        this.mask = capacity - 1;
+        this.lines = new byte[capacity][];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.out = new BufferedOutputStream(target, 64 * 1024);
+
+        if (async) {
+            this.writer = new Thread(this::drainLoop, "log-writer");
+            writer.setDaemon(true);
+            writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::drainOnShutdown, "log-writer-shutdown"));
+        } else {
+            this.writer = null;
+        }
+    }
+
+    static AsyncLogWriter get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Enfileira uma linha já codificada em UTF-8 (sem '\n')
+     *
+     * @param urgent WARN/ERROR: se a fila estiver cheia, escreve de forma síncrona
+     */
+    void write(byte[] line, boolean urgent) {
+        if (!async) {
+            writeSync(line);
+            return;
+        }
+        if (!offer(line)) {
+            if (urgent) {
+                writeSync(line);
+            } else {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Reserva um slot com CAS e publica a linha (false = fila cheia)
+     */
+    boolean offer(byte[] line) {
+        while (true) {
+            long position = enqueuePosition.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    lines[index] = line;
+                    sequences.lazySet(index, position + 1); // publica (release)
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false; // slot ainda não consumido: fila cheia
+            }
+            // difference > 0: outro produtor avançou, tenta de novo
+        }
+    }
+
+    /**
+     * Retira a próxima linha (null = fila vazia). Somente a thread escritora.
+     */
+    byte[] poll() {
+        long position = dequeuePosition;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        byte[] line = lines[index];
+        lines[index] = null;
+        dequeuePosition = position + 1;
+        sequences.lazySet(index, position + mask + 1); // libera o slot para a próxima volta
+        return line;
+    }
+
+    private void drainLoop() {
+        long parkNanos = 1_000L;
+        while (true) {
+            try {
+                if (drain() > 0) {
+                    parkNanos = 1_000L;
+                } else {
+                    LockSupport.parkNanos(parkNanos);
+                    parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+                }
+            } catch (Throwable t) {
+                // A thread escritora nunca pode morrer: sem ela a fila só enche
+                System.err.println("✗ Log writer error: " + t);
+            }
+        }
+    }
+
+    /**
+     * Escreve tudo o que está na fila e faz um único flush no final
+     */
+    private synchronized int drain() throws IOException {
+        int written = 0;
+        byte[] line;
+        while ((line = poll()) != null) {
+            out.write(line);
+            out.write('\n');
+            written++;
+        }
+        long totalDropped = dropped.get();
+        long lost = totalDropped - reportedDrops;
+        if (lost > 0) {
+            reportedDrops = totalDropped;
+            out.write(("{\"level\":\"WARN\",\"component\":\"logger\",\"message\":\"Log queue full, dropped "
+                + lost + " line(s)\"}\n").getBytes(StandardCharsets.UTF_8));
+            written++;
+        }
+        if (written > 0) {
+            out.flush();
+        }
+        return written;
+    }
+
+    private synchronized void writeSync(byte[] line) {
+        try {
+            out.write(line);
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("✗ Log write failed: " + e.getMessage());
+        }
+    }
+
+    private void drainOnShutdown() {
+        try {
+            drain();
+        } catch (IOException e) {
+            System.err.println("✗ Log drain on shutdown failed: " + e.getMessage());
+        }
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    boolean isAsync() {
+        return async;
+    }
+}
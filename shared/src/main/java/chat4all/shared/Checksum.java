@@ -0,0 +1,151 @@
+package chat4all.shared;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
+
+/**
+ * Checksum - SHA-256 + hexadecimal para checksums de arquivos e chunks
+ *
+ * Usado pelo upload de arquivos da API (checksum por chunk e do arquivo completo).
+ *
+ * EDUCATIONAL NOTE: Onde estava o custo
+ * - String.format("%02x", b) por byte: parse do formato + Formatter + String por byte
+ *   (64 chamadas por SHA-256). Aqui: tabela de 16 chars e um char[] de saída
+ * - MessageDigest.getInstance("SHA-256") por chunk: busca no registro de Providers
+ *   a cada chamada. Aqui: um digest reutilizável por thread (ThreadLocal), resetado
+ *   pelo próprio digest() ao final de cada cálculo
+ * - Comparar com o checksum esperado: matchesSha256() compara os bytes do hash
+ *   direto com os caracteres hex recebidos, sem montar a String do resultado
+ *
+ * PARALELISMO:
+ * - SHA-256 de UM fluxo é sequencial por definição (cada bloco depende do anterior)
+ * - Já os chunks são independentes: sha256HexChunks() calcula o hash de cada chunk
+ *   em paralelo, e matchesSha256Async() verifica um chunk em outra thread enquanto
+ *   o chamador atualiza o digest do arquivo completo com os mesmos bytes
+ */
+public final class Checksum {
+
+    /** Tamanho em hex de um SHA-256 (32 bytes) */
+    public static final int SHA256_HEX_LENGTH = 64;
+
+    /** Abaixo disso, paralelizar custa mais do que o hash (troca de thread, fork/join) */
+    public static final int PARALLEL_THRESHOLD_BYTES = 256 * 1024;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(Checksum::newSha256);
+
+    private Checksum() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+
+    /**
+     * Novo digest SHA-256 para hashes incrementais (update() ao longo de vários chunks)
+     *
+     * Não use o digest por thread para isso: em um stream gRPC, onNext() de um mesmo
+     * upload pode rodar em threads diferentes do executor.
+     */
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Todo JRE é obrigado a suportar SHA-256
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * SHA-256 em hex minúsculo
+     */
+    public static String sha256Hex(byte[] data) {
+        return sha256Hex(data, 0, data.length);
+    }
+
+    /**
+     * SHA-256 de data[offset, offset + length) em hex minúsculo
+     */
+    public static String sha256Hex(byte[] data, int offset, int length) {
+        return toHex(sha256(data, offset, length));
+    }
+
+    /**
+     * Verifica data contra um SHA-256 em hex (maiúsculas ou minúsculas)
+     *
+     * @return false se o hash não bate ou se expectedHex não tem 64 dígitos hex
+     */
+    public static boolean matchesSha256(byte[] data, String expectedHex) {
+        if (expectedHex == null || expectedHex.length() != SHA256_HEX_LENGTH) {
+            return false;
+        }
+        byte[] hash = sha256(data, 0, data.length);
+        for (int i = 0; i < hash.length; i++) {
+            int high = Character.digit(expectedHex.charAt(2 * i), 16);
+            int low = Character.digit(expectedHex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0 || (byte) ((high << 4) | low) != hash[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * matchesSha256() no executor, para sobrepor a verificação de um chunk com outro
+     * trabalho do chamador (ex: digest do arquivo completo)
+     */
+    public static CompletableFuture<Boolean> matchesSha256Async(byte[] data, String expectedHex, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> matchesSha256(data, expectedHex), executor);
+    }
+
+    /**
+     * SHA-256 (hex) de cada chunk de chunkSize bytes; o último pode ser menor
+     *
+     * Acima de PARALLEL_THRESHOLD_BYTES os chunks são calculados em paralelo no
+     * ForkJoinPool comum (cada worker usa o seu digest por thread).
+     */
+    public static String[] sha256HexChunks(byte[] data, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        int chunks = (int) ((data.length + (long) chunkSize - 1) / chunkSize);
+        String[] hashes = new String[chunks];
+        IntStream indexes = IntStream.range(0, chunks);
+        if (data.length >= PARALLEL_THRESHOLD_BYTES && chunks > 1) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> {
+            int offset = i * chunkSize;
+            hashes[i] = sha256Hex(data, offset, Math.min(chunkSize, data.length - offset));
+        });
+        return hashes;
+    }
+
+    /**
+     * Bytes em hex minúsculo (tabela de 16 chars, sem String.format)
+     */
+    public static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0, j = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xff;
+            out[j++] = HEX[b >>> 4];
+            out[j++] = HEX[b & 0x0f];
+        }
+        return new String(out);
+    }
+
+    private static byte[] sha256(byte[] data, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > data.length - length) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length + ", size=" + data.length);
+        }
+        MessageDigest digest = SHA256.get();
+        try {
+            digest.update(data, offset, length);
+            return digest.digest();
+        } finally {
+            // digest() já reseta; o reset garante um digest limpo se update() lançar
+            digest.reset();
+        }
+    }
+}
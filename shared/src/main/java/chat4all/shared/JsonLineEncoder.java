@@ -0,0 +1,246 @@
+package chat4all.shared;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * JsonLineEncoder - Formata a linha JSON do Logger direto em bytes UTF-8
+ *
+ * PROPÓSITO EDUCACIONAL: Custo escondido de "só montar uma String"
+ * ==================
+ *
+ * O formato antigo, por linha:
+ * - DateTimeFormatter.format(Instant.now()): vários objetos temporários
+ * - StringBuilder → String → getBytes(UTF_8): a linha é copiada 3 vezes
+ * - escapeJson com replace() encadeado: até 5 Strings novas por campo
+ * - MDC em ThreadLocal<HashMap>: hash + boxing de Entry a cada put
+ *
+ * AQUI (estado por thread, reutilizado):
+ * - byte[] de trabalho: os campos são escapados e codificados em UTF-8 uma vez,
+ *   direto no buffer; a única alocação por linha é a cópia final do tamanho exato
+ *   (que vai para o ring buffer do AsyncLogWriter)
+ * - Prefixo do timestamp ("2025-01-17T14:30:45") cacheado por segundo: dentro do
+ *   mesmo segundo só os milissegundos são escritos
+ * - MDC num array fixo (trace_id, conversation_id, message_id): sem hash, sem Entry
+ * - Nomes de campo e de nível pré-codificados como constantes byte[]
+ *
+ * EDUCATIONAL NOTE: caracteres de controle (< 0x20) viram \\u00XX, então
+ * qualquer mensagem produz JSON válido (o escape antigo só tratava \\n \\r \\t).
+ */
+final class JsonLineEncoder {
+
+    // Índices do MDC fixo
+    static final int TRACE_ID = 0;
+    static final int CONVERSATION_ID = 1;
+    static final int MESSAGE_ID = 2;
+    static final int MDC_SIZE = 3;
+
+    private static final byte[][] MDC_FIELDS = {
+        ascii(",\"trace_id\":\""),
+        ascii(",\"conversation_id\":\""),
+        ascii(",\"message_id\":\"")
+    };
+
+    private static final byte[] TIMESTAMP_FIELD = ascii("{\"timestamp\":\"");
+    private static final byte[] MESSAGE_FIELD = ascii("\",\"message\":\"");
+    private static final byte[] ERROR_FIELD = ascii(",\"error\":\"");
+    private static final byte[] STACK_TRACE_FIELD = ascii("\",\"stack_trace\":\"");
+    private static final byte[][] LEVEL_FIELDS = new byte[Logger.Level.values().length][];
+    static {
+        for (Logger.Level level : Logger.Level.values()) {
+            LEVEL_FIELDS[level.ordinal()] = ascii("\",\"level\":\"" + level.name() + "\",\"component\":\"");
+        }
+    }
+
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    // Buffer maior que isso (mensagem gigante) não fica preso na thread
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    private static final int INITIAL_BUFFER = 512;
+
+    /**
+     * Estado por thread: buffer de trabalho, MDC e prefixo do segundo atual
+     */
+    static final class ThreadState {
+        final String[] mdc = new String[MDC_SIZE];
+        byte[] buffer = new byte[INITIAL_BUFFER];
+        int length;
+        long cachedSecond = Long.MIN_VALUE;
+        final byte[] secondPrefix = new byte[19]; // yyyy-MM-ddTHH:mm:ss
+    }
+
+    private static final ThreadLocal<ThreadState> STATE = ThreadLocal.withInitial(ThreadState::new);
+
+    private JsonLineEncoder() {
+    }
+
+    static ThreadState state() {
+        return STATE.get();
+    }
+
+    /**
+     * Codifica uma linha completa (sem '\n')
+     *
+     * @param component campo component já escapado (ver escape)
+     * @return bytes UTF-8 da linha, array novo do tamanho exato
+     */
+    static byte[] encode(ThreadState state, long epochMillis, Logger.Level level, byte[] component,
+                         String message, Throwable throwable) {
+        state.length = 0;
+        append(state, TIMESTAMP_FIELD);
+        appendTimestamp(state, epochMillis);
+        append(state, LEVEL_FIELDS[level.ordinal()]);
+        append(state, component);
+        append(state, MESSAGE_FIELD);
+        appendEscaped(state, message);
+        appendByte(state, '"');
+
+        String[] mdc = state.mdc;
+        for (int i = 0; i < MDC_SIZE; i++) {
+            if (mdc[i] != null) {
+                append(state, MDC_FIELDS[i]);
+                appendEscaped(state, mdc[i]);
+                appendByte(state, '"');
+            }
+        }
+
+        if (throwable != null) {
+            append(state, ERROR_FIELD);
+            appendEscaped(state, throwable.toString());
+            append(state, STACK_TRACE_FIELD);
+            appendEscaped(state, Logger.getStackTraceString(throwable));
+            appendByte(state, '"');
+        }
+        appendByte(state, '}');
+
+        byte[] line = Arrays.copyOf(state.buffer, state.length);
+        if (state.buffer.length > MAX_RETAINED_BUFFER) {
+            state.buffer = new byte[INITIAL_BUFFER];
+        }
+        return line;
+    }
+
+    /**
+     * Escapa uma String isolada (usado para pré-codificar o component)
+     */
+    static byte[] escape(String value) {
+        ThreadState scratch = new ThreadState();
+        appendEscaped(scratch, value);
+        return Arrays.copyOf(scratch.buffer, scratch.length);
+    }
+
+    /**
+     * yyyy-MM-ddTHH:mm:ss.SSSZ - o prefixo só é recalculado quando o segundo muda
+     */
+    private static void appendTimestamp(ThreadState state, long epochMillis) {
+        long second = Math.floorDiv(epochMillis, 1000L);
+        if (second != state.cachedSecond) {
+            LocalDateTime time = LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC);
+            byte[] p = state.secondPrefix;
+            writeDigits(p, 0, time.getYear(), 4);
+            p[4] = '-';
+            writeDigits(p, 5, time.getMonthValue(), 2);
+            p[7] = '-';
+            writeDigits(p, 8, time.getDayOfMonth(), 2);
+            p[10] = 'T';
+            writeDigits(p, 11, time.getHour(), 2);
+            p[13] = ':';
+            writeDigits(p, 14, time.getMinute(), 2);
+            p[16] = ':';
+            writeDigits(p, 17, time.getSecond(), 2);
+            state.cachedSecond = second;
+        }
+        ensureCapacity(state, 24);
+        System.arraycopy(state.secondPrefix, 0, state.buffer, state.length, 19);
+        int millis = (int) Math.floorMod(epochMillis, 1000L);
+        byte[] b = state.buffer;
+        int at = state.length + 19;
+        b[at] = '.';
+        writeDigits(b, at + 1, millis, 3);
+        b[at + 4] = 'Z';
+        state.length += 24;
+    }
+
+    private static void writeDigits(byte[] target, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            target[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /**
+     * Escape JSON + codificação UTF-8 numa só passada
+     */
+    private static void appendEscaped(ThreadState state, String value) {
+        if (value == null) {
+            return;
+        }
+        int n = value.length();
+        ensureCapacity(state, n * 6); // pior caso: \\u00XX por char
+        byte[] b = state.buffer;
+        int at = state.length;
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    b[at++] = (byte) c;
+                } else {
+                    b[at++] = '\\';
+                    switch (c) {
+                        case '"': b[at++] = '"'; break;
+                        case '\\': b[at++] = '\\'; break;
+                        case '\n': b[at++] = 'n'; break;
+                        case '\r': b[at++] = 'r'; break;
+                        case '\t': b[at++] = 't'; break;
+                        default:
+                            b[at++] = 'u';
+                            b[at++] = '0';
+                            b[at++] = '0';
+                            b[at++] = HEX[c >> 4];
+                            b[at++] = HEX[c & 0xF];
+                    }
+                }
+            } else if (c < 0x800) {
+                b[at++] = (byte) (0xC0 | (c >> 6));
+                b[at++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                b[at++] = (byte) (0xF0 | (cp >> 18));
+                b[at++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                b[at++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                b[at++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                b[at++] = '?'; // surrogate solto: mesmo comportamento do getBytes(UTF_8)
+            } else {
+                b[at++] = (byte) (0xE0 | (c >> 12));
+                b[at++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[at++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        state.length = at;
+    }
+
+    private static void append(ThreadState state, byte[] bytes) {
+        ensureCapacity(state, bytes.length);
+        System.arraycopy(bytes, 0, state.buffer, state.length, bytes.length);
+        state.length += bytes.length;
+    }
+
+    private static void appendByte(ThreadState state, char c) {
+        ensureCapacity(state, 1);
+        state.buffer[state.length++] = (byte) c;
+    }
+
+    private static void ensureCapacity(ThreadState state, int extra) {
+        int needed = state.length + extra;
+        if (needed > state.buffer.length) {
+            state.buffer = Arrays.copyOf(state.buffer, Math.max(needed, state.buffer.length * 2));
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -1,10 +1,6 @@
 package chat4all.shared;
 
-import java.time.Instant;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * Structured Logger for Chat4All Distributed System
@@ -25,6 +21,15 @@ import java.util.Map;
  * - conversation_id: Business context (which chat is this about?)
  * - message_id: Granular context (which specific message?)
  * 
+ * ASYNC OUTPUT (hot path):
+ * - Lines are handed to AsyncLogWriter (lock-free ring buffer) and written to stdout
+ *   by a background thread - the calling thread never waits for I/O
+ * - Level checks happen BEFORE the message is built: use the {} overloads
+ *   (log.debug("Saved {} in {}ms", id, ms)) or guard with isDebugEnabled()
+ *   so disabled lines cost one comparison and no string concatenation
+ * - Enabled lines are encoded by JsonLineEncoder straight into UTF-8 bytes
+ *   (per-thread buffer, cached timestamp prefix, fixed-size MDC array)
+ * 
  * NOTE: In production, use libraries like SLF4J + Logback with JSON encoders.
  * Here we implement manually for EDUCATIONAL TRANSPARENCY - you see exactly how it works.
  * 
@@ -41,14 +46,15 @@ public class Logger {
         TRACE, DEBUG, INFO, WARN, ERROR
     }
     
-    /**
-     * Thread-local context for distributed tracing
+    /*
+     * Thread-local context for distributed tracing lives in JsonLineEncoder.ThreadState
      * 
      * EDUCATIONAL NOTE: ThreadLocal stores data per-thread without global synchronization.
      * This is critical for performance in multi-threaded servers.
      * Each HTTP request thread has its own trace_id, preventing cross-contamination.
+     * Only three keys exist (trace_id, conversation_id, message_id), so a fixed
+     * array replaces the HashMap: no hashing and no Entry allocation per put.
      */
-    private static final ThreadLocal<Map<String, String>> CONTEXT = ThreadLocal.withInitial(HashMap::new);
     
     /**
      * Component name (e.g., "api-service", "router-worker")
@@ -57,17 +63,15 @@ public class Logger {
     private final String componentName;
     
     /**
-     * Minimum log level to output (configurable via environment)
-     * Default: INFO (suppress DEBUG/TRACE in production)
+     * componentName already JSON-escaped and UTF-8 encoded (done once, not per line)
      */
-    private final Level minLevel;
+    private final byte[] componentJson;
     
     /**
-     * ISO 8601 timestamp formatter
-     * Example: 2025-01-17T14:30:45.123Z
+     * Minimum log level to output (configurable via environment)
+     * Default: INFO (suppress DEBUG/TRACE in production)
      */
-    private static final DateTimeFormatter ISO_FORMATTER = 
-        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+    private final Level minLevel;
     
     /**
      * Constructor
@@ -76,6 +80,7 @@ public class Logger {
      */
     public Logger(String componentName) {
         this.componentName = componentName;
+        this.componentJson = JsonLineEncoder.escape(componentName);
         this.minLevel = parseLogLevel(System.getenv("LOG_LEVEL"));
     }
     
@@ -97,6 +102,28 @@ public class Logger {
         }
     }
     
+    /**
+     * Level check (use before building expensive messages)
+     */
+    public boolean isEnabled(Level level) {
+        return level.ordinal() >= minLevel.ordinal();
+    }
+    
+    public boolean isTraceEnabled() {
+        return isEnabled(Level.TRACE);
+    }
+    
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+    
+    /**
+     * Lines discarded because the async queue was full (all loggers)
+     */
+    public static long getDroppedCount() {
+        return AsyncLogWriter.get().getDroppedCount();
+    }
+    
     // ========================
     // DISTRIBUTED TRACING API
     // ========================
@@ -114,7 +141,7 @@ public class Logger {
      * @param traceId Unique identifier for this distributed transaction
      */
     public static void setTraceId(String traceId) {
-        CONTEXT.get().put("trace_id", traceId);
+        JsonLineEncoder.state().mdc[JsonLineEncoder.TRACE_ID] = traceId;
     }
     
     /**
@@ -127,7 +154,7 @@ public class Logger {
      * @param conversationId Business context identifier
      */
     public static void setConversationId(String conversationId) {
-        CONTEXT.get().put("conversation_id", conversationId);
+        JsonLineEncoder.state().mdc[JsonLineEncoder.CONVERSATION_ID] = conversationId;
     }
     
     /**
@@ -140,7 +167,7 @@ public class Logger {
      * @param messageId Message identifier
      */
     public static void setMessageId(String messageId) {
-        CONTEXT.get().put("message_id", messageId);
+        JsonLineEncoder.state().mdc[JsonLineEncoder.MESSAGE_ID] = messageId;
     }
     
     /**
@@ -154,7 +181,7 @@ public class Logger {
      * Old trace_id values from previous requests contaminate new requests.
      */
     public static void clearContext() {
-        CONTEXT.get().clear();
+        Arrays.fill(JsonLineEncoder.state().mdc, null);
     }
     
     // ================
@@ -177,6 +204,27 @@ public class Logger {
         log(Level.DEBUG, message, null);
     }
     
+    /**
+     * DEBUG with {} placeholders - the message is only built if DEBUG is enabled
+     */
+    public void debug(String pattern, Object arg) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, format(pattern, arg), null);
+        }
+    }
+    
+    public void debug(String pattern, Object arg1, Object arg2) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, format(pattern, arg1, arg2), null);
+        }
+    }
+    
+    public void debug(String pattern, Object... args) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, format(pattern, args), null);
+        }
+    }
+    
     /**
      * Log an INFO message
      * Use for: Normal operations (e.g., "Message sent successfully")
@@ -185,6 +233,27 @@ public class Logger {
         log(Level.INFO, message, null);
     }
     
+    /**
+     * INFO with {} placeholders - the message is only built if INFO is enabled
+     */
+    public void info(String pattern, Object arg) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, format(pattern, arg), null);
+        }
+    }
+    
+    public void info(String pattern, Object arg1, Object arg2) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, format(pattern, arg1, arg2), null);
+        }
+    }
+    
+    public void info(String pattern, Object... args) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, format(pattern, args), null);
+        }
+    }
+    
     /**
      * Log a WARN message
      * Use for: Recoverable errors (e.g., "Cassandra retry attempt 2/3")
@@ -193,6 +262,24 @@ public class Logger {
         log(Level.WARN, message, null);
     }
     
+    public void warn(String pattern, Object arg) {
+        if (isEnabled(Level.WARN)) {
+            log(Level.WARN, format(pattern, arg), null);
+        }
+    }
+    
+    public void warn(String pattern, Object arg1, Object arg2) {
+        if (isEnabled(Level.WARN)) {
+            log(Level.WARN, format(pattern, arg1, arg2), null);
+        }
+    }
+    
+    public void warn(String pattern, Object... args) {
+        if (isEnabled(Level.WARN)) {
+            log(Level.WARN, format(pattern, args), null);
+        }
+    }
+    
     /**
      * Log a WARN message with exception
      */
@@ -215,6 +302,37 @@ public class Logger {
         log(Level.ERROR, message, throwable);
     }
     
+    public void error(String pattern, Object arg) {
+        log(Level.ERROR, format(pattern, arg), null);
+    }
+    
+    public void error(String pattern, Object arg1, Object arg2) {
+        log(Level.ERROR, format(pattern, arg1, arg2), null);
+    }
+    
+    /**
+     * Replace each {} with the next argument (SLF4J style)
+     * 
+     * Called only after the level check, so disabled levels never pay for it.
+     * Public so callers building non-log messages (and the benchmarks module)
+     * use the same substitution.
+     */
+    public static String format(String pattern, Object... args) {
+        if (pattern == null || args == null || args.length == 0) {
+            return pattern;
+        }
+        StringBuilder sb = new StringBuilder(pattern.length() + 16 * args.length);
+        int argIndex = 0;
+        int start = 0;
+        int placeholder;
+        while (argIndex < args.length && (placeholder = pattern.indexOf("{}", start)) >= 0) {
+            sb.append(pattern, start, placeholder).append(args[argIndex++]);
+            start = placeholder + 2;
+        }
+        sb.append(pattern, start, pattern.length());
+        return sb.toString();
+    }
+    
     /**
      * Core logging implementation
      * 
@@ -241,63 +359,12 @@ public class Logger {
             return;
         }
         
-        // Build JSON log entry
-        StringBuilder json = new StringBuilder();
-        json.append("{");
-        
-        // Timestamp (ISO 8601 UTC)
-        json.append("\"timestamp\":\"").append(ISO_FORMATTER.format(Instant.now())).append("\",");
-        
-        // Level
-        json.append("\"level\":\"").append(level.name()).append("\",");
-        
-        // Component
-        json.append("\"component\":\"").append(escapeJson(componentName)).append("\",");
-        
-        // Message
-        json.append("\"message\":\"").append(escapeJson(message)).append("\"");
-        
-        // Distributed tracing context
-        Map<String, String> context = CONTEXT.get();
-        if (context.containsKey("trace_id")) {
-            json.append(",\"trace_id\":\"").append(escapeJson(context.get("trace_id"))).append("\"");
-        }
-        if (context.containsKey("conversation_id")) {
-            json.append(",\"conversation_id\":\"").append(escapeJson(context.get("conversation_id"))).append("\"");
-        }
-        if (context.containsKey("message_id")) {
-            json.append(",\"message_id\":\"").append(escapeJson(context.get("message_id"))).append("\"");
-        }
-        
-        // Exception details
-        if (throwable != null) {
-            json.append(",\"error\":\"").append(escapeJson(throwable.toString())).append("\"");
-            json.append(",\"stack_trace\":\"").append(escapeJson(getStackTraceString(throwable))).append("\"");
-        }
+        byte[] line = JsonLineEncoder.encode(JsonLineEncoder.state(), System.currentTimeMillis(),
+            level, componentJson, message, throwable);
         
-        json.append("}");
-        
-        // Output to stdout (Docker captures this)
+        // Output to stdout via the async writer (Docker captures this)
         // In production, this would go to a log aggregator (e.g., Fluentd -> Elasticsearch)
-        System.out.println(json.toString());
-    }
-    
-    /**
-     * Escape special JSON characters
-     * 
-     * EDUCATIONAL NOTE: Without escaping, a log message containing " breaks JSON parsing.
-     * Example: Message "User said: "Hello"" -> "User said: \"Hello\""
-     * 
-     * @param str String to escape
-     * @return Escaped string
-     */
-    private String escapeJson(String str) {
-        if (str == null) return "";
-        return str.replace("\\", "\\\\")
-                  .replace("\"", "\\\"")
-                  .replace("\n", "\\n")
-                  .replace("\r", "\\r")
-                  .replace("\t", "\\t");
+        AsyncLogWriter.get().write(line, level.ordinal() >= Level.WARN.ordinal());
     }
     
     /**
@@ -306,7 +373,7 @@ public class Logger {
      * @param throwable Exception
      * @return Stack trace as string (first 5 lines to avoid log spam)
      */
-    private String getStackTraceString(Throwable throwable) {
+    static String getStackTraceString(Throwable throwable) {
         StringBuilder sb = new StringBuilder();
         StackTraceElement[] elements = throwable.getStackTrace();
         int limit = Math.min(5, elements.length); // Limit to 5 lines
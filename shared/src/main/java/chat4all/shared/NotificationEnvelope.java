@@ -0,0 +1,171 @@
+package chat4all.shared;
+
+/**
+ * NotificationEnvelope - Convenções do payload de notificação em tempo real
+ *
+ * Compartilhado entre router-worker (publica no Redis) e websocket-gateway
+ * (entrega ao cliente), para que os dois lados concordem sobre nomes de
+ * canais/streams e sobre o campo stream_id.
+ *
+ * LOG DE NOTIFICAÇÕES (Redis Stream por usuário):
+ * - Chave: notifications-log:{userId}, limitada com XADD MAXLEN ~ N
+ * - Cada entrada guarda o payload JSON no campo "payload"
+ * - O ID da entrada (ex: "1705497600000-0") é enviado ao cliente como "stream_id"
+ * - Ao reconectar, o cliente informa ?last_id=<stream_id> e recebe só o delta
+ *
+ * EDUCATIONAL NOTE: O stream_id é inserido por concatenação de String no início
+ * do objeto JSON já serializado. Assim o payload é montado UMA vez e cada
+ * destinatário recebe só um prefixo diferente, sem parse/serialize de novo.
+ */
+public final class NotificationEnvelope {
+
+    /** Canal Pub/Sub por usuário */
+    public static final String CHANNEL_PREFIX = "notifications:";
+
+    /** Stream (log limitado) por usuário */
+    public static final String LOG_PREFIX = "notifications-log:";
+
+    /** Campo da entrada do stream que guarda o JSON */
+    public static final String LOG_PAYLOAD_FIELD = "payload";
+
+    /** Instante em que a API aceitou a mensagem (MessageEvent.timestamp), para latência ponta a ponta */
+    public static final String ACCEPTED_AT_FIELD = "accepted_at";
+
+    /** Instante em que o worker montou/publicou a notificação */
+    public static final String TIMESTAMP_FIELD = "timestamp";
+
+    /** Contexto W3C (traceparent) do processamento no worker, para o gateway continuar o trace */
+    public static final String TRACEPARENT_FIELD = "traceparent";
+
+    /** ID da entrada no log do usuário, prefixado por withStreamId */
+    public static final String STREAM_ID_FIELD = "stream_id";
+
+    private NotificationEnvelope() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+
+    public static String channelFor(String userId) {
+        return CHANNEL_PREFIX + userId;
+    }
+
+    public static String logKeyFor(String userId) {
+        return LOG_PREFIX + userId;
+    }
+
+    /**
+     * Validação leve do envelope, sem parse: objeto JSON com campo "type"
+     *
+     * EDUCATIONAL NOTE: O worker é a única fonte destes payloads e já os monta
+     * com JSONObject; no gateway basta garantir que não chegou lixo (mensagem
+     * truncada, texto solto) antes de repassar ao cliente.
+     */
+    public static boolean isWellFormed(String payloadJson) {
+        if (payloadJson == null) {
+            return false;
+        }
+        int len = payloadJson.length();
+        return len >= 2
+            && payloadJson.charAt(0) == '{'
+            && payloadJson.charAt(len - 1) == '}'
+            && payloadJson.contains("\"type\":");
+    }
+
+    /**
+     * Prefixa "stream_id" em um objeto JSON já serializado
+     *
+     * @param payloadJson objeto JSON (começando com '{')
+     * @param streamId ID da entrada no Redis Stream (ou null para não alterar)
+     * @return payload com o campo stream_id como primeira chave
+     */
+    public static String withStreamId(String payloadJson, String streamId) {
+        if (streamId == null || payloadJson == null || payloadJson.isEmpty() || payloadJson.charAt(0) != '{') {
+            return payloadJson;
+        }
+        StringBuilder sb = new StringBuilder(payloadJson.length() + streamId.length() + 16);
+        sb.append("{\"stream_id\":\"").append(streamId).append('"');
+        if (payloadJson.length() > 2) {
+            sb.append(',');
+        }
+        sb.append(payloadJson, 1, payloadJson.length());
+        return sb.toString();
+    }
+
+    /**
+     * Lê um campo numérico de topo do JSON sem parse completo
+     *
+     * EDUCATIONAL NOTE: O gateway repassa o payload sem parse; para medir latência
+     * basta achar "campo": e ler os dígitos. Os payloads vêm do JSONObject do
+     * worker (sem espaços), e o campo procurado não aparece dentro de strings.
+     *
+     * @return valor do campo, ou -1 se ausente/não numérico
+     */
+    public static long longField(String payloadJson, String field) {
+        if (payloadJson == null) {
+            return -1;
+        }
+        String key = "\"" + field + "\":";
+        int at = payloadJson.indexOf(key);
+        if (at < 0) {
+            return -1;
+        }
+        int i = at + key.length();
+        int len = payloadJson.length();
+        long value = 0;
+        int digits = 0;
+        while (i < len && digits < 18) {
+            char c = payloadJson.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            value = value * 10 + (c - '0');
+            digits++;
+            i++;
+        }
+        return digits == 0 ? -1 : value;
+    }
+
+    /**
+     * Lê um campo string de topo do JSON sem parse completo
+     *
+     * Só para valores sem escapes (IDs, traceparent): lê até a próxima aspa.
+     *
+     * @return valor do campo, ou null se ausente/não string
+     */
+    public static String stringField(String payloadJson, String field) {
+        if (payloadJson == null) {
+            return null;
+        }
+        String key = "\"" + field + "\":\"";
+        int at = payloadJson.indexOf(key);
+        if (at < 0) {
+            return null;
+        }
+        int start = at + key.length();
+        int end = payloadJson.indexOf('"', start);
+        return end < 0 ? null : payloadJson.substring(start, end);
+    }
+
+    /**
+     * Compara dois IDs de Redis Stream ("<ms>-<seq>") na ordem do stream
+     *
+     * EDUCATIONAL NOTE: Comparar as Strings não funciona ("999-0" > "1000-0"
+     * lexicograficamente); a ordem é numérica, primeiro ms e depois seq.
+     *
+     * @return negativo, zero ou positivo se a é anterior, igual ou posterior a b
+     * @throws NumberFormatException se algum ID não tem o formato de stream ID
+     */
+    public static int compareStreamIds(String a, String b) {
+        int byMillis = Long.compare(streamIdMillis(a), streamIdMillis(b));
+        return byMillis != 0 ? byMillis : Long.compare(streamIdSeq(a), streamIdSeq(b));
+    }
+
+    private static long streamIdMillis(String id) {
+        int dash = id.indexOf('-');
+        return Long.parseLong(dash < 0 ? id : id.substring(0, dash));
+    }
+
+    private static long streamIdSeq(String id) {
+        int dash = id.indexOf('-');
+        return dash < 0 ? 0 : Long.parseLong(id.substring(dash + 1));
+    }
+}
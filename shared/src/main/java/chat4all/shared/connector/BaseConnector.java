@@ -1,8 +1,23 @@
 package chat4all.shared.connector;
 
+import chat4all.shared.Logger;
 import chat4all.shared.MessageEvent;
+import chat4all.shared.kafka.KafkaTraceHeaders;
+import chat4all.shared.kafka.RetryRouter;
+import chat4all.shared.kafka.RetryTopics;
 import chat4all.shared.patterns.CircuitBreakerPattern;
+import chat4all.shared.patterns.ConnectorRateLimiter;
 import chat4all.shared.patterns.GenericCircuitBreaker;
+import chat4all.shared.tracing.TracingUtils;
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Classe abstrata base para todos os conectores de plataforma
@@ -12,10 +27,13 @@ import chat4all.shared.patterns.GenericCircuitBreaker;
  * 
  * RESPONSABILIDADES:
  * - Circuit Breaker para resilience
+ * - Rate limit por plataforma e por destinatário (token bucket)
  * - Health check (ping periódico)
  * - Métricas de conector
  * - Logging estruturado
  * - Lifecycle (initialize, shutdown)
+ * - Entrega via Kafka (processTraced/retryMessage): rate limit, espera com circuit
+ *   OPEN, DELIVERED + READ simulado e falhas para os tópicos de retry
  * 
  * EXEMPLO DE IMPLEMENTAÇÃO:
  * ```java
@@ -35,13 +53,33 @@ import chat4all.shared.patterns.GenericCircuitBreaker;
  * }
  * ```
  * 
+ * Conectores Kafka passam StatusPublisher e RetryRouter ao construtor e entregam
+ * processTraced ao ConnectorConsumerLoop e retryMessage aos RetryTopicConsumer:
+ * ```java
+ * super(statusPublisher, new RetryRouter(bootstrap, RetryTopics.fromEnv(inboundTopic)));
+ * consumerLoop = new ConnectorConsumerLoop(..., getRetryRouter(), lagMonitor, this::processTraced);
+ * ```
+ * 
  * @author Chat4All Team
  * @version 1.0.0
  */
 public abstract class BaseConnector implements PlatformConnector {
     
+    // Intervalo entre checagens enquanto o circuit breaker está OPEN
+    private static final long CIRCUIT_OPEN_WAIT_MS = 1000;
+    
+    private final Logger log;
+    
     protected final CircuitBreakerPattern circuitBreaker;
+    protected final ConnectorRateLimiter rateLimiter;
     protected volatile boolean healthy;
+    protected volatile boolean running;
+    
+    // Entrega via Kafka (null em conectores que só usam sendMessage)
+    private final DeliveryStatusPublisher statusPublisher;
+    private final RetryRouter retryRouter;
+    private final DelayedEventScheduler delayedEvents;
+    private final Tracer tracer;
     
     /**
      * Construtor base para conectores
@@ -49,9 +87,26 @@ public abstract class BaseConnector implements PlatformConnector {
      * Inicializa circuit breaker e health status
      */
     protected BaseConnector() {
+        this(null, null);
+    }
+    
+    /**
+     * Construtor para conectores que consomem o tópico de saída (Kafka)
+     * 
+     * @param statusPublisher Publica DELIVERED/READ
+     * @param retryRouter Destino das mensagens que falharam (retry tiers → DLQ)
+     */
+    protected BaseConnector(DeliveryStatusPublisher statusPublisher, RetryRouter retryRouter) {
         String connectorId = getConnectorId();
-        this.circuitBreaker = new GenericCircuitBreaker("connector-" + connectorId);
+        this.log = new Logger("connector-" + connectorId);
+        this.circuitBreaker = GenericCircuitBreaker.fromEnv("connector-" + connectorId, connectorId);
+        this.rateLimiter = ConnectorRateLimiter.fromEnv(connectorId);
         this.healthy = true;
+        this.running = true;
+        this.statusPublisher = statusPublisher;
+        this.retryRouter = retryRouter;
+        this.delayedEvents = statusPublisher != null ? new DelayedEventScheduler(connectorId) : null;
+        this.tracer = GlobalOpenTelemetry.getTracer("chat4all.connector." + connectorId);
         
         System.out.println("✅ Base Connector initialized for: " + connectorId);
     }
@@ -60,6 +115,7 @@ public abstract class BaseConnector implements PlatformConnector {
      * Envia mensagem com suporte a circuit breaker e retry
      * 
      * FLUXO:
+     * 0. Espera cota no rate limiter (plataforma + destinatário)
      * 1. Valida circuit breaker (se OPEN, falha rápido)
      * 2. Tenta enviar mensagem
      * 3. Se sucesso: registra no circuit breaker
@@ -71,6 +127,18 @@ public abstract class BaseConnector implements PlatformConnector {
      */
     @Override
     public final boolean sendMessage(MessageEvent message) throws ConnectorException {
+        // 0. Rate limit: excesso espera em vez de estourar o limite da API
+        try {
+            rateLimiter.acquire(message.getRecipientId());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectorException(
+                getConnectorId(),
+                "RATE_LIMIT_INTERRUPTED",
+                "Interrupted while waiting for rate limit"
+            );
+        }
+        
         // 1. Circuit breaker check
         if (!circuitBreaker.allowRequest()) {
             healthy = false;
@@ -89,12 +157,12 @@ public abstract class BaseConnector implements PlatformConnector {
                 // 3. Registra sucesso
                 circuitBreaker.recordSuccess();
                 healthy = true;
-                System.out.println("✅ Message sent via " + getConnectorId() + ": " + message.getMessageId());
+                log.debug("✅ Message sent via {}: {}", getConnectorId(), message.getMessageId());
             } else {
                 // Falha sem exception
                 circuitBreaker.recordFailure();
                 healthy = false;
-                System.out.println("❌ Failed to send message via " + getConnectorId());
+                log.warn("❌ Failed to send message via {}: {}", getConnectorId(), message.getMessageId());
             }
             
             return sent;
@@ -139,6 +207,157 @@ public abstract class BaseConnector implements PlatformConnector {
         healthy = false;
     }
     
+    /**
+     * Entrega um registro do tópico de saída dentro de um span que continua o trace
+     * do worker (header traceparent); o DELIVERED publicado aqui leva o mesmo trace
+     * 
+     * Uso: RecordHandler do ConnectorConsumerLoop (roda numa thread do dispatcher)
+     * 
+     * @param record Registro Kafka (headers de trace e de retry)
+     * @param event MessageEvent já parseado pelo consumer loop
+     * @return true se o registro está resolvido (offset pode ser commitado), false se
+     *         o conector parou antes de tentar ou o retry topic recusou a cópia
+     */
+    protected final boolean processTraced(ConsumerRecord<String, String> record, MessageEvent event) {
+        Span span = KafkaTraceHeaders.startConsumerSpan(tracer, record);
+        try (Scope scope = span.makeCurrent()) {
+            TracingUtils.setLogTraceId(span);
+            span.setAttribute("message_id", event.getMessageId());
+            return processMessage(record, event);
+        } finally {
+            span.end();
+            Logger.clearContext();
+        }
+    }
+    
+    /**
+     * Entrega uma mensagem à plataforma
+     * 
+     * FLUXO:
+     * 1. Rate limit: espera cota de plataforma/destinatário em vez de estourar a API
+     *    e abrir o circuit breaker
+     * 2. Circuit OPEN: a mensagem espera (antes era descartada e o offset commitado)
+     * 3. sendMessageImpl() - a única parte específica de cada plataforma
+     * 4. Sucesso: DELIVERED + READ simulado; falha: próximo retry tier (ou DLQ)
+     */
+    private boolean processMessage(ConsumerRecord<String, String> record, MessageEvent event) {
+        try {
+            log.debug("Partition: {} | Offset: {} | Key: {}", record.partition(), record.offset(), record.key());
+            
+            String messageId = event.getMessageId();
+            log.info("[{}] Consumed message: {}", getConnectorId(), messageId);
+            log.debug("[{}] Content: {}", getConnectorId(), event.getContent());
+            
+            // Wait for quota: excess messages queue here instead of failing
+            String rateKey = event.getRecipientId() != null ? event.getRecipientId() : event.getSenderId();
+            long waitedNanos = rateLimiter.acquire(rateKey);
+            if (waitedNanos > 1_000_000) {
+                log.info("[{}] Rate limited {} for {}ms", getConnectorId(), messageId, (waitedNanos / 1_000_000));
+            }
+            
+            while (!circuitBreaker.allowRequest()) {
+                if (!running) {
+                    log.warn("⚠️ [{}] Stopped while circuit OPEN, leaving uncommitted: {}", getConnectorId(), messageId);
+                    return false;
+                }
+                Thread.sleep(CIRCUIT_OPEN_WAIT_MS);
+            }
+            
+            if (sendMessageImpl(event)) {
+                circuitBreaker.recordSuccess();
+                statusPublisher.publishDelivered(messageId);
+                scheduleReadStatus(messageId);
+                log.info("✅ Processing complete for message: {}", messageId);
+                return true;
+            }
+            
+            circuitBreaker.recordFailure();
+            log.error("❌ Failed to deliver message: {}", messageId);
+            return routeFailure(record, new ConnectorException(
+                getConnectorId(), "DELIVERY_FAILED", "Platform rejected message " + messageId));
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            log.error("❌ Error processing message", e);
+            circuitBreaker.recordFailure();
+            // Don't rethrow - the retry topics take it from here
+            return routeFailure(record, e);
+        }
+    }
+    
+    /**
+     * Send a failed record to the next retry tier (or the DLQ after the last one)
+     * 
+     * @return true once the copy is stored (offset may be committed), false if
+     *         Kafka refused it (offset stays pending → the consumer loop retries it)
+     */
+    private boolean routeFailure(ConsumerRecord<String, String> record, Exception cause) {
+        Span.current().recordException(cause);
+        Span.current().setStatus(StatusCode.ERROR);
+        try {
+            retryRouter.route(record, cause);
+            return true;
+        } catch (Exception e) {
+            log.error("❌ Could not route failed message to retry topic: {}", e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Handler dos RetryTopicConsumer (roda nas threads deles)
+     * 
+     * Mesmo caminho do tópico principal; uma nova falha é roteada para o próximo
+     * tier pelo próprio processMessage.
+     */
+    protected final void retryMessage(ConsumerRecord<String, String> record) throws Exception {
+        int attempt = RetryTopics.attemptOf(record.headers());
+        log.info("[{}] ↻ Retry attempt {} for key {}", getConnectorId(), (attempt + 1), record.key());
+        if (!processTraced(record, MessageEvent.fromJson(record.value()))) {
+            if (!running) {
+                throw new InterruptedException("Connector stopped");
+            }
+            throw new IllegalStateException("Failed message could not be routed");
+        }
+    }
+    
+    /**
+     * Agenda o READ simulado 2-5s depois do DELIVERED
+     * 
+     * Simula o usuário abrindo a mensagem; um único timer (DelayedEventScheduler)
+     * para todos os READ pendentes. Context.wrap mantém o READ no trace da mensagem.
+     */
+    private void scheduleReadStatus(String messageId) {
+        int delayMs = 2000 + ThreadLocalRandom.current().nextInt(3000);
+        log.debug("[{}] Scheduling READ status for {} in {}ms", getConnectorId(), messageId, delayMs);
+        delayedEvents.schedule(delayMs, Context.current().wrap(() -> {
+            statusPublisher.publishRead(messageId);
+            log.debug("[{}] ✓ User read message: {}", getConnectorId(), messageId);
+        }));
+    }
+    
+    /**
+     * Libera o timer de READ e o producer de retry (depois do consumer loop parar)
+     */
+    protected void closeDelivery() {
+        if (delayedEvents != null) {
+            delayedEvents.shutdown();
+        }
+        if (retryRouter != null) {
+            retryRouter.close();
+        }
+    }
+    
+    /**
+     * Retorna o roteador de retry (tiers configurados em getTopics())
+     * 
+     * @return retry router, ou null em conectores sem Kafka
+     */
+    protected RetryRouter getRetryRouter() {
+        return retryRouter;
+    }
+    
     /**
      * Retorna circuit breaker deste conector
      * (util para testes e métricas)
@@ -148,4 +367,13 @@ public abstract class BaseConnector implements PlatformConnector {
     protected CircuitBreakerPattern getCircuitBreaker() {
         return circuitBreaker;
     }
+    
+    /**
+     * Retorna rate limiter deste conector
+     * 
+     * @return rate limiter (plataforma + destinatário)
+     */
+    protected ConnectorRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
 }
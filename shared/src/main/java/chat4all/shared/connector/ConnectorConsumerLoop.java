@@ -0,0 +1,310 @@
+package chat4all.shared.connector;
+
+import chat4all.shared.Logger;
+import chat4all.shared.MessageEvent;
+import chat4all.shared.kafka.ConsumerLagMonitor;
+import chat4all.shared.kafka.RetryRouter;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loop de consumo do tópico de saída, comum a todos os conectores
+ *
+ * PROPÓSITO: WhatsApp e Instagram tinham cópias idênticas do poll, do dispatch
+ * por destinatário, do commit por watermark e do rebalance listener. Aqui fica
+ * uma só; cada conector fornece apenas o RecordHandler que chama a plataforma.
+ *
+ * FLUXO:
+ * 1. poll() → commit do que terminou desde o último poll (async)
+ * 2. Cada registro: watermarks.track() → parse → KeyedDispatcher por destinatário
+ * 3. Handler termina e devolve true → watermarks.complete() libera o offset
+ * 4. Payload inválido vai direto para a DLQ (nunca daria certo num retry); o offset
+ *    é liberado mesmo se a DLQ falhar, para não prender o watermark da partição
+ * 5. Handler devolve false com o loop rodando → o registro volta para a fila de
+ *    não resolvidos e é redespachado após UNSETTLED_RETRY_MS (offset segue pendente)
+ * 6. Rebalance: espera as chamadas em voo, commit síncrono, esquece as partições
+ *
+ * EXEMPLO DE USO:
+ * ```java
+ * ConnectorConsumerLoop loop = new ConnectorConsumerLoop("whatsapp", bootstrap, groupId,
+ *     "whatsapp-outbound", 16, retryRouter, lagMonitor, this::processTraced);
+ * loop.run();   // bloqueia até stop()
+ * ```
+ *
+ * @author Chat4All Team
+ * @version 1.0.0
+ */
+public class ConnectorConsumerLoop {
+
+    /**
+     * Processa um registro já parseado (roda numa thread do dispatcher)
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        /**
+         * @return true se o registro está resolvido (offset pode ser commitado),
+         *         false para deixá-lo sem commit e tentar de novo após UNSETTLED_RETRY_MS
+         */
+        boolean handle(ConsumerRecord<String, String> record, MessageEvent event);
+    }
+
+    // Espera antes de redespachar um registro que o handler não resolveu
+    private static final long UNSETTLED_RETRY_MS =
+        Long.parseLong(System.getenv().getOrDefault("CONNECTOR_UNSETTLED_RETRY_MS", "1000"));
+
+    /**
+     * Registro que o handler devolveu sem resolver; o offset continua pendente
+     */
+    private static final class Unsettled {
+        final ConsumerRecord<String, String> record;
+        final MessageEvent event;
+        final String key;
+        final long retryAt;
+
+        Unsettled(ConsumerRecord<String, String> record, MessageEvent event, String key) {
+            this.record = record;
+            this.event = event;
+            this.key = key;
+            this.retryAt = System.currentTimeMillis() + UNSETTLED_RETRY_MS;
+        }
+    }
+
+    private final Logger log;
+    private final String topic;
+    private final KafkaConsumer<String, String> consumer;
+    private final KeyedDispatcher dispatcher;
+    private final OffsetWatermarks watermarks = new OffsetWatermarks();
+    private final RetryRouter retryRouter;
+    private final ConsumerLagMonitor lagMonitor;
+    private final RecordHandler handler;
+    private final ConcurrentLinkedQueue<Unsettled> unsettled = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    /**
+     * @param connectorId ID do conector (nome das threads e do logger)
+     * @param bootstrapServers Kafka brokers
+     * @param groupId Consumer group
+     * @param topic Tópico de saída da plataforma (ex: "whatsapp-outbound")
+     * @param maxInFlight Chamadas simultâneas à API da plataforma
+     * @param retryRouter Destino de payloads inválidos (DLQ)
+     * @param lagMonitor Lag do consumer group (atualizado a cada poll)
+     * @param handler Chamada à plataforma
+     */
+    public ConnectorConsumerLoop(String connectorId, String bootstrapServers, String groupId, String topic,
+                                 int maxInFlight, RetryRouter retryRouter, ConsumerLagMonitor lagMonitor,
+                                 RecordHandler handler) {
+        this.log = new Logger("connector-" + connectorId);
+        this.topic = topic;
+        this.dispatcher = new KeyedDispatcher(connectorId, maxInFlight);
+        this.retryRouter = retryRouter;
+        this.lagMonitor = lagMonitor;
+        this.handler = handler;
+
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false"); // Manual commit
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(maxInFlight * 2)); // Keep the dispatcher busy
+
+        this.consumer = new KafkaConsumer<>(props);
+        this.consumer.subscribe(Collections.singletonList(topic), new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                // Finish in-flight calls and commit before another instance takes over
+                try {
+                    dispatcher.awaitIdle(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                commitWatermarks(true);
+                for (TopicPartition partition : partitions) {
+                    watermarks.remove(partition.partition());
+                    // The new owner resumes from the committed offset, which is below these
+                    unsettled.removeIf(pending -> pending.record.partition() == partition.partition());
+                }
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                // Nothing to do: positions come from the committed offsets
+            }
+        });
+    }
+
+    /**
+     * Poll loop (bloqueia até stop()); ao sair, drena as chamadas em voo, faz o
+     * commit final e fecha o consumer
+     *
+     * Educational Notes:
+     * - Poll with timeout: blocks for max 1 second waiting for messages
+     * - Records are dispatched concurrently (KeyedDispatcher), ordered per recipient
+     * - Commit by watermark: only offsets below the first still-pending one,
+     *   so at-least-once delivery holds even with out-of-order completion
+     */
+    public void run() {
+        while (running) {
+            try {
+                ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(1));
+                lagMonitor.recordPoll(consumer, records);
+
+                // Commit whatever finished since the last poll
+                commitWatermarks(false);
+
+                // Give unsettled records another attempt once their backoff elapsed
+                redispatchUnsettled();
+
+                if (records.isEmpty()) {
+                    continue;
+                }
+
+                log.debug("▼ Polled {} message(s)", records.count());
+
+                // Dispatch each message (blocks only when maxInFlight calls are pending)
+                for (ConsumerRecord<String, String> record : records) {
+                    dispatch(record);
+                }
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (Exception e) {
+                log.error("❌ Error in consumer loop", e);
+                // Continue running despite errors (fault tolerance)
+            }
+        }
+
+        // Cleanup: drain in-flight calls, commit final watermark
+        dispatcher.shutdown(30, TimeUnit.SECONDS);
+        commitWatermarks(true);
+        lagMonitor.close();
+        consumer.close();
+    }
+
+    /**
+     * Pede a parada do loop (volta do poll em até 1s)
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Hand a record to the dispatcher, keyed by recipient
+     *
+     * Messages to the same recipient keep their order; different recipients
+     * run in parallel. The offset is tracked now and completed when the call ends.
+     */
+    private void dispatch(ConsumerRecord<String, String> record) throws InterruptedException {
+        int partition = record.partition();
+        long offset = record.offset();
+        watermarks.track(partition, offset);
+
+        MessageEvent event;
+        try {
+            event = MessageEvent.fromJson(record.value());
+        } catch (Exception e) {
+            log.error("❌ Error parsing message at offset {}: {}", offset, e.getMessage());
+            // Malformed payloads never succeed on retry: straight to the DLQ
+            try {
+                retryRouter.deadLetter(record, e);
+            } catch (Exception routeError) {
+                log.error("❌ Could not dead-letter offset {}, dropping it: {}", offset, routeError.getMessage());
+            } finally {
+                // Redelivery would fail the parse again; never pin the partition on it
+                watermarks.complete(partition, offset);
+                Logger.clearContext();
+            }
+            return;
+        }
+
+        String key = event.getRecipientId() != null ? event.getRecipientId()
+            : (record.key() != null ? record.key() : "partition-" + partition);
+        submit(record, event, key);
+    }
+
+    /**
+     * Run the handler on the dispatcher; settle the offset or queue the record again
+     */
+    private void submit(ConsumerRecord<String, String> record, MessageEvent event, String key)
+            throws InterruptedException {
+        AtomicBoolean settled = new AtomicBoolean();
+        dispatcher.submit(key,
+            () -> settled.set(handler.handle(record, event)),
+            () -> {
+                if (settled.get()) {
+                    watermarks.complete(record.partition(), record.offset());
+                } else if (running) {
+                    // e.g. the retry topic refused the copy: try again later, offset stays pending
+                    unsettled.add(new Unsettled(record, event, key));
+                }
+                // Stopping: the offset stays uncommitted, so the next owner of the partition reprocesses it
+            });
+    }
+
+    /**
+     * Redispatch unsettled records whose backoff elapsed (poll thread only)
+     *
+     * The queue is FIFO with a fixed backoff, so the head is always the first to become due.
+     */
+    private void redispatchUnsettled() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        Unsettled pending;
+        while ((pending = unsettled.peek()) != null && pending.retryAt <= now) {
+            unsettled.poll();
+            log.warn("↻ Retrying unsettled offset {} of partition {}", pending.record.offset(),
+                pending.record.partition());
+            submit(pending.record, pending.event, pending.key);
+        }
+    }
+
+    /**
+     * Commit the per-partition watermark (poll thread only)
+     *
+     * @param sync true on shutdown/rebalance, false in the poll loop
+     */
+    private void commitWatermarks(boolean sync) {
+        Map<Integer, Long> committable = watermarks.drainCommittable();
+        if (committable.isEmpty()) {
+            return;
+        }
+
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (Map.Entry<Integer, Long> entry : committable.entrySet()) {
+            offsets.put(new TopicPartition(topic, entry.getKey()), new OffsetAndMetadata(entry.getValue()));
+        }
+
+        try {
+            if (sync) {
+                consumer.commitSync(offsets);
+            } else {
+                consumer.commitAsync(offsets, (committed, error) -> {
+                    if (error != null) {
+                        // Next commit carries a higher watermark, so nothing is lost
+                        log.warn("⚠️ Async commit failed: {}", error.getMessage());
+                    }
+                });
+            }
+            log.debug("✅ Committed offsets {} (in flight: {})", offsets.values(), dispatcher.getInFlight());
+        } catch (Exception e) {
+            log.error("❌ Commit failed: {}", e.getMessage());
+        }
+    }
+}
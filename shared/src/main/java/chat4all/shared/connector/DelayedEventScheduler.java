@@ -0,0 +1,84 @@
+package chat4all.shared.connector;
+
+import chat4all.shared.Logger;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agendador de eventos atrasados para conectores
+ *
+ * PROPÓSITO: Eventos como "usuário leu a mensagem 2-5s depois" (READ simulado)
+ * ou reenvios com atraso não precisam de uma thread cada.
+ *
+ * ANTES:
+ * - new Thread(() -> { sleep(2000-5000); publishRead(); }).start() por mensagem
+ * - Sob carga: milhares de threads dormindo, cada uma com sua stack (~512KB-1MB)
+ *
+ * DEPOIS:
+ * - Uma única thread + fila de prioridade por horário de disparo
+ * - Cada evento pendente custa um pequeno objeto (ScheduledFutureTask)
+ *
+ * EDUCATIONAL NOTE: ScheduledThreadPoolExecutor usa um heap (O(log n) por
+ * inserção). Para milhões de timers, um "hashed timer wheel" (O(1)) seria o
+ * próximo passo; para o volume de um conector o heap é mais que suficiente.
+ *
+ * As tarefas devem ser curtas (ex: producer.send assíncrono); trabalho pesado
+ * atrasaria os demais eventos.
+ *
+ * @author Chat4All Team
+ * @version 1.0.0
+ */
+public class DelayedEventScheduler {
+
+    private static final Logger log = new Logger("delayed-events");
+
+    private final String name;
+    private final ScheduledThreadPoolExecutor executor;
+
+    public DelayedEventScheduler(String name) {
+        this.name = name;
+        this.executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, name + "-delayed-events");
+            t.setDaemon(true);
+            return t;
+        });
+        // Cancelados saem da fila na hora (não ficam ocupando memória até o horário)
+        this.executor.setRemoveOnCancelPolicy(true);
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Agenda um evento
+     *
+     * @param delayMs Atraso em milissegundos
+     * @param event Ação curta a executar
+     * @return handle para cancelamento
+     */
+    public ScheduledFuture<?> schedule(long delayMs, Runnable event) {
+        return executor.schedule(() -> {
+            try {
+                event.run();
+            } catch (Exception e) {
+                log.error("❌ {} delayed event failed: {}", name, e.getMessage());
+            } finally {
+                Logger.clearContext(); // thread compartilhada por todos os eventos
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Eventos agendados e ainda não disparados
+     */
+    public int getPendingCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Descarta eventos pendentes e encerra a thread
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
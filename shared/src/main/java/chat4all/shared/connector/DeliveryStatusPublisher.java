@@ -0,0 +1,30 @@
+package chat4all.shared.connector;
+
+/**
+ * DeliveryStatusPublisher - Publica os status gerados pelo conector
+ *
+ * PROPÓSITO: BaseConnector publica DELIVERED após o envio e agenda o READ
+ * simulado sem conhecer o StatusPublisher de cada módulo de conector
+ *
+ * Status Flow:
+ * SENT (router-worker) → DELIVERED (connector) → READ (connector/user)
+ *
+ * @author Chat4All Team
+ * @version 1.0.0
+ */
+public interface DeliveryStatusPublisher {
+
+    /**
+     * Publica DELIVERED (fire-and-forget)
+     *
+     * @param messageId Mensagem entregue à plataforma
+     */
+    void publishDelivered(String messageId);
+
+    /**
+     * Publica READ (fire-and-forget)
+     *
+     * @param messageId Mensagem lida pelo destinatário
+     */
+    void publishRead(String messageId);
+}
@@ -0,0 +1,152 @@
+package chat4all.shared.connector;
+
+import chat4all.shared.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatcher concorrente com limite de chamadas em voo e ordem por chave
+ *
+ * PROPÓSITO: Permitir que um conector faça várias chamadas à API da plataforma
+ * ao mesmo tempo, sem perder a ordem das mensagens de um mesmo destinatário.
+ *
+ * ANTES:
+ * - Loop do conector processava cada registro em série (200-500ms cada)
+ * - Throughput limitado pela LATÊNCIA da API: ~3 msg/s por instância
+ *
+ * DEPOIS:
+ * - Até maxInFlight chamadas simultâneas (Semaphore)
+ * - Tarefas com a mesma chave (ex: recipientId) são encadeadas: a próxima só
+ *   começa quando a anterior termina
+ * - Chaves diferentes rodam em paralelo
+ * - Throughput limitado pelo RATE LIMIT da plataforma, não pela latência
+ *
+ * BACKPRESSURE:
+ * submit() bloqueia quando já há maxInFlight tarefas pendentes. Assim o loop de
+ * poll do Kafka desacelera naturalmente em vez de acumular registros em memória.
+ *
+ * EXEMPLO DE USO:
+ * ```java
+ * KeyedDispatcher dispatcher = new KeyedDispatcher("whatsapp", 32);
+ * dispatcher.submit(recipientId, () -> callApi(msg), () -> watermarks.complete(p, offset));
+ * ```
+ *
+ * @author Chat4All Team
+ * @version 1.0.0
+ */
+public class KeyedDispatcher {
+
+    private static final Logger log = new Logger("keyed-dispatcher");
+
+    private final String name;
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // Última tarefa de cada chave; a próxima é encadeada nela
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+    /**
+     * @param name Nome usado nas threads (ex: "whatsapp")
+     * @param maxInFlight Máximo de tarefas submetidas e ainda não concluídas
+     */
+    public KeyedDispatcher(String name, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.name = name;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(maxInFlight, r -> {
+            Thread t = new Thread(r, name + "-dispatch-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Submete uma tarefa para a chave informada
+     *
+     * @param key Chave de ordenação (tarefas da mesma chave rodam em sequência)
+     * @param task Trabalho (ex: chamada à API da plataforma)
+     * @param onComplete Executado sempre após task, com sucesso ou erro (ex: marcar offset)
+     * @throws InterruptedException se interrompido esperando vaga
+     */
+    @SuppressWarnings("unchecked")
+    public void submit(String key, Runnable task, Runnable onComplete) throws InterruptedException {
+        permits.acquire();
+        inFlight.incrementAndGet();
+
+        Runnable wrapped = () -> {
+            try {
+                task.run();
+            } finally {
+                try {
+                    onComplete.run();
+                } finally {
+                    inFlight.decrementAndGet();
+                    permits.release();
+                }
+            }
+        };
+
+        CompletableFuture<Void>[] created = new CompletableFuture[1];
+        tails.compute(key, (k, tail) -> {
+            CompletableFuture<Void> next = (tail == null)
+                ? CompletableFuture.runAsync(wrapped, executor)
+                : tail.handle((ignored, error) -> null).thenRunAsync(wrapped, executor);
+            created[0] = next;
+            return next;
+        });
+
+        // Remove a chave quando a última tarefa dela terminar (evita crescer sem limite)
+        CompletableFuture<Void> mine = created[0];
+        mine.whenComplete((ignored, error) -> tails.remove(key, mine));
+    }
+
+    /**
+     * Espera todas as tarefas submetidas terminarem
+     *
+     * @return true se ficou ocioso dentro do timeout
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        if (permits.tryAcquire(maxInFlight, timeout, unit)) {
+            permits.release(maxInFlight);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Número de tarefas submetidas e ainda não concluídas
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Aguarda as tarefas pendentes e encerra as threads
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        try {
+            if (!awaitIdle(timeout, unit)) {
+                log.warn("⚠️ {} dispatcher: {} task(s) still running at shutdown", name, inFlight.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,115 @@
+package chat4all.shared.connector;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Watermark de offsets por partição para commit com processamento concorrente
+ *
+ * PROBLEMA:
+ * Com várias mensagens em voo ao mesmo tempo, o offset 12 pode terminar antes
+ * do 10. Commitar 13 nesse momento perderia o 10 se o processo cair.
+ *
+ * SOLUÇÃO (watermark):
+ * - track(): registra o offset quando o registro é despachado
+ * - complete(): marca como concluído (sucesso ou falha tratada)
+ * - committable(): menor offset AINDA pendente = próximo offset seguro para commit.
+ *   Se nada estiver pendente, é o maior offset visto + 1.
+ *
+ * EDUCATIONAL NOTE: Mantém a garantia at-least-once do commit manual: só
+ * avançamos até o primeiro "buraco". Em caso de crash, reprocessamos no máximo
+ * as mensagens entre o watermark e o maior offset concluído.
+ *
+ * Chaves de partição são inteiros para não acoplar o módulo shared ao Kafka;
+ * o conector converte para TopicPartition/OffsetAndMetadata.
+ *
+ * @author Chat4All Team
+ * @version 1.0.0
+ */
+public class OffsetWatermarks {
+
+    private static final class PartitionState {
+        final ConcurrentSkipListSet<Long> pending = new ConcurrentSkipListSet<>();
+        volatile long highestTracked = -1;
+        long lastCommitted = -1; // acessado apenas pela thread de poll
+    }
+
+    private final ConcurrentHashMap<Integer, PartitionState> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * Registra offset despachado (thread de poll)
+     */
+    public void track(int partition, long offset) {
+        PartitionState state = partitions.computeIfAbsent(partition, p -> new PartitionState());
+        state.pending.add(offset);
+        if (offset > state.highestTracked) {
+            state.highestTracked = offset;
+        }
+    }
+
+    /**
+     * Marca offset como concluído (qualquer thread)
+     */
+    public void complete(int partition, long offset) {
+        PartitionState state = partitions.get(partition);
+        if (state != null) {
+            state.pending.remove(offset);
+        }
+    }
+
+    /**
+     * Próximo offset seguro para commit (-1 se nada foi rastreado)
+     */
+    public long committable(int partition) {
+        PartitionState state = partitions.get(partition);
+        if (state == null) {
+            return -1;
+        }
+        // Lê o maior offset ANTES dos pendentes: um complete() concorrente nunca faz o watermark pular um buraco
+        long highest = state.highestTracked;
+        Iterator<Long> firstPending = state.pending.iterator();
+        if (firstPending.hasNext()) {
+            return firstPending.next();
+        }
+        return highest + 1;
+    }
+
+    /**
+     * Partições cujo watermark avançou desde o último commit (thread de poll)
+     *
+     * @return partição -> offset a commitar; marca os valores como commitados
+     */
+    public Map<Integer, Long> drainCommittable() {
+        Map<Integer, Long> result = new HashMap<>();
+        for (Map.Entry<Integer, PartitionState> entry : partitions.entrySet()) {
+            PartitionState state = entry.getValue();
+            long offset = committable(entry.getKey());
+            if (offset > state.lastCommitted) {
+                state.lastCommitted = offset;
+                result.put(entry.getKey(), offset);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Número de offsets ainda pendentes em todas as partições
+     */
+    public int pendingCount() {
+        int total = 0;
+        for (PartitionState state : partitions.values()) {
+            total += state.pending.size();
+        }
+        return total;
+    }
+
+    /**
+     * Esquece uma partição (ex: revogada num rebalance)
+     */
+    public void remove(int partition) {
+        partitions.remove(partition);
+    }
+}
@@ -0,0 +1,291 @@
+package chat4all.shared.kafka;
+
+import chat4all.shared.Logger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * ConsumerLagMonitor - Lag real por partição (endOffset - posição) fora da thread de poll
+ *
+ * PROPÓSITO EDUCACIONAL: Por que não calcular o lag dentro do loop de poll?
+ * ==================
+ * - KafkaConsumer NÃO é thread-safe: outra thread não pode chamar endOffsets()/position()
+ * - endOffsets() é uma ida ao broker; no loop de poll ela atrasaria o processamento
+ *   justamente quando o lag está crescendo
+ *
+ * DIVISÃO DO TRABALHO:
+ * ```
+ * thread de poll ──► recordPoll(consumer, records)
+ *                     - conta registros consumidos (por tópico)
+ *                     - a cada meio intervalo: snapshot de position() das partições
+ *                       atribuídas (local, sem rede) → publicado num campo volatile
+ *
+ * kafka-lag-monitor (timer) ──► endOffsets(snapshot) num KafkaConsumer PRÓPRIO (sem group.id)
+ *                               lag = max(0, endOffset - posição) → gauges
+ * ```
+ *
+ * MÉTRICAS (tag group = consumer group):
+ * - kafka_consumer_lag_by_partition{group, topic, partition}
+ * - kafka_consumer_lag_by_topic{group, topic}
+ * - kafka_consumer_records_consumed_total{group, topic}
+ * - kafka_consumer_consumption_rate{group, topic} (registros/s no último intervalo)
+ *
+ * CONFIGURAÇÃO:
+ * - KAFKA_LAG_INTERVAL_MS (5000): período do cálculo de lag
+ *
+ * EDUCATIONAL NOTE: Partições revogadas ficam com lag 0 nesta instância (a nova dona
+ * passa a reportá-las), então sum(kafka_consumer_lag_by_topic) entre réplicas é o lag
+ * do grupo inteiro, que é o que o autoscaling precisa.
+ */
+public class ConsumerLagMonitor implements AutoCloseable {
+
+    private static final Logger log = new Logger("lag-monitor");
+
+    private final String groupId;
+    private final MeterRegistry registry;
+    private final long intervalMs;
+    private final Consumer<?, ?> offsetsClient; // só a thread do monitor
+    private final ScheduledExecutorService scheduler;
+
+    // Publicado pela thread de poll, lido pelo monitor
+    private volatile Map<TopicPartition, Long> positions = Collections.emptyMap();
+    private long nextSnapshotAt; // só a thread de poll
+
+    private final Map<TopicPartition, AtomicLong> partitionLag = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> topicLag = new ConcurrentHashMap<>();
+    private final Map<String, Counter> consumed = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> consumptionRate = new ConcurrentHashMap<>(); // registros/s (x1000)
+    private final Map<String, Double> lastConsumed = new HashMap<>(); // só a thread do monitor
+    private long lastRefreshAt; // só a thread do monitor
+
+    private volatile LongConsumer totalLagListener;
+
+    /**
+     * @param bootstrapServers Kafka brokers (mesmos do consumer monitorado)
+     * @param groupId Consumer group monitorado (tag das métricas)
+     * @param registry Registry Prometheus do serviço
+     * @param intervalMs Período do cálculo de lag
+     */
+    public ConsumerLagMonitor(String bootstrapServers, String groupId, MeterRegistry registry, long intervalMs) {
+        this(offsetsClient(bootstrapServers, groupId), groupId, registry, intervalMs, true);
+    }
+
+    /**
+     * @param schedule false = sem timer (testes chamam refresh() diretamente)
+     */
+    ConsumerLagMonitor(Consumer<?, ?> offsetsClient, String groupId, MeterRegistry registry, long intervalMs,
+                       boolean schedule) {
+        this.groupId = groupId;
+        this.registry = registry;
+        this.intervalMs = intervalMs;
+        this.offsetsClient = offsetsClient;
+        this.lastRefreshAt = System.currentTimeMillis();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "kafka-lag-monitor-" + groupId);
+            t.setDaemon(true);
+            return t;
+        });
+        if (schedule) {
+            scheduler.scheduleWithFixedDelay(this::refreshSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static KafkaConsumer<byte[], byte[]> offsetsClient(String bootstrapServers, String groupId) {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, groupId + "-lag-monitor");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        return new KafkaConsumer<>(props);
+    }
+
+    /**
+     * Monitor com o período de KAFKA_LAG_INTERVAL_MS
+     */
+    public static ConsumerLagMonitor fromEnv(String bootstrapServers, String groupId, MeterRegistry registry) {
+        long intervalMs = Long.parseLong(System.getenv().getOrDefault("KAFKA_LAG_INTERVAL_MS", "5000"));
+        return new ConsumerLagMonitor(bootstrapServers, groupId, registry, intervalMs);
+    }
+
+    /**
+     * Recebe o lag total (todas as partições desta instância) a cada cálculo
+     */
+    public void setTotalLagListener(LongConsumer listener) {
+        this.totalLagListener = listener;
+    }
+
+    /**
+     * Chamado pela thread de poll logo após cada poll() (inclusive vazio)
+     *
+     * @param consumer o consumer monitorado (usado só nesta thread)
+     * @param records resultado do poll
+     */
+    public void recordPoll(Consumer<?, ?> consumer, ConsumerRecords<?, ?> records) {
+        if (!records.isEmpty()) {
+            for (TopicPartition partition : records.partitions()) {
+                consumedCounter(partition.topic()).increment(records.records(partition).size());
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        if (now >= nextSnapshotAt) {
+            nextSnapshotAt = now + intervalMs / 2;
+            Map<TopicPartition, Long> snapshot = new HashMap<>();
+            for (TopicPartition partition : consumer.assignment()) {
+                try {
+                    // Posição já conhecida após o poll: sem ida ao broker
+                    snapshot.put(partition, consumer.position(partition, Duration.ZERO));
+                } catch (KafkaException e) {
+                    // Posição ainda não resolvida (logo após o assign): entra no próximo snapshot
+                }
+            }
+            positions = snapshot;
+        }
+    }
+
+    private void refreshSafely() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            // Broker indisponível etc.: mantém os últimos valores e tenta no próximo ciclo
+            log.warn("⚠ Lag monitor ({}) failed: {}", groupId, e.getMessage());
+        }
+    }
+
+    /**
+     * Um ciclo do monitor: endOffsets das partições do snapshot → gauges
+     */
+    void refresh() {
+        Map<TopicPartition, Long> snapshot = positions;
+        Map<TopicPartition, Long> endOffsets = snapshot.isEmpty()
+            ? Collections.emptyMap()
+            : offsetsClient.endOffsets(snapshot.keySet(), Duration.ofMillis(Math.max(1000, intervalMs)));
+
+        Map<String, Long> lagByTopic = new HashMap<>();
+        long totalLag = 0;
+        for (Map.Entry<TopicPartition, Long> entry : snapshot.entrySet()) {
+            Long endOffset = endOffsets.get(entry.getKey());
+            if (endOffset == null) {
+                continue;
+            }
+            long lag = Math.max(0, endOffset - entry.getValue());
+            partitionGauge(entry.getKey()).set(lag);
+            lagByTopic.merge(entry.getKey().topic(), lag, Long::sum);
+            totalLag += lag;
+        }
+        // Partições que saíram desta instância
+        for (Map.Entry<TopicPartition, AtomicLong> entry : partitionLag.entrySet()) {
+            if (!snapshot.containsKey(entry.getKey())) {
+                entry.getValue().set(0);
+            }
+        }
+        for (Map.Entry<String, Long> entry : lagByTopic.entrySet()) {
+            topicGauge(entry.getKey()).set(entry.getValue());
+        }
+        for (Map.Entry<String, AtomicLong> entry : topicLag.entrySet()) {
+            if (!lagByTopic.containsKey(entry.getKey())) {
+                entry.getValue().set(0);
+            }
+        }
+
+        updateConsumptionRates();
+
+        LongConsumer listener = totalLagListener;
+        if (listener != null) {
+            listener.accept(totalLag);
+        }
+    }
+
+    private void updateConsumptionRates() {
+        long now = System.currentTimeMillis();
+        double elapsedSeconds = Math.max(1, now - lastRefreshAt) / 1000.0;
+        lastRefreshAt = now;
+        for (Map.Entry<String, Counter> entry : consumed.entrySet()) {
+            double count = entry.getValue().count();
+            double previous = lastConsumed.getOrDefault(entry.getKey(), 0.0);
+            lastConsumed.put(entry.getKey(), count);
+            rateGauge(entry.getKey()).set(Math.round((count - previous) / elapsedSeconds * 1000));
+        }
+    }
+
+    private Counter consumedCounter(String topic) {
+        return consumed.computeIfAbsent(topic, t -> Counter.builder("kafka_consumer_records_consumed_total")
+            .description("Records returned by poll()")
+            .tag("group", groupId)
+            .tag("topic", t)
+            .register(registry));
+    }
+
+    private AtomicLong partitionGauge(TopicPartition partition) {
+        return partitionLag.computeIfAbsent(partition, p -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder("kafka_consumer_lag_by_partition", value, AtomicLong::get)
+                .description("Consumer lag (records behind the log end) per partition")
+                .tag("group", groupId)
+                .tag("topic", p.topic())
+                .tag("partition", String.valueOf(p.partition()))
+                .register(registry);
+            return value;
+        });
+    }
+
+    private AtomicLong topicGauge(String topic) {
+        return topicLag.computeIfAbsent(topic, t -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder("kafka_consumer_lag_by_topic", value, AtomicLong::get)
+                .description("Consumer lag summed over the partitions assigned here")
+                .tag("group", groupId)
+                .tag("topic", t)
+                .register(registry);
+            return value;
+        });
+    }
+
+    private AtomicLong rateGauge(String topic) {
+        return consumptionRate.computeIfAbsent(topic, t -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder("kafka_consumer_consumption_rate", value, v -> v.get() / 1000.0)
+                .description("Records consumed per second over the last lag interval")
+                .tag("group", groupId)
+                .tag("topic", t)
+                .register(registry);
+            return value;
+        });
+    }
+
+    /**
+     * Para o timer e fecha o client de offsets
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        offsetsClient.close(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,115 @@
+package chat4all.shared.kafka;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+import io.opentelemetry.context.propagation.TextMapSetter;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * KafkaTraceHeaders - W3C Trace Context nos headers dos registros Kafka
+ *
+ * PROPÓSITO: Um trace por mensagem em todos os saltos
+ * ```
+ * API (SendMessage) ──traceparent──▶ messages ──▶ worker ──traceparent──▶ whatsapp-outbound ──▶ connector
+ *                                                   │                                             │
+ *                                                   └──traceparent (JSON)──▶ Redis ──▶ gateway     └──▶ status-updates ──▶ worker
+ * ```
+ *
+ * - Producer: inject() grava "traceparent"/"tracestate" do contexto ATUAL no registro
+ * - Consumer: startConsumerSpan() cria um span CONSUMER filho do span remoto
+ * - RetryRouter copia os headers, então retries e DLQ continuam no mesmo trace
+ *
+ * EDUCATIONAL NOTE: Antes o trace_id ia dentro do JSON, que MessageEvent.fromJson
+ * ignora; cada serviço começava um trace novo. Headers não exigem parse do payload
+ * e funcionam para qualquer formato de valor.
+ *
+ * O propagador W3C é usado diretamente (não o do GlobalOpenTelemetry): mesmo num
+ * serviço sem SDK inicializado o span "no-op" carrega o contexto remoto adiante.
+ */
+public final class KafkaTraceHeaders {
+
+    private static final TextMapPropagator PROPAGATOR = W3CTraceContextPropagator.getInstance();
+
+    private static final TextMapSetter<Headers> SETTER = (headers, key, value) -> {
+        headers.remove(key);
+        headers.add(key, value.getBytes(StandardCharsets.UTF_8));
+    };
+
+    private static final TextMapGetter<Headers> GETTER = new TextMapGetter<Headers>() {
+        @Override
+        public Iterable<String> keys(Headers headers) {
+            List<String> keys = new ArrayList<>();
+            for (Header header : headers) {
+                keys.add(header.key());
+            }
+            return keys;
+        }
+
+        @Override
+        public String get(Headers headers, String key) {
+            if (headers == null) {
+                return null;
+            }
+            Header header = headers.lastHeader(key);
+            return header == null || header.value() == null
+                ? null
+                : new String(header.value(), StandardCharsets.UTF_8);
+        }
+    };
+
+    private KafkaTraceHeaders() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+
+    /**
+     * Grava o contexto atual (Context.current()) nos headers do registro
+     *
+     * Sem span válido no contexto nada é gravado.
+     *
+     * @return o próprio registro, para uso em producer.send(inject(new ProducerRecord<>(...)))
+     */
+    public static <K, V> ProducerRecord<K, V> inject(ProducerRecord<K, V> record) {
+        PROPAGATOR.inject(Context.current(), record.headers(), SETTER);
+        return record;
+    }
+
+    /**
+     * Contexto remoto gravado pelo producer (Context.root() se não houver)
+     */
+    public static Context extract(Headers headers) {
+        return PROPAGATOR.extract(Context.root(), headers, GETTER);
+    }
+
+    /**
+     * Inicia o span de processamento de um registro, filho do span do producer
+     *
+     * Nome e atributos seguem as convenções de mensageria do OpenTelemetry
+     * ("<tópico> process", messaging.*). O chamador faz makeCurrent() e end().
+     *
+     * @param tracer Tracer do serviço consumidor
+     * @param record Registro recebido
+     * @return span CONSUMER (sem pai se o registro não trouxer traceparent)
+     */
+    public static Span startConsumerSpan(Tracer tracer, ConsumerRecord<?, ?> record) {
+        return tracer.spanBuilder(record.topic() + " process")
+            .setParent(extract(record.headers()))
+            .setSpanKind(SpanKind.CONSUMER)
+            .setAttribute("messaging.system", "kafka")
+            .setAttribute("messaging.destination.name", record.topic())
+            .setAttribute("messaging.kafka.destination.partition", record.partition())
+            .setAttribute("messaging.kafka.message.offset", record.offset())
+            .startSpan();
+    }
+}
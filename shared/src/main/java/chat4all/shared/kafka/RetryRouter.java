@@ -0,0 +1,183 @@
+package chat4all.shared.kafka;
+
+import chat4all.shared.Logger;
+import chat4all.shared.NotificationEnvelope;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RetryRouter - Encaminha registros com falha para a próxima camada de retry ou DLQ
+ *
+ * FLUXO:
+ * 1. Lê x-retry-attempt do registro (0 se veio do tópico principal)
+ * 2. attempt + 1 escolhe a camada (RetryTopics.tierForAttempt)
+ * 3. Sem camada restante → DLQ
+ * 4. Produz com mesma key/value e headers atualizados, e ESPERA o ack
+ *
+ * EDUCATIONAL NOTE: O send é síncrono (get()) de propósito: quem chama só
+ * commita o offset original depois que a cópia está gravada no próximo tópico.
+ * Se o produce falhar, a exceção sobe e o offset não é commitado (at-least-once).
+ */
+public class RetryRouter implements AutoCloseable {
+
+    private static final Logger log = new Logger("retry-router");
+
+    // Mensagens de erro longas (stack traces em getMessage) não viram headers gigantes
+    private static final int MAX_ERROR_LENGTH = 512;
+
+    private final RetryTopics topics;
+    private final KafkaProducer<String, String> producer;
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+
+    public RetryRouter(String bootstrapServers, RetryTopics topics) {
+        this.topics = topics;
+
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
+        this.producer = new KafkaProducer<>(props);
+
+        log.info("✓ RetryRouter created for {}", topics.getBaseTopic());
+        for (int i = 0; i < topics.getTierCount(); i++) {
+            log.info("  Tier {}: {}", (i + 1), topics.getTierTopic(i) + " (delay " + topics.getTierDelayMs(i) + "ms)");
+        }
+        log.info("  DLQ: {}", topics.getDlqTopic());
+    }
+
+    public RetryTopics getTopics() {
+        return topics;
+    }
+
+    /**
+     * Envia o registro para a próxima camada (ou DLQ) e aguarda confirmação
+     *
+     * @param record Registro que falhou (do tópico principal ou de uma camada)
+     * @param error Causa da falha (vai no header x-retry-error)
+     * @return tópico de destino
+     * @throws IllegalStateException se o produce falhar (não commitar o offset!)
+     */
+    public String route(ConsumerRecord<String, String> record, Throwable error) {
+        return send(record, error, false);
+    }
+
+    /**
+     * Envia direto para a DLQ, sem passar pelas camadas
+     *
+     * Para falhas que nunca vão se resolver com o tempo (ex: JSON inválido).
+     */
+    public String deadLetter(ConsumerRecord<String, String> record, Throwable error) {
+        return send(record, error, true);
+    }
+
+    private String send(ConsumerRecord<String, String> record, Throwable error, boolean skipTiers) {
+        int attempt = RetryTopics.attemptOf(record.headers()) + 1;
+        int tier = skipTiers ? -1 : topics.tierForAttempt(attempt);
+        String target = tier >= 0 ? topics.getTierTopic(tier) : topics.getDlqTopic();
+
+        ProducerRecord<String, String> copy = new ProducerRecord<>(target, record.key(), record.value());
+        for (Header header : record.headers()) {
+            if (!header.key().startsWith("x-retry-")) {
+                copy.headers().add(header);
+            }
+        }
+
+        // Origem: preservada do primeiro registro, não da última camada
+        String originalTopic = RetryTopics.headerValue(record.headers(), RetryTopics.HEADER_ORIGINAL_TOPIC);
+        if (originalTopic == null) {
+            put(copy, RetryTopics.HEADER_ORIGINAL_TOPIC, record.topic());
+            put(copy, RetryTopics.HEADER_ORIGINAL_PARTITION, String.valueOf(record.partition()));
+            put(copy, RetryTopics.HEADER_ORIGINAL_OFFSET, String.valueOf(record.offset()));
+        } else {
+            put(copy, RetryTopics.HEADER_ORIGINAL_TOPIC, originalTopic);
+            put(copy, RetryTopics.HEADER_ORIGINAL_PARTITION,
+                RetryTopics.headerValue(record.headers(), RetryTopics.HEADER_ORIGINAL_PARTITION));
+            put(copy, RetryTopics.HEADER_ORIGINAL_OFFSET,
+                RetryTopics.headerValue(record.headers(), RetryTopics.HEADER_ORIGINAL_OFFSET));
+        }
+        put(copy, RetryTopics.HEADER_ATTEMPT, String.valueOf(attempt));
+        put(copy, RetryTopics.HEADER_ERROR, describe(error));
+        if (tier >= 0) {
+            put(copy, RetryTopics.HEADER_NOT_BEFORE,
+                String.valueOf(System.currentTimeMillis() + topics.getTierDelayMs(tier)));
+        }
+
+        try {
+            producer.send(copy).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while routing to " + target, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to route to " + target + ": " + e.getCause().getMessage(), e.getCause());
+        }
+
+        setLogContext(record);
+        String source = record.topic() + "@" + record.partition() + ":" + record.offset();
+        if (tier >= 0) {
+            retried.incrementAndGet();
+            log.info("↻ Routed {} → {}", source, target + " (attempt " + attempt + ")");
+        } else {
+            deadLettered.incrementAndGet();
+            log.error("☠ Dead-lettered {} → {}", source,
+                target + " after " + (attempt - 1) + " retries: " + describe(error));
+        }
+        return target;
+    }
+
+    /**
+     * message_id/conversation_id do payload no contexto de log da thread
+     *
+     * Quem consome o registro limpa o contexto (Logger.clearContext) ao terminar,
+     * como em qualquer processamento por registro.
+     */
+    static void setLogContext(ConsumerRecord<String, String> record) {
+        String messageId = NotificationEnvelope.stringField(record.value(), "message_id");
+        if (messageId != null) {
+            Logger.setMessageId(messageId);
+        }
+        String conversationId = NotificationEnvelope.stringField(record.value(), "conversation_id");
+        if (conversationId != null) {
+            Logger.setConversationId(conversationId);
+        }
+    }
+
+    public long getRetriedCount() {
+        return retried.get();
+    }
+
+    public long getDeadLetteredCount() {
+        return deadLettered.get();
+    }
+
+    private static void put(ProducerRecord<String, String> record, String key, String value) {
+        if (value != null) {
+            record.headers().add(key, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    static String describe(Throwable error) {
+        if (error == null) {
+            return "unknown";
+        }
+        String text = error.getClass().getSimpleName() + ": " + error.getMessage();
+        return text.length() > MAX_ERROR_LENGTH ? text.substring(0, MAX_ERROR_LENGTH) : text;
+    }
+
+    @Override
+    public void close() {
+        producer.close(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,197 @@
+package chat4all.shared.kafka;
+
+import chat4all.shared.Logger;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.StringDeserializer;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * RetryTopicConsumer - Consome UMA camada de retry respeitando o atraso
+ *
+ * COMO ESPERA SEM BLOQUEAR:
+ * - Mensagem ainda não vencida (x-retry-not-before no futuro):
+ *   seek() de volta para ela + pause() da partição até o horário
+ * - poll() continua sendo chamado (heartbeat/rebalance funcionam normalmente)
+ * - Quando vence: resume() e a mensagem é entregue de novo pelo poll
+ *
+ * Como todas as mensagens da camada têm o mesmo atraso, basta olhar a primeira
+ * de cada partição: as seguintes vencem depois dela.
+ *
+ * FALHA DE NOVO: o handler lança exceção → RetryRouter manda para a próxima
+ * camada (ou DLQ) → offset desta camada é commitado.
+ *
+ * EDUCATIONAL NOTE: Compare com RetryHandler.executeWithRetry (Thread.sleep no
+ * loop principal): lá uma mensagem com falha segurava a partição inteira por até
+ * 30s; aqui a espera acontece em um tópico separado e só afeta quem já falhou.
+ */
+public class RetryTopicConsumer implements Runnable {
+
+    /**
+     * Reprocessamento de um registro. Exceção = falha (vai para a próxima camada).
+     * InterruptedException = serviço parando: o registro NÃO é roteado nem commitado.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        void handle(ConsumerRecord<String, String> record) throws Exception;
+    }
+
+    private static final Logger log = new Logger("retry-consumer");
+
+    // Pausa curta quando nem o produce para a próxima camada funciona (Kafka instável)
+    private static final long ROUTE_FAILURE_BACKOFF_MS = 1000;
+
+    private final String topic;
+    private final long delayMs;
+    private final Handler handler;
+    private final RetryRouter router;
+    private final KafkaConsumer<String, String> consumer;
+    private final Map<TopicPartition, Long> pausedUntil = new HashMap<>();
+    private volatile boolean running = true;
+
+    /**
+     * @param bootstrapServers Kafka brokers
+     * @param groupId Consumer group (pode ser o mesmo do tópico principal)
+     * @param retryTopics Topologia de camadas
+     * @param tier Índice da camada consumida por esta instância
+     * @param handler Reprocessamento (mesma lógica do consumer principal)
+     * @param router Destino das novas falhas
+     */
+    public RetryTopicConsumer(String bootstrapServers, String groupId, RetryTopics retryTopics, int tier,
+                              Handler handler, RetryRouter router) {
+        this.topic = retryTopics.getTierTopic(tier);
+        this.delayMs = retryTopics.getTierDelayMs(tier);
+        this.handler = handler;
+        this.router = router;
+
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "10");
+        this.consumer = new KafkaConsumer<>(props);
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    @Override
+    public void run() {
+        try {
+            consumer.subscribe(Collections.singletonList(topic), new ConsumerRebalanceListener() {
+                @Override
+                public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                    partitions.forEach(pausedUntil::remove);
+                }
+
+                @Override
+                public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                    // Posições vêm dos offsets commitados
+                }
+            });
+            log.info("✓ Retry consumer subscribed to {} (delay {}ms)", topic, delayMs);
+
+            while (running) {
+                resumeDuePartitions();
+                ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(500));
+                for (TopicPartition partition : records.partitions()) {
+                    for (ConsumerRecord<String, String> record : records.records(partition)) {
+                        if (!handle(partition, record)) {
+                            break; // partição pausada (ou parando): resto volta no próximo poll
+                        }
+                    }
+                }
+            }
+        } catch (WakeupException e) {
+            // stop() chamado
+        } catch (Exception e) {
+            log.error("✗ Retry consumer " + topic + " error", e);
+        } finally {
+            consumer.close(Duration.ofSeconds(10));
+            log.info("✓ Retry consumer {} closed", topic);
+        }
+    }
+
+    /**
+     * @return true se o registro foi resolvido e o próximo da partição pode seguir
+     */
+    private boolean handle(TopicPartition partition, ConsumerRecord<String, String> record) {
+        long notBefore = RetryTopics.notBeforeOf(record.headers());
+        if (notBefore == 0) {
+            notBefore = record.timestamp() + delayMs;
+        }
+        if (notBefore > System.currentTimeMillis()) {
+            pauseAt(partition, record.offset(), notBefore);
+            return false;
+        }
+
+        try {
+            handler.handle(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+            consumer.seek(partition, record.offset());
+            return false;
+        } catch (Exception e) {
+            try {
+                router.route(record, e);
+            } catch (Exception routeError) {
+                RetryRouter.setLogContext(record);
+                log.error("✗ {} (will retry offset {})", routeError.getMessage(), record.offset());
+                pauseAt(partition, record.offset(), System.currentTimeMillis() + ROUTE_FAILURE_BACKOFF_MS);
+                return false;
+            }
+        } finally {
+            Logger.clearContext();
+        }
+
+        consumer.commitSync(Collections.singletonMap(partition, new OffsetAndMetadata(record.offset() + 1)));
+        return true;
+    }
+
+    private void pauseAt(TopicPartition partition, long offset, long until) {
+        consumer.seek(partition, offset);
+        consumer.pause(Collections.singletonList(partition));
+        pausedUntil.put(partition, until);
+    }
+
+    private void resumeDuePartitions() {
+        if (pausedUntil.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<TopicPartition, Long>> it = pausedUntil.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<TopicPartition, Long> entry = it.next();
+            if (entry.getValue() <= now) {
+                consumer.resume(Collections.singletonList(entry.getKey()));
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Para o loop (seguro de chamar de outra thread)
+     */
+    public void stop() {
+        running = false;
+        consumer.wakeup();
+    }
+}
@@ -0,0 +1,164 @@
+package chat4all.shared.kafka;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * RetryTopics - Topologia de tópicos de retry em camadas + DLQ
+ *
+ * PROPÓSITO: Tirar a mensagem com falha do tópico principal em vez de
+ * bloquear a partição (Thread.sleep no lugar) ou derrubar o consumer.
+ *
+ * TOPOLOGIA (base = "messages", RETRY_TIERS = "5s,1m"):
+ * ```
+ * messages ──falha──▶ messages-retry-5s ──falha──▶ messages-retry-1m ──falha──▶ messages-dlq
+ *   attempt=0            attempt=1                    attempt=2                    attempt=3
+ * ```
+ *
+ * Cada camada tem um atraso FIXO, então o tópico fica ordenado por "quando pode
+ * rodar de novo": o consumer da camada só precisa esperar pela mensagem da frente.
+ *
+ * HEADERS (viajam junto com o registro):
+ * - x-retry-attempt: quantas vezes já falhou
+ * - x-retry-error: classe + mensagem da última exceção
+ * - x-retry-original-topic / partition / offset: de onde veio
+ * - x-retry-not-before: epoch ms a partir do qual pode ser reprocessado
+ *
+ * EDUCATIONAL NOTE: Uma mensagem "venenosa" (poison message) agora custa um
+ * produce para o próximo tópico; a partição original segue andando.
+ */
+public final class RetryTopics {
+
+    public static final String HEADER_ATTEMPT = "x-retry-attempt";
+    public static final String HEADER_ERROR = "x-retry-error";
+    public static final String HEADER_ORIGINAL_TOPIC = "x-retry-original-topic";
+    public static final String HEADER_ORIGINAL_PARTITION = "x-retry-original-partition";
+    public static final String HEADER_ORIGINAL_OFFSET = "x-retry-original-offset";
+    public static final String HEADER_NOT_BEFORE = "x-retry-not-before";
+
+    private static final String DEFAULT_TIERS = "5s,1m";
+
+    private final String baseTopic;
+    private final List<String> tierTopics;
+    private final List<Long> tierDelaysMs;
+
+    /**
+     * @param baseTopic Tópico principal (ex: "messages", "whatsapp-outbound")
+     * @param tiers Atrasos das camadas, em ordem (ex: "5s,1m", "500ms,30s,10m")
+     */
+    public RetryTopics(String baseTopic, String tiers) {
+        this.baseTopic = baseTopic;
+        List<String> topics = new ArrayList<>();
+        List<Long> delays = new ArrayList<>();
+        for (String tier : tiers.split(",")) {
+            String label = tier.trim();
+            if (label.isEmpty()) {
+                continue;
+            }
+            topics.add(baseTopic + "-retry-" + label);
+            delays.add(parseDelayMs(label));
+        }
+        this.tierTopics = Collections.unmodifiableList(topics);
+        this.tierDelaysMs = Collections.unmodifiableList(delays);
+    }
+
+    /**
+     * Camadas configuradas pela variável RETRY_TIERS (padrão "5s,1m")
+     */
+    public static RetryTopics fromEnv(String baseTopic) {
+        return new RetryTopics(baseTopic, System.getenv().getOrDefault("RETRY_TIERS", DEFAULT_TIERS));
+    }
+
+    public String getBaseTopic() {
+        return baseTopic;
+    }
+
+    public int getTierCount() {
+        return tierTopics.size();
+    }
+
+    public String getTierTopic(int tier) {
+        return tierTopics.get(tier);
+    }
+
+    public long getTierDelayMs(int tier) {
+        return tierDelaysMs.get(tier);
+    }
+
+    public String getDlqTopic() {
+        return baseTopic + "-dlq";
+    }
+
+    /**
+     * Camada que recebe a mensagem após a N-ésima falha (1 = primeira falha)
+     *
+     * @return índice da camada, ou -1 quando as camadas acabaram (vai para a DLQ)
+     */
+    public int tierForAttempt(int attempt) {
+        int tier = attempt - 1;
+        return tier >= 0 && tier < tierTopics.size() ? tier : -1;
+    }
+
+    /**
+     * Número de falhas já registradas no header (0 para mensagens do tópico principal)
+     */
+    public static int attemptOf(Headers headers) {
+        String value = headerValue(headers, HEADER_ATTEMPT);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Instante (epoch ms) a partir do qual a mensagem pode ser reprocessada, ou 0
+     */
+    public static long notBeforeOf(Headers headers) {
+        String value = headerValue(headers, HEADER_NOT_BEFORE);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static String headerValue(Headers headers, String key) {
+        Header header = headers.lastHeader(key);
+        return header == null || header.value() == null
+            ? null
+            : new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * "500ms" → 500, "5s" → 5000, "1m" → 60000, "1h" → 3600000
+     */
+    static long parseDelayMs(String label) {
+        try {
+            if (label.endsWith("ms")) {
+                return Long.parseLong(label.substring(0, label.length() - 2));
+            }
+            long value = Long.parseLong(label.substring(0, label.length() - 1));
+            switch (label.charAt(label.length() - 1)) {
+                case 's': return value * 1000L;
+                case 'm': return value * 60_000L;
+                case 'h': return value * 3_600_000L;
+                default: break;
+            }
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            // cai no erro abaixo
+        }
+        throw new IllegalArgumentException("Invalid retry tier '" + label + "' (use e.g. 500ms, 5s, 1m, 1h)");
+    }
+}
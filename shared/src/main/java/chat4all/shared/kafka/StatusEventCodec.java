@@ -0,0 +1,216 @@
+package chat4all.shared.kafka;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * StatusEventCodec - Formato dos registros do tópico status-updates
+ *
+ * Compartilhado entre conectores (produzem) e router-worker (consome).
+ *
+ * FORMATO SIMPLES (um status por registro - formato original):
+ * ```json
+ * {"message_id":"msg_abc","status":"DELIVERED","timestamp":1700000000000,"connector":"whatsapp"}
+ * ```
+ *
+ * FORMATO COMPACTO (vários status por registro):
+ * ```json
+ * {"type":"status_batch","connector":"whatsapp","base_ts":1700000000000,
+ *  "statuses":[["msg_abc","DELIVERED",0],["msg_def","READ",15]]}
+ * ```
+ * - Cada tupla: [message_id, status, timestamp - base_ts]
+ * - Sem repetir nomes de campos: ~40 bytes por status em vez de ~100
+ *
+ * MARCA DE LEITURA (um usuário leu a conversa até um seq):
+ * ```json
+ * {"type":"read_watermark","conversation_id":"conv_x","user_id":"user_a","read_seq":42,"timestamp":1700000000000}
+ * ```
+ * - Substitui N eventos READ (um por mensagem) por UM evento
+ * - decode() devolve lista vazia para este formato (consumers antigos ignoram)
+ *
+ * EDUCATIONAL NOTE: No pico, um conector gera milhares de DELIVERED/READ por
+ * segundo. Agrupar 200 status em um registro reduz em ~200x o número de registros
+ * (overhead de header, índice e offset por registro no broker e no consumer).
+ */
+public final class StatusEventCodec {
+
+    public static final String BATCH_TYPE = "status_batch";
+    public static final String WATERMARK_TYPE = "read_watermark";
+
+    private StatusEventCodec() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+
+    /**
+     * Um status (DELIVERED/READ) de uma mensagem
+     */
+    public static final class StatusUpdate {
+        private final String messageId;
+        private final String status;
+        private final long timestamp;
+
+        public StatusUpdate(String messageId, String status, long timestamp) {
+            this.messageId = messageId;
+            this.status = status;
+            this.timestamp = timestamp;
+        }
+
+        public String getMessageId() {
+            return messageId;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+
+    /**
+     * "user_id leu conversation_id até read_seq (inclusive)"
+     */
+    public static final class ReadWatermark {
+        private final String conversationId;
+        private final String userId;
+        private final long readSeq;
+        private final long timestamp;
+
+        public ReadWatermark(String conversationId, String userId, long readSeq, long timestamp) {
+            this.conversationId = conversationId;
+            this.userId = userId;
+            this.readSeq = readSeq;
+            this.timestamp = timestamp;
+        }
+
+        public String getConversationId() {
+            return conversationId;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public long getReadSeq() {
+            return readSeq;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+
+    /**
+     * Registro simples (um status)
+     */
+    public static String encodeSingle(String messageId, String status, long timestamp, String connector) {
+        StringBuilder sb = new StringBuilder(96 + messageId.length());
+        sb.append("{\"message_id\":").append(JSONObject.quote(messageId))
+          .append(",\"status\":").append(JSONObject.quote(status))
+          .append(",\"timestamp\":").append(timestamp)
+          .append(",\"connector\":").append(JSONObject.quote(connector))
+          .append('}');
+        return sb.toString();
+    }
+
+    /**
+     * Registro compacto com vários status
+     *
+     * @param updates Status a agrupar (não vazio)
+     */
+    public static String encodeBatch(String connector, List<StatusUpdate> updates) {
+        long baseTs = Long.MAX_VALUE;
+        for (StatusUpdate update : updates) {
+            baseTs = Math.min(baseTs, update.timestamp);
+        }
+
+        StringBuilder sb = new StringBuilder(96 + updates.size() * 48);
+        sb.append("{\"type\":\"").append(BATCH_TYPE).append('"')
+          .append(",\"connector\":").append(JSONObject.quote(connector))
+          .append(",\"base_ts\":").append(baseTs)
+          .append(",\"statuses\":[");
+        for (int i = 0; i < updates.size(); i++) {
+            StatusUpdate update = updates.get(i);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('[').append(JSONObject.quote(update.messageId))
+              .append(',').append(JSONObject.quote(update.status))
+              .append(',').append(update.timestamp - baseTs)
+              .append(']');
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    /**
+     * Registro de marca de leitura
+     */
+    public static String encodeWatermark(ReadWatermark watermark) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("{\"type\":\"").append(WATERMARK_TYPE).append('"')
+          .append(",\"conversation_id\":").append(JSONObject.quote(watermark.conversationId))
+          .append(",\"user_id\":").append(JSONObject.quote(watermark.userId))
+          .append(",\"read_seq\":").append(watermark.readSeq)
+          .append(",\"timestamp\":").append(watermark.timestamp)
+          .append('}');
+        return sb.toString();
+    }
+
+    /**
+     * Decodifica uma marca de leitura
+     *
+     * @return a marca, ou null se o registro for de outro formato
+     * @throws org.json.JSONException se não for JSON válido
+     */
+    public static ReadWatermark decodeWatermark(String json) {
+        JSONObject event = new JSONObject(json);
+        if (!WATERMARK_TYPE.equals(event.optString("type"))) {
+            return null;
+        }
+        return new ReadWatermark(
+            event.getString("conversation_id"),
+            event.getString("user_id"),
+            event.getLong("read_seq"),
+            event.optLong("timestamp", System.currentTimeMillis())
+        );
+    }
+
+    /**
+     * Decodifica qualquer um dos dois formatos
+     *
+     * @return status contidos no registro (vazio se faltarem campos obrigatórios)
+     * @throws org.json.JSONException se não for JSON válido
+     */
+    public static List<StatusUpdate> decode(String json) {
+        JSONObject event = new JSONObject(json);
+
+        if (BATCH_TYPE.equals(event.optString("type"))) {
+            long baseTs = event.getLong("base_ts");
+            JSONArray statuses = event.getJSONArray("statuses");
+            List<StatusUpdate> updates = new ArrayList<>(statuses.length());
+            for (int i = 0; i < statuses.length(); i++) {
+                JSONArray tuple = statuses.getJSONArray(i);
+                updates.add(new StatusUpdate(tuple.getString(0), tuple.getString(1), baseTs + tuple.getLong(2)));
+            }
+            return updates;
+        }
+
+        if (WATERMARK_TYPE.equals(event.optString("type"))) {
+            return Collections.emptyList(); // ver decodeWatermark
+        }
+
+        String messageId = event.optString("message_id", null);
+        String status = event.optString("status", null);
+        if (messageId == null || status == null) {
+            return Collections.emptyList();
+        }
+        long timestamp = event.optLong("timestamp", System.currentTimeMillis());
+        return Collections.singletonList(new StatusUpdate(messageId, status, timestamp));
+    }
+}
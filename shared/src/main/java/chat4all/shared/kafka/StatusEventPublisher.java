@@ -0,0 +1,242 @@
+package chat4all.shared.kafka;
+
+import chat4all.shared.Logger;
+import chat4all.shared.kafka.StatusEventCodec.StatusUpdate;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * StatusEventPublisher - Publica DELIVERED/READ no tópico status-updates
+ *
+ * MODOS (STATUS_PUBLISH_MODE):
+ * - SINGLE: comportamento original - um registro por status, sem linger/compressão
+ * - BATCHED (padrão): um registro por status, mas o producer agrupa por
+ *   linger.ms e comprime o lote (mesmo formato; nenhum consumer precisa mudar)
+ * - COMPACT: vários status em UM registro (StatusEventCodec.encodeBatch).
+ *   Exige router-worker que já decodifica o formato compacto.
+ *
+ * COMPACT - COMO AGRUPA:
+ * - publish() só enfileira (ConcurrentLinkedQueue, sem lock)
+ * - Uma thread descarrega a fila a cada STATUS_LINGER_MS, ou antes se
+ *   STATUS_BATCH_MAX status se acumularem
+ * - Os status são separados em STATUS_BATCH_SHARDS chaves pelo hash do
+ *   message_id: o mesmo message_id sempre cai na mesma partição, então
+ *   DELIVERED continua chegando antes de READ
+ *
+ * CONFIGURAÇÃO:
+ * - STATUS_LINGER_MS (20), STATUS_COMPRESSION (lz4)
+ * - STATUS_BATCH_MAX (200), STATUS_BATCH_SHARDS (8)
+ *
+ * TRACING: SINGLE/BATCHED gravam o traceparent do contexto atual (span do
+ * connector) em cada registro. Um registro COMPACT junta status de traces
+ * diferentes, então não carrega contexto.
+ *
+ * EDUCATIONAL NOTE: linger.ms troca alguns milissegundos de latência por
+ * lotes maiores; status de entrega não precisam de latência sub-ms.
+ */
+public class StatusEventPublisher implements AutoCloseable {
+    
+    private static final Logger log = new Logger("status-publisher");
+
+    public enum Mode {
+        SINGLE,
+        BATCHED,
+        COMPACT
+    }
+
+    private final String topic;
+    private final String connector;
+    private final Mode mode;
+    private final int batchMax;
+    private final int shards;
+    private final Producer<String, String> producer;
+
+    // Somente modo COMPACT
+    private final ConcurrentLinkedQueue<StatusUpdate> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final ScheduledExecutorService flusher;
+
+    public StatusEventPublisher(String bootstrapServers, String topic, String connector, Mode mode,
+                                long lingerMs, String compression, int batchMax, int shards) {
+        this(createProducer(bootstrapServers, connector, mode, lingerMs, compression),
+            topic, connector, mode, lingerMs, batchMax, shards);
+        if (mode != Mode.SINGLE) {
+            System.out.println("   compression=" + compression);
+        }
+    }
+
+    /**
+     * Publisher sobre um producer já criado (ex.: tópicos em memória do harness em benchmarks)
+     *
+     * Linger e compressão são do producer; lingerMs aqui só define o intervalo do flusher COMPACT.
+     */
+    public StatusEventPublisher(Producer<String, String> producer, String topic, String connector, Mode mode,
+                                long lingerMs, int batchMax, int shards) {
+        this.topic = topic;
+        this.connector = connector;
+        this.mode = mode;
+        this.batchMax = Math.max(1, batchMax);
+        this.shards = Math.max(1, shards);
+        this.producer = producer;
+
+        if (mode == Mode.COMPACT) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, connector + "-status-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, lingerMs, Math.max(1, lingerMs), TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+
+        System.out.println("✅ StatusEventPublisher initialized (mode=" + mode + ")");
+        System.out.println("   Publishing to topic: " + topic);
+        if (mode != Mode.SINGLE) {
+            System.out.println("   linger.ms=" + lingerMs
+                + (mode == Mode.COMPACT ? ", batch max=" + this.batchMax + ", shards=" + this.shards : ""));
+        }
+    }
+
+    private static Producer<String, String> createProducer(String bootstrapServers, String connector, Mode mode,
+                                                           long lingerMs, String compression) {
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.ACKS_CONFIG, "1"); // Leader acknowledgment
+        props.put(ProducerConfig.RETRIES_CONFIG, "3"); // Retry on failure
+        props.put(ProducerConfig.CLIENT_ID_CONFIG, connector + "-connector-status-publisher");
+        if (mode != Mode.SINGLE) {
+            props.put(ProducerConfig.LINGER_MS_CONFIG, String.valueOf(lingerMs));
+            props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compression);
+            props.put(ProducerConfig.BATCH_SIZE_CONFIG, "65536");
+        }
+        return new KafkaProducer<>(props);
+    }
+
+    /**
+     * Cria o publisher lendo modo e parâmetros do ambiente (ver CONFIGURAÇÃO)
+     */
+    public static StatusEventPublisher fromEnv(String bootstrapServers, String topic, String connector) {
+        return new StatusEventPublisher(
+            bootstrapServers,
+            topic,
+            connector,
+            Mode.valueOf(env("STATUS_PUBLISH_MODE", "BATCHED").toUpperCase()),
+            Long.parseLong(env("STATUS_LINGER_MS", "20")),
+            env("STATUS_COMPRESSION", "lz4"),
+            Integer.parseInt(env("STATUS_BATCH_MAX", "200")),
+            Integer.parseInt(env("STATUS_BATCH_SHARDS", "8"))
+        );
+    }
+
+    private static String env(String key, String defaultValue) {
+        return System.getenv().getOrDefault(key, defaultValue);
+    }
+
+    /**
+     * Publica um status (assíncrono em todos os modos)
+     */
+    public void publish(String messageId, String status) {
+        long timestamp = System.currentTimeMillis();
+
+        if (mode == Mode.COMPACT) {
+            pending.add(new StatusUpdate(messageId, status, timestamp));
+            if (pendingCount.incrementAndGet() % batchMax == 0) {
+                flusher.execute(this::flush); // lote cheio: não espera o linger
+            }
+            return;
+        }
+
+        ProducerRecord<String, String> record = new ProducerRecord<>(
+            topic,
+            messageId, // Key: ensures same message goes to same partition
+            StatusEventCodec.encodeSingle(messageId, status, timestamp, connector)
+        );
+        producer.send(KafkaTraceHeaders.inject(record), (metadata, exception) -> {
+            if (exception != null) {
+                log.error("❌ Failed to publish status update: {}", exception.getMessage());
+            } else {
+                log.debug("[Status] Published {} for {} (partition: {}, offset: {})", status, messageId, metadata.partition(), metadata.offset());
+            }
+        });
+    }
+
+    /**
+     * Descarrega a fila do modo COMPACT (só roda na thread do flusher, ou no close)
+     */
+    private void flush() {
+        try {
+            while (pendingCount.get() > 0) {
+                Map<Integer, List<StatusUpdate>> byShard = new HashMap<>();
+                int drained = 0;
+                StatusUpdate update;
+                while (drained < batchMax && (update = pending.poll()) != null) {
+                    int shard = Math.floorMod(update.getMessageId().hashCode(), shards);
+                    byShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(update);
+                    drained++;
+                }
+                if (drained == 0) {
+                    return;
+                }
+                pendingCount.addAndGet(-drained);
+
+                for (Map.Entry<Integer, List<StatusUpdate>> entry : byShard.entrySet()) {
+                    List<StatusUpdate> batch = entry.getValue();
+                    ProducerRecord<String, String> record = new ProducerRecord<>(
+                        topic,
+                        connector + "-status-" + entry.getKey(),
+                        StatusEventCodec.encodeBatch(connector, batch)
+                    );
+                    producer.send(record, (metadata, exception) -> {
+                        if (exception != null) {
+                            log.error("❌ Failed to publish status batch ({}): {}", batch.size(), exception.getMessage());
+                        } else {
+                            log.debug("[Status] Published batch of {} status(es) (partition: {}, offset: {})", batch.size(), metadata.partition(), metadata.offset());
+                        }
+                    });
+                }
+            }
+        } catch (Exception e) {
+            // Não deixar a exceção cancelar o agendamento periódico
+            log.error("❌ Error flushing status batch: {}", e.getMessage());
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Descarrega pendências e fecha o producer
+     */
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flush();
+        }
+        producer.flush(); // Wait for pending sends
+        producer.close();
+    }
+}
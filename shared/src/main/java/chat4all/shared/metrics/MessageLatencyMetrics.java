@@ -0,0 +1,120 @@
+package chat4all.shared.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageLatencyMetrics - Latência por etapa e ponta a ponta de uma mensagem
+ *
+ * PROPÓSITO EDUCACIONAL: "Quanto tempo do SendMessage até o socket do destinatário?"
+ * ==================
+ *
+ * Cada serviço mede só o seu pedaço; o que amarra as etapas é o timestamp de
+ * aceite (MessageEvent.timestamp), que viaja API → Kafka → worker → Redis → gateway:
+ * ```
+ * API accept ──► Kafka ack ──► worker poll ──► Cassandra ──► Redis publish ──► socket
+ *    │ api_to_kafka │ kafka_to_worker │ worker_to_cassandra │ worker_to_redis │ redis_to_socket
+ *    └──────────────────────────── end_to_end (accepted_at → socket) ─────────────────┘
+ * ```
+ *
+ * MÉTRICAS (mesmos nomes em todos os /metrics):
+ * - message_stage_latency_seconds{stage, service}
+ * - message_end_to_end_latency_seconds{service}
+ *
+ * EDUCATIONAL NOTE: Timer com publishPercentileHistogram() exporta os buckets
+ * (_bucket{le=...}), então p95/p99 podem ser agregados entre réplicas no Prometheus
+ * com histogram_quantile(); publishPercentiles() também expõe p50/p95/p99 calculados
+ * localmente (HdrHistogram com janela deslizante) para leitura direta.
+ *
+ * RELÓGIOS: etapas que cruzam processos comparam relógios de máquinas diferentes.
+ * Com NTP o erro é de poucos ms; valores negativos (skew) são registrados como 0.
+ */
+public final class MessageLatencyMetrics {
+
+    /**
+     * Etapas do caminho da mensagem (valor do tag "stage")
+     */
+    public enum Stage {
+        API_TO_KAFKA("api_to_kafka"),
+        KAFKA_TO_WORKER("kafka_to_worker"),
+        WORKER_TO_CASSANDRA("worker_to_cassandra"),
+        WORKER_TO_REDIS("worker_to_redis"),
+        REDIS_TO_SOCKET("redis_to_socket");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+
+        public String tag() {
+            return tag;
+        }
+    }
+
+    private static final Duration MIN_EXPECTED = Duration.ofMillis(1);
+    private static final Duration MAX_EXPECTED = Duration.ofSeconds(30);
+
+    // Timers criados uma vez: sem lookup no registry por mensagem
+    private final Timer[] stageTimers = new Timer[Stage.values().length];
+    private final Timer endToEndTimer;
+
+    /**
+     * @param registry registry Prometheus do serviço
+     * @param service valor do tag "service" (ex: "router-worker")
+     */
+    public MessageLatencyMetrics(MeterRegistry registry, String service) {
+        for (Stage stage : Stage.values()) {
+            stageTimers[stage.ordinal()] = latencyTimer("message_stage_latency_seconds",
+                    "Latency of one stage of the message path")
+                .tag("stage", stage.tag())
+                .tag("service", service)
+                .register(registry);
+        }
+        this.endToEndTimer = latencyTimer("message_end_to_end_latency_seconds",
+                "Latency from API accept to WebSocket delivery")
+            .tag("service", service)
+            .register(registry);
+    }
+
+    private static Timer.Builder latencyTimer(String name, String description) {
+        return Timer.builder(name)
+            .description(description)
+            .publishPercentileHistogram()
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .minimumExpectedValue(MIN_EXPECTED)
+            .maximumExpectedValue(MAX_EXPECTED);
+    }
+
+    /**
+     * Registra uma duração já medida (ex: escrita no Cassandra)
+     */
+    public void record(Stage stage, long durationMs) {
+        stageTimers[stage.ordinal()].record(Math.max(0, durationMs), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registra o tempo entre um instante de outro processo e agora
+     *
+     * @param startEpochMs instante inicial (epoch millis); <= 0 = desconhecido, ignorado
+     */
+    public void recordSince(Stage stage, long startEpochMs) {
+        if (startEpochMs > 0) {
+            record(stage, System.currentTimeMillis() - startEpochMs);
+        }
+    }
+
+    /**
+     * Registra a latência ponta a ponta (aceite na API → entrega no socket)
+     *
+     * @param acceptedAtEpochMs MessageEvent.timestamp; <= 0 = desconhecido, ignorado
+     */
+    public void recordEndToEnd(long acceptedAtEpochMs) {
+        if (acceptedAtEpochMs > 0) {
+            endToEndTimer.record(Math.max(0, System.currentTimeMillis() - acceptedAtEpochMs), TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -11,11 +11,11 @@ package chat4all.shared.patterns;
  * Estados:
  * - CLOSED: Normal operation, requests pass through
  * - OPEN: Failure threshold reached, requests fail fast
- * - HALF_OPEN: Testing if service recovered
+ * - HALF_OPEN: Testing if service recovered (limited number of probe requests)
  * 
  * Uso:
  * ```java
- * CircuitBreakerPattern breaker = new GenericCircuitBreaker(metricsRegistry);
+ * CircuitBreakerPattern breaker = new GenericCircuitBreaker("connector-whatsapp");
  * if (breaker.allowRequest()) {
  *     try {
  *         makeApiCall();
@@ -39,7 +39,15 @@ public interface CircuitBreakerPattern {
     enum State {
         CLOSED,      // Normal operation
         OPEN,        // Failing fast (reject requests)
-        HALF_OPEN    // Testing recovery (allow single request)
+        HALF_OPEN    // Testing recovery (allow a few probe requests)
+    }
+    
+    /**
+     * Avisado a cada mudança de estado (ex: atualizar gauge de métricas)
+     */
+    @FunctionalInterface
+    interface TransitionListener {
+        void onTransition(State from, State to);
     }
     
     /**
@@ -74,4 +82,11 @@ public interface CircuitBreakerPattern {
      * @return número de falhas consecutivas
      */
     int getConsecutiveFailures();
+    
+    /**
+     * Registra listener de transições de estado (substitui o anterior)
+     * 
+     * @param listener chamado pela thread que efetuou a transição
+     */
+    void setTransitionListener(TransitionListener listener);
 }
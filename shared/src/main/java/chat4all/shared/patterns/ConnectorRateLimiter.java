@@ -0,0 +1,124 @@
+package chat4all.shared.patterns;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Rate limiter de conector: um balde por plataforma + um balde por destinatário
+ * 
+ * PROPÓSITO: APIs reais (WhatsApp Business, Instagram Graph) impõem limites por
+ * conta e por número/usuário. Estourar esses limites gera erros 429, que abrem o
+ * circuit breaker e fazem mensagens serem descartadas.
+ * 
+ * COMPORTAMENTO:
+ * - acquire(recipient) ESPERA até haver token nos dois baldes (não falha)
+ * - Destinatário primeiro, plataforma depois; se a plataforma negar, o token do
+ *   destinatário é devolvido para não "queimar" a cota dele
+ * - Baldes de destinatários ociosos são descartados periodicamente
+ * 
+ * EDUCATIONAL NOTE: Esperar aqui (e não falhar) mantém o throughput exatamente no
+ * teto permitido. Como o chamador roda dentro do KeyedDispatcher, a fila limitada
+ * de tarefas em voo funciona como fila de atraso e faz backpressure no poll.
+ * 
+ * CONFIGURAÇÃO (por variável de ambiente, prefixo = id do conector em maiúsculas):
+ * - {ID}_RATE_PER_SECOND / {ID}_RATE_BURST: limite da plataforma
+ * - {ID}_RECIPIENT_RATE_PER_SECOND / {ID}_RECIPIENT_RATE_BURST: limite por destinatário
+ * 
+ * @author Chat4All Team
+ * @version 1.0.0
+ */
+public class ConnectorRateLimiter {
+    
+    private static final long IDLE_EVICTION_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final int EVICTION_CHECK_EVERY = 1024;
+    
+    private final String name;
+    private final TokenBucket platformBucket;
+    private final double recipientRate;
+    private final int recipientBurst;
+    private final ConcurrentHashMap<String, TokenBucket> recipientBuckets = new ConcurrentHashMap<>();
+    private int acquiresSinceEviction; // aproximado, sem sincronização (só dispara limpeza)
+    
+    public ConnectorRateLimiter(String name, double platformRate, int platformBurst,
+                                double recipientRate, int recipientBurst) {
+        this.name = name;
+        this.platformBucket = new TokenBucket(platformRate, platformBurst);
+        this.recipientRate = recipientRate;
+        this.recipientBurst = recipientBurst;
+    }
+    
+    /**
+     * Cria o limiter lendo limites do ambiente (ver CONFIGURAÇÃO)
+     */
+    public static ConnectorRateLimiter fromEnv(String connectorId) {
+        String prefix = connectorId.toUpperCase().replace('-', '_');
+        return new ConnectorRateLimiter(
+            connectorId,
+            Double.parseDouble(env(prefix + "_RATE_PER_SECOND", "80")),
+            Integer.parseInt(env(prefix + "_RATE_BURST", "20")),
+            Double.parseDouble(env(prefix + "_RECIPIENT_RATE_PER_SECOND", "5")),
+            Integer.parseInt(env(prefix + "_RECIPIENT_RATE_BURST", "5"))
+        );
+    }
+    
+    /**
+     * Tenta obter permissão sem esperar
+     * 
+     * @return 0 se concedido; senão, nanos sugeridos de espera
+     */
+    public long tryAcquire(String recipient) {
+        TokenBucket recipientBucket = null;
+        if (recipient != null) {
+            recipientBucket = recipientBuckets.computeIfAbsent(
+                recipient, r -> new TokenBucket(recipientRate, recipientBurst));
+            long wait = recipientBucket.tryAcquire();
+            if (wait > 0) {
+                return wait;
+            }
+        }
+        
+        long wait = platformBucket.tryAcquire();
+        if (wait > 0 && recipientBucket != null) {
+            recipientBucket.refund();
+        }
+        return wait;
+    }
+    
+    /**
+     * Espera até obter permissão
+     * 
+     * @return nanos esperados (0 se não precisou esperar)
+     * @throws InterruptedException se a thread for interrompida
+     */
+    public long acquire(String recipient) throws InterruptedException {
+        maybeEvictIdle();
+        long start = System.nanoTime();
+        long wait;
+        while ((wait = tryAcquire(recipient)) > 0) {
+            LockSupport.parkNanos(this, wait);
+            if (Thread.interrupted()) {
+                throw new InterruptedException(name + " rate limiter wait interrupted");
+            }
+        }
+        return System.nanoTime() - start;
+    }
+    
+    public int getTrackedRecipients() {
+        return recipientBuckets.size();
+    }
+    
+    private void maybeEvictIdle() {
+        if (++acquiresSinceEviction < EVICTION_CHECK_EVERY) {
+            return;
+        }
+        acquiresSinceEviction = 0;
+        long now = System.nanoTime();
+        recipientBuckets.values().removeIf(bucket -> bucket.isIdle(now, IDLE_EVICTION_NANOS));
+    }
+    
+    private static String env(String key, String defaultValue) {
+        String value = System.getenv(key);
+        return (value != null && !value.isEmpty()) ? value : defaultValue;
+    }
+}
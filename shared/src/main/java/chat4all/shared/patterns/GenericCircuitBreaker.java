@@ -1,145 +1,465 @@
 package chat4all.shared.patterns;
 
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
- * Implementação genérica do Circuit Breaker Pattern
- * 
+ * Implementação genérica (lock-free) do Circuit Breaker Pattern
+ *
  * PROPÓSITO: Centralizar lógica de circuit breaker em um único lugar
  * e reutilizar entre múltiplos conectores (WhatsApp, Instagram, etc.)
- * 
- * ANTES (DRY Violation):
- * - CircuitBreaker em connector-whatsapp/
- * - CircuitBreaker em connector-instagram/
- * → Mesmo código duplicado!
- * 
- * DEPOIS (DRY Principle):
- * - GenericCircuitBreaker em shared/
- * - Ambos os conectores injetam a mesma implementação
- * → Código centralizado, fácil manutenção
- * 
- * CONFIGURAÇÃO:
- * - FAILURE_THRESHOLD: 5 falhas consecutivas
- * - OPEN_TIMEOUT_MS: 30 segundos antes de tentar recuperação
- * 
+ *
+ * ANTES:
+ * - allowRequest/recordSuccess/recordFailure eram synchronized: toda chamada de
+ *   BaseConnector.sendMessage() (16+ threads do KeyedDispatcher) disputava o mesmo monitor
+ * - Só abria após N falhas CONSECUTIVAS: 40% de erro intercalado nunca abria
+ * - HALF_OPEN deixava passar TODAS as requisições durante o teste
+ *
+ * DEPOIS:
+ * - Estado + contadores de HALF_OPEN + instante da transição em UM AtomicLong (CAS)
+ * - Janela deslizante de taxa de falha (por tempo ou por contagem)
+ * - HALF_OPEN limita o número de requisições de teste (probes)
+ *
+ * LAYOUT DA PALAVRA ATÔMICA (64 bits):
+ * ```
+ * | since (46 bits, epoch ms) | successes (8) | probes (8) | state (2) |
+ * ```
+ * - since: quando entrou no estado atual (OPEN → timeout; HALF_OPEN → probe perdido)
+ * - probes: probes liberados no HALF_OPEN
+ * - successes: probes que voltaram com sucesso
+ *
+ * QUANDO ABRE (CLOSED → OPEN), o que vier primeiro:
+ * - Taxa de falha na janela >= failureRatePercent (com pelo menos minimumCalls chamadas)
+ * - consecutiveFailureThreshold falhas seguidas (tráfego baixo, janela não enche)
+ *
+ * EDUCATIONAL NOTE: O caminho feliz (CLOSED + sucesso) é um get() da palavra e
+ * um CAS em um balde da janela - nenhuma thread espera por outra. A taxa de falha
+ * só é calculada (O(tamanho da janela)) quando uma falha acontece.
+ *
+ * CONFIGURAÇÃO (fromEnv, prefixo = id do conector em maiúsculas):
+ * - {ID}_CB_WINDOW_TYPE: TIME (padrão) ou COUNT
+ * - {ID}_CB_WINDOW_SIZE: segundos (TIME, padrão 60) ou chamadas (COUNT, padrão 100)
+ * - {ID}_CB_FAILURE_RATE: % de falhas que abre o circuito (padrão 50)
+ * - {ID}_CB_MIN_CALLS: mínimo de chamadas na janela para avaliar a taxa (padrão 10)
+ * - {ID}_CB_CONSECUTIVE_FAILURES: falhas seguidas que abrem o circuito (padrão 5)
+ * - {ID}_CB_OPEN_MS: tempo em OPEN antes de testar recuperação (padrão 30000)
+ * - {ID}_CB_HALF_OPEN_PROBES: requisições de teste no HALF_OPEN (padrão 3)
+ *
  * @author Chat4All Team
- * @version 1.0.0
+ * @version 2.0.0
  */
 public class GenericCircuitBreaker implements CircuitBreakerPattern {
-    
-    private static final int FAILURE_THRESHOLD = 5;
-    private static final long OPEN_TIMEOUT_MS = 30_000; // 30 seconds
-    
-    private volatile State state;
-    private final AtomicInteger consecutiveFailures;
-    private final AtomicLong lastFailureTime;
+
+    /**
+     * Tipo da janela deslizante
+     */
+    public enum WindowType {
+        TIME,   // últimos N segundos (10 baldes)
+        COUNT   // últimas N chamadas
+    }
+
+    private static final State[] STATES = State.values();
+
+    private static final int STATE_BITS = 2;
+    private static final int PROBE_SHIFT = STATE_BITS;
+    private static final int SUCCESS_SHIFT = PROBE_SHIFT + 8;
+    private static final int SINCE_SHIFT = SUCCESS_SHIFT + 8;
+    private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+    private static final long BYTE_MASK = 0xFF;
+    private static final int MAX_PROBES = 255;
+
     private final String name; // Para logging
-    
+    private final int failureRatePercent;
+    private final int minimumCalls;
+    private final int consecutiveFailureThreshold;
+    private final long openTimeoutMs;
+    private final int halfOpenProbes;
+    private final Window window;
+
+    private final AtomicLong word;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile TransitionListener transitionListener;
+
     /**
-     * Cria um novo circuit breaker
-     * 
+     * Cria um circuit breaker com a configuração padrão
+     * (janela de 60s, 50% de falhas, 5 falhas seguidas, 30s em OPEN, 3 probes)
+     *
      * @param name Nome do circuit breaker (para logs e métricas)
      */
     public GenericCircuitBreaker(String name) {
+        this(name, WindowType.TIME, 60, 50, 10, 5, 30_000, 3);
+    }
+
+    /**
+     * @param name Nome (logs/métricas)
+     * @param windowType Janela por tempo ou por contagem
+     * @param windowSize Segundos (TIME) ou número de chamadas (COUNT)
+     * @param failureRatePercent Taxa de falha (1-100) que abre o circuito
+     * @param minimumCalls Chamadas mínimas na janela antes de avaliar a taxa
+     * @param consecutiveFailureThreshold Falhas seguidas que abrem o circuito
+     * @param openTimeoutMs Tempo em OPEN antes de liberar probes
+     * @param halfOpenProbes Probes no HALF_OPEN; todos precisam ter sucesso para fechar
+     */
+    public GenericCircuitBreaker(String name, WindowType windowType, int windowSize, int failureRatePercent,
+                                 int minimumCalls, int consecutiveFailureThreshold, long openTimeoutMs,
+                                 int halfOpenProbes) {
+        if (windowSize <= 0 || failureRatePercent <= 0 || failureRatePercent > 100) {
+            throw new IllegalArgumentException("windowSize must be positive and failureRatePercent in 1..100");
+        }
+        if (halfOpenProbes <= 0 || halfOpenProbes > MAX_PROBES) {
+            throw new IllegalArgumentException("halfOpenProbes must be in 1.." + MAX_PROBES);
+        }
         this.name = name;
-        this.state = State.CLOSED;
-        this.consecutiveFailures = new AtomicInteger(0);
-        this.lastFailureTime = new AtomicLong(0);
-        
-        System.out.println("✅ Circuit Breaker '" + name + "' initialized (state=CLOSED)");
+        this.failureRatePercent = failureRatePercent;
+        this.minimumCalls = Math.max(1, minimumCalls);
+        this.consecutiveFailureThreshold = consecutiveFailureThreshold;
+        this.openTimeoutMs = openTimeoutMs;
+        this.halfOpenProbes = halfOpenProbes;
+        this.window = windowType == WindowType.TIME
+            ? new TimeWindow(windowSize * 1000L)
+            : new CountWindow(windowSize);
+        this.word = new AtomicLong(pack(State.CLOSED, 0, 0, System.currentTimeMillis()));
+
+        System.out.println("✅ Circuit Breaker '" + name + "' initialized (state=CLOSED, window="
+            + windowType + ":" + windowSize + ", failureRate=" + failureRatePercent + "%, probes=" + halfOpenProbes + ")");
+    }
+
+    /**
+     * Cria o circuit breaker lendo a configuração do ambiente (ver CONFIGURAÇÃO)
+     */
+    public static GenericCircuitBreaker fromEnv(String name, String connectorId) {
+        String prefix = connectorId.toUpperCase().replace('-', '_') + "_CB_";
+        WindowType type = WindowType.valueOf(env(prefix + "WINDOW_TYPE", "TIME").toUpperCase());
+        return new GenericCircuitBreaker(
+            name,
+            type,
+            Integer.parseInt(env(prefix + "WINDOW_SIZE", type == WindowType.TIME ? "60" : "100")),
+            Integer.parseInt(env(prefix + "FAILURE_RATE", "50")),
+            Integer.parseInt(env(prefix + "MIN_CALLS", "10")),
+            Integer.parseInt(env(prefix + "CONSECUTIVE_FAILURES", "5")),
+            Long.parseLong(env(prefix + "OPEN_MS", "30000")),
+            Integer.parseInt(env(prefix + "HALF_OPEN_PROBES", "3"))
+        );
+    }
+
+    private static String env(String key, String defaultValue) {
+        return System.getenv().getOrDefault(key, defaultValue);
     }
-    
+
     @Override
-    public synchronized boolean allowRequest() {
-        if (state == State.CLOSED) {
-            return true;
-        }
-        
-        if (state == State.OPEN) {
-            // Verifica se timeout expirou
-            long now = System.currentTimeMillis();
-            long timeSinceFailure = now - lastFailureTime.get();
-            
-            if (timeSinceFailure >= OPEN_TIMEOUT_MS) {
-                // Transição para HALF_OPEN
-                transitionTo(State.HALF_OPEN);
-                System.out.println("⚠️  Circuit Breaker '" + name + "' transitioned to HALF_OPEN (testing recovery)");
-                return true; // Permite test request
+    public boolean allowRequest() {
+        return allowRequest(System.currentTimeMillis());
+    }
+
+    boolean allowRequest(long nowMs) {
+        while (true) {
+            long current = word.get();
+            State state = stateOf(current);
+
+            if (state == State.CLOSED) {
+                return true;
             }
-            
-            return false; // Ainda OPEN, rejeita request
+
+            if (state == State.OPEN) {
+                if (nowMs - sinceOf(current) < openTimeoutMs) {
+                    return false; // Ainda OPEN, rejeita request
+                }
+                // Timeout expirou: quem vencer o CAS leva o primeiro probe
+                if (word.compareAndSet(current, pack(State.HALF_OPEN, 1, 0, nowMs))) {
+                    transitioned(State.OPEN, State.HALF_OPEN);
+                    return true;
+                }
+                continue;
+            }
+
+            // HALF_OPEN: libera até halfOpenProbes requisições de teste
+            int probes = probesOf(current);
+            if (probes < halfOpenProbes) {
+                if (word.compareAndSet(current, pack(State.HALF_OPEN, probes + 1, successesOf(current), sinceOf(current)))) {
+                    return true;
+                }
+                continue;
+            }
+            // Probes esgotados. Se algum nunca respondeu (ex: thread morreu), recomeça a rodada
+            if (nowMs - sinceOf(current) >= openTimeoutMs) {
+                if (word.compareAndSet(current, pack(State.HALF_OPEN, 1, 0, nowMs))) {
+                    return true;
+                }
+                continue;
+            }
+            return false;
         }
-        
-        // HALF_OPEN state: permite single test request
-        return true;
     }
-    
+
     @Override
-    public synchronized void recordSuccess() {
-        if (state == State.HALF_OPEN) {
-            transitionTo(State.CLOSED);
-            System.out.println("✅ Circuit Breaker '" + name + "' recovered (HALF_OPEN → CLOSED)");
-        }
-        
-        if (state == State.CLOSED) {
-            consecutiveFailures.set(0);
+    public void recordSuccess() {
+        recordSuccess(System.currentTimeMillis());
+    }
+
+    void recordSuccess(long nowMs) {
+        consecutiveFailures.set(0);
+        window.record(false, nowMs);
+
+        while (true) {
+            long current = word.get();
+            if (stateOf(current) != State.HALF_OPEN) {
+                return; // CLOSED: nada a fazer; OPEN: resposta atrasada de antes da abertura
+            }
+            int successes = successesOf(current) + 1;
+            if (successes >= halfOpenProbes) {
+                if (word.compareAndSet(current, pack(State.CLOSED, 0, 0, nowMs))) {
+                    window.reset();
+                    transitioned(State.HALF_OPEN, State.CLOSED);
+                    return;
+                }
+            } else if (word.compareAndSet(current, pack(State.HALF_OPEN, probesOf(current), successes, sinceOf(current)))) {
+                return;
+            }
         }
     }
-    
+
     @Override
-    public synchronized void recordFailure() {
-        lastFailureTime.set(System.currentTimeMillis());
-        
-        if (state == State.HALF_OPEN) {
-            // Test request falhou, volta a OPEN
-            transitionTo(State.OPEN);
-            System.out.println("❌ Circuit Breaker '" + name + "' test failed (HALF_OPEN → OPEN)");
-            return;
-        }
-        
-        if (state == State.CLOSED) {
-            int failures = consecutiveFailures.incrementAndGet();
-            if (failures >= FAILURE_THRESHOLD) {
-                transitionTo(State.OPEN);
-                System.out.println("❌ Circuit Breaker '" + name + "' OPEN after " + failures + " failures");
+    public void recordFailure() {
+        recordFailure(System.currentTimeMillis());
+    }
+
+    void recordFailure(long nowMs) {
+        int failures = consecutiveFailures.incrementAndGet();
+        window.record(true, nowMs);
+
+        while (true) {
+            long current = word.get();
+            State state = stateOf(current);
+
+            if (state == State.OPEN) {
+                return;
+            }
+
+            if (state == State.CLOSED && !shouldTrip(failures, nowMs)) {
+                return;
+            }
+
+            // CLOSED com limite atingido, ou probe do HALF_OPEN falhou
+            if (word.compareAndSet(current, pack(State.OPEN, 0, 0, nowMs))) {
+                transitioned(state, State.OPEN);
+                return;
             }
         }
     }
-    
+
+    private boolean shouldTrip(int consecutive, long nowMs) {
+        if (consecutive >= consecutiveFailureThreshold) {
+            return true;
+        }
+        long snapshot = window.snapshot(nowMs);
+        long calls = snapshot & 0xFFFFFFFFL;
+        long failed = snapshot >>> 32;
+        return calls >= minimumCalls && failed * 100 >= calls * failureRatePercent;
+    }
+
     @Override
     public State getState() {
-        return state;
+        return stateOf(word.get());
     }
-    
+
     @Override
     public int getConsecutiveFailures() {
         return consecutiveFailures.get();
     }
-    
+
+    /**
+     * Taxa de falha atual na janela (0-100), ou 0 se ainda não há chamadas
+     */
+    public int getFailureRatePercent() {
+        long snapshot = window.snapshot(System.currentTimeMillis());
+        long calls = snapshot & 0xFFFFFFFFL;
+        return calls == 0 ? 0 : (int) ((snapshot >>> 32) * 100 / calls);
+    }
+
+    @Override
+    public void setTransitionListener(TransitionListener listener) {
+        this.transitionListener = listener;
+    }
+
     /**
-     * Transição entre estados com logging
-     * 
-     * @param newState Novo estado
+     * Log + aviso ao listener (só a thread que venceu o CAS chega aqui)
      */
-    private void transitionTo(State newState) {
-        State oldState = this.state;
-        this.state = newState;
-        System.out.println("🔄 Circuit Breaker '" + name + "': " + oldState + " → " + newState);
+    private void transitioned(State from, State to) {
+        System.out.println("🔄 Circuit Breaker '" + name + "': " + from + " → " + to
+            + " (failure rate " + getFailureRatePercent() + "%, consecutive " + consecutiveFailures.get() + ")");
+        TransitionListener listener = transitionListener;
+        if (listener != null) {
+            listener.onTransition(from, to);
+        }
+    }
+
+    // ===== Palavra atômica =====
+
+    private static long pack(State state, int probes, int successes, long sinceMs) {
+        return (sinceMs << SINCE_SHIFT)
+            | ((long) (successes & BYTE_MASK) << SUCCESS_SHIFT)
+            | ((long) (probes & BYTE_MASK) << PROBE_SHIFT)
+            | state.ordinal();
+    }
+
+    private static State stateOf(long word) {
+        return STATES[(int) (word & STATE_MASK)];
+    }
+
+    private static int probesOf(long word) {
+        return (int) ((word >>> PROBE_SHIFT) & BYTE_MASK);
     }
-    
+
+    private static int successesOf(long word) {
+        return (int) ((word >>> SUCCESS_SHIFT) & BYTE_MASK);
+    }
+
+    private static long sinceOf(long word) {
+        return word >>> SINCE_SHIFT;
+    }
+
+    // ===== Janelas deslizantes =====
+
+    /**
+     * Janela de resultados recentes
+     * snapshot() devolve (falhas << 32) | chamadas
+     */
+    private interface Window {
+        void record(boolean failure, long nowMs);
+        long snapshot(long nowMs);
+        void reset();
+    }
+
+    /**
+     * Últimos windowMs milissegundos em BUCKETS baldes
+     *
+     * Cada balde é um long: | época (24 bits) | falhas (20) | chamadas (20) |
+     * Um balde de época antiga é zerado pelo primeiro CAS da época nova.
+     */
+    private static final class TimeWindow implements Window {
+
+        private static final int BUCKETS = 10;
+        private static final int COUNT_BITS = 20;
+        private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+        private static final long EPOCH_MASK = (1L << 24) - 1;
+
+        private final long bucketMs;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        TimeWindow(long windowMs) {
+            this.bucketMs = Math.max(1, windowMs / BUCKETS);
+        }
+
+        @Override
+        public void record(boolean failure, long nowMs) {
+            long index = nowMs / bucketMs;
+            int slot = (int) (index % BUCKETS);
+            long epoch = (index + 1) & EPOCH_MASK; // +1: época 0 = balde vazio
+            while (true) {
+                long current = buckets.get(slot);
+                long calls = 0;
+                long failed = 0;
+                if ((current >>> (2 * COUNT_BITS)) == epoch) {
+                    calls = current & COUNT_MASK;
+                    failed = (current >>> COUNT_BITS) & COUNT_MASK;
+                }
+                if (calls < COUNT_MASK) { // satura em vez de transbordar
+                    calls++;
+                    if (failure) {
+                        failed++;
+                    }
+                }
+                long updated = (epoch << (2 * COUNT_BITS)) | (failed << COUNT_BITS) | calls;
+                if (current == updated || buckets.compareAndSet(slot, current, updated)) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public long snapshot(long nowMs) {
+            long index = nowMs / bucketMs;
+            long calls = 0;
+            long failed = 0;
+            for (int slot = 0; slot < BUCKETS; slot++) {
+                long value = buckets.get(slot);
+                long epoch = value >>> (2 * COUNT_BITS);
+                long age = ((index + 1) - epoch) & EPOCH_MASK;
+                if (epoch != 0 && age < BUCKETS) {
+                    calls += value & COUNT_MASK;
+                    failed += (value >>> COUNT_BITS) & COUNT_MASK;
+                }
+            }
+            return (failed << 32) | calls;
+        }
+
+        @Override
+        public void reset() {
+            for (int slot = 0; slot < BUCKETS; slot++) {
+                buckets.set(slot, 0);
+            }
+        }
+    }
+
+    /**
+     * Últimas size chamadas em um anel (0 = vazio, 1 = sucesso, 2 = falha)
+     */
+    private static final class CountWindow implements Window {
+
+        private final AtomicLong sequence = new AtomicLong();
+        private final AtomicIntegerArray outcomes;
+
+        CountWindow(int size) {
+            this.outcomes = new AtomicIntegerArray(size);
+        }
+
+        @Override
+        public void record(boolean failure, long nowMs) {
+            int slot = (int) (sequence.getAndIncrement() % outcomes.length());
+            outcomes.set(slot, failure ? 2 : 1);
+        }
+
+        @Override
+        public long snapshot(long nowMs) {
+            long calls = 0;
+            long failed = 0;
+            for (int slot = 0; slot < outcomes.length(); slot++) {
+                int outcome = outcomes.get(slot);
+                if (outcome != 0) {
+                    calls++;
+                    if (outcome == 2) {
+                        failed++;
+                    }
+                }
+            }
+            return (failed << 32) | calls;
+        }
+
+        @Override
+        public void reset() {
+            for (int slot = 0; slot < outcomes.length(); slot++) {
+                outcomes.set(slot, 0);
+            }
+        }
+    }
+
     /**
      * Retorna string com status atual
-     * 
+     *
      * @return string com informações do circuit breaker
      */
     @Override
     public String toString() {
+        long current = word.get();
         return "GenericCircuitBreaker{" +
                 "name='" + name + '\'' +
-                ", state=" + state +
+                ", state=" + stateOf(current) +
+                ", failureRate=" + getFailureRatePercent() + "%" +
                 ", consecutiveFailures=" + consecutiveFailures.get() +
-                ", lastFailureTime=" + lastFailureTime.get() +
+                ", halfOpenProbes=" + probesOf(current) + "/" + halfOpenProbes +
+                ", since=" + sinceOf(current) +
                 '}';
     }
 }
@@ -0,0 +1,80 @@
+package chat4all.shared.patterns;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket lock-free (variante GCRA - Generic Cell Rate Algorithm)
+ * 
+ * PROPÓSITO: Limitar a taxa de chamadas (ex: 80 msg/s por número do WhatsApp)
+ * permitindo rajadas curtas de até "burst" chamadas.
+ * 
+ * COMO FUNCIONA:
+ * Em vez de guardar "quantos tokens restam" e reabastecer com um timer,
+ * guardamos UM número: o instante teórico em que o balde volta a ficar cheio
+ * (TAT - theoretical arrival time). Cada chamada empurra o TAT em
+ * 1/rate segundos. Se o TAT ficaria além de now + burst/rate, o balde está vazio.
+ * 
+ * EDUCATIONAL NOTE: Como o estado inteiro cabe em um AtomicLong, uma chamada
+ * é só um compareAndSet - sem synchronized, sem thread de reabastecimento.
+ * É o mesmo algoritmo usado por Redis-Cell e por vários API gateways.
+ * 
+ * @author Chat4All Team
+ * @version 1.0.0
+ */
+public class TokenBucket {
+    
+    private final long intervalNanos;   // custo de 1 token
+    private final long burstNanos;      // capacidade do balde em tempo
+    private final AtomicLong tat;       // theoretical arrival time (System.nanoTime)
+    
+    /**
+     * @param permitsPerSecond Taxa sustentada
+     * @param burst Máximo de chamadas em rajada com o balde cheio
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+        }
+        this.intervalNanos = (long) (1_000_000_000L / permitsPerSecond);
+        this.burstNanos = intervalNanos * burst;
+        this.tat = new AtomicLong(System.nanoTime() - burstNanos);
+    }
+    
+    /**
+     * Tenta consumir um token
+     * 
+     * @return 0 se concedido; senão, nanos até haver um token (nada é consumido)
+     */
+    public long tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+    
+    long tryAcquire(long now) {
+        while (true) {
+            long current = tat.get();
+            long base = Math.max(current, now - burstNanos);
+            long next = base + intervalNanos;
+            long wait = next - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+    
+    /**
+     * Devolve um token consumido (ex: outro limite negou a mesma chamada)
+     */
+    public void refund() {
+        tat.addAndGet(-intervalNanos);
+    }
+    
+    /**
+     * true se o balde está cheio há pelo menos idleNanos (pode ser descartado)
+     */
+    public boolean isIdle(long now, long idleNanos) {
+        return tat.get() + idleNanos < now - burstNanos;
+    }
+}
@@ -0,0 +1,45 @@
+package chat4all.shared.tracing;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+import java.util.List;
+
+/**
+ * Sampler de raiz: fração fixa exportada; o resto só é gravado (RECORD_ONLY) se a
+ * política de cauda estiver ligada, para que o TailSamplingSpanProcessor possa
+ * promover erros e requisições lentas depois que o span termina.
+ *
+ * Usado dentro de Sampler.parentBased(...): spans com pai seguem a decisão do pai.
+ */
+final class RatioOrRecordSampler implements Sampler {
+
+    private final Sampler ratio;
+    private final boolean recordMisses;
+    private final SamplingResult miss;
+
+    RatioOrRecordSampler(double ratio, boolean recordMisses) {
+        this.ratio = Sampler.traceIdRatioBased(ratio);
+        this.recordMisses = recordMisses;
+        this.miss = recordMisses ? SamplingResult.recordOnly() : SamplingResult.drop();
+    }
+
+    @Override
+    public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+                                       Attributes attributes, List<LinkData> parentLinks) {
+        SamplingResult result = ratio.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+        return result.getDecision() == SamplingDecision.RECORD_AND_SAMPLE
+            ? result
+            : miss;
+    }
+
+    @Override
+    public String getDescription() {
+        return "RatioOrRecord{" + ratio.getDescription() + ",recordMisses=" + recordMisses + "}";
+    }
+}
@@ -0,0 +1,122 @@
+package chat4all.shared.tracing;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.metrics.InstrumentType;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.AggregationTemporality;
+import io.opentelemetry.sdk.metrics.data.LongPointData;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.metrics.export.CollectionRegistration;
+import io.opentelemetry.sdk.metrics.export.MetricReader;
+
+/**
+ * SpanExportMetrics - Fila e descartes do BatchSpanProcessor no /metrics do serviço
+ *
+ * O BatchSpanProcessor já mede a si mesmo via OpenTelemetry Metrics ("queueSize" e
+ * "processedSpans{dropped=true|false}"), mas o serviço expõe Prometheus via Micrometer.
+ * Este leitor "pull" recebe essas métricas num SdkMeterProvider próprio e as repassa
+ * a gauges/counters do Micrometer, lidos no momento do scrape.
+ *
+ * MÉTRICAS:
+ * - tracing_export_queue_size / tracing_export_queue_capacity
+ * - tracing_spans_exported_total (entregues ao exportador)
+ * - tracing_spans_dropped_total (fila cheia: span perdido)
+ * - tracing_spans_tail_sampled_total / tracing_spans_tail_rate_limited_total
+ */
+final class SpanExportMetrics implements MetricReader {
+
+    private static final AttributeKey<Boolean> DROPPED = AttributeKey.booleanKey("dropped");
+
+    // Scrape lê vários valores em sequência: uma coleta serve a todos por este tempo
+    private static final long CACHE_NANOS = 1_000_000_000L;
+
+    private volatile CollectionRegistration registration = CollectionRegistration.noop();
+    private final SdkMeterProvider meterProvider;
+
+    private long collectedAt = System.nanoTime() - CACHE_NANOS;
+    private volatile long queueSize;
+    private volatile long processed;
+    private volatile long dropped;
+
+    SpanExportMetrics() {
+        this.meterProvider = SdkMeterProvider.builder().registerMetricReader(this).build();
+    }
+
+    /**
+     * MeterProvider a passar para BatchSpanProcessorBuilder.setMeterProvider
+     */
+    SdkMeterProvider getMeterProvider() {
+        return meterProvider;
+    }
+
+    void bindTo(MeterRegistry registry, int queueCapacity, TailSamplingSpanProcessor tail) {
+        Gauge.builder("tracing_export_queue_size", this, m -> m.snapshot().queueSize)
+            .description("Spans waiting in the BatchSpanProcessor queue")
+            .register(registry);
+        Gauge.builder("tracing_export_queue_capacity", () -> queueCapacity)
+            .description("BatchSpanProcessor max queue size")
+            .register(registry);
+        FunctionCounter.builder("tracing_spans_exported_total", this, m -> m.snapshot().processed)
+            .description("Spans handed to the exporter")
+            .register(registry);
+        FunctionCounter.builder("tracing_spans_dropped_total", this, m -> m.snapshot().dropped)
+            .description("Spans dropped because the export queue was full")
+            .register(registry);
+        if (tail != null) {
+            FunctionCounter.builder("tracing_spans_tail_sampled_total", tail, TailSamplingSpanProcessor::getPromotedCount)
+                .description("Unsampled error/slow spans promoted to export")
+                .register(registry);
+            FunctionCounter.builder("tracing_spans_tail_rate_limited_total", tail, TailSamplingSpanProcessor::getRateLimitedCount)
+                .description("Error/slow spans not exported because of the tail rate limit")
+                .register(registry);
+        }
+    }
+
+    private synchronized SpanExportMetrics snapshot() {
+        long now = System.nanoTime();
+        if (now - collectedAt < CACHE_NANOS) {
+            return this;
+        }
+        collectedAt = now;
+        for (MetricData metric : registration.collectAllMetrics()) {
+            if ("queueSize".equals(metric.getName())) {
+                for (LongPointData point : metric.getLongGaugeData().getPoints()) {
+                    queueSize = point.getValue();
+                }
+            } else if ("processedSpans".equals(metric.getName())) {
+                for (LongPointData point : metric.getLongSumData().getPoints()) {
+                    if (Boolean.TRUE.equals(point.getAttributes().get(DROPPED))) {
+                        dropped = point.getValue();
+                    } else {
+                        processed = point.getValue();
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public void register(CollectionRegistration registration) {
+        this.registration = registration;
+    }
+
+    @Override
+    public AggregationTemporality getAggregationTemporality(InstrumentType instrumentType) {
+        return AggregationTemporality.CUMULATIVE;
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return CompletableResultCode.ofSuccess();
+    }
+}
@@ -0,0 +1,201 @@
+package chat4all.shared.tracing;
+
+import chat4all.shared.patterns.TokenBucket;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.DelegatingSpanData;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TailSamplingSpanProcessor - "Sempre exportar erros e requisições lentas", com limite de taxa
+ *
+ * O sampler de raiz (RatioOrRecordSampler) exporta só uma fração dos traces; os demais
+ * spans raiz são gravados sem exportar (RECORD_ONLY). Quando um deles termina:
+ * - status ERROR ou evento "exception" (recordException), ou
+ * - duração >= slowNanos
+ * ele é promovido a sampled e entregue ao BatchSpanProcessor, até maxPerSecond por segundo
+ * (token bucket: um surto de erros não vira um surto de exportação).
+ *
+ * EDUCATIONAL NOTE: A decisão é tomada no FIM do span, então só o próprio span é
+ * promovido; filhos locais já seguiram a decisão do pai (não gravados). Para a API,
+ * em que o span do RPC é o que importa, isso basta; cauda completa de traces
+ * distribuídos exige um collector (ex: tail_sampling do OpenTelemetry Collector).
+ */
+final class TailSamplingSpanProcessor implements SpanProcessor {
+
+    private static final String EXCEPTION_EVENT = "exception";
+
+    private final SpanProcessor delegate;
+    private final long slowNanos;
+    private final TokenBucket limiter;
+    private final AtomicLong promoted = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+
+    /**
+     * @param delegate processador de exportação (BatchSpanProcessor)
+     * @param slowMs duração a partir da qual um span é "lento"
+     * @param maxPerSecond máximo de spans promovidos por segundo
+     */
+    TailSamplingSpanProcessor(SpanProcessor delegate, long slowMs, double maxPerSecond) {
+        this.delegate = delegate;
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMs);
+        this.limiter = new TokenBucket(maxPerSecond, (int) Math.max(1, Math.ceil(maxPerSecond)));
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+        delegate.onStart(parentContext, span);
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return delegate.isStartRequired();
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        if (span.getSpanContext().isSampled()) {
+            delegate.onEnd(span);
+            return;
+        }
+        if (!isInteresting(span)) {
+            return;
+        }
+        if (limiter.tryAcquire() != 0) {
+            rateLimited.incrementAndGet();
+            return;
+        }
+        promoted.incrementAndGet();
+        delegate.onEnd(new PromotedSpan(span));
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    /**
+     * Lento é checado primeiro: não precisa de toSpanData()
+     */
+    private boolean isInteresting(ReadableSpan span) {
+        if (span.getLatencyNanos() >= slowNanos) {
+            return true;
+        }
+        SpanData data = span.toSpanData();
+        if (data.getStatus().getStatusCode() == StatusCode.ERROR) {
+            return true;
+        }
+        for (EventData event : data.getEvents()) {
+            if (EXCEPTION_EVENT.equals(event.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    long getPromotedCount() {
+        return promoted.get();
+    }
+
+    long getRateLimitedCount() {
+        return rateLimited.get();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return delegate.shutdown();
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+        return delegate.forceFlush();
+    }
+
+    private static SpanContext sampled(SpanContext context) {
+        return SpanContext.create(context.getTraceId(), context.getSpanId(),
+            TraceFlags.getSampled(), context.getTraceState());
+    }
+
+    /**
+     * O mesmo span, visto pelo exportador como sampled
+     */
+    private static final class PromotedSpan implements ReadableSpan {
+        private final ReadableSpan span;
+        private final SpanContext context;
+
+        PromotedSpan(ReadableSpan span) {
+            this.span = span;
+            this.context = sampled(span.getSpanContext());
+        }
+
+        @Override
+        public SpanContext getSpanContext() {
+            return context;
+        }
+
+        @Override
+        public SpanContext getParentSpanContext() {
+            return span.getParentSpanContext();
+        }
+
+        @Override
+        public String getName() {
+            return span.getName();
+        }
+
+        @Override
+        public SpanData toSpanData() {
+            return new DelegatingSpanData(span.toSpanData()) {
+                @Override
+                public SpanContext getSpanContext() {
+                    return context;
+                }
+            };
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public InstrumentationLibraryInfo getInstrumentationLibraryInfo() {
+            return span.getInstrumentationLibraryInfo();
+        }
+
+        @Override
+        public InstrumentationScopeInfo getInstrumentationScopeInfo() {
+            return span.getInstrumentationScopeInfo();
+        }
+
+        @Override
+        public boolean hasEnded() {
+            return span.hasEnded();
+        }
+
+        @Override
+        public long getLatencyNanos() {
+            return span.getLatencyNanos();
+        }
+
+        @Override
+        public SpanKind getKind() {
+            return span.getKind();
+        }
+
+        @Override
+        public <T> T getAttribute(AttributeKey<T> key) {
+            return span.getAttribute(key);
+        }
+    }
+}
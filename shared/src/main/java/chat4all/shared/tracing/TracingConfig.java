@@ -1,5 +1,6 @@
 package chat4all.shared.tracing;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
@@ -8,7 +9,9 @@ import io.opentelemetry.exporter.jaeger.JaegerGrpcSpanExporter;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
 import io.opentelemetry.sdk.resources.Resource;
 import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
 import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
 import io.opentelemetry.semconv.ResourceAttributes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +28,25 @@ import java.util.concurrent.TimeUnit;
  * - W3C Trace Context propagation
  * - Automatic span batching
  * - Service-specific tracing
+ * - Sampling: parent-based ratio + rate-limited tail policy for errors/slow requests
+ * 
+ * SAMPLING (por que não rastrear tudo?):
+ * - Cada span gravado aloca atributos/eventos e ocupa a fila do BatchSpanProcessor;
+ *   com a fila cheia os spans são descartados em silêncio
+ * - Raiz: TRACE_SAMPLE_RATIO dos traces é exportado (decisão pelo trace_id, então
+ *   todos os serviços concordam); filhos e chamadas remotas seguem o pai (W3C traceparent)
+ * - Cauda: raízes não sorteadas são gravadas sem exportar; se terminarem com erro ou
+ *   acima de TRACE_SLOW_MS, são exportadas mesmo assim, até TRACE_TAIL_MAX_PER_SECOND
+ * - TRACE_TAIL_ENABLED=false: raízes não sorteadas nem são gravadas (custo mínimo)
+ * 
+ * CONFIGURAÇÃO (env):
+ * - TRACE_SAMPLE_RATIO (0.1), TRACE_TAIL_ENABLED (true), TRACE_SLOW_MS (500),
+ *   TRACE_TAIL_MAX_PER_SECOND (10)
+ * - TRACE_QUEUE_SIZE (2048), TRACE_EXPORT_BATCH_SIZE (512), TRACE_SCHEDULE_DELAY_MS (5000)
+ * - TRACE_HOT_PATH_EVENTS (false): eventos de span nos caminhos quentes (ver TracingUtils)
+ * 
+ * MÉTRICAS (com MeterRegistry): fila do exportador, spans descartados e promovidos
+ * pela cauda - ver SpanExportMetrics
  * 
  * Usage:
  * <pre>
@@ -46,6 +68,21 @@ public class TracingConfig {
     
     private static final Logger logger = LoggerFactory.getLogger(TracingConfig.class);
     
+    private static final double SAMPLE_RATIO =
+        Double.parseDouble(System.getenv().getOrDefault("TRACE_SAMPLE_RATIO", "0.1"));
+    private static final boolean TAIL_ENABLED =
+        Boolean.parseBoolean(System.getenv().getOrDefault("TRACE_TAIL_ENABLED", "true"));
+    private static final long SLOW_MS =
+        Long.parseLong(System.getenv().getOrDefault("TRACE_SLOW_MS", "500"));
+    private static final double TAIL_MAX_PER_SECOND =
+        Double.parseDouble(System.getenv().getOrDefault("TRACE_TAIL_MAX_PER_SECOND", "10"));
+    private static final int QUEUE_SIZE =
+        Integer.parseInt(System.getenv().getOrDefault("TRACE_QUEUE_SIZE", "2048"));
+    private static final int EXPORT_BATCH_SIZE =
+        Integer.parseInt(System.getenv().getOrDefault("TRACE_EXPORT_BATCH_SIZE", "512"));
+    private static final long SCHEDULE_DELAY_MS =
+        Long.parseLong(System.getenv().getOrDefault("TRACE_SCHEDULE_DELAY_MS", "5000"));
+    
     /**
      * Initialize OpenTelemetry with Jaeger exporter
      * 
@@ -64,6 +101,18 @@ public class TracingConfig {
      * @return Configured OpenTelemetry instance
      */
     public static OpenTelemetry initialize(String serviceName, String jaegerEndpoint) {
+        return initialize(serviceName, jaegerEndpoint, null);
+    }
+    
+    /**
+     * Initialize OpenTelemetry and expose exporter queue / dropped-span metrics
+     * 
+     * @param serviceName The name of the service
+     * @param jaegerEndpoint Jaeger gRPC endpoint
+     * @param meterRegistry Service registry for tracing_* metrics (null = no metrics)
+     * @return Configured OpenTelemetry instance
+     */
+    public static OpenTelemetry initialize(String serviceName, String jaegerEndpoint, MeterRegistry meterRegistry) {
         logger.info("Initializing OpenTelemetry tracing for service: {}", serviceName);
         
         // Create Jaeger exporter
@@ -80,14 +129,28 @@ public class TracingConfig {
                 .put("environment", getEnvironment())
                 .build());
         
-        // Create tracer provider with batch processor
+        // Batch processor reports queueSize/processedSpans through its own MeterProvider
+        SpanExportMetrics exportMetrics = new SpanExportMetrics();
+        SpanProcessor batchProcessor = BatchSpanProcessor.builder(jaegerExporter)
+            .setMaxQueueSize(QUEUE_SIZE)
+            .setMaxExportBatchSize(EXPORT_BATCH_SIZE)
+            .setExporterTimeout(30, TimeUnit.SECONDS)
+            .setScheduleDelay(SCHEDULE_DELAY_MS, TimeUnit.MILLISECONDS)
+            .setMeterProvider(exportMetrics.getMeterProvider())
+            .build();
+        
+        TailSamplingSpanProcessor tailProcessor = TAIL_ENABLED
+            ? new TailSamplingSpanProcessor(batchProcessor, SLOW_MS, TAIL_MAX_PER_SECOND)
+            : null;
+        
+        if (meterRegistry != null) {
+            exportMetrics.bindTo(meterRegistry, QUEUE_SIZE, tailProcessor);
+        }
+        
+        // Create tracer provider: parent-based ratio sampling (+ tail policy)
         SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
-            .addSpanProcessor(BatchSpanProcessor.builder(jaegerExporter)
-                .setMaxQueueSize(2048)
-                .setMaxExportBatchSize(512)
-                .setExporterTimeout(30, TimeUnit.SECONDS)
-                .setScheduleDelay(5, TimeUnit.SECONDS)
-                .build())
+            .setSampler(Sampler.parentBased(new RatioOrRecordSampler(SAMPLE_RATIO, TAIL_ENABLED)))
+            .addSpanProcessor(tailProcessor != null ? tailProcessor : batchProcessor)
             .setResource(resource)
             .build();
         
@@ -102,12 +165,14 @@ public class TracingConfig {
             logger.info("Shutting down OpenTelemetry...");
             try {
                 tracerProvider.close();
+                exportMetrics.getMeterProvider().close();
             } catch (Exception e) {
                 logger.error("Error shutting down tracer provider", e);
             }
         }));
         
-        logger.info("OpenTelemetry initialized successfully. Exporting to: {}", jaegerEndpoint);
+        logger.info("OpenTelemetry initialized successfully. Exporting to: {} (sample ratio {}, tail {}, slow {}ms)",
+            jaegerEndpoint, SAMPLE_RATIO, TAIL_ENABLED, SLOW_MS);
         return openTelemetry;
     }
     
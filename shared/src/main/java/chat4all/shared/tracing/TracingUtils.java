@@ -1,11 +1,17 @@
 package chat4all.shared.tracing;
 
+import chat4all.shared.Logger;
 import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import io.opentelemetry.context.propagation.TextMapPropagator;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.function.Supplier;
 
@@ -19,6 +25,28 @@ import java.util.function.Supplier;
  */
 public class TracingUtils {
     
+    // TRACE_HOT_PATH_EVENTS=false: addHotPathEvent vira no-op (eventos são a parte mais cara do span)
+    private static final boolean HOT_PATH_EVENTS =
+        Boolean.parseBoolean(System.getenv().getOrDefault("TRACE_HOT_PATH_EVENTS", "false"));
+    
+    /** Cabeçalho/campo W3C Trace Context */
+    public static final String TRACEPARENT = "traceparent";
+    
+    // W3C direto (não GlobalOpenTelemetry): o contexto atravessa o serviço mesmo sem SDK inicializado
+    private static final TextMapPropagator PROPAGATOR = W3CTraceContextPropagator.getInstance();
+    
+    private static final TextMapGetter<String> TRACEPARENT_GETTER = new TextMapGetter<String>() {
+        @Override
+        public Iterable<String> keys(String carrier) {
+            return Collections.singletonList(TRACEPARENT);
+        }
+        
+        @Override
+        public String get(String carrier, String key) {
+            return TRACEPARENT.equals(key) ? carrier : null;
+        }
+    };
+    
     /**
      * Execute code within a traced span
      * 
@@ -95,6 +123,22 @@ public class TracingUtils {
         }
     }
     
+    /**
+     * Add event to a span on a hot path (e.g. SendMessage), only if enabled
+     * 
+     * EDUCATIONAL NOTE: Each event allocates an EventData with a timestamp and is
+     * kept until the span ends. Attributes are enough to find a trace; events are
+     * for step-by-step debugging, so they are off by default on hot paths.
+     * 
+     * @param span Span to annotate (no-op if not recording)
+     * @param eventName Name of the event
+     */
+    public static void addHotPathEvent(Span span, String eventName) {
+        if (HOT_PATH_EVENTS && span.isRecording()) {
+            span.addEvent(eventName);
+        }
+    }
+    
     /**
      * Get current trace ID
      * 
@@ -120,4 +164,50 @@ public class TracingUtils {
         }
         return "";
     }
+    
+    /**
+     * Current context as a W3C traceparent ("00-<trace_id>-<span_id>-<flags>")
+     * 
+     * Used where there are no headers to carry it (e.g. the Redis notification JSON).
+     * 
+     * @return traceparent or null if there is no valid span in context
+     */
+    public static String currentTraceparent() {
+        SpanContext spanContext = Span.current().getSpanContext();
+        if (!spanContext.isValid()) {
+            return null;
+        }
+        String[] value = new String[1];
+        PROPAGATOR.inject(Context.current(), value, (carrier, key, v) -> {
+            if (TRACEPARENT.equals(key)) {
+                carrier[0] = v;
+            }
+        });
+        return value[0];
+    }
+    
+    /**
+     * Remote parent context from a traceparent produced by currentTraceparent()
+     * 
+     * @param traceparent W3C traceparent (null/invalid = root context)
+     * @return context to pass to SpanBuilder.setParent
+     */
+    public static Context extractTraceparent(String traceparent) {
+        if (traceparent == null) {
+            return Context.root();
+        }
+        return PROPAGATOR.extract(Context.root(), traceparent, TRACEPARENT_GETTER);
+    }
+    
+    /**
+     * Copy the span's trace_id to the structured logs of the current thread
+     * 
+     * @param span Span being processed (no-op if its context is invalid)
+     */
+    public static void setLogTraceId(Span span) {
+        SpanContext spanContext = span.getSpanContext();
+        if (spanContext.isValid()) {
+            Logger.setTraceId(spanContext.getTraceId());
+        }
+    }
 }
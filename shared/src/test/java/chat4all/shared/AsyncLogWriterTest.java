@@ -0,0 +1,104 @@
+package chat4all.shared;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AsyncLogWriterTest - Ring buffer do logger assíncrono
+ *
+ * Os testes usam o modo síncrono (sem thread escritora) e chamam offer/poll
+ * diretamente, para controlar quem consome a fila.
+ */
+public class AsyncLogWriterTest {
+
+    /**
+     * GIVEN: Fila de 4 slots
+     * WHEN: 5 linhas são oferecidas e depois consumidas
+     * THEN: As 4 primeiras entram em ordem, a 5ª é recusada; após consumir há espaço de novo
+     */
+    @Test
+    public void testBoundedFifo() {
+        AsyncLogWriter writer = new AsyncLogWriter(false, 4, new ByteArrayOutputStream());
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(writer.offer(bytes("line " + i)));
+        }
+        assertFalse(writer.offer(bytes("overflow")));
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals("line " + i, string(writer.poll()));
+        }
+        assertNull(writer.poll());
+        assertTrue(writer.offer(bytes("after wrap")));
+        assertEquals("after wrap", string(writer.poll()));
+    }
+
+    /**
+     * GIVEN: 4 threads produzindo 1000 linhas cada numa fila com espaço para todas
+     * WHEN: Todas terminam
+     * THEN: Nenhuma linha é perdida nem duplicada
+     */
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        AsyncLogWriter writer = new AsyncLogWriter(false, 4096, new ByteArrayOutputStream());
+        int threads = 4;
+        int perThread = 1000;
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            producers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    assertTrue(writer.offer(bytes(id + ":" + i)));
+                }
+            });
+            producers[t].start();
+        }
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        Set<String> seen = new HashSet<>();
+        byte[] line;
+        while ((line = writer.poll()) != null) {
+            assertTrue(seen.add(string(line)), "duplicate " + string(line));
+        }
+        assertEquals(threads * perThread, seen.size());
+    }
+
+    /**
+     * GIVEN: Modo síncrono
+     * WHEN: Uma linha é escrita
+     * THEN: Vai direto para a saída, terminada por '\n'
+     */
+    @Test
+    public void testSyncModeWritesThrough() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncLogWriter writer = new AsyncLogWriter(false, 16, out);
+
+        writer.write(bytes("{\"message\":\"olá\"}"), false);
+
+        assertEquals("{\"message\":\"olá\"}\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
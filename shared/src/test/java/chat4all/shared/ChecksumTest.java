@@ -0,0 +1,78 @@
+package chat4all.shared;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ChecksumTest - SHA-256/hex usados na validação de uploads
+ */
+public class ChecksumTest {
+
+    private static final String ABC_SHA256 = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    /**
+     * GIVEN: Known input ("abc", NIST test vector)
+     * WHEN: Hashing it
+     * THEN: Hex is lowercase and matches String.format("%02x") byte by byte
+     */
+    @Test
+    public void testSha256HexMatchesReference() {
+        byte[] data = "abc".getBytes(StandardCharsets.UTF_8);
+        byte[] hash = Checksum.newSha256().digest(data);
+        StringBuilder reference = new StringBuilder();
+        for (byte b : hash) {
+            reference.append(String.format("%02x", b));
+        }
+
+        assertEquals(ABC_SHA256, Checksum.sha256Hex(data));
+        assertEquals(reference.toString(), Checksum.toHex(hash));
+        assertEquals("00ff7f80", Checksum.toHex(new byte[] {0, -1, 127, -128}));
+    }
+
+    /**
+     * GIVEN: Expected checksum in lower case, upper case, wrong and malformed
+     * WHEN: Verifying the chunk against each of them
+     * THEN: Only the correct hash matches, regardless of case
+     */
+    @Test
+    public void testMatchesSha256() {
+        byte[] data = "abc".getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(Checksum.matchesSha256(data, ABC_SHA256));
+        assertTrue(Checksum.matchesSha256(data, ABC_SHA256.toUpperCase()));
+        assertFalse(Checksum.matchesSha256(data, ABC_SHA256.replace('b', 'c')));
+        assertFalse(Checksum.matchesSha256(data, "zz" + ABC_SHA256.substring(2)));
+        assertFalse(Checksum.matchesSha256(data, ABC_SHA256.substring(1)));
+        assertFalse(Checksum.matchesSha256(data, null));
+        assertTrue(Checksum.matchesSha256Async(data, ABC_SHA256, ForkJoinPool.commonPool()).join());
+    }
+
+    /**
+     * GIVEN: 1MB of data split into 64KB chunks plus a partial last chunk
+     * WHEN: Hashing chunks in parallel
+     * THEN: Each hash equals the sequential hash of the same range
+     */
+    @Test
+    public void testSha256HexChunksMatchesSequential() {
+        byte[] data = new byte[1_048_576 + 1000];
+        new Random(7).nextBytes(data);
+        int chunkSize = 65_536;
+
+        String[] hashes = Checksum.sha256HexChunks(data, chunkSize);
+
+        assertEquals(17, hashes.length);
+        for (int i = 0; i < hashes.length; i++) {
+            int offset = i * chunkSize;
+            byte[] range = Arrays.copyOfRange(data, offset, Math.min(offset + chunkSize, data.length));
+            assertEquals(Checksum.toHex(Checksum.newSha256().digest(range)), hashes[i]);
+        }
+        assertEquals(0, Checksum.sha256HexChunks(new byte[0], chunkSize).length);
+        assertThrows(IllegalArgumentException.class, () -> Checksum.sha256HexChunks(data, 0));
+    }
+}
@@ -0,0 +1,68 @@
+package chat4all.shared;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JsonLineEncoderTest - Formato da linha JSON do Logger
+ */
+public class JsonLineEncoderTest {
+
+    private static final byte[] COMPONENT = JsonLineEncoder.escape("router-worker");
+
+    /**
+     * GIVEN: Instante fixo e MDC com trace_id e message_id
+     * WHEN: A linha é codificada
+     * THEN: Mesmo formato do Logger antigo (campos na mesma ordem, MDC ausente omitido)
+     */
+    @Test
+    public void testLineFormat() {
+        JsonLineEncoder.ThreadState state = new JsonLineEncoder.ThreadState();
+        state.mdc[JsonLineEncoder.TRACE_ID] = "t-1";
+        state.mdc[JsonLineEncoder.MESSAGE_ID] = "msg_1";
+
+        String line = encode(state, 1_737_124_245_123L, "Saved");
+
+        assertEquals("{\"timestamp\":\"2025-01-17T14:30:45.123Z\",\"level\":\"INFO\",\"component\":\"router-worker\","
+            + "\"message\":\"Saved\",\"trace_id\":\"t-1\",\"message_id\":\"msg_1\"}", line);
+    }
+
+    /**
+     * GIVEN: Mensagem com aspas, barra, quebra de linha, controle, acento e emoji
+     * WHEN: A linha é codificada e lida de volta com org.json
+     * THEN: JSON válido e a mensagem volta idêntica
+     */
+    @Test
+    public void testEscapingRoundTrip() {
+        String message = "say \"oi\" \\ path\nnext\u0001 não ✓ 🚀";
+
+        String line = encode(new JsonLineEncoder.ThreadState(), System.currentTimeMillis(), message);
+
+        assertEquals(message, new JSONObject(line).getString("message"));
+    }
+
+    /**
+     * GIVEN: Duas linhas em segundos diferentes com o mesmo estado
+     * WHEN: Codificadas em sequência
+     * THEN: O prefixo cacheado é recalculado na troca de segundo
+     */
+    @Test
+    public void testCachedSecondRollsOver() {
+        JsonLineEncoder.ThreadState state = new JsonLineEncoder.ThreadState();
+
+        String first = encode(state, 1_737_124_245_999L, "a");
+        String second = encode(state, 1_737_124_246_000L, "b");
+
+        assertTrue(first.contains("\"2025-01-17T14:30:45.999Z\""), first);
+        assertTrue(second.contains("\"2025-01-17T14:30:46.000Z\""), second);
+    }
+
+    private static String encode(JsonLineEncoder.ThreadState state, long millis, String message) {
+        byte[] line = JsonLineEncoder.encode(state, millis, Logger.Level.INFO, COMPONENT, message, null);
+        return new String(line, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,91 @@
+package chat4all.shared;
+
+import chat4all.shared.tracing.TracingUtils;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NotificationEnvelopeTest - Leitura de campos do payload sem parse
+ */
+public class NotificationEnvelopeTest {
+
+    /**
+     * GIVEN: Payload montado com JSONObject (como no worker) e com stream_id prefixado
+     * WHEN: accepted_at e timestamp são lidos com longField
+     * THEN: Os valores gravados voltam idênticos
+     */
+    @Test
+    public void testLongFieldReadsWorkerPayload() {
+        JSONObject notification = new JSONObject();
+        notification.put("type", "new_message");
+        notification.put("content", "oi");
+        notification.put(NotificationEnvelope.TIMESTAMP_FIELD, 1_737_124_245_500L);
+        notification.put(NotificationEnvelope.ACCEPTED_AT_FIELD, 1_737_124_245_123L);
+        String payload = NotificationEnvelope.withStreamId(notification.toString(), "1737124245500-0");
+
+        assertEquals(1_737_124_245_123L, NotificationEnvelope.longField(payload, NotificationEnvelope.ACCEPTED_AT_FIELD));
+        assertEquals(1_737_124_245_500L, NotificationEnvelope.longField(payload, NotificationEnvelope.TIMESTAMP_FIELD));
+    }
+
+    /**
+     * GIVEN: Campo ausente, campo não numérico e o nome do campo dentro do conteúdo
+     * WHEN: longField é chamado
+     * THEN: -1 (o conteúdo escapado não é confundido com a chave)
+     */
+    @Test
+    public void testLongFieldMissingOrNotNumeric() {
+        JSONObject notification = new JSONObject();
+        notification.put("type", "read_watermark");
+        notification.put("content", "\"accepted_at\":42");
+
+        assertEquals(-1, NotificationEnvelope.longField(notification.toString(), NotificationEnvelope.ACCEPTED_AT_FIELD));
+        assertEquals(-1, NotificationEnvelope.longField("{\"type\":\"x\",\"timestamp\":\"now\"}", "timestamp"));
+        assertEquals(-1, NotificationEnvelope.longField(null, "timestamp"));
+    }
+
+    /**
+     * GIVEN: Notificação montada dentro do span do worker, com traceparent e stream_id
+     * WHEN: O gateway lê o traceparent com stringField e extrai o contexto
+     * THEN: O contexto remoto aponta para o span do worker
+     */
+    @Test
+    public void testTraceparentSurvivesPayload() {
+        Span workerSpan = SdkTracerProvider.builder().build().get("test").spanBuilder("messages process").startSpan();
+        JSONObject notification = new JSONObject();
+        notification.put("type", "new_message");
+        try (Scope scope = workerSpan.makeCurrent()) {
+            notification.put(NotificationEnvelope.TRACEPARENT_FIELD, TracingUtils.currentTraceparent());
+        } finally {
+            workerSpan.end();
+        }
+        String payload = NotificationEnvelope.withStreamId(notification.toString(), "1737124245500-0");
+
+        String traceparent = NotificationEnvelope.stringField(payload, NotificationEnvelope.TRACEPARENT_FIELD);
+        SpanContext remote = Span.fromContext(TracingUtils.extractTraceparent(traceparent)).getSpanContext();
+
+        assertTrue(remote.isRemote());
+        assertEquals(workerSpan.getSpanContext().getTraceId(), remote.getTraceId());
+        assertEquals(workerSpan.getSpanContext().getSpanId(), remote.getSpanId());
+        assertNull(NotificationEnvelope.stringField(payload, "missing"));
+    }
+
+    /**
+     * GIVEN: Stream IDs com ms de tamanhos diferentes e o mesmo ms com seq diferentes
+     * WHEN: compareStreamIds é chamado
+     * THEN: A ordem é numérica (ms, depois seq) e não lexicográfica
+     */
+    @Test
+    public void testCompareStreamIds() {
+        assertTrue(NotificationEnvelope.compareStreamIds("999-0", "1000-0") < 0);
+        assertTrue(NotificationEnvelope.compareStreamIds("1737124245500-10", "1737124245500-9") > 0);
+        assertEquals(0, NotificationEnvelope.compareStreamIds("1737124245500-1", "1737124245500-1"));
+        assertEquals(0, NotificationEnvelope.compareStreamIds("1737124245500", "1737124245500-0"));
+        assertThrows(NumberFormatException.class, () -> NotificationEnvelope.compareStreamIds("abc", "1-0"));
+    }
+}
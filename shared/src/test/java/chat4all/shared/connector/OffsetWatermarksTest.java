@@ -0,0 +1,49 @@
+package chat4all.shared.connector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * OffsetWatermarksTest - Commit seguro com conclusão fora de ordem
+ */
+public class OffsetWatermarksTest {
+    
+    /**
+     * GIVEN: Offsets 10, 11, 12 despachados
+     * WHEN: 11 e 12 terminam antes do 10
+     * THEN: Watermark fica em 10 até o 10 terminar, depois salta para 13
+     */
+    @Test
+    public void testWatermarkStopsAtFirstPendingOffset() {
+        OffsetWatermarks watermarks = new OffsetWatermarks();
+        watermarks.track(0, 10);
+        watermarks.track(0, 11);
+        watermarks.track(0, 12);
+        
+        watermarks.complete(0, 12);
+        watermarks.complete(0, 11);
+        assertEquals(10, watermarks.committable(0));
+        
+        watermarks.complete(0, 10);
+        assertEquals(13, watermarks.committable(0));
+        assertEquals(0, watermarks.pendingCount());
+    }
+    
+    /**
+     * GIVEN: Watermark já commitado
+     * WHEN: drainCommittable é chamado de novo sem progresso
+     * THEN: Nada é retornado
+     */
+    @Test
+    public void testDrainOnlyReturnsAdvancedPartitions() {
+        OffsetWatermarks watermarks = new OffsetWatermarks();
+        watermarks.track(1, 5);
+        watermarks.complete(1, 5);
+        
+        assertEquals(Map.of(1, 6L), watermarks.drainCommittable());
+        assertTrue(watermarks.drainCommittable().isEmpty());
+    }
+}
@@ -0,0 +1,118 @@
+package chat4all.shared.kafka;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ConsumerLagMonitorTest - Lag por partição a partir de posição e endOffsets
+ *
+ * Dois MockConsumer: o "principal" (posições) e o client de offsets do monitor (endOffsets).
+ * O timer fica desligado; o teste chama refresh() no lugar dele.
+ */
+public class ConsumerLagMonitorTest {
+
+    private static final TopicPartition P0 = new TopicPartition("messages", 0);
+    private static final TopicPartition P1 = new TopicPartition("messages", 1);
+
+    private MockConsumer<String, String> consumer;
+    private MockConsumer<byte[], byte[]> offsetsClient;
+    private SimpleMeterRegistry registry;
+    private ConsumerLagMonitor monitor;
+
+    @BeforeEach
+    public void setup() {
+        consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(Arrays.asList(P0, P1));
+        Map<TopicPartition, Long> beginning = new HashMap<>();
+        beginning.put(P0, 0L);
+        beginning.put(P1, 0L);
+        consumer.updateBeginningOffsets(beginning);
+        consumer.seek(P0, 3);
+        consumer.seek(P1, 10);
+
+        offsetsClient = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        Map<TopicPartition, Long> end = new HashMap<>();
+        end.put(P0, 10L);
+        end.put(P1, 10L);
+        offsetsClient.updateEndOffsets(end);
+
+        registry = new SimpleMeterRegistry();
+        monitor = new ConsumerLagMonitor(offsetsClient, "router-worker-group", registry, 1000, false);
+    }
+
+    /**
+     * GIVEN: P0 na posição 3 e P1 na 10, ambas com endOffset 10
+     * WHEN: Um poll é registrado e o monitor roda um ciclo
+     * THEN: Lag 7 em P0, 0 em P1, 7 no tópico; o listener recebe o total
+     */
+    @Test
+    public void testLagPerPartitionAndTopic() {
+        AtomicLong total = new AtomicLong(-1);
+        monitor.setTotalLagListener(total::set);
+
+        monitor.recordPoll(consumer, ConsumerRecords.empty());
+        monitor.refresh();
+
+        assertEquals(7.0, partitionLag(P0));
+        assertEquals(0.0, partitionLag(P1));
+        assertEquals(7.0, registry.get("kafka_consumer_lag_by_topic").tag("topic", "messages").gauge().value());
+        assertEquals(7, total.get());
+    }
+
+    /**
+     * GIVEN: Lag calculado com P0 atribuída
+     * WHEN: P0 é revogada e o próximo snapshot/ciclo acontece
+     * THEN: O lag de P0 vai a 0 nesta instância (a nova dona passa a reportar)
+     */
+    @Test
+    public void testRevokedPartitionDropsToZero() throws Exception {
+        monitor.recordPoll(consumer, ConsumerRecords.empty());
+        monitor.refresh();
+        assertEquals(7.0, partitionLag(P0));
+
+        consumer.assign(Collections.singletonList(P1));
+        Thread.sleep(600); // snapshot de posições a cada intervalMs / 2
+        monitor.recordPoll(consumer, ConsumerRecords.empty());
+        monitor.refresh();
+
+        assertEquals(0.0, partitionLag(P0));
+    }
+
+    /**
+     * GIVEN: Um poll com 3 registros do tópico
+     * WHEN: Registrado no monitor
+     * THEN: O contador de consumidos por tópico soma 3
+     */
+    @Test
+    public void testConsumedCounter() {
+        List<ConsumerRecord<String, String>> batch = Arrays.asList(
+            new ConsumerRecord<>("messages", 0, 3, "k", "a"),
+            new ConsumerRecord<>("messages", 0, 4, "k", "b"),
+            new ConsumerRecord<>("messages", 0, 5, "k", "c"));
+
+        monitor.recordPoll(consumer, new ConsumerRecords<>(Collections.singletonMap(P0, batch)));
+
+        assertEquals(3.0, registry.get("kafka_consumer_records_consumed_total").tag("topic", "messages").counter().count());
+    }
+
+    private double partitionLag(TopicPartition partition) {
+        return registry.get("kafka_consumer_lag_by_partition")
+            .tag("partition", String.valueOf(partition.partition()))
+            .gauge().value();
+    }
+}
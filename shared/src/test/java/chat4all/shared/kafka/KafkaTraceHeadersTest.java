@@ -0,0 +1,67 @@
+package chat4all.shared.kafka;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * KafkaTraceHeadersTest - traceparent do producer vira pai do span do consumer
+ */
+public class KafkaTraceHeadersTest {
+
+    private final Tracer tracer = SdkTracerProvider.builder().build().get("test");
+
+    /**
+     * GIVEN: Um registro produzido dentro do span "MessageService/SendMessage"
+     * WHEN: O consumer recebe os mesmos headers e inicia seu span
+     * THEN: Mesmo trace_id, e o pai do span do consumer é o span do producer
+     */
+    @Test
+    public void testConsumerSpanContinuesProducerTrace() {
+        Span producerSpan = tracer.spanBuilder("MessageService/SendMessage").startSpan();
+        ProducerRecord<String, String> produced;
+        try (Scope scope = producerSpan.makeCurrent()) {
+            produced = KafkaTraceHeaders.inject(new ProducerRecord<>("messages", "conv_1", "{}"));
+        } finally {
+            producerSpan.end();
+        }
+
+        ConsumerRecord<String, String> consumed = new ConsumerRecord<>("messages", 0, 42L, "conv_1", "{}");
+        for (Header header : produced.headers()) {
+            consumed.headers().add(header);
+        }
+        Span consumerSpan = KafkaTraceHeaders.startConsumerSpan(tracer, consumed);
+        consumerSpan.end();
+
+        SpanContext parent = ((ReadableSpan) consumerSpan).getParentSpanContext();
+        assertTrue(parent.isRemote());
+        assertEquals(producerSpan.getSpanContext().getTraceId(), consumerSpan.getSpanContext().getTraceId());
+        assertEquals(producerSpan.getSpanContext().getSpanId(), parent.getSpanId());
+        assertEquals("messages process", ((ReadableSpan) consumerSpan).getName());
+    }
+
+    /**
+     * GIVEN: Nenhum span ativo no producer
+     * WHEN: inject() e depois o span do consumer
+     * THEN: Nenhum header gravado; o span do consumer é raiz
+     */
+    @Test
+    public void testNoContextNoHeaders() {
+        ProducerRecord<String, String> produced = KafkaTraceHeaders.inject(new ProducerRecord<>("messages", "conv_1", "{}"));
+        assertFalse(produced.headers().iterator().hasNext());
+
+        Span consumerSpan = KafkaTraceHeaders.startConsumerSpan(tracer, new ConsumerRecord<>("messages", 0, 0L, "conv_1", "{}"));
+        consumerSpan.end();
+
+        assertFalse(((ReadableSpan) consumerSpan).getParentSpanContext().isValid());
+    }
+}
@@ -0,0 +1,73 @@
+package chat4all.shared.kafka;
+
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RetryTopicsTest - Nomes das camadas, atrasos e escolha do destino
+ */
+public class RetryTopicsTest {
+    
+    /**
+     * GIVEN: Camadas "5s,1m" para o tópico messages
+     * WHEN: Os tópicos são derivados
+     * THEN: messages-retry-5s, messages-retry-1m e messages-dlq, com atrasos em ms
+     */
+    @Test
+    public void testTierTopicsAndDelays() {
+        RetryTopics topics = new RetryTopics("messages", "5s, 1m");
+        
+        assertEquals(2, topics.getTierCount());
+        assertEquals("messages-retry-5s", topics.getTierTopic(0));
+        assertEquals(5_000, topics.getTierDelayMs(0));
+        assertEquals("messages-retry-1m", topics.getTierTopic(1));
+        assertEquals(60_000, topics.getTierDelayMs(1));
+        assertEquals("messages-dlq", topics.getDlqTopic());
+    }
+    
+    /**
+     * GIVEN: Duas camadas
+     * WHEN: A mensagem falha pela 1ª, 2ª e 3ª vez
+     * THEN: Vai para a camada 0, depois 1, depois DLQ (-1)
+     */
+    @Test
+    public void testAttemptSelectsTierThenDlq() {
+        RetryTopics topics = new RetryTopics("whatsapp-outbound", "5s,1m");
+        
+        assertEquals(0, topics.tierForAttempt(1));
+        assertEquals(1, topics.tierForAttempt(2));
+        assertEquals(-1, topics.tierForAttempt(3));
+    }
+    
+    /**
+     * GIVEN: Headers sem/com x-retry-attempt
+     * WHEN: attemptOf é chamado
+     * THEN: 0 para mensagem nova, valor do header (último) nas demais
+     */
+    @Test
+    public void testAttemptHeader() {
+        RecordHeaders headers = new RecordHeaders();
+        assertEquals(0, RetryTopics.attemptOf(headers));
+        
+        headers.add(RetryTopics.HEADER_ATTEMPT, "1".getBytes(StandardCharsets.UTF_8));
+        headers.add(RetryTopics.HEADER_ATTEMPT, "2".getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, RetryTopics.attemptOf(headers));
+    }
+    
+    /**
+     * GIVEN: Rótulos de atraso válidos e inválidos
+     * WHEN: parseDelayMs é chamado
+     * THEN: Converte ms/s/m/h e rejeita o resto
+     */
+    @Test
+    public void testParseDelay() {
+        assertEquals(500, RetryTopics.parseDelayMs("500ms"));
+        assertEquals(3_600_000, RetryTopics.parseDelayMs("1h"));
+        assertThrows(IllegalArgumentException.class, () -> RetryTopics.parseDelayMs("5x"));
+        assertThrows(IllegalArgumentException.class, () -> RetryTopics.parseDelayMs("s"));
+    }
+}
@@ -0,0 +1,86 @@
+package chat4all.shared.kafka;
+
+import chat4all.shared.kafka.StatusEventCodec.StatusUpdate;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StatusEventCodecTest - Formato simples e compacto do tópico status-updates
+ */
+public class StatusEventCodecTest {
+    
+    /**
+     * GIVEN: Um status no formato simples (com aspas no ID)
+     * WHEN: Codificado e decodificado
+     * THEN: Volta um único StatusUpdate igual ao original
+     */
+    @Test
+    public void testSingleRoundTrip() {
+        String json = StatusEventCodec.encodeSingle("msg_\"1\"", "DELIVERED", 1700000000000L, "whatsapp");
+        
+        List<StatusUpdate> updates = StatusEventCodec.decode(json);
+        
+        assertEquals(1, updates.size());
+        assertEquals("msg_\"1\"", updates.get(0).getMessageId());
+        assertEquals("DELIVERED", updates.get(0).getStatus());
+        assertEquals(1700000000000L, updates.get(0).getTimestamp());
+    }
+    
+    /**
+     * GIVEN: Três status com timestamps diferentes
+     * WHEN: Agrupados em um registro compacto
+     * THEN: Decodifica os três, na ordem, com timestamps absolutos
+     */
+    @Test
+    public void testBatchRoundTrip() {
+        List<StatusUpdate> batch = List.of(
+            new StatusUpdate("msg_1", "DELIVERED", 1700000000015L),
+            new StatusUpdate("msg_2", "DELIVERED", 1700000000000L),
+            new StatusUpdate("msg_1", "READ", 1700000003000L)
+        );
+        
+        String json = StatusEventCodec.encodeBatch("instagram", batch);
+        List<StatusUpdate> decoded = StatusEventCodec.decode(json);
+        
+        assertTrue(json.contains("\"base_ts\":1700000000000"));
+        assertEquals(3, decoded.size());
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(batch.get(i).getMessageId(), decoded.get(i).getMessageId());
+            assertEquals(batch.get(i).getStatus(), decoded.get(i).getStatus());
+            assertEquals(batch.get(i).getTimestamp(), decoded.get(i).getTimestamp());
+        }
+    }
+    
+    /**
+     * GIVEN: Registro simples sem message_id
+     * WHEN: Decodificado
+     * THEN: Lista vazia (registro inválido é ignorado pelo consumer)
+     */
+    @Test
+    public void testMissingFieldsDecodeToEmpty() {
+        assertTrue(StatusEventCodec.decode("{\"status\":\"READ\"}").isEmpty());
+    }
+    
+    /**
+     * GIVEN: Marca de leitura codificada
+     * WHEN: Decodificada pelos dois caminhos
+     * THEN: decodeWatermark devolve os campos; decode() devolve vazio (não é status)
+     */
+    @Test
+    public void testWatermarkRoundTrip() {
+        String json = StatusEventCodec.encodeWatermark(
+            new StatusEventCodec.ReadWatermark("conv_1", "user_a", 42L, 1700000000000L));
+        
+        StatusEventCodec.ReadWatermark decoded = StatusEventCodec.decodeWatermark(json);
+        
+        assertEquals("conv_1", decoded.getConversationId());
+        assertEquals("user_a", decoded.getUserId());
+        assertEquals(42L, decoded.getReadSeq());
+        assertEquals(1700000000000L, decoded.getTimestamp());
+        assertTrue(StatusEventCodec.decode(json).isEmpty());
+        assertNull(StatusEventCodec.decodeWatermark(StatusEventCodec.encodeSingle("msg_1", "READ", 1L, "whatsapp")));
+    }
+}
@@ -0,0 +1,104 @@
+package chat4all.shared.patterns;
+
+import chat4all.shared.patterns.CircuitBreakerPattern.State;
+import chat4all.shared.patterns.GenericCircuitBreaker.WindowType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * GenericCircuitBreakerTest - Janela deslizante e limite de probes no HALF_OPEN
+ */
+public class GenericCircuitBreakerTest {
+    
+    /**
+     * GIVEN: Janela de 10 chamadas, abre com 50% de falhas, 5 seguidas
+     * WHEN: Falhas intercaladas com sucessos (nunca 5 seguidas) chegam a 50%
+     * THEN: Circuito abre pela taxa de falha
+     */
+    @Test
+    public void testOpensOnFailureRateWithoutConsecutiveFailures() {
+        GenericCircuitBreaker breaker = new GenericCircuitBreaker("test", WindowType.COUNT, 10, 50, 10, 5, 1000, 2);
+        
+        for (int i = 0; i < 4; i++) {
+            breaker.recordSuccess(0);
+            breaker.recordFailure(0);
+        }
+        breaker.recordSuccess(0);
+        assertEquals(State.CLOSED, breaker.getState());
+        
+        breaker.recordFailure(0); // 10 chamadas, 5 falhas
+        assertEquals(State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest(999));
+    }
+    
+    /**
+     * GIVEN: Janela por tempo de 10s
+     * WHEN: Falhas antigas saem da janela
+     * THEN: Não contam mais para a taxa
+     */
+    @Test
+    public void testTimeWindowForgetsOldBuckets() {
+        GenericCircuitBreaker breaker = new GenericCircuitBreaker("test", WindowType.TIME, 10, 50, 4, 100, 1000, 1);
+        
+        breaker.recordFailure(0);
+        breaker.recordFailure(0);
+        breaker.recordFailure(0);
+        assertEquals(State.CLOSED, breaker.getState()); // só 3 chamadas (< mínimo)
+        
+        breaker.recordSuccess(20_000); // falhas ficaram fora da janela
+        breaker.recordFailure(20_000);
+        breaker.recordSuccess(20_000);
+        breaker.recordSuccess(20_000);
+        assertEquals(State.CLOSED, breaker.getState()); // 1 falha em 4 = 25%
+    }
+    
+    /**
+     * GIVEN: Circuito OPEN com 2 probes permitidos
+     * WHEN: O timeout expira
+     * THEN: Só 2 requisições passam; 2 sucessos fecham o circuito
+     */
+    @Test
+    public void testHalfOpenCapsProbesAndClosesAfterAllSucceed() {
+        GenericCircuitBreaker breaker = new GenericCircuitBreaker("test", WindowType.COUNT, 10, 50, 10, 3, 1000, 2);
+        List<String> transitions = new ArrayList<>();
+        breaker.setTransitionListener((from, to) -> transitions.add(from + "->" + to));
+        
+        breaker.recordFailure(0);
+        breaker.recordFailure(0);
+        breaker.recordFailure(0);
+        assertEquals(State.OPEN, breaker.getState());
+        
+        assertTrue(breaker.allowRequest(1000));
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest(1001));
+        assertFalse(breaker.allowRequest(1002));
+        
+        breaker.recordSuccess(1100);
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        breaker.recordSuccess(1200);
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(List.of("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"), transitions);
+    }
+    
+    /**
+     * GIVEN: Circuito HALF_OPEN
+     * WHEN: Um probe falha
+     * THEN: Volta para OPEN e o timeout recomeça
+     */
+    @Test
+    public void testHalfOpenProbeFailureReopens() {
+        GenericCircuitBreaker breaker = new GenericCircuitBreaker("test", WindowType.COUNT, 10, 50, 10, 1, 1000, 3);
+        breaker.recordFailure(0);
+        
+        assertTrue(breaker.allowRequest(1000));
+        breaker.recordFailure(1050);
+        
+        assertEquals(State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest(2000));
+        assertTrue(breaker.allowRequest(2050));
+    }
+}
@@ -0,0 +1,47 @@
+package chat4all.shared.patterns;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TokenBucketTest - Rajada e taxa sustentada do token bucket
+ */
+public class TokenBucketTest {
+    
+    private static final long SECOND = 1_000_000_000L;
+    
+    /**
+     * GIVEN: Balde de 10/s com burst 3, cheio
+     * WHEN: 4 chamadas no mesmo instante
+     * THEN: 3 passam, a 4ª recebe ~100ms de espera
+     */
+    @Test
+    public void testBurstThenWait() {
+        TokenBucket bucket = new TokenBucket(10, 3);
+        long now = System.nanoTime() + SECOND; // balde já cheio
+        
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+        
+        long wait = bucket.tryAcquire(now);
+        assertTrue(wait > 0 && wait <= SECOND / 10, "wait was " + wait);
+    }
+    
+    /**
+     * GIVEN: Balde vazio
+     * WHEN: Passa 1/rate segundos
+     * THEN: Exatamente um token volta
+     */
+    @Test
+    public void testRefillAtConfiguredRate() {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        long now = System.nanoTime() + SECOND;
+        
+        assertEquals(0, bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now) > 0);
+        assertEquals(0, bucket.tryAcquire(now + SECOND / 10));
+        assertTrue(bucket.tryAcquire(now + SECOND / 10) > 0);
+    }
+}
@@ -0,0 +1,110 @@
+package chat4all.shared.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TailSamplingSpanProcessorTest - Sampling por razão + promoção de erros/lentos
+ *
+ * Razão 0: nenhum trace é sorteado, então tudo o que chega ao exportador veio da cauda.
+ */
+public class TailSamplingSpanProcessorTest {
+
+    /**
+     * GIVEN: Razão 0 e limite de 100 promoções/s
+     * WHEN: Um span rápido OK, um com recordException e um com status ERROR terminam
+     * THEN: Só os dois com erro são exportados, marcados como sampled
+     */
+    @Test
+    public void testErrorsArePromoted() {
+        ListExporter exporter = new ListExporter();
+        Tracer tracer = tracer(new TailSamplingSpanProcessor(SimpleSpanProcessor.create(exporter), 10_000, 100));
+
+        tracer.spanBuilder("ok").startSpan().end();
+        Span failed = tracer.spanBuilder("exception").startSpan();
+        failed.recordException(new IllegalStateException("boom"));
+        failed.end();
+        tracer.spanBuilder("status").startSpan().setStatus(StatusCode.ERROR).end();
+
+        assertEquals(2, exporter.spans.size());
+        assertTrue(exporter.spans.stream().allMatch(span -> span.getSpanContext().isSampled()));
+        assertEquals(List.of("exception", "status"), exporter.spans.stream().map(SpanData::getName).toList());
+    }
+
+    /**
+     * GIVEN: Limite de 1 promoção/s
+     * WHEN: Três spans com erro terminam em sequência
+     * THEN: Um é exportado e dois são contados como rate-limited
+     */
+    @Test
+    public void testPromotionsAreRateLimited() {
+        ListExporter exporter = new ListExporter();
+        TailSamplingSpanProcessor tail = new TailSamplingSpanProcessor(SimpleSpanProcessor.create(exporter), 10_000, 1);
+        Tracer tracer = tracer(tail);
+
+        for (int i = 0; i < 3; i++) {
+            tracer.spanBuilder("error-" + i).startSpan().setStatus(StatusCode.ERROR).end();
+        }
+
+        assertEquals(1, exporter.spans.size());
+        assertEquals(1, tail.getPromotedCount());
+        assertEquals(2, tail.getRateLimitedCount());
+    }
+
+    /**
+     * GIVEN: TRACE_SLOW_MS equivalente a 0ms
+     * WHEN: Um span sem erro termina
+     * THEN: É promovido por ser "lento"
+     */
+    @Test
+    public void testSlowSpansArePromoted() {
+        ListExporter exporter = new ListExporter();
+        Tracer tracer = tracer(new TailSamplingSpanProcessor(SimpleSpanProcessor.create(exporter), 0, 100));
+
+        tracer.spanBuilder("slow").startSpan().end();
+
+        assertEquals(1, exporter.spans.size());
+    }
+
+    private static Tracer tracer(TailSamplingSpanProcessor processor) {
+        return SdkTracerProvider.builder()
+            .setSampler(Sampler.parentBased(new RatioOrRecordSampler(0.0, true)))
+            .addSpanProcessor(processor)
+            .build()
+            .get("test");
+    }
+
+    private static final class ListExporter implements SpanExporter {
+        final List<SpanData> spans = new CopyOnWriteArrayList<>();
+
+        @Override
+        public CompletableResultCode export(Collection<SpanData> batch) {
+            spans.addAll(batch);
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+    }
+}
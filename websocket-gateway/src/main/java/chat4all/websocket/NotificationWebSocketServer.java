@@ -15,20 +15,34 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
 
 public class NotificationWebSocketServer extends WebSocketServer {
     private static final Logger logger = LoggerFactory.getLogger(NotificationWebSocketServer.class);
     
-    // userId -> WebSocket connection
-    private final Map<String, WebSocket> connections = new ConcurrentHashMap<>();
+    // Máximo de dispositivos simultâneos por usuário (a sessão mais antiga é fechada)
+    private static final int MAX_SESSIONS_PER_USER =
+        Integer.parseInt(System.getenv().getOrDefault("WS_MAX_SESSIONS_PER_USER", "5"));
     
-    // WebSocket -> userId (reverse mapping)
-    private final Map<WebSocket, String> connectionToUser = new ConcurrentHashMap<>();
+    // userId -> sessões (várias por usuário); WebSocket -> userId fica no attachment da conexão
+    private final SessionRegistry sessions = new SessionRegistry(MAX_SESSIONS_PER_USER);
+    
+    /**
+     * Reenvia ao socket as notificações perdidas desde last_id (executado fora da thread do WebSocket)
+     */
+    @FunctionalInterface
+    public interface ReplayHandler {
+        void replay(WebSocket conn, String userId, String lastId);
+    }
     
     private final String jwtSecret;
     private final JWTVerifier jwtVerifier;
+    private volatile ReplayHandler replayHandler;
     
     // Prometheus metrics
     private static final Gauge activeConnections = Gauge.build()
@@ -87,19 +101,19 @@ public class NotificationWebSocketServer extends WebSocketServer {
                 return;
             }
             
-            // Register connection
-            WebSocket oldConnection = connections.put(userId, conn);
-            connectionToUser.put(conn, userId);
+            // Register session (same user may be connected from several devices)
+            conn.setAttachment(userId);
+            WebSocket evicted = sessions.add(userId, conn);
             
-            // Close old connection if exists (same user from different device)
-            if (oldConnection != null && oldConnection.isOpen()) {
-                logger.info("Closing old connection for user {}", userId);
-                oldConnection.close(1000, "New connection established");
+            // Only the oldest session is closed, and only past the per-user limit
+            if (evicted != null && evicted.isOpen()) {
+                logger.info("User {} exceeded {} sessions, closing oldest", userId, MAX_SESSIONS_PER_USER);
+                evicted.close(1000, "Too many sessions");
             }
             
-            activeConnections.inc();
+            activeConnections.set(sessions.sessionCount());
             logger.info("User {} connected successfully. Total connections: {}", 
-                userId, connections.size());
+                userId, sessions.sessionCount());
             
             // Send connection confirmation
             JSONObject confirmMsg = new JSONObject();
@@ -108,6 +122,13 @@ public class NotificationWebSocketServer extends WebSocketServer {
             confirmMsg.put("timestamp", System.currentTimeMillis());
             conn.send(confirmMsg.toString());
             
+            // Replay what was missed since the client's last-seen notification: /notifications?token=xxx&last_id=<stream_id>
+            String lastId = extractQueryParam(uri, "last_id");
+            ReplayHandler handler = replayHandler;
+            if (lastId != null && handler != null) {
+                handler.replay(conn, userId, lastId);
+            }
+            
         } catch (JWTVerificationException e) {
             logger.warn("JWT verification failed: {}", e.getMessage());
             conn.close(1008, "Invalid token");
@@ -121,19 +142,18 @@ public class NotificationWebSocketServer extends WebSocketServer {
     
     @Override
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
-        String userId = connectionToUser.remove(conn);
-        if (userId != null) {
-            connections.remove(userId);
-            activeConnections.dec();
+        String userId = conn.getAttachment();
+        if (userId != null && sessions.remove(userId, conn)) {
+            activeConnections.set(sessions.sessionCount());
             logger.info("User {} disconnected. Code: {}, Reason: {}. Total connections: {}", 
-                userId, code, reason, connections.size());
+                userId, code, reason, sessions.sessionCount());
         }
     }
     
     @Override
     public void onMessage(WebSocket conn, String message) {
         // We don't expect clients to send messages, but handle ping/pong if needed
-        String userId = connectionToUser.get(conn);
+        String userId = conn.getAttachment();
         logger.debug("Received message from user {}: {}", userId, message);
         
         try {
@@ -151,7 +171,7 @@ public class NotificationWebSocketServer extends WebSocketServer {
     
     @Override
     public void onError(WebSocket conn, Exception ex) {
-        String userId = connectionToUser.get(conn);
+        String userId = conn != null ? conn.getAttachment() : null;
         logger.error("WebSocket error for user {}", userId, ex);
         connectionErrors.labels("websocket_error").inc();
     }
@@ -163,21 +183,56 @@ public class NotificationWebSocketServer extends WebSocketServer {
     }
     
     /**
-     * Send notification to specific user
+     * Send notification to every session of a specific user
+     * 
+     * @return true if the user had at least one session here and the frames were sent
      */
-    public void sendNotificationToUser(String userId, String notificationJson) {
-        WebSocket conn = connections.get(userId);
-        if (conn != null && conn.isOpen()) {
-            try {
-                conn.send(notificationJson);
-                notificationsSent.inc();
-                logger.debug("Notification sent to user {}", userId);
-            } catch (Exception e) {
-                logger.error("Failed to send notification to user {}", userId, e);
-                connectionErrors.labels("send_failed").inc();
-            }
-        } else {
+    public boolean sendNotificationToUser(String userId, String notificationJson) {
+        List<WebSocket> userSessions = sessions.sessionsOf(userId);
+        if (userSessions.isEmpty()) {
             logger.debug("User {} not connected, notification not sent", userId);
+            return false;
+        }
+        boolean sent = sendPrepared(userSessions, notificationJson);
+        logger.debug("Notification sent to user {} ({} sessions)", userId, userSessions.size());
+        return sent;
+    }
+    
+    /**
+     * Send notification only to the user's sessions accepted by the filter
+     * (e.g. sessions still replaying their missed notifications are held back)
+     * 
+     * @return true if at least one session was accepted and the frames were sent
+     */
+    public boolean sendNotificationToUser(String userId, String notificationJson, Predicate<WebSocket> filter) {
+        List<WebSocket> userSessions = sessions.sessionsOf(userId);
+        List<WebSocket> targets = new ArrayList<>(userSessions.size());
+        for (WebSocket session : userSessions) {
+            if (filter.test(session)) {
+                targets.add(session);
+            }
+        }
+        return !targets.isEmpty() && sendPrepared(targets, notificationJson);
+    }
+    
+    /**
+     * EDUCATIONAL NOTE: WebSocketServer.broadcast() cria os frames UMA vez por Draft
+     * (Draft.createFrames) e reutiliza a mesma lista de Framedata para todos os sockets,
+     * em vez de conn.send(text) que re-encoda o texto para cada conexão.
+     * 
+     * Vale para as várias sessões de UM usuário. Entre membros de um grupo o frame
+     * é outro: cada destinatário recebe o stream_id do seu próprio log. O JSON do
+     * grupo é montado uma vez no worker e só o prefixo stream_id muda por membro.
+     */
+    private boolean sendPrepared(Collection<WebSocket> targets, String payload) {
+        try {
+            broadcast(payload, targets);
+            notificationsSent.inc(targets.size());
+            return true;
+        } catch (Exception e) {
+            logger.error("Failed to send notification to {} sessions", targets.size(), e);
+            connectionErrors.labels("send_failed").inc();
+            return false;
         }
     }
     
@@ -185,26 +240,32 @@ public class NotificationWebSocketServer extends WebSocketServer {
      * Extract token from URI query string
      */
     private String extractToken(String uri) {
-        if (uri == null || !uri.contains("token=")) {
+        return extractQueryParam(uri, "token");
+    }
+    
+    /**
+     * Extract a single query parameter value (e.g. token, last_id)
+     */
+    private String extractQueryParam(String uri, String name) {
+        if (uri == null) {
+            return null;
+        }
+        int queryStart = uri.indexOf('?');
+        if (queryStart < 0) {
             return null;
         }
         
         try {
-            String[] parts = uri.split("token=");
-            if (parts.length < 2) {
-                return null;
+            for (String param : uri.substring(queryStart + 1).split("&")) {
+                int eq = param.indexOf('=');
+                if (eq > 0 && param.substring(0, eq).equals(name)) {
+                    String value = param.substring(eq + 1);
+                    return value.isEmpty() ? null : URLDecoder.decode(value, StandardCharsets.UTF_8);
+                }
             }
-            
-            String token = parts[1];
-            // Remove any additional query parameters
-            int ampIndex = token.indexOf('&');
-            if (ampIndex > 0) {
-                token = token.substring(0, ampIndex);
-            }
-            
-            return token;
+            return null;
         } catch (Exception e) {
-            logger.warn("Error extracting token from URI", e);
+            logger.warn("Error extracting {} from URI", name, e);
             return null;
         }
     }
@@ -213,6 +274,34 @@ public class NotificationWebSocketServer extends WebSocketServer {
      * Get number of active connections
      */
     public int getConnectionCount() {
-        return connections.size();
+        return sessions.sessionCount();
+    }
+    
+    /**
+     * Users with at least one session on this gateway
+     */
+    public List<String> getConnectedUserIds() {
+        return sessions.userIds();
+    }
+    
+    /**
+     * Register for first-session / last-session transitions
+     */
+    public void setPresenceListener(SessionRegistry.PresenceListener listener) {
+        sessions.setPresenceListener(listener);
+    }
+    
+    /**
+     * Register the handler used to replay missed notifications on reconnect
+     */
+    public void setReplayHandler(ReplayHandler replayHandler) {
+        this.replayHandler = replayHandler;
+    }
+    
+    /**
+     * Whether the user has at least one session on this gateway
+     */
+    public boolean isUserConnected(String userId) {
+        return sessions.isConnected(userId);
     }
 }
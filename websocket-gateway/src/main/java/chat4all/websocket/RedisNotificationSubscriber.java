@@ -1,6 +1,14 @@
 package chat4all.websocket;
 
+import chat4all.shared.NotificationEnvelope;
+import chat4all.shared.metrics.MessageLatencyMetrics;
+import chat4all.shared.tracing.TracingUtils;
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
 import io.prometheus.client.Counter;
+import org.java_websocket.WebSocket;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,16 +16,143 @@ import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.resps.StreamEntry;
 
-public class RedisNotificationSubscriber {
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RedisNotificationSubscriber - Assina SOMENTE os canais dos usuários conectados aqui
+ * 
+ * Antes: psubscribe("notifications:*") → todo gateway recebia e parseava TODAS
+ * as notificações de todos os usuários e descartava as de quem não estava conectado.
+ * Com N réplicas, egress do Redis e CPU cresciam N × tráfego total.
+ * 
+ * Agora: SUBSCRIBE notifications:{userId} quando o usuário abre a primeira sessão
+ * neste gateway e UNSUBSCRIBE quando fecha a última. As mudanças são acumuladas
+ * e enviadas em lote (um SUBSCRIBE/UNSUBSCRIBE com vários canais) a cada
+ * SUBSCRIPTION_FLUSH_MS, evitando um comando por connect/disconnect.
+ * Cada evento enfileirado carrega o estado desejado (online/offline), na ordem
+ * em que o registro mudou; o flush aplica o ÚLTIMO estado de cada usuário. Reler
+ * o registro no flush não serve: o evento é disparado dentro do compute, antes
+ * de o novo estado ficar visível, e o flush poderia ver o estado anterior.
+ * 
+ * REPLAY NA RECONEXÃO:
+ * O worker também grava cada notificação em notifications-log:{userId} (Redis Stream).
+ * Se o cliente reconecta com ?last_id=<stream_id>, o delta (XRANGE exclusivo a partir
+ * de last_id) é reenviado só para aquele socket, em vez de o cliente recarregar
+ * conversas inteiras via GET /messages.
+ * - Se o log já não tem tudo depois de last_id (cortado por MAXLEN, expirado pelo
+ *   TTL ou maior que REPLAY_MAX), o cliente recebe {"type":"replay_truncated"} e
+ *   recarrega pelo caminho normal
+ * - O XRANGE só roda depois que o SUBSCRIBE do canal do usuário foi confirmado
+ *   (onSubscribe), então nada publicado durante o replay se perde
+ * - Enquanto o replay roda, os frames ao vivo daquele socket ficam retidos e são
+ *   enviados depois do replay, sem intercalar com ele
+ * - Frames ao vivo com stream_id <= último ID reenviado são descartados (o worker
+ *   faz XADD antes do PUBLISH, então a mesma entrada pode vir pelos dois caminhos)
+ * 
+ * PASS-THROUGH:
+ * O worker já publica o payload final (type, timestamp, stream_id). O gateway não
+ * faz parse/serialize de JSON por mensagem: apenas valida o envelope e repassa a
+ * String recebida ao socket.
+ * 
+ * TRACING: o campo "traceparent" do payload (span do worker) vira o pai do span
+ * "websocket deliver", fechando o trace API → Kafka → worker → Redis → socket.
+ */
+public class RedisNotificationSubscriber implements SessionRegistry.PresenceListener {
     private static final Logger logger = LoggerFactory.getLogger(RedisNotificationSubscriber.class);
     
     private final JedisPool jedisPool;
     private final NotificationWebSocketServer wsServer;
+    private final MessageLatencyMetrics latencyMetrics;
+    private final Tracer tracer = GlobalOpenTelemetry.getTracer("chat4all.websocket");
     private volatile boolean running = false;
     private Thread subscriberThread;
     
-    private static final String NOTIFICATION_PATTERN = "notifications:*";
+    private static final String CHANNEL_PREFIX = NotificationEnvelope.CHANNEL_PREFIX;
+    
+    // Como validar o payload antes de repassar: none | envelope | full
+    private static final String VALIDATION_MODE =
+        System.getenv().getOrDefault("NOTIFICATION_VALIDATION", "envelope").toLowerCase();
+    
+    // Máximo de notificações reenviadas por reconexão; acima disso o cliente deve recarregar
+    private static final int REPLAY_MAX =
+        Integer.parseInt(System.getenv().getOrDefault("NOTIFICATION_REPLAY_MAX", "200"));
+    
+    // Canal fixo: SUBSCRIBE precisa de ao menos um canal para entrar no modo Pub/Sub
+    private static final String CONTROL_CHANNEL = "notifications-gateway:control";
+    
+    private static final long SUBSCRIPTION_FLUSH_MS =
+        Long.parseLong(System.getenv().getOrDefault("REDIS_SUBSCRIPTION_FLUSH_MS", "50"));
+    
+    // Mudanças de presença desde o último flush, na ordem do registro (último estado vence)
+    private final ConcurrentLinkedQueue<PresenceChange> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService subscriptionFlusher =
+        Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "redis-subscription-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+    private final ScheduledExecutorService replayExecutor =
+        Executors.newScheduledThreadPool(2, r -> {
+            Thread t = new Thread(r, "notification-replay");
+            t.setDaemon(true);
+            return t;
+        });
+    private volatile JedisPubSub jedisPubSub;
+    
+    // Janela após o replay em que frames ao vivo ainda são comparados com o último stream_id reenviado
+    private static final long REPLAY_DEDUP_MS =
+        Long.parseLong(System.getenv().getOrDefault("NOTIFICATION_REPLAY_DEDUP_MS", "5000"));
+    
+    // Canais com SUBSCRIBE confirmado na conexão Pub/Sub atual
+    private final Set<String> subscribedChannels = ConcurrentHashMap.newKeySet();
+    // Replays esperando o SUBSCRIBE do canal do usuário
+    private final ConcurrentHashMap<String, ConcurrentLinkedQueue<ReplayCursor>> pendingReplays =
+        new ConcurrentHashMap<>();
+    // Sessões em replay (ou na janela de dedup logo depois)
+    private final ConcurrentHashMap<WebSocket, ReplayCursor> replayCursors = new ConcurrentHashMap<>();
+    
+    /**
+     * Usuário e o estado da assinatura que o registro pediu
+     */
+    private static final class PresenceChange {
+        final String userId;
+        final boolean online;
+        
+        PresenceChange(String userId, boolean online) {
+            this.userId = userId;
+            this.online = online;
+        }
+    }
+    
+    /**
+     * Estado do replay de uma sessão; campos mutáveis protegidos pelo próprio objeto
+     */
+    private static final class ReplayCursor {
+        final WebSocket conn;
+        final String userId;
+        // Último stream_id já entregue a este socket
+        String lastId;
+        // Frames ao vivo retidos enquanto o replay roda; null depois que terminou
+        List<String> held = new ArrayList<>();
+        
+        ReplayCursor(WebSocket conn, String userId, String lastId) {
+            this.conn = conn;
+            this.userId = userId;
+            this.lastId = lastId;
+        }
+    }
     
     // Prometheus metrics
     private static final Counter redisEventsConsumed = Counter.build()
@@ -25,13 +160,19 @@ public class RedisNotificationSubscriber {
         .help("Total number of events consumed from Redis Pub/Sub")
         .register();
     
+    private static final Counter notificationsReplayed = Counter.build()
+        .name("notifications_replayed_total")
+        .help("Total number of notifications replayed from the per-user log on reconnect")
+        .register();
+    
     private static final Counter redisErrors = Counter.build()
         .name("redis_errors_total")
         .help("Total number of Redis errors")
         .labelNames("error_type")
         .register();
     
-    public RedisNotificationSubscriber(String redisHost, int redisPort, NotificationWebSocketServer wsServer) {
+    public RedisNotificationSubscriber(String redisHost, int redisPort, NotificationWebSocketServer wsServer,
+                                       MessageLatencyMetrics latencyMetrics) {
         JedisPoolConfig poolConfig = new JedisPoolConfig();
         poolConfig.setMaxTotal(10);
         poolConfig.setMaxIdle(5);
@@ -40,6 +181,9 @@ public class RedisNotificationSubscriber {
         
         this.jedisPool = new JedisPool(poolConfig, redisHost, redisPort);
         this.wsServer = wsServer;
+        this.latencyMetrics = latencyMetrics;
+        wsServer.setPresenceListener(this);
+        wsServer.setReplayHandler(this::replay);
         
         logger.info("Redis subscriber initialized: {}:{}", redisHost, redisPort);
     }
@@ -53,59 +197,49 @@ public class RedisNotificationSubscriber {
         running = true;
         logger.info("Starting Redis subscriber...");
         
+        subscriptionFlusher.scheduleWithFixedDelay(
+            this::flushSubscriptions, SUBSCRIPTION_FLUSH_MS, SUBSCRIPTION_FLUSH_MS, TimeUnit.MILLISECONDS);
+        
         // Create JedisPubSub handler
-        JedisPubSub jedisPubSub = new JedisPubSub() {
+        jedisPubSub = new JedisPubSub() {
             @Override
-            public void onPMessage(String pattern, String channel, String message) {
-                try {
-                    // Extract userId from channel name: notifications:user123 -> user123
-                    String userId = channel.substring("notifications:".length());
-                    
-                    logger.debug("Received notification for user {} from Redis", userId);
-                    redisEventsConsumed.inc();
-                    
-                    // Parse message to ensure it's valid JSON
-                    JSONObject notification = new JSONObject(message);
-                    
-                    // Add notification type if not present
-                    if (!notification.has("type")) {
-                        notification.put("type", "notification");
-                    }
-                    
-                    // Add timestamp if not present
-                    if (!notification.has("timestamp")) {
-                        notification.put("timestamp", System.currentTimeMillis());
-                    }
-                    
-                    // Forward to WebSocket server
-                    wsServer.sendNotificationToUser(userId, notification.toString());
-                    
-                } catch (Exception e) {
-                    logger.error("Error processing Redis message from channel {}", channel, e);
-                    redisErrors.labels("message_processing").inc();
-                }
+            public void onMessage(String channel, String message) {
+                onNotification(channel, message);
             }
             
             @Override
-            public void onPSubscribe(String pattern, int subscribedChannels) {
-                logger.info("Subscribed to Redis pattern: {} (total subscriptions: {})", 
-                    pattern, subscribedChannels);
+            public void onSubscribe(String channel, int subscribedCount) {
+                logger.debug("Subscribed to Redis channel: {} (total subscriptions: {})", 
+                    channel, subscribedCount);
+                subscribedChannels.add(channel);
+                if (channel.startsWith(CHANNEL_PREFIX)) {
+                    startPendingReplays(channel.substring(CHANNEL_PREFIX.length()));
+                }
             }
             
             @Override
-            public void onPUnsubscribe(String pattern, int subscribedChannels) {
-                logger.info("Unsubscribed from Redis pattern: {} (remaining subscriptions: {})", 
-                    pattern, subscribedChannels);
+            public void onUnsubscribe(String channel, int subscribedCount) {
+                logger.debug("Unsubscribed from Redis channel: {} (remaining subscriptions: {})", 
+                    channel, subscribedCount);
+                subscribedChannels.remove(channel);
             }
         };
         
         // Subscribe in loop with reconnection logic
         while (running) {
             try (Jedis jedis = jedisPool.getResource()) {
-                logger.info("Subscribing to Redis pattern: {}", NOTIFICATION_PATTERN);
+                // (Re)subscribe to every user currently connected here; later changes go through the flusher
+                pendingChanges.clear();
+                subscribedChannels.clear();
+                List<String> channels = new ArrayList<>();
+                channels.add(CONTROL_CHANNEL);
+                for (String userId : wsServer.getConnectedUserIds()) {
+                    channels.add(CHANNEL_PREFIX + userId);
+                }
+                logger.info("Subscribing to {} Redis user channels", channels.size() - 1);
                 
                 // This call blocks until unsubscribe or error
-                jedis.psubscribe(jedisPubSub, NOTIFICATION_PATTERN);
+                jedis.subscribe(jedisPubSub, channels.toArray(new String[0]));
                 
             } catch (Exception e) {
                 if (running) {
@@ -125,9 +259,313 @@ public class RedisNotificationSubscriber {
         logger.info("Redis subscriber stopped");
     }
     
+    /**
+     * Entrega uma mensagem de um canal notifications:{userId} às sessões do usuário
+     * 
+     * Chamado pelo JedisPubSub; público para o harness ponta a ponta (módulo benchmarks),
+     * que entrega pelo seu Pub/Sub em memória sem um Redis.
+     */
+    public void onNotification(String channel, String message) {
+        if (!channel.startsWith(CHANNEL_PREFIX)) {
+            return; // control channel
+        }
+        try {
+            // Extract userId from channel name: notifications:user123 -> user123
+            String userId = channel.substring(CHANNEL_PREFIX.length());
+            
+            logger.debug("Received notification for user {} from Redis", userId);
+            redisEventsConsumed.inc();
+            
+            String payload = toWirePayload(message);
+            if (payload == null) {
+                logger.warn("Dropping malformed notification on channel {}", channel);
+                redisErrors.labels("invalid_envelope").inc();
+                return;
+            }
+            
+            // Forward to WebSocket server
+            Span span = startDeliverySpan(payload, userId);
+            try {
+                boolean delivered = replayCursors.isEmpty()
+                    ? wsServer.sendNotificationToUser(userId, payload)
+                    : wsServer.sendNotificationToUser(userId, payload, conn -> admitLive(conn, payload));
+                span.setAttribute("delivered", delivered);
+                if (delivered) {
+                    recordDeliveryLatency(payload);
+                }
+            } finally {
+                span.end();
+            }
+            
+        } catch (Exception e) {
+            logger.error("Error processing Redis message from channel {}", channel, e);
+            redisErrors.labels("message_processing").inc();
+        }
+    }
+    
+    /**
+     * Payload que vai para o socket, conforme NOTIFICATION_VALIDATION:
+     * - none: repassa como veio do Redis
+     * - envelope (padrão): checagem barata de envelope, sem parse
+     * - full: comportamento antigo (parse + type/timestamp padrão + serialize),
+     *         para publishers que não emitem o payload final
+     * 
+     * @return payload a enviar, ou null se inválido
+     */
+    private String toWirePayload(String message) {
+        switch (VALIDATION_MODE) {
+            case "none":
+                return message;
+            case "full":
+                JSONObject notification = new JSONObject(message);
+                if (!notification.has("type")) {
+                    notification.put("type", "notification");
+                }
+                if (!notification.has("timestamp")) {
+                    notification.put("timestamp", System.currentTimeMillis());
+                }
+                return notification.toString();
+            default:
+                return NotificationEnvelope.isWellFormed(message) ? message : null;
+        }
+    }
+    
+    /**
+     * Span de entrega, filho do span do worker que publicou a notificação
+     * 
+     * Leitura do traceparent sem parse (NotificationEnvelope.stringField), como o resto
+     * do caminho pass-through. Sem traceparent o span é raiz (sujeito ao sampling).
+     */
+    private Span startDeliverySpan(String payload, String userId) {
+        String traceparent = NotificationEnvelope.stringField(payload, NotificationEnvelope.TRACEPARENT_FIELD);
+        return tracer.spanBuilder("websocket deliver")
+            .setParent(TracingUtils.extractTraceparent(traceparent))
+            .setSpanKind(SpanKind.CONSUMER)
+            .setAttribute("user_id", userId)
+            .startSpan();
+    }
+    
+    /**
+     * Redis → socket (publicação no worker → envio aqui) e ponta a ponta (aceite na API → envio)
+     * 
+     * Só entregas ao vivo: replays de reconexão medem tempo offline, não latência.
+     */
+    private void recordDeliveryLatency(String payload) {
+        latencyMetrics.recordSince(MessageLatencyMetrics.Stage.REDIS_TO_SOCKET,
+            NotificationEnvelope.longField(payload, NotificationEnvelope.TIMESTAMP_FIELD));
+        latencyMetrics.recordEndToEnd(NotificationEnvelope.longField(payload, NotificationEnvelope.ACCEPTED_AT_FIELD));
+    }
+    
+    @Override
+    public void onUserOnline(String userId) {
+        pendingChanges.add(new PresenceChange(userId, true));
+    }
+    
+    @Override
+    public void onUserOffline(String userId) {
+        pendingChanges.add(new PresenceChange(userId, false));
+        ConcurrentLinkedQueue<ReplayCursor> waiting = pendingReplays.remove(userId);
+        if (waiting != null) {
+            for (ReplayCursor cursor : waiting) {
+                replayCursors.remove(cursor.conn, cursor);
+            }
+        }
+    }
+    
+    /**
+     * Envia as mudanças acumuladas como um SUBSCRIBE e um UNSUBSCRIBE em lote.
+     * Vale o último evento de cada usuário, então um connect seguido de disconnect
+     * no mesmo intervalo se cancela (e vice-versa).
+     */
+    private void flushSubscriptions() {
+        JedisPubSub pubSub = jedisPubSub;
+        if (pendingChanges.isEmpty() || pubSub == null || !pubSub.isSubscribed()) {
+            return; // not subscribed yet: the reconnect loop subscribes from the registry snapshot
+        }
+        
+        Map<String, Boolean> desired = new LinkedHashMap<>();
+        PresenceChange change;
+        while ((change = pendingChanges.poll()) != null) {
+            desired.put(change.userId, change.online);
+        }
+        
+        List<String> toSubscribe = new ArrayList<>();
+        List<String> toUnsubscribe = new ArrayList<>();
+        for (Map.Entry<String, Boolean> entry : desired.entrySet()) {
+            (entry.getValue() ? toSubscribe : toUnsubscribe).add(CHANNEL_PREFIX + entry.getKey());
+        }
+        
+        try {
+            if (!toSubscribe.isEmpty()) {
+                pubSub.subscribe(toSubscribe.toArray(new String[0]));
+            }
+            if (!toUnsubscribe.isEmpty()) {
+                pubSub.unsubscribe(toUnsubscribe.toArray(new String[0]));
+            }
+            logger.debug("Redis subscriptions updated: +{} -{}", toSubscribe.size(), toUnsubscribe.size());
+        } catch (Exception e) {
+            // Connection dropped: the reconnect loop resubscribes from the registry snapshot
+            logger.warn("Failed to update Redis subscriptions: {}", e.getMessage());
+            redisErrors.labels("subscription_update").inc();
+        }
+    }
+    
+    /**
+     * Registra o replay do log do usuário a partir de lastId (exclusivo).
+     * O XRANGE só roda quando o canal do usuário está assinado: na hora, se já
+     * estava (outra sessão do mesmo usuário), ou no onSubscribe do canal.
+     */
+    public void replay(WebSocket conn, String userId, String lastId) {
+        ReplayCursor cursor = new ReplayCursor(conn, userId, lastId);
+        replayCursors.put(conn, cursor);
+        pendingReplays.computeIfAbsent(userId, id -> new ConcurrentLinkedQueue<>()).add(cursor);
+        if (subscribedChannels.contains(CHANNEL_PREFIX + userId)) {
+            startPendingReplays(userId);
+        }
+    }
+    
+    /**
+     * Dispara os replays do usuário que esperavam o SUBSCRIBE (cada um é retirado da fila uma vez)
+     */
+    private void startPendingReplays(String userId) {
+        ConcurrentLinkedQueue<ReplayCursor> waiting = pendingReplays.get(userId);
+        if (waiting == null) {
+            return;
+        }
+        ReplayCursor cursor;
+        while ((cursor = waiting.poll()) != null) {
+            ReplayCursor next = cursor;
+            replayExecutor.execute(() -> doReplay(next));
+        }
+    }
+    
+    private void doReplay(ReplayCursor cursor) {
+        WebSocket conn = cursor.conn;
+        String lastSent = null;
+        try (Jedis jedis = jedisPool.getResource()) {
+            String logKey = NotificationEnvelope.logKeyFor(cursor.userId);
+            boolean trimmed = isTrimmedAfter(jedis, logKey, cursor.lastId);
+            List<StreamEntry> entries = jedis.xrange(logKey, "(" + cursor.lastId, "+", REPLAY_MAX);
+            
+            for (StreamEntry entry : entries) {
+                if (!conn.isOpen()) {
+                    break;
+                }
+                String payload = entry.getFields().get(NotificationEnvelope.LOG_PAYLOAD_FIELD);
+                String streamId = entry.getID().toString();
+                if (payload != null) {
+                    conn.send(NotificationEnvelope.withStreamId(payload, streamId));
+                }
+                lastSent = streamId;
+            }
+            notificationsReplayed.inc(entries.size());
+            
+            if ((trimmed || entries.size() >= REPLAY_MAX) && conn.isOpen()) {
+                // Log lost entries (MAXLEN/TTL) or has more than we replay: tell the client to fall back to a full reload
+                conn.send("{\"type\":\"replay_truncated\",\"timestamp\":" + System.currentTimeMillis() + "}");
+            }
+            logger.debug("Replayed {} notifications to user {} after {}", entries.size(), cursor.userId, cursor.lastId);
+            
+        } catch (Exception e) {
+            logger.warn("Failed to replay notifications for user {} from {}: {}",
+                cursor.userId, cursor.lastId, e.getMessage());
+            redisErrors.labels("replay").inc();
+        } finally {
+            finishReplay(cursor, lastSent);
+        }
+    }
+    
+    /**
+     * Se o log pode ter perdido entradas posteriores a lastId
+     * 
+     * O stream é limitado (XADD MAXLEN ~ N) e expira (TTL). Se a entrada mais
+     * antiga que restou é posterior a lastId, o que havia entre as duas foi
+     * cortado; se a chave nem existe mais, o log inteiro expirou. Nos dois
+     * casos o XRANGE devolveria só uma parte (ou nada) sem avisar.
+     */
+    private static boolean isTrimmedAfter(Jedis jedis, String logKey, String lastId) {
+        List<StreamEntry> oldest = jedis.xrange(logKey, "-", "+", 1);
+        if (oldest.isEmpty()) {
+            return true;
+        }
+        return NotificationEnvelope.compareStreamIds(oldest.get(0).getID().toString(), lastId) > 0;
+    }
+    
+    /**
+     * Libera os frames ao vivo retidos durante o replay (os que o replay não entregou)
+     * e mantém o filtro por stream_id durante REPLAY_DEDUP_MS
+     */
+    private void finishReplay(ReplayCursor cursor, String lastSent) {
+        synchronized (cursor) {
+            if (lastSent != null) {
+                cursor.lastId = lastSent;
+            }
+            List<String> held = cursor.held;
+            cursor.held = null;
+            for (String payload : held) {
+                if (cursor.conn.isOpen() && isAfter(payload, cursor.lastId)) {
+                    cursor.conn.send(payload);
+                }
+            }
+        }
+        if (!cursor.conn.isOpen()) {
+            replayCursors.remove(cursor.conn, cursor);
+            return;
+        }
+        try {
+            replayExecutor.schedule(() -> replayCursors.remove(cursor.conn, cursor), REPLAY_DEDUP_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            replayCursors.remove(cursor.conn, cursor); // shutting down
+        }
+    }
+    
+    /**
+     * Filtro dos frames ao vivo por sessão: retém durante o replay e descarta o que
+     * o replay já entregou
+     */
+    private boolean admitLive(WebSocket conn, String payload) {
+        ReplayCursor cursor = replayCursors.get(conn);
+        if (cursor == null) {
+            return true;
+        }
+        synchronized (cursor) {
+            if (cursor.held != null) {
+                cursor.held.add(payload);
+                return false;
+            }
+            return isAfter(payload, cursor.lastId);
+        }
+    }
+    
+    /**
+     * Se o stream_id do payload é posterior a lastId (sem stream_id ou com ID inválido, entrega)
+     */
+    private static boolean isAfter(String payload, String lastId) {
+        String streamId = NotificationEnvelope.stringField(payload, NotificationEnvelope.STREAM_ID_FIELD);
+        if (streamId == null) {
+            return true;
+        }
+        try {
+            return NotificationEnvelope.compareStreamIds(streamId, lastId) > 0;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+    
     public void stop() {
         logger.info("Stopping Redis subscriber...");
         running = false;
+        subscriptionFlusher.shutdownNow();
+        replayExecutor.shutdownNow();
+        
+        JedisPubSub pubSub = jedisPubSub;
+        if (pubSub != null && pubSub.isSubscribed()) {
+            try {
+                pubSub.unsubscribe();
+            } catch (Exception e) {
+                logger.debug("Error unsubscribing on shutdown", e);
+            }
+        }
         
         try {
             jedisPool.close();
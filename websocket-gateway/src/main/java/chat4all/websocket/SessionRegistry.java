@@ -0,0 +1,176 @@
+package chat4all.websocket;
+
+import org.java_websocket.WebSocket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SessionRegistry - Registro particionado (sharded) userId → sessões WebSocket
+ *
+ * Um usuário pode ter várias sessões abertas (celular + navegador + desktop).
+ * Antes, um novo login fechava a conexão anterior e o outro dispositivo deixava
+ * de receber notificações.
+ *
+ * ESTRUTURA:
+ * - SHARD_COUNT mapas independentes, escolhidos pelo hash do userId
+ * - Cada usuário aponta para um array imutável de sessões (copy-on-write)
+ * - Leitura (envio de notificação) não trava; escrita (connect/disconnect)
+ *   é atômica por usuário via ConcurrentHashMap.compute
+ *
+ * EDUCATIONAL NOTE: Notificações são lidas muito mais vezes do que conexões
+ * mudam, por isso o caminho de leitura só faz um get() e itera um array.
+ */
+public class SessionRegistry {
+
+    private static final int SHARD_COUNT = 16;
+    private static final WebSocket[] EMPTY = new WebSocket[0];
+
+    /**
+     * Avisado quando um usuário ganha a primeira sessão ou perde a última
+     * neste gateway (usado para assinar/cancelar o canal Redis do usuário)
+     *
+     * Chamado DENTRO do compute do usuário, então os eventos de um mesmo usuário
+     * chegam na ordem em que o registro mudou. A implementação deve ser barata e
+     * não bloquear (ex: só enfileirar) nem voltar a chamar o registro: o novo
+     * estado ainda não está visível, então o evento em si é a fonte da verdade.
+     */
+    public interface PresenceListener {
+        void onUserOnline(String userId);
+        void onUserOffline(String userId);
+    }
+
+    private final ConcurrentHashMap<String, WebSocket[]>[] shards;
+    private final int maxSessionsPerUser;
+    private final AtomicInteger totalSessions = new AtomicInteger();
+    private volatile PresenceListener presenceListener;
+
+    @SuppressWarnings("unchecked")
+    public SessionRegistry(int maxSessionsPerUser) {
+        this.maxSessionsPerUser = maxSessionsPerUser;
+        this.shards = new ConcurrentHashMap[SHARD_COUNT];
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    public void setPresenceListener(PresenceListener presenceListener) {
+        this.presenceListener = presenceListener;
+    }
+
+    private ConcurrentHashMap<String, WebSocket[]> shardFor(String userId) {
+        int h = userId.hashCode();
+        return shards[(h ^ (h >>> 16)) & (SHARD_COUNT - 1)];
+    }
+
+    /**
+     * Adiciona uma sessão para o usuário.
+     *
+     * @return sessão mais antiga removida por exceder o limite por usuário (ou null)
+     */
+    public WebSocket add(String userId, WebSocket conn) {
+        WebSocket[] evicted = new WebSocket[1];
+        shardFor(userId).compute(userId, (id, current) -> {
+            if (current == null) {
+                notifyOnline(userId);
+            }
+            WebSocket[] sessions = current == null ? EMPTY : current;
+            if (sessions.length >= maxSessionsPerUser) {
+                evicted[0] = sessions[0];
+                sessions = Arrays.copyOfRange(sessions, 1, sessions.length);
+            }
+            WebSocket[] updated = Arrays.copyOf(sessions, sessions.length + 1);
+            updated[sessions.length] = conn;
+            return updated;
+        });
+        if (evicted[0] == null) {
+            totalSessions.incrementAndGet();
+        }
+        return evicted[0];
+    }
+
+    /**
+     * Remove uma sessão do usuário.
+     *
+     * @return true se a sessão estava registrada
+     */
+    public boolean remove(String userId, WebSocket conn) {
+        boolean[] removed = new boolean[1];
+        shardFor(userId).computeIfPresent(userId, (id, sessions) -> {
+            for (int i = 0; i < sessions.length; i++) {
+                if (sessions[i] == conn) {
+                    removed[0] = true;
+                    if (sessions.length == 1) {
+                        notifyOffline(userId);
+                        return null;
+                    }
+                    WebSocket[] updated = new WebSocket[sessions.length - 1];
+                    System.arraycopy(sessions, 0, updated, 0, i);
+                    System.arraycopy(sessions, i + 1, updated, i, sessions.length - i - 1);
+                    return updated;
+                }
+            }
+            return sessions;
+        });
+        if (removed[0]) {
+            totalSessions.decrementAndGet();
+        }
+        return removed[0];
+    }
+
+    private void notifyOnline(String userId) {
+        PresenceListener listener = presenceListener;
+        if (listener != null) {
+            listener.onUserOnline(userId);
+        }
+    }
+
+    private void notifyOffline(String userId) {
+        PresenceListener listener = presenceListener;
+        if (listener != null) {
+            listener.onUserOffline(userId);
+        }
+    }
+
+    /**
+     * Sessões atuais do usuário (snapshot somente leitura, sem cópia)
+     *
+     * A view não modificável impede que um chamador altere o array compartilhado
+     * com set(), o que mudaria o registro fora do compute.
+     */
+    public List<WebSocket> sessionsOf(String userId) {
+        WebSocket[] sessions = shardFor(userId).get(userId);
+        return sessions == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(sessions));
+    }
+
+    /**
+     * Snapshot de todos os usuários com sessão neste gateway
+     */
+    public List<String> userIds() {
+        List<String> users = new ArrayList<>();
+        for (ConcurrentHashMap<String, WebSocket[]> shard : shards) {
+            users.addAll(shard.keySet());
+        }
+        return users;
+    }
+
+    public boolean isConnected(String userId) {
+        return shardFor(userId).containsKey(userId);
+    }
+
+    public int sessionCount() {
+        return totalSessions.get();
+    }
+
+    public int userCount() {
+        int users = 0;
+        for (ConcurrentHashMap<String, WebSocket[]> shard : shards) {
+            users += shard.size();
+        }
+        return users;
+    }
+}
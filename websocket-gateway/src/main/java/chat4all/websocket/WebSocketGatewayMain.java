@@ -2,6 +2,12 @@ package chat4all.websocket;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import chat4all.shared.metrics.MessageLatencyMetrics;
+import chat4all.shared.tracing.TracingConfig;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.prometheus.client.CollectorRegistry;
 import io.prometheus.client.exporter.HTTPServer;
 
 import java.io.IOException;
@@ -17,17 +23,28 @@ public class WebSocketGatewayMain {
         String redisHost = System.getenv().getOrDefault("REDIS_HOST", "localhost");
         int redisPort = Integer.parseInt(System.getenv().getOrDefault("REDIS_PORT", "6379"));
         String jwtSecret = System.getenv().getOrDefault("JWT_SECRET", "chat4all-secret-key");
+        String jaegerEndpoint = System.getenv().getOrDefault("JAEGER_ENDPOINT", "http://jaeger:14250");
         
         logger.info("Starting WebSocket Gateway...");
         logger.info("WebSocket Port: {}", wsPort);
         logger.info("Metrics Port: {}", metricsPort);
         logger.info("Redis: {}:{}", redisHost, redisPort);
+        logger.info("Jaeger: {}", jaegerEndpoint);
         
         try {
             // Initialize Prometheus metrics
             HTTPServer metricsServer = new HTTPServer(metricsPort);
             logger.info("Metrics server started on port {}", metricsPort);
             
+            // Micrometer on top of the default CollectorRegistry: latency histograms
+            // appear on the same /metrics as the simpleclient counters
+            PrometheusMeterRegistry meterRegistry = new PrometheusMeterRegistry(
+                PrometheusConfig.DEFAULT, CollectorRegistry.defaultRegistry, Clock.SYSTEM);
+            MessageLatencyMetrics latencyMetrics = new MessageLatencyMetrics(meterRegistry, "websocket-gateway");
+            
+            // Delivery spans continue the worker's trace (traceparent field of the notification)
+            TracingConfig.initialize("websocket-gateway", jaegerEndpoint, meterRegistry);
+            
             // Initialize WebSocket server
             NotificationWebSocketServer wsServer = new NotificationWebSocketServer(
                 new InetSocketAddress(wsPort),
@@ -41,7 +58,8 @@ public class WebSocketGatewayMain {
             RedisNotificationSubscriber redisSubscriber = new RedisNotificationSubscriber(
                 redisHost,
                 redisPort,
-                wsServer
+                wsServer,
+                latencyMetrics
             );
             
             // Start Redis subscriber in separate thread
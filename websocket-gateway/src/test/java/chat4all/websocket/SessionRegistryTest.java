@@ -0,0 +1,182 @@
+package chat4all.websocket;
+
+import org.java_websocket.WebSocket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * SessionRegistryTest - Várias sessões por usuário, limite por usuário e eventos de presença
+ */
+public class SessionRegistryTest {
+
+    private static final String ONLINE = "online";
+    private static final String OFFLINE = "offline";
+
+    private SessionRegistry registry;
+
+    // userId -> eventos de presença na ordem em que o listener foi chamado
+    private final Map<String, List<String>> events = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    public void setUp() {
+        events.clear();
+        registry = new SessionRegistry(3);
+        registry.setPresenceListener(new SessionRegistry.PresenceListener() {
+            @Override
+            public void onUserOnline(String userId) {
+                eventsOf(userId).add(ONLINE);
+            }
+
+            @Override
+            public void onUserOffline(String userId) {
+                eventsOf(userId).add(OFFLINE);
+            }
+        });
+    }
+
+    private List<String> eventsOf(String userId) {
+        return events.computeIfAbsent(userId, id -> Collections.synchronizedList(new ArrayList<>()));
+    }
+
+    /**
+     * Socket sem comportamento: o registro só compara identidade
+     */
+    private static WebSocket socket() {
+        return (WebSocket) Proxy.newProxyInstance(WebSocket.class.getClassLoader(), new Class<?>[] {WebSocket.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "socket@" + Integer.toHexString(System.identityHashCode(proxy));
+                    default:
+                        return null;
+                }
+            });
+    }
+
+    /**
+     * GIVEN: Limite de 3 sessões por usuário
+     * WHEN: O usuário abre a quarta sessão
+     * THEN: A mais antiga é devolvida para ser fechada e o total de sessões não cresce
+     */
+    @Test
+    public void testOldestSessionIsEvictedPastLimit() {
+        WebSocket first = socket();
+        WebSocket second = socket();
+        WebSocket third = socket();
+        WebSocket fourth = socket();
+
+        assertThat(registry.add("user_a", first)).isNull();
+        assertThat(registry.add("user_a", second)).isNull();
+        assertThat(registry.add("user_a", third)).isNull();
+        assertThat(registry.add("user_a", fourth)).isSameAs(first);
+
+        assertThat(registry.sessionsOf("user_a")).containsExactly(second, third, fourth);
+        assertThat(registry.sessionCount()).isEqualTo(3);
+        assertThat(registry.remove("user_a", first)).isFalse();
+        assertThat(registry.sessionCount()).isEqualTo(3);
+    }
+
+    /**
+     * GIVEN: Um usuário com duas sessões
+     * WHEN: Um chamador tenta alterar a lista devolvida por sessionsOf
+     * THEN: A lista é somente leitura e o registro não muda
+     */
+    @Test
+    public void testSessionsOfIsReadOnly() {
+        WebSocket first = socket();
+        registry.add("user_a", first);
+        registry.add("user_a", socket());
+
+        List<WebSocket> sessions = registry.sessionsOf("user_a");
+
+        assertThatThrownBy(() -> sessions.set(0, socket())).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(registry.sessionsOf("user_a")).startsWith(first);
+        assertThat(registry.sessionsOf("user_missing")).isEmpty();
+    }
+
+    /**
+     * GIVEN: Um usuário que abre duas sessões e fecha as duas
+     * WHEN: O listener de presença observa as mudanças
+     * THEN: Só a primeira sessão gera ONLINE e só a última gera OFFLINE
+     */
+    @Test
+    public void testPresenceEventsOnFirstAndLastSession() {
+        WebSocket phone = socket();
+        WebSocket browser = socket();
+
+        registry.add("user_a", phone);
+        registry.add("user_a", browser);
+        registry.remove("user_a", phone);
+        assertThat(events.get("user_a")).containsExactly(ONLINE);
+        assertThat(registry.isConnected("user_a")).isTrue();
+
+        registry.remove("user_a", browser);
+        assertThat(events.get("user_a")).containsExactly(ONLINE, OFFLINE);
+        assertThat(registry.isConnected("user_a")).isFalse();
+        assertThat(registry.userCount()).isZero();
+    }
+
+    /**
+     * GIVEN: Várias threads conectando e desconectando sessões dos mesmos usuários (com evicção)
+     * WHEN: Todas terminam
+     * THEN: Contadores voltam a zero e, por usuário, os eventos alternam ONLINE/OFFLINE
+     *       na ordem em que o registro mudou (nunca dois ONLINE seguidos)
+     */
+    @Test
+    public void testConcurrentAddRemoveKeepsCountsAndPresenceOrder() throws Exception {
+        int threads = 8;
+        int iterations = 2_000;
+        String[] users = {"user_a", "user_b", "user_c"};
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        String userId = users[(i + offset) % users.length];
+                        WebSocket conn = socket();
+                        registry.add(userId, conn); // may evict another thread's session
+                        registry.remove(userId, conn);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(registry.sessionCount()).isZero();
+        assertThat(registry.userCount()).isZero();
+        for (String userId : users) {
+            List<String> userEvents = events.get(userId);
+            assertThat(userEvents).isNotEmpty().hasSize(userEvents.size() / 2 * 2);
+            for (int i = 0; i < userEvents.size(); i++) {
+                assertThat(userEvents.get(i)).as("event %d of %s", i, userId).isEqualTo(i % 2 == 0 ? ONLINE : OFFLINE);
+            }
+        }
+    }
+}